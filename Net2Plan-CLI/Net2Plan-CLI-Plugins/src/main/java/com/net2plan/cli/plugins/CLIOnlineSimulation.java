@@ -17,16 +17,27 @@ import static com.net2plan.internal.sim.SimKernel.runSimulation;
 import java.io.File;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PatternOptionBuilder;
+import org.apache.commons.math3.distribution.TDistribution;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
 import com.net2plan.interfaces.networkDesign.Configuration;
 import com.net2plan.interfaces.networkDesign.Net2PlanException;
@@ -37,6 +48,9 @@ import com.net2plan.internal.CommandLineParser;
 import com.net2plan.internal.IExternal;
 import com.net2plan.internal.SystemUtils;
 import com.net2plan.internal.plugins.ICLIModule;
+import com.net2plan.internal.sim.EndSimulationException;
+import com.net2plan.internal.sim.IGUISimulationListener;
+import com.net2plan.internal.sim.SimCore;
 import com.net2plan.internal.sim.SimKernel;
 import com.net2plan.utils.ClassLoaderUtils;
 import com.net2plan.utils.HTMLUtils;
@@ -50,6 +64,8 @@ import com.net2plan.utils.Triple;
  */
 public class CLIOnlineSimulation extends ICLIModule {
     private final static String TITLE = "Online simulation";
+    private final static String DEFAULT_SEED_PARAMETER = "randomSeed";
+    private final static double CONFIDENCE_LEVEL = 0.95;
     private final static Options OPTIONS;
 
     static {
@@ -110,6 +126,26 @@ public class CLIOnlineSimulation extends ICLIModule {
         eventProcessorClassName.setArgName("classname");
         eventProcessorClassName.setRequired(true);
         OPTIONS.addOption(eventProcessorClassName);
+
+        Option replications = new Option(null, "replications", true, "(Optional) Number of independent replications of the simulation, each one with a different random seed (default: 1)");
+        replications.setType(PatternOptionBuilder.NUMBER_VALUE);
+        replications.setArgName("number");
+        OPTIONS.addOption(replications);
+
+        Option threads = new Option(null, "threads", true, "(Optional) Number of replications run in parallel (default: number of available processors)");
+        threads.setType(PatternOptionBuilder.NUMBER_VALUE);
+        threads.setArgName("number");
+        OPTIONS.addOption(threads);
+
+        Option seedParameter = new Option(null, "seed-param", true, "(Optional) Name of the " + generatorLabel.toLowerCase(Locale.getDefault()) + " and " + processorLabel.toLowerCase(Locale.getDefault()) + " parameter with the random seed, set to a different value in each replication (default: " + DEFAULT_SEED_PARAMETER + ")");
+        seedParameter.setType(PatternOptionBuilder.STRING_VALUE);
+        seedParameter.setArgName("name");
+        OPTIONS.addOption(seedParameter);
+
+        Option baseSeed = new Option(null, "base-seed", true, "(Optional) Random seed of the first replication. The i-th replication (starting in 0) uses the seed base-seed + i (default: 1)");
+        baseSeed.setType(PatternOptionBuilder.NUMBER_VALUE);
+        baseSeed.setArgName("seed");
+        OPTIONS.addOption(baseSeed);
     }
 
     @Override
@@ -158,10 +194,160 @@ public class CLIOnlineSimulation extends ICLIModule {
         File inputFile = (File) cli.getParsedOptionValue("input-file");
         File outputFile = (File) cli.getParsedOptionValue("output-file");
 
+        int numReplications = cli.hasOption("replications") ? ((Number) cli.getParsedOptionValue("replications")).intValue() : 1;
+        if (numReplications < 1) throw new Net2PlanException("The number of replications must be at least one");
+
 		/* Initialize and run simulation */
         NetPlan aux_netPlan = new NetPlan(inputFile);
-        String html = runSimulation(new SimKernel(), aux_netPlan, aux_eventGenerator, customEventGeneratorParameters, aux_eventProcessor, customEventProcessorParameters, customSimulationParameters, net2planParameters).getSecond();
-        HTMLUtils.saveToFile(outputFile, html);
+        if (numReplications == 1)
+        {
+            String html = runSimulation(new SimKernel(), aux_netPlan, aux_eventGenerator, customEventGeneratorParameters, aux_eventProcessor, customEventProcessorParameters, customSimulationParameters, net2planParameters).getSecond();
+            HTMLUtils.saveToFile(outputFile, html);
+            return;
+        }
+
+        int numThreads = cli.hasOption("threads") ? ((Number) cli.getParsedOptionValue("threads")).intValue() : Runtime.getRuntime().availableProcessors();
+        if (numThreads < 1) throw new Net2PlanException("The number of threads must be at least one");
+        String seedParameter = cli.hasOption("seed-param") ? (String) cli.getParsedOptionValue("seed-param") : DEFAULT_SEED_PARAMETER;
+        long baseSeed = cli.hasOption("base-seed") ? ((Number) cli.getParsedOptionValue("base-seed")).longValue() : 1;
+
+        List<Triple<String, String, String>> defaultEventGeneratorParameters = null;
+        try { defaultEventGeneratorParameters = aux_eventGenerator.getParameters(); }
+        catch (UnsupportedOperationException ex) { }
+        List<Triple<String, String, String>> defaultEventProcessorParameters = null;
+        try { defaultEventProcessorParameters = aux_eventProcessor.getParameters(); }
+        catch (UnsupportedOperationException ex) { }
+
+        Map<String, String> eventGeneratorParameters = CommandLineParser.getParameters(defaultEventGeneratorParameters, customEventGeneratorParameters);
+        Map<String, String> eventProcessorParameters = CommandLineParser.getParameters(defaultEventProcessorParameters, customEventProcessorParameters);
+        Map<String, String> simulationParameters = CommandLineParser.getParameters(new SimKernel().getSimulationParameters(), customSimulationParameters);
+        if (!eventGeneratorParameters.containsKey(seedParameter) && !eventProcessorParameters.containsKey(seedParameter))
+            throw new Net2PlanException("Neither the " + SimKernel.getEventGeneratorLabel().toLowerCase(Locale.getDefault()) + " nor the " + SimKernel.getEventProcessorLabel().toLowerCase(Locale.getDefault()) + " have a '" + seedParameter + "' parameter, so all the replications would be equal");
+
+        /* Each replication has its own copy of the design, and its own event generator and processor instances */
+        List<Callable<Map<String, Double>>> replications = new ArrayList<Callable<Map<String, Double>>>(numReplications);
+        for (int replication = 0; replication < numReplications; replication++)
+        {
+            final int replicationIndex = replication;
+            final NetPlan netPlan = aux_netPlan.copy();
+            final IExternal eventGenerator = ClassLoaderUtils.getInstance(generatorClassFile, generatorClassName, IEventGenerator.class, ucl);
+            final IExternal eventProcessor = ClassLoaderUtils.getInstance(provisioningClassFile, provisioningClassName, IEventProcessor.class, ucl);
+            final Map<String, String> eventGeneratorParameters_thisReplication = withSeed(eventGeneratorParameters, seedParameter, baseSeed + replication);
+            final Map<String, String> eventProcessorParameters_thisReplication = withSeed(eventProcessorParameters, seedParameter, baseSeed + replication);
+            replications.add(() -> runReplication(replicationIndex, netPlan, eventGenerator, eventGeneratorParameters_thisReplication, eventProcessor, eventProcessorParameters_thisReplication, simulationParameters, net2planParameters));
+        }
+
+        System.out.println(String.format("Running %d replications in %d threads (seed parameter '%s', seeds from %d to %d)...", numReplications, numThreads, seedParameter, baseSeed, baseSeed + numReplications - 1));
+        long init = System.nanoTime();
+        List<Map<String, Double>> results = new ArrayList<Map<String, Double>>(numReplications);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, numReplications));
+        try
+        {
+            for (Future<Map<String, Double>> result : executor.invokeAll(replications))
+                results.add(result.get());
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new Net2PlanException("Simulation interrupted");
+        } catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Net2PlanException) throw (Net2PlanException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally
+        {
+            executor.shutdownNow();
+        }
+        double totalTimeInSeconds = (System.nanoTime() - init) / 1.0e9;
+        System.out.println(String.format("%n%nAll the replications finished successfully in %s", StringUtils.secondsToYearsDaysHoursMinutesSeconds(totalTimeInSeconds)));
+
+        HTMLUtils.saveToFile(outputFile, getReplicationsReport(results, numThreads, seedParameter, baseSeed, totalTimeInSeconds));
+    }
+
+    /* Runs one replication without console output, and returns its summary results */
+    private static Map<String, Double> runReplication(int replicationIndex, NetPlan netPlan, IExternal eventGenerator, Map<String, String> eventGeneratorParameters, IExternal eventProcessor, Map<String, String> eventProcessorParameters, Map<String, String> simulationParameters, Map<String, String> net2planParameters)
+    {
+        final SimKernel simKernel = new SimKernel();
+        final Throwable[] stopReason = new Throwable[1];
+        simKernel.setGUIListener(new IGUISimulationListener()
+        {
+            @Override
+            public void refresh(boolean forceRefresh) { }
+
+            @Override
+            public void simulationStateChanged(SimCore.SimState simulationState, Throwable reason) { if (reason != null) stopReason[0] = reason; }
+        });
+        simKernel.setNetPlan(netPlan);
+        simKernel.configureSimulation(simulationParameters, net2planParameters, eventGenerator, eventGeneratorParameters, eventProcessor, eventProcessorParameters);
+        simKernel.initialize();
+
+        long init = System.nanoTime();
+        simKernel.getSimCore().setSimulationState(SimCore.SimState.RUNNING);
+        simKernel.getSimCore().run();
+        long end = System.nanoTime();
+        if (stopReason[0] != null && !(stopReason[0] instanceof EndSimulationException))
+        {
+            if (stopReason[0] instanceof Net2PlanException) throw new Net2PlanException("Replication " + replicationIndex + ": " + stopReason[0].getMessage());
+            throw new RuntimeException("Replication " + replicationIndex, stopReason[0]);
+        }
+
+        /* The summary is read before the report, since the report finishes the event generator and processor */
+        Map<String, Double> summary = simKernel.getSimulationSummary();
+        simKernel.getSimulationReport();
+        System.out.println(String.format("Replication %d finished in %s", replicationIndex, StringUtils.secondsToYearsDaysHoursMinutesSeconds((end - init) / 1.0e9)));
+        return summary;
+    }
+
+    private static Map<String, String> withSeed(Map<String, String> parameters, String seedParameter, long seed)
+    {
+        Map<String, String> res = new LinkedHashMap<String, String>(parameters);
+        if (res.containsKey(seedParameter)) res.put(seedParameter, Long.toString(seed));
+        return res;
+    }
+
+    /* HTML report with the mean, the confidence interval of the mean (Student's t), and the extreme values of each result among the replications */
+    private static String getReplicationsReport(List<Map<String, Double>> results, int numThreads, String seedParameter, long baseSeed, double totalTimeInSeconds)
+    {
+        Set<String> resultNames = new LinkedHashSet<String>();
+        for (Map<String, Double> result : results) resultNames.addAll(result.keySet());
+
+        StringBuilder info = new StringBuilder();
+        info.append("<html><head><title>Simulation report</title></head>");
+        info.append("<body>");
+        info.append("<h1>Simulation information</h1>");
+        info.append("<center><table border='1'><tr><th>Parameter</th><th>Value</th></tr>");
+        info.append(String.format("<tr><td>Number of replications</td><td>%d</td></tr>", results.size()));
+        info.append(String.format("<tr><td>Number of threads</td><td>%d</td></tr>", numThreads));
+        info.append(String.format("<tr><td>Random seeds ('%s')</td><td>%d to %d</td></tr>", seedParameter, baseSeed, baseSeed + results.size() - 1));
+        info.append(String.format("<tr><td>Total wall-clock time</td><td>%s</td></tr>", StringUtils.secondsToYearsDaysHoursMinutesSeconds(totalTimeInSeconds)));
+        info.append("</table></center>");
+
+        info.append("<h1>General results</h1>");
+        if (resultNames.isEmpty())
+        {
+            info.append("<p>No results available since 'disableStatistics' was set to 'true', or no event was processed</p>");
+        }
+        else
+        {
+            info.append(String.format("<center><table border='1'><tr><th>Result</th><th>Replications</th><th>Mean</th><th>%s%% confidence interval of the mean</th><th>Std. deviation</th><th>Min</th><th>Max</th></tr>", String.format("%.0f", 100 * CONFIDENCE_LEVEL)));
+            for (String resultName : resultNames)
+            {
+                SummaryStatistics statistics = new SummaryStatistics();
+                for (Map<String, Double> result : results)
+                    if (result.containsKey(resultName)) statistics.addValue(result.get(resultName));
+                long n = statistics.getN();
+                String confidenceInterval = "-";
+                if (n > 1)
+                {
+                    double halfWidth = new TDistribution(n - 1).inverseCumulativeProbability(0.5 + CONFIDENCE_LEVEL / 2) * statistics.getStandardDeviation() / Math.sqrt(n);
+                    confidenceInterval = String.format("[%.6g, %.6g]", statistics.getMean() - halfWidth, statistics.getMean() + halfWidth);
+                }
+                info.append(String.format("<tr><td>%s</td><td>%d</td><td>%.6g</td><td>%s</td><td>%.6g</td><td>%.6g</td><td>%.6g</td></tr>", resultName, n, statistics.getMean(), confidenceInterval, n > 1 ? statistics.getStandardDeviation() : 0.0, statistics.getMin(), statistics.getMax()));
+            }
+            info.append("</table></center>");
+        }
+        info.append("</body></html>");
+
+        return info.toString();
     }
 
     @Override
@@ -171,7 +357,9 @@ public class CLIOnlineSimulation extends ICLIModule {
         StringBuilder out = new StringBuilder();
         out.append("Simulates the network operation, where events appeared according to "
                 + "a built-in or user-defined event generator. Targeted to evaluate the performance of "
-                + "built-in or user-defined reaction algorithms on top of a discrete-event simulator");
+                + "built-in or user-defined reaction algorithms on top of a discrete-event simulator. "
+                + "Several independent replications (each one with a different random seed) can be run in parallel, "
+                + "reporting the mean and the confidence interval of the general results");
         out.append(NEW_LINE);
         out.append("Simulation parameters:");
         out.append(NEW_LINE);
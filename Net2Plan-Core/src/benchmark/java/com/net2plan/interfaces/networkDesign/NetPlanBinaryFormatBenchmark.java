@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+
+package com.net2plan.interfaces.networkDesign;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.net2plan.utils.Constants.RoutingType;
+
+/**
+ * <p>Compares the save and load times of a design in the {@code .n2p} XML format and in the binary format. The design has the given number of
+ * nodes, five output links per node, and ten demands per link, each carried by a two-hop route. The sizes of the two serializations are printed
+ * in the setup.</p>
+ * <p>To run it: {@code mvn -pl Net2Plan-Core -P benchmark test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.net2plan.interfaces.networkDesign.NetPlanBinaryFormatBenchmark}</p>
+ *
+ * @author Pablo Pavon-Marino
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetPlanBinaryFormatBenchmark
+{
+	@Param({"100", "1000"})
+	public int numNodes;
+
+	private NetPlan netPlan;
+	private byte [] xml;
+	private byte [] binary;
+
+	@Setup
+	public void setup ()
+	{
+		final Random rng = new Random(1L);
+		this.netPlan = new NetPlan ();
+		for (int cont = 0; cont < numNodes ; cont ++) netPlan.addNode(rng.nextDouble(), rng.nextDouble(), "n" + cont, null).setAttribute("index", "" + cont);
+		final List<Link> links = new ArrayList<> ();
+		for (int cont = 0; cont < numNodes ; cont ++)
+			for (int hop = 1; hop <= 5 ; hop ++)
+				links.add(netPlan.addLink(netPlan.getNode(cont), netPlan.getNode((cont + hop) % numNodes), 100, 10, 200000, null));
+		for (Link e : links)
+		{
+			final Link next = netPlan.getNodePairLinks(e.getDestinationNode(), netPlan.getNode((e.getDestinationNode().getIndex() + 1) % numNodes), false).first();
+			for (int cont = 0; cont < 10 ; cont ++)
+			{
+				final Demand d = netPlan.addDemand(e.getOriginNode(), next.getDestinationNode(), rng.nextDouble(), RoutingType.SOURCE_ROUTING, null);
+				netPlan.addRoute(d, d.getOfferedTraffic(), d.getOfferedTraffic(), Arrays.asList(e, next), null);
+			}
+		}
+		this.xml = saveXml();
+		this.binary = saveBinary();
+		System.out.println("XML: " + xml.length + " bytes, binary: " + binary.length + " bytes");
+	}
+
+	@Benchmark
+	public byte [] saveXml ()
+	{
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		netPlan.saveToOutputStream(os);
+		return os.toByteArray();
+	}
+
+	@Benchmark
+	public byte [] saveBinary ()
+	{
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		netPlan.saveToBinaryOutputStream(os);
+		return os.toByteArray();
+	}
+
+	@Benchmark
+	public NetPlan loadXml ()
+	{
+		return new NetPlan(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public NetPlan loadBinary ()
+	{
+		return new NetPlan(new ByteArrayInputStream(binary));
+	}
+
+	public static void main (String [] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder().include(NetPlanBinaryFormatBenchmark.class.getSimpleName()).build()).run();
+	}
+}
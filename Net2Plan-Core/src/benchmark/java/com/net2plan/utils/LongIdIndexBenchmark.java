@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+
+package com.net2plan.utils;
+
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares the identifier lookups in a {@link LongIdIndex} and in a {@code TreeMap<Long,E>} (the structure used before in the
+ * {@code NetPlan} caches). The identifiers are increasing with random gaps, as when elements of different types are created
+ * in the same design. Each benchmark method performs one operation per identifier in a random order.</p>
+ * <p>To run it: {@code mvn -pl Net2Plan-Core -P benchmark test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.net2plan.utils.LongIdIndexBenchmark}</p>
+ *
+ * @author Pablo Pavon-Marino
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongIdIndexBenchmark
+{
+	@Param({"1000", "100000", "1000000"})
+	public int numElements;
+
+	private long [] ids;
+	private long [] lookupOrder;
+	private SortedMap<Long,Object> treeMap;
+	private LongIdIndex<Object> index;
+
+	@Setup
+	public void setup ()
+	{
+		final Random rng = new Random(1L);
+		this.ids = new long [numElements];
+		long id = 0;
+		for (int cont = 0; cont < numElements ; cont ++) { id += 1 + rng.nextInt(4); ids [cont] = id; }
+		this.lookupOrder = ids.clone();
+		for (int cont = lookupOrder.length - 1; cont > 0 ; cont --)
+		{
+			final int other = rng.nextInt(cont + 1);
+			final long aux = lookupOrder [cont]; lookupOrder [cont] = lookupOrder [other]; lookupOrder [other] = aux;
+		}
+		this.treeMap = new TreeMap<> ();
+		this.index = new LongIdIndex<> ();
+		for (long elementId : ids) { final Object element = new Object (); treeMap.put(elementId, element); index.put(elementId, element); }
+	}
+
+	@Benchmark
+	public void getTreeMap (Blackhole bh)
+	{
+		for (long elementId : lookupOrder) bh.consume(treeMap.get(elementId));
+	}
+
+	@Benchmark
+	public void getLongIdIndex (Blackhole bh)
+	{
+		for (long elementId : lookupOrder) bh.consume(index.get(elementId));
+	}
+
+	@Benchmark
+	public Object buildAndRemoveTreeMap ()
+	{
+		final SortedMap<Long,Object> map = new TreeMap<> ();
+		for (long elementId : ids) map.put(elementId, this);
+		for (long elementId : lookupOrder) map.remove(elementId);
+		return map;
+	}
+
+	@Benchmark
+	public Object buildAndRemoveLongIdIndex ()
+	{
+		final LongIdIndex<Object> map = new LongIdIndex<> ();
+		for (long elementId : ids) map.put(elementId, this);
+		for (long elementId : lookupOrder) map.remove(elementId);
+		return map;
+	}
+
+	public static void main (String [] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder().include(LongIdIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+}
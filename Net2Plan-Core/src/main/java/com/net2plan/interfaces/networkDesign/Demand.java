@@ -25,6 +25,7 @@ import com.net2plan.internal.AttributeMap;
 import com.net2plan.internal.ErrorHandling;
 import com.net2plan.libraries.GraphUtils;
 import com.net2plan.libraries.GraphUtils.ClosedCycleRoutingException;
+import com.net2plan.libraries.HopByHopRoutingPropagationEngine;
 import com.net2plan.libraries.TrafficPredictor;
 import com.net2plan.libraries.TrafficSeries;
 import com.net2plan.utils.Constants.RoutingCycleType;
@@ -348,6 +349,7 @@ public class Demand extends NetworkElement implements IMonitorizableElement
             	SortedMap<Demand,SortedMap<Link,Double>> newFrs = GraphUtils.convert_xp2fdeMap(cache_routes);
                 for (Route r : new ArrayList<> (cache_routes)) r.remove();
                 routingType = RoutingType.HOP_BY_HOP_ROUTING;
+                layer.incrementModificationCounter();
                 if (newFrs.containsKey(this)) updateHopByHopRoutingToGivenFrs(newFrs.get(this));
                 break;
             }
@@ -355,11 +357,14 @@ public class Demand extends NetworkElement implements IMonitorizableElement
             case SOURCE_ROUTING:
             {
                 if (!cache_routes.isEmpty()) throw new RuntimeException ();
+                /* the routes are created from the current hop-by-hop traffic, then it cannot wait to the end of the batch */
+                if (netPlan.cache_demandsPendingHopByHopUpdate.remove(this)) updateHopByHopRoutingToGivenFrs(this.cacheHbH_frs);
                 final DoubleMatrix2D trafficInLinks_xde = DoubleFactory2D.sparse.make(layer.demands.size() , layer.links.size());
                 for (Entry<Link,Pair<Double,Double>> entry : cacheHbH_normCarriedOccupiedPerLinkCurrentState.entrySet())
                 	trafficInLinks_xde.set(this.index, entry.getKey().index, entry.getValue().getSecond());
                 this.removeAllForwardingRules();
                 routingType = RoutingType.SOURCE_ROUTING;
+                layer.incrementModificationCounter();
                 List<Demand> d_p = new LinkedList<Demand>();
                 List<Double> x_p = new LinkedList<Double>();
                 List<List<Link>> pathList = new LinkedList<List<Link>>();
@@ -443,6 +448,26 @@ public class Demand extends NetworkElement implements IMonitorizableElement
 		return cache_worstCaseLengthInKm;
 	}
 
+	/* Recomputes from the current routes the routing cycle type, and the worst case propagation time and length, of a source routed demand (the ones indicated) */
+	void updateCachesDependingOnRoutes (boolean cycleType , boolean worstCasePropagationTime , boolean worstCaseLength)
+	{
+		if (cycleType)
+		{
+			this.routingCycleType = RoutingCycleType.LOOPLESS;
+			for (Route r : cache_routes) if (r.cache_hasLoops) { this.routingCycleType = RoutingCycleType.OPEN_CYCLES; break; }
+		}
+		if (worstCasePropagationTime)
+		{
+			this.cache_worstCasePropagationTimeMs = 0;
+			for (Route r : cache_routes) this.cache_worstCasePropagationTimeMs = Math.max(this.cache_worstCasePropagationTimeMs, r.cache_propagationDelayMs);
+		}
+		if (worstCaseLength)
+		{
+			this.cache_worstCaseLengthInKm = 0;
+			for (Route r : cache_routes) this.cache_worstCaseLengthInKm = Math.max(this.cache_worstCaseLengthInKm, r.getLengthInKm());
+		}
+	}
+
 	/**
 	 * <p>Returns the worse case end-to-end propagation time of the demand traffic. If the routing is source routing, this is the worse propagation time
 	 * (summing the link latencies) for all the routes carrying traffic. If the routing is hop-by-hop and loopless, the paths followed are computed and 
@@ -815,6 +840,7 @@ public class Demand extends NetworkElement implements IMonitorizableElement
 				try { valid = netPlan.interLayerCoupling.addEdge(lowerLayer, upperLayer, coupling_thisLayerPair); }
 				catch (IllegalArgumentException ex) { valid = false; }
 				if (!valid) throw new Net2PlanException("Coupling between link " + link + " at layer " + upperLayer + " and demand " + this.id + " at layer " + lowerLayer.id + " would induce a cycle between layers");
+				netPlan.cache_topologicalPositionOfLayers = null;
 			}
 		}
 
@@ -874,7 +900,7 @@ public class Demand extends NetworkElement implements IMonitorizableElement
 		{
 			final DemandLinkMapping coupling_thisLayerPair = netPlan.interLayerCoupling.getEdge(lowerLayer, upperLayer);
 			coupling_thisLayerPair.remove(this);
-			if (coupling_thisLayerPair.isEmpty()) netPlan.interLayerCoupling.removeEdge(lowerLayer , upperLayer);
+			if (coupling_thisLayerPair.isEmpty()) { netPlan.interLayerCoupling.removeEdge(lowerLayer , upperLayer); netPlan.cache_topologicalPositionOfLayers = null; }
 		}
 		if (ErrorHandling.isDebugEnabled()) netPlan.checkCachesConsistency();
 
@@ -968,7 +994,7 @@ public class Demand extends NetworkElement implements IMonitorizableElement
 		if (bidirectionalPair != null) { this.bidirectionalPair.bidirectionalPair = null; this.bidirectionalPair = null; }
 		
 		if (routingType == RoutingType.SOURCE_ROUTING)
-			for (Route route : new TreeSet<Route> (cache_routes)) route.remove();
+			netPlan.removeAll(new ArrayList<Route> (cache_routes));
 		else
 		{
 			for (Link e : this.cacheHbH_frs.keySet()) e.cacheHbH_frs.remove(this);
@@ -993,8 +1019,9 @@ public class Demand extends NetworkElement implements IMonitorizableElement
         for (String tag : tags) netPlan.cache_taggedElements.get(tag).remove(this);
 		netPlan.cache_id2DemandMap.remove(id);
 		NetPlan.removeNetworkElementAndShiftIndexes (layer.demands , index);
-		ingressNode.cache_nodeOutgoingDemands.remove (this);
-		egressNode.cache_nodeIncomingDemands.remove (this);
+		layer.incrementModificationCounter();
+		Node.removeFromCache(ingressNode.cache_nodeOutgoingDemands , ingressNode.cache_nodeOutgoingDemandsPerLayer , layer , this);
+		Node.removeFromCache(egressNode.cache_nodeIncomingDemands , egressNode.cache_nodeIncomingDemandsPerLayer , layer , this);
 		final Pair<SortedSet<Demand>,SortedSet<MulticastDemand>> qosInfo = layer.cache_qosTypes2DemandMap.get(qosType);
 		assert qosInfo != null;
 		final boolean removed = qosInfo.getFirst().remove(this);
@@ -1018,7 +1045,12 @@ public class Demand extends NetworkElement implements IMonitorizableElement
 		netPlan.checkIsModifiable();
 		if (offeredTraffic < 0) throw new Net2PlanException("Offered traffic must be greater or equal than zero");
 		this.offeredTraffic = offeredTraffic;
-		if (!isSourceRouting()) updateHopByHopRoutingToGivenFrs(this.cacheHbH_frs);
+		layer.incrementModificationCounter();
+		if (!isSourceRouting())
+		{
+			if (netPlan.isDeferringDerivedStateUpdates()) netPlan.cache_demandsPendingHopByHopUpdate.add(this); // updated once at the end of the batch
+			else updateHopByHopRoutingToGivenFrs(this.cacheHbH_frs);
+		}
 		if (ErrorHandling.isDebugEnabled()) netPlan.checkCachesConsistency();
 	}
 
@@ -1210,7 +1242,33 @@ public class Demand extends NetworkElement implements IMonitorizableElement
 	/* Updates all the network state, to the new situation where the hop-by-hop routing of a demand has changed */
 	void updateHopByHopRoutingToGivenFrs (SortedMap<Link,Double> newFrsWithoutZeros)
 	{
+		updateHopByHopRoutingToGivenFrs(newFrsWithoutZeros , new HopByHopRoutingPropagationEngine());
+	}
+
+	/* Same as before, but within a batch or a bulk removal only the forwarding rules are set now: the traffic is propagated once when it closes */
+	void updateHopByHopRoutingToGivenFrsOrDefer (SortedMap<Link,Double> newFrsWithoutZeros , HopByHopRoutingPropagationEngine propagationEngine)
+	{
+		if (!netPlan.isDeferringDerivedStateUpdates()) { updateHopByHopRoutingToGivenFrs(newFrsWithoutZeros , propagationEngine); return; }
+		setForwardingRulesCaches(newFrsWithoutZeros);
+		netPlan.cache_demandsPendingHopByHopUpdate.add(this);
+	}
+
+	private void setForwardingRulesCaches (SortedMap<Link,Double> newFrsWithoutZeros)
+	{
+		layer.incrementModificationCounter();
+		for (Link e : this.cacheHbH_frs.keySet())
+			e.cacheHbH_frs.remove(this);
+		this.cacheHbH_frs = new TreeMap<> (newFrsWithoutZeros);
+		for (Entry<Link,Double> fr : this.cacheHbH_frs.entrySet())
+			fr.getKey().cacheHbH_frs.put(this , fr.getValue());
+	}
+
+	/* Same as before, reusing the given engine (and then the traffic propagation order computed for other demands with the same forwarding rules) */
+	void updateHopByHopRoutingToGivenFrs (SortedMap<Link,Double> newFrsWithoutZeros , HopByHopRoutingPropagationEngine propagationEngine)
+	{
+		/* the links with traffic are included: in a batch, the forwarding rules may have been set before (see updateHopByHopRoutingToGivenFrsOrDefer) */
 		final SortedSet<Link> affectedLinks = new TreeSet<>(Sets.union(newFrsWithoutZeros.keySet() , cacheHbH_frs.keySet()));
+		affectedLinks.addAll(cacheHbH_normCarriedOccupiedPerLinkCurrentState.keySet());
 		
 		/* set 0 in the down links and the link in-out from the down nodes (they do not send traffic) */
 		/* update the cache per node (include failed links if fr > 0) */
@@ -1229,7 +1287,7 @@ public class Demand extends NetworkElement implements IMonitorizableElement
 		}
 		
 		Quintuple<DoubleMatrix1D, RoutingCycleType , Double , Double , Double> fundMatrixComputation = 
-				GraphUtils.computeRoutingFundamentalVector(frsToApply, tentativeCacheHbH_linksPerNodeWithNonZeroFr , ingressNode ,  egressNode);
+				propagationEngine.computeRoutingFundamentalVector(frsToApply, tentativeCacheHbH_linksPerNodeWithNonZeroFr , ingressNode ,  egressNode);
 		if (fundMatrixComputation.getSecond() == RoutingCycleType.CLOSED_CYCLES) 
 		{
 			System.out.println("Demand: " + this + ", ingress: " + ingressNode+ " -> egress: " + egressNode + ", frs: " + newFrsWithoutZeros);
@@ -1279,11 +1337,7 @@ public class Demand extends NetworkElement implements IMonitorizableElement
 		}
 		
 		/* update the cache_frs in the link and demand */
-		for (Link e : this.cacheHbH_frs.keySet())
-			e.cacheHbH_frs.remove(this);
-		this.cacheHbH_frs = new TreeMap<> (newFrsWithoutZeros);
-		for (Entry<Link,Double> fr : this.cacheHbH_frs.entrySet())
-			fr.getKey().cacheHbH_frs.put(this , fr.getValue());
+		setForwardingRulesCaches(newFrsWithoutZeros);
 		
 
 		
@@ -1334,7 +1388,7 @@ public class Demand extends NetworkElement implements IMonitorizableElement
 	/** Sets the new time series for the monitored or forecasted offered traffic, eliminating any previous values 
 	 * @param newTimeSeries  see above
 	 */
-	public void setMonitoredOrForecastedOfferedTraffic (TrafficSeries newTimeSeries) { this.monitoredOrForecastedTraffics = new TrafficSeries (newTimeSeries.getValues()); }
+	public void setMonitoredOrForecastedOfferedTraffic (TrafficSeries newTimeSeries) { this.monitoredOrForecastedTraffics = newTimeSeries.getCopy(); }
 
 	@Override
 	public TrafficSeries getMonitoredOrForecastedCarriedTraffic()
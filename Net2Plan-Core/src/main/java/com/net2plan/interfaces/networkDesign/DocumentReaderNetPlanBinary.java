@@ -0,0 +1,410 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.interfaces.networkDesign;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.net2plan.interfaces.networkDesign.DocumentWriterNetPlanBinary.*;
+
+/**
+ * Reads a design document in the binary {@code .n2p} format (see {@link DocumentWriterNetPlanBinary}). The attribute values are converted
+ * to the type requested when needed, so the readers can ask for a value with the same methods as in the XML format.
+ */
+class DocumentReaderNetPlanBinary implements IDocumentReaderNetPlan
+{
+	/* Lengths read from the stream beyond the maximum array size are rejected. The arrays start with at most MAXINITIALARRAYLENGTH cells and grow as 
+	 * the values are read, so a corrupt length fails at the end of the stream instead of allocating the memory in advance */
+	private static final int MAXLENGTH = Integer.MAX_VALUE - 8;
+	private static final int MAXINITIALARRAYLENGTH = 4096;
+
+	private final InputStream inputStream;
+	private final byte[] buffer = new byte[64 * 1024];
+	private int bufferPosition = 0;
+	private int bufferLength = 0;
+	private long bufferOffset = 0; // offset in the stream of the first byte in the buffer
+
+	private final List<String> dictionary = new ArrayList<String>();
+	private final List<String> openElements = new ArrayList<String>();
+	private int eventType = XMLEvent.START_DOCUMENT;
+	private String elementName = null;
+	private boolean pendingEndOfEmptyElement = false;
+
+	private int numAttributes = 0;
+	private String[] attributeNames = new String[16];
+	private int[] attributeTypes = new int[16];
+	private long[] attributeLongValues = new long[16];
+	private double[] attributeDoubleValues = new double[16];
+	private Object[] attributeObjectValues = new Object[16];
+	private long[] attributeOffsets = new long[16];
+
+	DocumentReaderNetPlanBinary(InputStream inputStream) throws XMLStreamException
+	{
+		this.inputStream = inputStream;
+		for (byte b : MAGIC)
+			if (readByte() != b) throw new Net2PlanException("Not a valid binary .n2p file");
+		final long version = readUnsignedVarLong();
+		if (version != FORMAT_VERSION) throw new Net2PlanException("Binary .n2p format version " + version + " is not supported");
+	}
+
+	/**
+	 * Returns true if the stream starts with the magic bytes of the binary format. The stream must support marks, and is left at the same position
+	 * @param inputStream the input stream
+	 * @return see above
+	 * @throws IOException if an I/O error occurs
+	 */
+	static boolean isBinaryDocument(InputStream inputStream) throws IOException
+	{
+		inputStream.mark(MAGIC.length);
+		try
+		{
+			for (byte b : MAGIC)
+				if (inputStream.read() != b) return false;
+			return true;
+		} finally
+		{
+			inputStream.reset();
+		}
+	}
+
+	@Override
+	public boolean hasNext() { return eventType != XMLEvent.END_DOCUMENT; }
+
+	@Override
+	public int next() throws XMLStreamException
+	{
+		numAttributes = 0;
+		if (pendingEndOfEmptyElement)
+		{
+			pendingEndOfEmptyElement = false;
+			return eventType = XMLEvent.END_ELEMENT;
+		}
+		final int token = readByte();
+		switch (token)
+		{
+			case TOKEN_START_ELEMENT:
+			case TOKEN_EMPTY_ELEMENT:
+				elementName = readString();
+				readAttributes();
+				if (token == TOKEN_START_ELEMENT) openElements.add(elementName);
+				else pendingEndOfEmptyElement = true;
+				return eventType = XMLEvent.START_ELEMENT;
+			case TOKEN_END_ELEMENT:
+				if (openElements.isEmpty()) throw corruptDocument("Unbalanced end element");
+				elementName = openElements.remove(openElements.size() - 1);
+				return eventType = XMLEvent.END_ELEMENT;
+			case TOKEN_END_DOCUMENT:
+				elementName = null;
+				return eventType = XMLEvent.END_DOCUMENT;
+			default:
+				throw corruptDocument("Unknown token " + token);
+		}
+	}
+
+	@Override
+	public int getEventType() { return eventType; }
+
+	@Override
+	public String getName()
+	{
+		if (elementName == null) throw new IllegalStateException("Current event is not an element");
+		return elementName;
+	}
+
+	@Override
+	public int getAttributeIndex(String namespaceURI, String localName)
+	{
+		for (int index = 0; index < numAttributes; index++)
+			if (attributeNames[index].equals(localName)) return index;
+		return -1;
+	}
+
+	@Override
+	public String getAttributeValue(int index)
+	{
+		checkAttributeIndex(index);
+		switch (attributeTypes[index])
+		{
+			case TYPE_STRING: return (String) attributeObjectValues[index];
+			case TYPE_LONG: return Long.toString(attributeLongValues[index]);
+			case TYPE_DOUBLE: return Double.toString(attributeDoubleValues[index]);
+			case TYPE_FALSE: return Boolean.toString(false);
+			case TYPE_TRUE: return Boolean.toString(true);
+			case TYPE_LONG_ARRAY:
+			{
+				final StringBuilder sb = new StringBuilder();
+				for (long value : (long[]) attributeObjectValues[index]) { if (sb.length() > 0) sb.append(' '); sb.append(value); }
+				return sb.toString();
+			}
+			case TYPE_DOUBLE_ARRAY:
+			{
+				final StringBuilder sb = new StringBuilder();
+				for (double value : (double[]) attributeObjectValues[index]) { if (sb.length() > 0) sb.append(' '); sb.append(value); }
+				return sb.toString();
+			}
+			default: throw new Net2PlanException("Not a valid binary .n2p file: unknown type " + attributeTypes[index] + " of attribute " + attributeNames[index] + " at offset " + attributeOffsets[index]);
+		}
+	}
+
+	@Override
+	public long getAttributeAsLong(int index) throws XMLStreamException
+	{
+		checkAttributeIndex(index);
+		switch (attributeTypes[index])
+		{
+			case TYPE_LONG: return attributeLongValues[index];
+			case TYPE_STRING:
+				try { return Long.parseLong(((String) attributeObjectValues[index]).trim()); } catch (NumberFormatException e) { throw new XMLStreamException(e); }
+			default: throw new XMLStreamException("Attribute " + attributeNames[index] + " is not an integer");
+		}
+	}
+
+	@Override
+	public double getAttributeAsDouble(int index) throws XMLStreamException
+	{
+		checkAttributeIndex(index);
+		switch (attributeTypes[index])
+		{
+			case TYPE_DOUBLE: return attributeDoubleValues[index];
+			case TYPE_LONG: return attributeLongValues[index];
+			case TYPE_STRING:
+				try { return Double.parseDouble(((String) attributeObjectValues[index]).trim()); } catch (NumberFormatException e) { throw new XMLStreamException(e); }
+			default: throw new XMLStreamException("Attribute " + attributeNames[index] + " is not a number");
+		}
+	}
+
+	@Override
+	public long[] getAttributeAsLongArray(int index) throws XMLStreamException
+	{
+		checkAttributeIndex(index);
+		switch (attributeTypes[index])
+		{
+			case TYPE_LONG_ARRAY: return (long[]) attributeObjectValues[index];
+			case TYPE_LONG: return new long[] { attributeLongValues[index] };
+			case TYPE_STRING:
+			{
+				final String[] values = splitValues((String) attributeObjectValues[index]);
+				final long[] res = new long[values.length];
+				try { for (int cont = 0; cont < values.length; cont++) res[cont] = Long.parseLong(values[cont]); } catch (NumberFormatException e) { throw new XMLStreamException(e); }
+				return res;
+			}
+			default: throw new XMLStreamException("Attribute " + attributeNames[index] + " is not a list of integers");
+		}
+	}
+
+	@Override
+	public double[] getAttributeAsDoubleArray(int index) throws XMLStreamException
+	{
+		checkAttributeIndex(index);
+		switch (attributeTypes[index])
+		{
+			case TYPE_DOUBLE_ARRAY: return (double[]) attributeObjectValues[index];
+			case TYPE_LONG_ARRAY:
+			{
+				final long[] values = (long[]) attributeObjectValues[index];
+				final double[] res = new double[values.length];
+				for (int cont = 0; cont < values.length; cont++) res[cont] = values[cont];
+				return res;
+			}
+			case TYPE_DOUBLE: return new double[] { attributeDoubleValues[index] };
+			case TYPE_LONG: return new double[] { attributeLongValues[index] };
+			case TYPE_STRING:
+			{
+				final String[] values = splitValues((String) attributeObjectValues[index]);
+				final double[] res = new double[values.length];
+				try { for (int cont = 0; cont < values.length; cont++) res[cont] = Double.parseDouble(values[cont]); } catch (NumberFormatException e) { throw new XMLStreamException(e); }
+				return res;
+			}
+			default: throw new XMLStreamException("Attribute " + attributeNames[index] + " is not a list of numbers");
+		}
+	}
+
+	private void checkAttributeIndex(int index)
+	{
+		if ((index < 0) || (index >= numAttributes)) throw new IllegalArgumentException("Wrong attribute index: " + index);
+	}
+
+	private static String[] splitValues(String s)
+	{
+		final String trimmed = s.trim();
+		return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+	}
+
+	private void readAttributes() throws XMLStreamException
+	{
+		final int n = readLength();
+		if (n > attributeNames.length)
+		{
+			final int newLength = Math.max(n, 2 * attributeNames.length);
+			attributeNames = new String[newLength];
+			attributeTypes = new int[newLength];
+			attributeLongValues = new long[newLength];
+			attributeDoubleValues = new double[newLength];
+			attributeObjectValues = new Object[newLength];
+			attributeOffsets = new long[newLength];
+		}
+		for (int index = 0; index < n; index++)
+		{
+			attributeNames[index] = readString();
+			attributeOffsets[index] = getOffset();
+			final int type = readByte();
+			attributeTypes[index] = type;
+			attributeObjectValues[index] = null;
+			switch (type)
+			{
+				case TYPE_STRING: attributeObjectValues[index] = readString(); break;
+				case TYPE_LONG: attributeLongValues[index] = readSignedVarLong(); break;
+				case TYPE_DOUBLE: attributeDoubleValues[index] = readDouble(); break;
+				case TYPE_FALSE: case TYPE_TRUE: break;
+				case TYPE_LONG_ARRAY:
+				{
+					final int length = readLength();
+					long[] values = new long[Math.min(length, MAXINITIALARRAYLENGTH)];
+					long previous = 0;
+					for (int cont = 0; cont < length; cont++)
+					{
+						if (cont == values.length) values = Arrays.copyOf(values, (int) Math.min(length, 2L * values.length));
+						previous += readSignedVarLong();
+						values[cont] = previous;
+					}
+					attributeObjectValues[index] = values;
+					break;
+				}
+				case TYPE_DOUBLE_ARRAY:
+				{
+					final int length = readLength();
+					double[] values = new double[Math.min(length, MAXINITIALARRAYLENGTH)];
+					for (int cont = 0; cont < length; cont++)
+					{
+						if (cont == values.length) values = Arrays.copyOf(values, (int) Math.min(length, 2L * values.length));
+						values[cont] = readDouble();
+					}
+					attributeObjectValues[index] = values;
+					break;
+				}
+				default: throw new Net2PlanException("Not a valid binary .n2p file: unknown type " + type + " of attribute " + attributeNames[index] + " at offset " + attributeOffsets[index]);
+			}
+		}
+		numAttributes = n;
+	}
+
+	private String readString() throws XMLStreamException
+	{
+		final long reference = readUnsignedVarLong();
+		if ((reference < 0) || (reference >= STRING_FIRST_DICTIONARY_REFERENCE))
+		{
+			final long index = reference - STRING_FIRST_DICTIONARY_REFERENCE;
+			if ((index < 0) || (index >= dictionary.size())) throw corruptDocument("Wrong string reference " + reference);
+			return dictionary.get((int) index);
+		}
+		final int length = readLength();
+		final String s;
+		if (length <= buffer.length)
+		{
+			ensureAvailable(length);
+			s = new String(buffer, bufferPosition, length, StandardCharsets.UTF_8);
+			bufferPosition += length;
+		} else
+		{
+			/* The array grows as the bytes are read, so a wrong length ends in the end of the stream, not in a huge allocation */
+			byte[] bytes = new byte[buffer.length];
+			for (int cont = 0; cont < length; cont++)
+			{
+				if (cont == bytes.length) bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+				bytes[cont] = (byte) readByte();
+			}
+			s = new String(bytes, StandardCharsets.UTF_8);
+		}
+		if (reference == STRING_NEW_IN_DICTIONARY) dictionary.add(s);
+		return s;
+	}
+
+	private long readUnsignedVarLong() throws XMLStreamException
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			final int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw corruptDocument("Malformed variable length integer");
+	}
+
+	/* Reads the length of a string, an array or an attribute list, that must fit in an array */
+	private int readLength() throws XMLStreamException
+	{
+		final long offset = getOffset();
+		final long length = readUnsignedVarLong();
+		if ((length < 0) || (length > MAXLENGTH))
+			throw new Net2PlanException("Not a valid binary .n2p file: wrong length " + length + " at offset " + offset);
+		return (int) length;
+	}
+
+	private long readSignedVarLong() throws XMLStreamException
+	{
+		final long value = readUnsignedVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private double readDouble() throws XMLStreamException
+	{
+		ensureAvailable(8);
+		long bits = 0;
+		for (int cont = 0; cont < 8; cont++) bits = (bits << 8) | (buffer[bufferPosition++] & 0xFF);
+		return Double.longBitsToDouble(bits);
+	}
+
+	/* The offset in the stream of the next byte to read */
+	private long getOffset()
+	{
+		return bufferOffset + bufferPosition;
+	}
+
+	private Net2PlanException corruptDocument(String message)
+	{
+		return new Net2PlanException("Not a valid binary .n2p file: " + message + " at offset " + getOffset());
+	}
+
+	private int readByte() throws XMLStreamException
+	{
+		if (bufferPosition == bufferLength) ensureAvailable(1);
+		return buffer[bufferPosition++] & 0xFF;
+	}
+
+	/* Makes the next n bytes (n no longer than the buffer) available in the buffer */
+	private void ensureAvailable(int n) throws XMLStreamException
+	{
+		if (bufferLength - bufferPosition >= n) return;
+		System.arraycopy(buffer, bufferPosition, buffer, 0, bufferLength - bufferPosition);
+		bufferOffset += bufferPosition;
+		bufferLength -= bufferPosition;
+		bufferPosition = 0;
+		try
+		{
+			while (bufferLength < n)
+			{
+				final int read = inputStream.read(buffer, bufferLength, buffer.length - bufferLength);
+				if (read < 0) throw corruptDocument("Unexpected end of the document");
+				bufferLength += read;
+			}
+		} catch (IOException e)
+		{
+			throw new XMLStreamException(e);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.interfaces.networkDesign;
+
+import org.codehaus.stax2.XMLStreamReader2;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Reads a design document in the {@code .n2p} XML format, delegating in the underlying XML stream reader
+ */
+class DocumentReaderNetPlanXml implements IDocumentReaderNetPlan
+{
+	private final XMLStreamReader2 xmlStreamReader;
+
+	DocumentReaderNetPlanXml(XMLStreamReader2 xmlStreamReader)
+	{
+		this.xmlStreamReader = xmlStreamReader;
+	}
+
+	@Override
+	public boolean hasNext() throws XMLStreamException { return xmlStreamReader.hasNext(); }
+
+	@Override
+	public int next() throws XMLStreamException { return xmlStreamReader.next(); }
+
+	@Override
+	public int getEventType() { return xmlStreamReader.getEventType(); }
+
+	@Override
+	public String getName() { return xmlStreamReader.getName().toString(); }
+
+	@Override
+	public int getAttributeIndex(String namespaceURI, String localName) { return xmlStreamReader.getAttributeIndex(namespaceURI, localName); }
+
+	@Override
+	public String getAttributeValue(int index) { return xmlStreamReader.getAttributeValue(index); }
+
+	@Override
+	public long getAttributeAsLong(int index) throws XMLStreamException { return xmlStreamReader.getAttributeAsLong(index); }
+
+	@Override
+	public double getAttributeAsDouble(int index) throws XMLStreamException { return xmlStreamReader.getAttributeAsDouble(index); }
+
+	@Override
+	public long[] getAttributeAsLongArray(int index) throws XMLStreamException { return xmlStreamReader.getAttributeAsLongArray(index); }
+
+	@Override
+	public double[] getAttributeAsDoubleArray(int index) throws XMLStreamException { return xmlStreamReader.getAttributeAsDoubleArray(index); }
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.interfaces.networkDesign;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Writes a design document in the binary {@code .n2p} format. The document has the same elements and attributes as in the XML format,
+ * so it is read by the same reader, but:</p>
+ * <ul>
+ * <li>The element and attribute names, and the short string values, are written once and then referenced by their index in a dictionary.</li>
+ * <li>The integer values are written as variable length integers (7 bits per byte), zig-zag encoded so that small negative values are also short.</li>
+ * <li>The doubles are written in their 8-byte IEEE 754 representation, so they are read back without parsing nor rounding.</li>
+ * <li>The arrays (e.g. the sequence of links of a route) are written in bulk: the number of values followed by the values. In the long arrays, each
+ * value is written as its difference with the previous one.</li>
+ * </ul>
+ * <p>The document starts with the magic bytes {@code N2PB} and the binary format version. Then, a sequence of tokens: start element (name, number of
+ * attributes, attributes), empty element (the same, with no children nor end token), end element and end of document. Each attribute is its name,
+ * its type and its value. A string is written as a reference: 0 if it is new and is added to the dictionary, 1 if it is new and it is not added
+ * to the dictionary (the long strings), or the index in the dictionary plus 2. A new string is followed by its length in bytes and its UTF-8 bytes.</p>
+ */
+class DocumentWriterNetPlanBinary implements IDocumentWriterNetPlan
+{
+	static final byte[] MAGIC = new byte[] { 'N', '2', 'P', 'B' };
+	static final int FORMAT_VERSION = 1;
+
+	static final int TOKEN_END_DOCUMENT = 0;
+	static final int TOKEN_START_ELEMENT = 1;
+	static final int TOKEN_EMPTY_ELEMENT = 2;
+	static final int TOKEN_END_ELEMENT = 3;
+
+	static final int TYPE_STRING = 0;
+	static final int TYPE_LONG = 1;
+	static final int TYPE_DOUBLE = 2;
+	static final int TYPE_FALSE = 3;
+	static final int TYPE_TRUE = 4;
+	static final int TYPE_LONG_ARRAY = 5;
+	static final int TYPE_DOUBLE_ARRAY = 6;
+
+	static final int STRING_NEW_IN_DICTIONARY = 0;
+	static final int STRING_NEW_NOT_IN_DICTIONARY = 1;
+	static final int STRING_FIRST_DICTIONARY_REFERENCE = 2;
+	static final int MAX_LENGTH_STRING_IN_DICTIONARY = 64;
+
+	private static final int FLUSH_SIZE = 64 * 1024;
+
+	private final OutputStream outputStream;
+	private final boolean useDictionary;
+	private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+	private final GrowableByteArray document = new GrowableByteArray();
+	private final GrowableByteArray attributesLastElement = new GrowableByteArray();
+	private int numAttributesLastElement = 0;
+	private boolean lastElementOpen = false;
+
+	DocumentWriterNetPlanBinary(OutputStream outputStream)
+	{
+		this(outputStream, true);
+	}
+
+	/* Without the dictionary, each string is written in full, so any sequence of elements written can be read without the ones before
+	 * (see NetPlanSnapshot) */
+	DocumentWriterNetPlanBinary(OutputStream outputStream, boolean useDictionary)
+	{
+		this.outputStream = outputStream;
+		this.useDictionary = useDictionary;
+		document.writeBytes(MAGIC, MAGIC.length);
+		document.writeUnsignedVarLong(FORMAT_VERSION);
+	}
+
+	@Override
+	public void writeStartElement(String name) throws XMLStreamException { startElement(TOKEN_START_ELEMENT, name); }
+
+	@Override
+	public void writeEmptyElement(String name) throws XMLStreamException { startElement(TOKEN_EMPTY_ELEMENT, name); }
+
+	@Override
+	public void writeEndElement() throws XMLStreamException
+	{
+		closeLastElementAttributes();
+		document.writeByte(TOKEN_END_ELEMENT);
+	}
+
+	@Override
+	public void writeAttribute(String name, String value) throws XMLStreamException
+	{
+		startAttribute(name, TYPE_STRING);
+		writeString(attributesLastElement, value);
+	}
+
+	@Override
+	public void writeAttribute(String name, long value) throws XMLStreamException
+	{
+		startAttribute(name, TYPE_LONG);
+		attributesLastElement.writeSignedVarLong(value);
+	}
+
+	@Override
+	public void writeAttribute(String name, double value) throws XMLStreamException
+	{
+		startAttribute(name, TYPE_DOUBLE);
+		attributesLastElement.writeDouble(value);
+	}
+
+	@Override
+	public void writeAttribute(String name, boolean value) throws XMLStreamException
+	{
+		startAttribute(name, value ? TYPE_TRUE : TYPE_FALSE);
+	}
+
+	@Override
+	public void writeAttribute(String name, long[] values) throws XMLStreamException
+	{
+		startAttribute(name, TYPE_LONG_ARRAY);
+		attributesLastElement.writeUnsignedVarLong(values.length);
+		long previous = 0;
+		for (long value : values) { attributesLastElement.writeSignedVarLong(value - previous); previous = value; }
+	}
+
+	@Override
+	public void writeAttribute(String name, double[] values) throws XMLStreamException
+	{
+		startAttribute(name, TYPE_DOUBLE_ARRAY);
+		attributesLastElement.writeUnsignedVarLong(values.length);
+		for (double value : values) attributesLastElement.writeDouble(value);
+	}
+
+	@Override
+	public void indent(int level) { }
+
+	@Override
+	public void writeEndDocument() throws XMLStreamException
+	{
+		closeLastElementAttributes();
+		document.writeByte(TOKEN_END_DOCUMENT);
+		flush();
+	}
+
+	@Override
+	public void close() throws XMLStreamException { flush(); }
+
+	/* Writes to the output stream all the elements and attributes written up to now */
+	void flushWrittenElements() throws XMLStreamException
+	{
+		closeLastElementAttributes();
+		flush();
+	}
+
+	/* The name is written now, so that it enters the dictionary before the attribute names, in the same order as it is read */
+	private void startElement(int token, String name) throws XMLStreamException
+	{
+		closeLastElementAttributes();
+		document.writeByte(token);
+		writeString(document, name);
+		lastElementOpen = true;
+	}
+
+	private void startAttribute(String name, int type)
+	{
+		if (!lastElementOpen) throw new IllegalStateException("Attributes must follow an element start");
+		writeString(attributesLastElement, name);
+		attributesLastElement.writeByte(type);
+		numAttributesLastElement++;
+	}
+
+	private void closeLastElementAttributes() throws XMLStreamException
+	{
+		if (!lastElementOpen) return;
+		document.writeUnsignedVarLong(numAttributesLastElement);
+		document.writeBytes(attributesLastElement.bytes, attributesLastElement.length);
+		attributesLastElement.length = 0;
+		numAttributesLastElement = 0;
+		lastElementOpen = false;
+		if (document.length >= FLUSH_SIZE) flush();
+	}
+
+	private void writeString(GrowableByteArray buffer, String s)
+	{
+		final Integer index = useDictionary ? dictionary.get(s) : null;
+		if (index != null) { buffer.writeUnsignedVarLong(STRING_FIRST_DICTIONARY_REFERENCE + index); return; }
+		if (useDictionary && (s.length() <= MAX_LENGTH_STRING_IN_DICTIONARY))
+		{
+			dictionary.put(s, dictionary.size());
+			buffer.writeUnsignedVarLong(STRING_NEW_IN_DICTIONARY);
+		}
+		else buffer.writeUnsignedVarLong(STRING_NEW_NOT_IN_DICTIONARY);
+		final byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+		buffer.writeUnsignedVarLong(utf8.length);
+		buffer.writeBytes(utf8, utf8.length);
+	}
+
+	private void flush() throws XMLStreamException
+	{
+		try
+		{
+			outputStream.write(document.bytes, 0, document.length);
+			outputStream.flush();
+			document.length = 0;
+		} catch (IOException e)
+		{
+			throw new XMLStreamException(e);
+		}
+	}
+
+	private static final class GrowableByteArray
+	{
+		private byte[] bytes = new byte[4096];
+		private int length = 0;
+
+		private void ensureCapacity(int extraBytes)
+		{
+			if (length + extraBytes <= bytes.length) return;
+			final byte[] newBytes = new byte[Math.max(2 * bytes.length, length + extraBytes)];
+			System.arraycopy(bytes, 0, newBytes, 0, length);
+			bytes = newBytes;
+		}
+
+		void writeByte(int b)
+		{
+			ensureCapacity(1);
+			bytes[length++] = (byte) b;
+		}
+
+		void writeBytes(byte[] b, int len)
+		{
+			ensureCapacity(len);
+			System.arraycopy(b, 0, bytes, length, len);
+			length += len;
+		}
+
+		void writeUnsignedVarLong(long value)
+		{
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) { bytes[length++] = (byte) ((value & 0x7F) | 0x80); value >>>= 7; }
+			bytes[length++] = (byte) value;
+		}
+
+		void writeSignedVarLong(long value)
+		{
+			writeUnsignedVarLong((value << 1) ^ (value >> 63));
+		}
+
+		void writeDouble(double value)
+		{
+			ensureCapacity(8);
+			final long bits = Double.doubleToRawLongBits(value);
+			for (int shift = 56; shift >= 0; shift -= 8) bytes[length++] = (byte) (bits >>> shift);
+		}
+	}
+}
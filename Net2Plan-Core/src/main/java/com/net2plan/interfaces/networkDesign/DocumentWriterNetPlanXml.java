@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.interfaces.networkDesign;
+
+import com.net2plan.internal.XMLUtils;
+import org.codehaus.stax2.XMLOutputFactory2;
+import org.codehaus.stax2.XMLStreamWriter2;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.OutputStream;
+
+/**
+ * Writes a design document in the {@code .n2p} XML format. The values are written with their {@code toString()} representation,
+ * and the arrays as their values separated by spaces.
+ */
+class DocumentWriterNetPlanXml implements IDocumentWriterNetPlan
+{
+	private final XMLStreamWriter2 writer;
+	private final StringBuilder sb = new StringBuilder();
+
+	DocumentWriterNetPlanXml(OutputStream outputStream) throws XMLStreamException
+	{
+		XMLOutputFactory2 output = (XMLOutputFactory2) XMLOutputFactory2.newFactory();
+		this.writer = (XMLStreamWriter2) output.createXMLStreamWriter(outputStream);
+		writer.writeStartDocument("UTF-8", "1.0");
+	}
+
+	@Override
+	public void writeStartElement(String name) throws XMLStreamException { writer.writeStartElement(name); }
+
+	@Override
+	public void writeEmptyElement(String name) throws XMLStreamException { writer.writeEmptyElement(name); }
+
+	@Override
+	public void writeEndElement() throws XMLStreamException { writer.writeEndElement(); }
+
+	@Override
+	public void writeAttribute(String name, String value) throws XMLStreamException { writer.writeAttribute(name, value); }
+
+	@Override
+	public void writeAttribute(String name, long value) throws XMLStreamException { writer.writeAttribute(name, Long.toString(value)); }
+
+	@Override
+	public void writeAttribute(String name, double value) throws XMLStreamException { writer.writeAttribute(name, Double.toString(value)); }
+
+	@Override
+	public void writeAttribute(String name, boolean value) throws XMLStreamException { writer.writeAttribute(name, Boolean.toString(value)); }
+
+	@Override
+	public void writeAttribute(String name, long[] values) throws XMLStreamException
+	{
+		sb.setLength(0);
+		for (int cont = 0; cont < values.length; cont++) { if (cont > 0) sb.append(' '); sb.append(values[cont]); }
+		writer.writeAttribute(name, sb.toString());
+	}
+
+	@Override
+	public void writeAttribute(String name, double[] values) throws XMLStreamException
+	{
+		sb.setLength(0);
+		for (int cont = 0; cont < values.length; cont++) { if (cont > 0) sb.append(' '); sb.append(values[cont]); }
+		writer.writeAttribute(name, sb.toString());
+	}
+
+	@Override
+	public void indent(int level) throws XMLStreamException { XMLUtils.indent(writer, level); }
+
+	@Override
+	public void writeEndDocument() throws XMLStreamException
+	{
+		writer.writeEndDocument();
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws XMLStreamException { writer.close(); }
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.interfaces.networkDesign;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * The sequence of elements and attributes of a design document, as read by the {@code .n2p} readers. It mirrors the subset of the
+ * {@code XMLStreamReader2} methods used by them, so the same reader parses the XML and the binary formats.
+ * The event types returned are the ones in {@link javax.xml.stream.events.XMLEvent}.
+ */
+interface IDocumentReaderNetPlan
+{
+	public boolean hasNext() throws XMLStreamException;
+
+	public int next() throws XMLStreamException;
+
+	public int getEventType();
+
+	public String getName();
+
+	public int getAttributeIndex(String namespaceURI, String localName);
+
+	public String getAttributeValue(int index);
+
+	public long getAttributeAsLong(int index) throws XMLStreamException;
+
+	public double getAttributeAsDouble(int index) throws XMLStreamException;
+
+	public long[] getAttributeAsLongArray(int index) throws XMLStreamException;
+
+	public double[] getAttributeAsDoubleArray(int index) throws XMLStreamException;
+}
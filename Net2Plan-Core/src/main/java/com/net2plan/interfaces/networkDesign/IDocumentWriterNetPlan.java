@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.interfaces.networkDesign;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * The sink of the elements and attributes of a design document, written by {@link NetPlan}. The attributes are written with their
+ * type, so that each format can store them in its own encoding. The attributes refer to the last element started.
+ */
+interface IDocumentWriterNetPlan
+{
+	public void writeStartElement(String name) throws XMLStreamException;
+
+	public void writeEmptyElement(String name) throws XMLStreamException;
+
+	public void writeEndElement() throws XMLStreamException;
+
+	public void writeAttribute(String name, String value) throws XMLStreamException;
+
+	public void writeAttribute(String name, long value) throws XMLStreamException;
+
+	public void writeAttribute(String name, double value) throws XMLStreamException;
+
+	public void writeAttribute(String name, boolean value) throws XMLStreamException;
+
+	public void writeAttribute(String name, long[] values) throws XMLStreamException;
+
+	public void writeAttribute(String name, double[] values) throws XMLStreamException;
+
+	/**
+	 * Starts a new line with the given indentation level, in the formats where this is meaningful
+	 * @param level the indentation level
+	 * @throws XMLStreamException if an error occurs
+	 */
+	public void indent(int level) throws XMLStreamException;
+
+	public void writeEndDocument() throws XMLStreamException;
+
+	public void close() throws XMLStreamException;
+}
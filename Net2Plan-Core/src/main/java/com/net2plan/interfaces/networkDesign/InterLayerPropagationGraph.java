@@ -89,8 +89,14 @@ public class InterLayerPropagationGraph
 		@Override
 		public int compareTo(IPGNode o) 
 		{
-			return 0;
+			/* demands first, then links, then multicast flows, each ordered by its element (then, several initial vertices are kept in the sorted set) */
+			final int typeComparison = Integer.compare(getTypeOrder(), o.getTypeOrder());
+			if (typeComparison != 0) return typeComparison;
+			if (isDemand()) return d.compareTo(o.d);
+			if (isLink()) return e.compareTo(o.e);
+			return mdn.compareTo(o.mdn);
 		}
+		private int getTypeOrder () { return isDemand()? 0 : isLink()? 1 : 2; }
 		private InterLayerPropagationGraph getOuterType() {
 			return InterLayerPropagationGraph.this;
 		}
@@ -28,6 +28,7 @@ import com.google.common.collect.Sets;
 import com.net2plan.internal.AttributeMap;
 import com.net2plan.internal.ErrorHandling;
 import com.net2plan.libraries.GraphUtils;
+import com.net2plan.libraries.HopByHopRoutingPropagationEngine;
 import com.net2plan.libraries.TrafficPredictor;
 import com.net2plan.libraries.TrafficSeries;
 import com.net2plan.utils.Constants.RoutingCycleType;
@@ -462,6 +463,7 @@ public class Link extends NetworkElement implements IMonitorizableElement
 		final boolean fromZeroToMore = (this.capacity < Configuration.precisionFactor) && (newCapacity >= Configuration.precisionFactor); 
 		final boolean fromMoreToZero = (this.capacity >= Configuration.precisionFactor) && (newCapacity < Configuration.precisionFactor); 
 		this.capacity = newCapacity;
+		layer.incrementModificationCounter();
 		if (fromMoreToZero)
 		{
 			layer.cache_linksZeroCap.add(this);
@@ -784,11 +786,12 @@ public class Link extends NetworkElement implements IMonitorizableElement
 	{
 		checkAttachedToNetPlanObject();
 		netPlan.checkIsModifiable();
+		final HopByHopRoutingPropagationEngine propagationEngine = new HopByHopRoutingPropagationEngine();
 		for (Demand d : new ArrayList<> (this.cacheHbH_frs.keySet()))
 		{
 			final SortedMap<Link,Double> frsThatDemand = new TreeMap<> (d.cacheHbH_frs);
 			frsThatDemand.remove(this);
-			d.updateHopByHopRoutingToGivenFrs(frsThatDemand);
+			d.updateHopByHopRoutingToGivenFrs(frsThatDemand , propagationEngine);
 		}
 		this.cacheHbH_frs.clear();
 		this.cacheHbH_normCarriedOccupiedPerTraversingDemandCurrentState.clear();
@@ -874,19 +877,21 @@ public class Link extends NetworkElement implements IMonitorizableElement
 		layer.cache_linksDown.remove (this);
 		layer.cache_linksZeroCap.remove(this);
 		netPlan.cache_id2LinkMap.remove(id);
-		originNode.cache_nodeOutgoingLinks.remove (this);
-		destinationNode.cache_nodeIncomingLinks.remove (this);
+		Node.removeFromCache(originNode.cache_nodeOutgoingLinks , originNode.cache_nodeOutgoingLinksPerLayer , layer , this);
+		Node.removeFromCache(destinationNode.cache_nodeIncomingLinks , destinationNode.cache_nodeIncomingLinksPerLayer , layer , this);
 		layer.cache_nodePairLinksThisLayer.get(Pair.of(originNode, destinationNode)).remove(this);
 		if (layer.cache_nodePairLinksThisLayer.get(Pair.of(originNode, destinationNode)).isEmpty()) 
 			layer.cache_nodePairLinksThisLayer.remove(Pair.of(originNode, destinationNode));
 		
 		for (SharedRiskGroup srg : this.cache_nonDynamicSrgs) srg.linksIfNonDynamic.remove(this);
-		for (MulticastTree tree : new LinkedList<MulticastTree> (cache_traversingTrees)) tree.remove ();
-
-		for (Route route : new TreeSet<Route> (cache_traversingRoutes.keySet())) route.remove ();
+		final List<NetworkElement> traversingRoutesAndTrees = new ArrayList<> (cache_traversingTrees);
+		traversingRoutesAndTrees.addAll(cache_traversingRoutes.keySet());
+		netPlan.removeAll(traversingRoutesAndTrees);
 		this.removeAllForwardingRules();
 
 		NetPlan.removeNetworkElementAndShiftIndexes (layer.links , index);
+		layer.cache_compiledGraph = null;
+		layer.invalidateCachedMatrices();
         for (String tag : tags) netPlan.cache_taggedElements.get(tag).remove(this);
 
 		ErrorHandling.DEBUG = previousErrorHandling;
@@ -1095,6 +1100,7 @@ public class Link extends NetworkElement implements IMonitorizableElement
 	void updateLinkTrafficAndOccupation ()
 	{
 		/* Add the info of the demands with traversing routes */
+		layer.incrementModificationCounter();
 		this.cache_totalCarriedTraffic = 0;
 		this.cache_totalOccupiedCapacity = 0;
 		for (Entry<Route,Integer> travRouteInfo : cache_traversingRoutes.entrySet())
@@ -1441,7 +1447,7 @@ public class Link extends NetworkElement implements IMonitorizableElement
 	@Override
 	public void setMonitoredOrForecastedCarriedTraffic(TrafficSeries newTimeSeries) 
 	{
-		this.monitoredOrForecastedTraffics = new TrafficSeries(newTimeSeries.getValues());
+		this.monitoredOrForecastedTraffics = newTimeSeries.getCopy();
 	}
 
 	@Override
@@ -406,6 +406,7 @@ public class MulticastDemand extends NetworkElement implements IMonitorizableEle
 			try { valid = netPlan.interLayerCoupling.addEdge(lowerLayer, upperLayer, coupling_thisLayerPair); }
 			catch (IllegalArgumentException ex) { valid = false; }
 			if (!valid) throw new Net2PlanException("Coupling between link set " + links + " at layer " + upperLayer + " and multicast demand " + id + " at layer " + lowerLayer.id + " would induce a cycle between layers");
+			netPlan.cache_topologicalPositionOfLayers = null;
 		}
 
 		/* Link capacity at the upper layer is equal to the carried traffic at the lower layer */
@@ -486,7 +487,7 @@ public class MulticastDemand extends NetworkElement implements IMonitorizableEle
 
 		DemandLinkMapping coupling_thisLayerPair = netPlan.interLayerCoupling.getEdge(lowerLayer, upperLayer);
 		coupling_thisLayerPair.remove(this);
-		if (coupling_thisLayerPair.isEmpty()) netPlan.interLayerCoupling.removeEdge(lowerLayer , upperLayer);
+		if (coupling_thisLayerPair.isEmpty()) { netPlan.interLayerCoupling.removeEdge(lowerLayer , upperLayer); netPlan.cache_topologicalPositionOfLayers = null; }
 		coupledUpperLayerLinks = null;
 		if (ErrorHandling.isDebugEnabled()) netPlan.checkCachesConsistency();
 	}
@@ -500,12 +501,13 @@ public class MulticastDemand extends NetworkElement implements IMonitorizableEle
 		netPlan.checkIsModifiable();
 		if (this.coupledUpperLayerLinks != null) this.decouple ();
 		
-		for (MulticastTree tree : new TreeSet<MulticastTree> (cache_multicastTrees)) tree.remove();
+		netPlan.removeAll(new ArrayList<MulticastTree> (cache_multicastTrees));
 
 		netPlan.cache_id2MulticastDemandMap.remove(id);
 		NetPlan.removeNetworkElementAndShiftIndexes (layer.multicastDemands , index);
-		ingressNode.cache_nodeOutgoingMulticastDemands.remove (this);
-		for (Node egressNode : egressNodes) egressNode.cache_nodeIncomingMulticastDemands.remove (this);
+		layer.incrementModificationCounter();
+		Node.removeFromCache(ingressNode.cache_nodeOutgoingMulticastDemands , ingressNode.cache_nodeOutgoingMulticastDemandsPerLayer , layer , this);
+		for (Node egressNode : egressNodes) Node.removeFromCache(egressNode.cache_nodeIncomingMulticastDemands , egressNode.cache_nodeIncomingMulticastDemandsPerLayer , layer , this);
         for (String tag : tags) netPlan.cache_taggedElements.get(tag).remove(this);
 		final Pair<SortedSet<Demand>,SortedSet<MulticastDemand>> qosInfo = layer.cache_qosTypes2DemandMap.get(qosType);
 		assert qosInfo != null;
@@ -530,6 +532,7 @@ public class MulticastDemand extends NetworkElement implements IMonitorizableEle
 		netPlan.checkIsModifiable();
 		if (offeredTraffic < 0) throw new Net2PlanException("Offered traffic must be greater or equal than zero");
 		this.offeredTraffic = offeredTraffic;
+		layer.incrementModificationCounter();
 		if (ErrorHandling.isDebugEnabled()) netPlan.checkCachesConsistency();
 	}
 
@@ -608,7 +611,7 @@ public class MulticastDemand extends NetworkElement implements IMonitorizableEle
 	/** Sets the new time series for the monitored or forecasted offered traffic, eliminating any previous values 
 	 * @param newTimeSeries  see above
 	 */
-	public void setMonitoredOrForecastedOfferedTraffic (TrafficSeries newTimeSeries) { this.monitoredOrForecastedTraffics = new TrafficSeries (newTimeSeries.getValues()); }
+	public void setMonitoredOrForecastedOfferedTraffic (TrafficSeries newTimeSeries) { this.monitoredOrForecastedTraffics = newTimeSeries.getCopy(); }
 
 	@Override
 	public TrafficSeries getMonitoredOrForecastedCarriedTraffic()
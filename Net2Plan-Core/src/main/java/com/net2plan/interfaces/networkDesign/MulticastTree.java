@@ -282,7 +282,7 @@ public class MulticastTree extends NetworkElement
 		for (Link e : this.linkSet) 
 			e.cache_traversingTrees.remove (this);
 		for (Node node : this.cache_traversedNodes)
-			node.cache_nodeAssociatedulticastTrees.remove (this);
+			Node.removeFromCache(node.cache_nodeAssociatedulticastTrees , node.cache_nodeAssociatedulticastTreesPerLayer , layer , this);
 
 		/* update the tree information of the object */
 		this.linkSet = new TreeSet<> (newLinkSet);
@@ -304,7 +304,7 @@ public class MulticastTree extends NetworkElement
 		for (Node node : cache_traversedNodes)
 		{
 		    treeIsUp = treeIsUp && node.isUp;
-			node.cache_nodeAssociatedulticastTrees.add (this);
+			Node.addToCache(node.cache_nodeAssociatedulticastTrees , node.cache_nodeAssociatedulticastTreesPerLayer , layer , this);
 		}
 		if (!treeIsUp) layer.cache_multicastTreesDown.add (this);
 		if (treeIsTravZeroCapLink) layer.cache_multicastTreesTravLinkZeroCap.add(this);
@@ -540,8 +540,17 @@ public class MulticastTree extends NetworkElement
 //		final double extraOccupiedLinkCapacity = isDown ()? 0.0 : this.occupiedLinkCapacityIfNotFailing - newOccupiedLinkCapacity;
 		this.carriedTrafficIfNotFailing = newCarriedTraffic;
 		this.occupiedLinkCapacityIfNotFailing = newOccupiedLinkCapacity;
+		layer.incrementModificationCounter();
 //		if (this.isDown()) { this.carriedTraffic = 0; this.occupiedLinkCapacity = 0;  } else { this.carriedTraffic = newCarriedTraffic; this.occupiedLinkCapacity = newOccupiedLinkCapacity; }
 		
+		/* in a batch, the link and demand traffics are computed once at the end */
+		if (netPlan.isDeferringDerivedStateUpdates())
+		{
+			netPlan.cache_linksPendingTrafficUpdate.addAll(linkSet);
+			netPlan.cache_multicastDemandsPendingCarriedTrafficUpdate.add(demand);
+			return;
+		}
+
 		/* Update the links, with the carried traffic depending on the link state */
 		for (Link link : linkSet)
 			link.updateLinkTrafficAndOccupation();
@@ -563,9 +572,10 @@ public class MulticastTree extends NetworkElement
 		setCarriedTraffic(0, 0);
 		netPlan.cache_id2MulticastTreeMap.remove(id);
 		NetPlan.removeNetworkElementAndShiftIndexes(layer.multicastTrees , index);
+		layer.incrementModificationCounter();
 		for (Link link : linkSet) 
 			link.cache_traversingTrees.remove(this); 
-		for (Node node : cache_traversedNodes) node.cache_nodeAssociatedulticastTrees.remove(this);
+		for (Node node : cache_traversedNodes) Node.removeFromCache(node.cache_nodeAssociatedulticastTrees , node.cache_nodeAssociatedulticastTreesPerLayer , layer , this);
 		demand.cache_multicastTrees.remove(this);
 		layer.cache_multicastTreesDown.remove(this);
 		layer.cache_multicastTreesTravLinkZeroCap.remove(this);
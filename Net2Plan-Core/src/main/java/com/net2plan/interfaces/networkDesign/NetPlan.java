@@ -20,16 +20,17 @@ import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import com.google.common.collect.Sets;
 import com.net2plan.internal.*;
+import com.net2plan.libraries.CompiledGraph;
+import com.net2plan.libraries.KLooplessShortestPathsEngine;
 import com.net2plan.libraries.GraphUtils;
+import com.net2plan.libraries.HopByHopRoutingPropagationEngine;
 import com.net2plan.libraries.SRGUtils;
 import com.net2plan.utils.*;
 import com.net2plan.utils.Constants.RoutingCycleType;
 import com.net2plan.utils.Constants.RoutingType;
 import org.apache.commons.lang3.mutable.MutableLong;
 import org.codehaus.stax2.XMLInputFactory2;
-import org.codehaus.stax2.XMLOutputFactory2;
 import org.codehaus.stax2.XMLStreamReader2;
-import org.codehaus.stax2.XMLStreamWriter2;
 import org.jgrapht.graph.DirectedAcyclicGraph;
 
 import javax.xml.stream.FactoryConfigurationError;
@@ -40,6 +41,9 @@ import java.io.*;
 import java.net.URL;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 //import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
@@ -131,21 +135,36 @@ public class NetPlan extends NetworkElement
     SortedSet<Node> cache_nodesDown;
     SortedSet<SharedRiskGroup> cache_dynamicSrgs;
     SortedMap<String, SortedSet<Resource>> cache_type2Resources;
-    SortedMap<Long, Node> cache_id2NodeMap;
-    SortedMap<Long, Resource> cache_id2ResourceMap;
-    SortedMap<Long, NetworkLayer> cache_id2LayerMap;
-    SortedMap<Long, Link> cache_id2LinkMap;
-    SortedMap<Long, Demand> cache_id2DemandMap;
-    SortedMap<Long, MulticastDemand> cache_id2MulticastDemandMap;
-    SortedMap<Long, Route> cache_id2RouteMap;
-    SortedMap<Long, MulticastTree> cache_id2MulticastTreeMap;
-    SortedMap<Long, SharedRiskGroup> cache_id2srgMap;
+    LongIdIndex<Node> cache_id2NodeMap;
+    LongIdIndex<Resource> cache_id2ResourceMap;
+    LongIdIndex<NetworkLayer> cache_id2LayerMap;
+    LongIdIndex<Link> cache_id2LinkMap;
+    LongIdIndex<Demand> cache_id2DemandMap;
+    LongIdIndex<MulticastDemand> cache_id2MulticastDemandMap;
+    LongIdIndex<Route> cache_id2RouteMap;
+    LongIdIndex<MulticastTree> cache_id2MulticastTreeMap;
+    LongIdIndex<SharedRiskGroup> cache_id2srgMap;
 
     SortedMap<String,SortedSet<NetworkElement>> cache_taggedElements;
     SortedMap<String,SortedSet<Node>> cache_nodesPerSiteName;
     SortedMap<String, SortedSet<Node>> cache_planningDomain2nodes;
 
     DirectedAcyclicGraph<NetworkLayer, DemandLinkMapping> interLayerCoupling;
+    Map<NetworkLayer,Integer> cache_topologicalPositionOfLayers; // null when the coupling between layers changes, computed again when needed
+
+    /* While a bulk removal runs (see removeAll), the removed elements stay in their lists, which are compacted at the end */
+    int bulkRemovalDepth = 0;
+    final Set<ArrayList<? extends NetworkElement>> cache_listsPendingCompaction = Collections.newSetFromMap(new IdentityHashMap<> ());
+
+    /* While a batch (see beginBatch) or a bulk removal is open, the state derived from the traffic is updated once when it closes */
+    int batchDepth = 0;
+    boolean batchPreviousErrorHandling;
+    final Map<Demand,Triple<Boolean,Boolean,Boolean>> cache_demandsPendingRouteCachesUpdate = new HashMap<> ();
+    final Set<Demand> cache_demandsPendingCarriedTrafficUpdate = new HashSet<> ();
+    final Set<Demand> cache_demandsPendingHopByHopUpdate = new HashSet<> ();
+    final Set<MulticastDemand> cache_multicastDemandsPendingCarriedTrafficUpdate = new HashSet<> ();
+    final Set<Link> cache_linksPendingTrafficUpdate = new HashSet<> ();
+    final Set<Resource> cache_resourcesPendingOccupationUpdate = new HashSet<> ();
     
     boolean defaultNodePairDistanceMetricIsHaversine = false;
     
@@ -180,15 +199,15 @@ public class NetPlan extends NetworkElement
         cache_nodesDown = new TreeSet<Node>();
         this.cache_dynamicSrgs = new TreeSet<> ();
         this.cache_type2Resources = new TreeMap<String, SortedSet<Resource>>();
-        this.cache_id2NodeMap = new TreeMap<Long, Node>();
-        this.cache_id2ResourceMap = new TreeMap<Long, Resource>();
-        this.cache_id2LayerMap = new TreeMap<Long, NetworkLayer>();
-        this.cache_id2srgMap = new TreeMap<Long, SharedRiskGroup>();
-        this.cache_id2LinkMap = new TreeMap<Long, Link>();
-        this.cache_id2DemandMap = new TreeMap<Long, Demand>();
-        this.cache_id2MulticastDemandMap = new TreeMap<Long, MulticastDemand>();
-        this.cache_id2RouteMap = new TreeMap<Long, Route>();
-        this.cache_id2MulticastTreeMap = new TreeMap<Long, MulticastTree>();
+        this.cache_id2NodeMap = new LongIdIndex<Node>();
+        this.cache_id2ResourceMap = new LongIdIndex<Resource>();
+        this.cache_id2LayerMap = new LongIdIndex<NetworkLayer>();
+        this.cache_id2srgMap = new LongIdIndex<SharedRiskGroup>();
+        this.cache_id2LinkMap = new LongIdIndex<Link>();
+        this.cache_id2DemandMap = new LongIdIndex<Demand>();
+        this.cache_id2MulticastDemandMap = new LongIdIndex<MulticastDemand>();
+        this.cache_id2RouteMap = new LongIdIndex<Route>();
+        this.cache_id2MulticastTreeMap = new LongIdIndex<MulticastTree>();
         
         this.cache_taggedElements = new TreeMap<> ();
         this.cache_nodesPerSiteName = new TreeMap<> ();
@@ -235,6 +254,14 @@ public class NetPlan extends NetworkElement
 
         try
         {
+            if (!inputStream.markSupported()) inputStream = new BufferedInputStream(inputStream);
+            if (DocumentReaderNetPlanBinary.isBinaryDocument(inputStream))
+            {
+                readBinaryDocument(new DocumentReaderNetPlanBinary(inputStream));
+                if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
+                return;
+            }
+
             XMLInputFactory2 xmlInputFactory = (XMLInputFactory2) XMLInputFactory2.newInstance();
             XMLStreamReader2 xmlStreamReader = (XMLStreamReader2) xmlInputFactory.createXMLStreamReader(inputStream);
 
@@ -310,6 +337,18 @@ public class NetPlan extends NetworkElement
         throw new Net2PlanException("Not a valid .n2p file");
     }
 
+    /* The binary format is only written in the last .n2p version, so it is read by its reader */
+    private void readBinaryDocument(IDocumentReaderNetPlan reader) throws XMLStreamException
+    {
+        reader.next();
+        if ((reader.getEventType() != XMLEvent.START_ELEMENT) || !reader.getName().equals("network"))
+            throw new Net2PlanException("Root element must be 'network'");
+        final int index = reader.getAttributeIndex(null, "version");
+        if ((index == -1) || (reader.getAttributeAsLong(index) != Long.parseLong(Version.getFileFormatVersion())))
+            throw new Net2PlanException("Wrong version number");
+        new ReaderNetPlanN2PVersion_6().create(this, reader);
+    }
+
     /**
      * <p>Returns the unique ids of the provided network elements.</p>
      *
@@ -418,6 +457,13 @@ public class NetPlan extends NetworkElement
      */
     static void removeNetworkElementAndShiftIndexes(ArrayList<? extends NetworkElement> x, int indexToRemove)
     {
+        final NetworkElement e = x.get(indexToRemove);
+        if (e.netPlan != null && e.netPlan.bulkRemovalDepth > 0 && !(e instanceof NetworkLayer))
+        {
+            /* The element is taken out of the list, and the indexes shifted, at the end of the bulk removal */
+            e.netPlan.cache_listsPendingCompaction.add(x);
+            return;
+        }
         x.remove(indexToRemove);
         for (int newIndex = indexToRemove; newIndex < x.size(); newIndex++)
         {
@@ -425,6 +471,24 @@ public class NetPlan extends NetworkElement
         }
     }
 
+    /**
+     * <p>Removes from the list the elements already removed from the design, and updates the indexes of the rest, in one pass.</p>
+     *
+     * @param x Network elements
+     */
+    private static <E extends NetworkElement> void compactRemovedNetworkElements(ArrayList<E> x)
+    {
+        int newIndex = 0;
+        for (int oldIndex = 0; oldIndex < x.size(); oldIndex++)
+        {
+            final E e = x.get(oldIndex);
+            if (e.netPlan == null) continue;
+            e.index = newIndex;
+            x.set(newIndex++, e);
+        }
+        x.subList(newIndex, x.size()).clear();
+    }
+
     /**
      * <p>Adds new traffic demands froma traffic matrix given as a {@code DoubleMatrix2D} object. Previous demands are not removed.</p>
      *
@@ -486,8 +550,9 @@ public class NetPlan extends NetworkElement
 
         cache_id2DemandMap.put(demandId, demand);
         layer.demands.add(demand);
-        egressNode.cache_nodeIncomingDemands.add(demand);
-        ingressNode.cache_nodeOutgoingDemands.add(demand);
+        layer.incrementModificationCounter();
+        Node.addToCache(egressNode.cache_nodeIncomingDemands , egressNode.cache_nodeIncomingDemandsPerLayer , layer , demand);
+        Node.addToCache(ingressNode.cache_nodeOutgoingDemands , ingressNode.cache_nodeOutgoingDemandsPerLayer , layer , demand);
         SortedSet<Demand> setDemandsNodePair = layer.cache_nodePairDemandsThisLayer.get(Pair.of(ingressNode, egressNode));
         if (setDemandsNodePair == null) { setDemandsNodePair = new TreeSet<> (); layer.cache_nodePairDemandsThisLayer.put(Pair.of(ingressNode, egressNode) , setDemandsNodePair); }  
         setDemandsNodePair.add(demand);
@@ -561,6 +626,7 @@ public class NetPlan extends NetworkElement
         NetworkLayer layer = new NetworkLayer(this, id, layers.size(), demandTrafficUnitsName, description, name, linkCapacityUnitsName, defaultNodeIconURL, new AttributeMap(attributes));
 
         interLayerCoupling.addVertex(layer);
+        cache_topologicalPositionOfLayers = null;
         cache_id2LayerMap.put(id, layer);
         layers.add(layer);
         if (layers.size() == 1) defaultLayer = layer;
@@ -672,8 +738,10 @@ public class NetPlan extends NetworkElement
 
         cache_id2LinkMap.put(linkId, link);
         layer.links.add(link);
-        originNode.cache_nodeOutgoingLinks.add(link);
-        destinationNode.cache_nodeIncomingLinks.add(link);
+        layer.cache_compiledGraph = null;
+        layer.invalidateCachedMatrices();
+        Node.addToCache(originNode.cache_nodeOutgoingLinks , originNode.cache_nodeOutgoingLinksPerLayer , layer , link);
+        Node.addToCache(destinationNode.cache_nodeIncomingLinks , destinationNode.cache_nodeIncomingLinksPerLayer , layer , link);
         SortedSet<Link> setLinksNodePair = layer.cache_nodePairLinksThisLayer.get(Pair.of(originNode, destinationNode));
         if (setLinksNodePair == null) { setLinksNodePair = new TreeSet<> (); layer.cache_nodePairLinksThisLayer.put(Pair.of(originNode, destinationNode) , setLinksNodePair); }  
         setLinksNodePair.add(link);
@@ -766,8 +834,9 @@ public class NetPlan extends NetworkElement
 
         cache_id2MulticastDemandMap.put(demandId, demand);
         layer.multicastDemands.add(demand);
-        for (Node n : egressNodes) n.cache_nodeIncomingMulticastDemands.add(demand);
-        ingressNode.cache_nodeOutgoingMulticastDemands.add(demand);
+        layer.incrementModificationCounter();
+        for (Node n : egressNodes) Node.addToCache(n.cache_nodeIncomingMulticastDemands , n.cache_nodeIncomingMulticastDemandsPerLayer , layer , demand);
+        Node.addToCache(ingressNode.cache_nodeOutgoingMulticastDemands , ingressNode.cache_nodeOutgoingMulticastDemandsPerLayer , layer , demand);
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
         return demand;
     }
@@ -812,11 +881,12 @@ public class NetPlan extends NetworkElement
 
         cache_id2MulticastTreeMap.put(treeId, tree);
         layer.multicastTrees.add(tree);
+        layer.incrementModificationCounter();
         boolean treeIsUp = true;
         boolean treeTravZeroCapLinks = false;
         for (Node node : tree.cache_traversedNodes)
         {
-            node.cache_nodeAssociatedulticastTrees.add(tree);
+            Node.addToCache(node.cache_nodeAssociatedulticastTrees , node.cache_nodeAssociatedulticastTreesPerLayer , layer , tree);
             if (!node.isUp) treeIsUp = false;
         }
         for (Link link : linkSet)
@@ -860,6 +930,7 @@ public class NetPlan extends NetworkElement
 
         nodes.add(node);
         cache_id2NodeMap.put(nodeId, node);
+        for (NetworkLayer layer : layers) { layer.cache_compiledGraph = null; layer.invalidateCachedMatrices(); }
 
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
         return node;
@@ -994,12 +1065,14 @@ public class NetPlan extends NetworkElement
         Route route = new Route(this, routeId, layer.routes.size(), demand, sequenceOfLinksAndResources, new AttributeMap(attributes));
 
         layer.routes.add(route);
+        layer.cache_matrixLink2RouteAssignment = null;
+        layer.incrementModificationCounter();
         cache_id2RouteMap.put(routeId, route);
         boolean isUpThisRoute = true;
         boolean isTraversingZeroCapLinks = false;
         for (Node node : route.cache_seqNodesRealPath)
         {
-            node.cache_nodeAssociatedRoutes.add(route);
+            Node.addToCache(node.cache_nodeAssociatedRoutes , node.cache_nodeAssociatedRoutesPerLayer , layer , route);
             if (!node.isUp) isUpThisRoute = false;
         }
         for (Link link : route.cache_seqLinksRealPath)
@@ -1027,6 +1100,20 @@ public class NetPlan extends NetworkElement
      * @return List of disjoint path pairs for each demand
      */
     public static SortedMap<Pair<Node, Node>, List<Pair<List<Link>, List<Link>>>> computeUnicastCandidate11PathList(Map<Pair<Node, Node>, List<List<Link>>> cpl, int disjointType)
+    {
+    	return computeUnicastCandidate11PathList(cpl, disjointType, null);
+    }
+
+    /**
+     * <p>Computes a list of disjoint path pairs for each node pair, using the paths in the input candidate path list given. The node pairs are processed
+     * in parallel in the given pool (sequentially if {@code null}). The output is the same as in the sequential version.</p>
+     *
+     * @param cpl          Candidate path list per demand
+     * @param disjointType Type of disjointness: 0 for SRG-disjoint, 1 for link and node disjoint, other value means link disjoint
+     * @param pool         the pool where to run the computations. If {@code null}, they are run sequentially
+     * @return List of disjoint path pairs for each demand
+     */
+    public static SortedMap<Pair<Node, Node>, List<Pair<List<Link>, List<Link>>>> computeUnicastCandidate11PathList(Map<Pair<Node, Node>, List<List<Link>>> cpl, int disjointType, ForkJoinPool pool)
     {
         final boolean srgDisjoint = disjointType == 0;
         final boolean linkAndNodeDisjoint = disjointType == 1;
@@ -1034,8 +1121,11 @@ public class NetPlan extends NetworkElement
         SortedMap<Pair<Node, Node>, List<Pair<List<Link>, List<Link>>>> result = new TreeMap<>();
         if (cpl.isEmpty()) return result;
 
-        for (Pair<Node, Node> nodePair : cpl.keySet())
+        final List<Pair<Node, Node>> nodePairs = new ArrayList<>(cpl.keySet());
+        final List<List<Pair<List<Link>, List<Link>>>> pairs11PerNodePair = new ArrayList<>(Collections.nCopies(nodePairs.size(), null));
+        ParallelUtils.runInPool(pool, nodePairs.size(), nodePairIndex ->
         {
+        	final Pair<Node, Node> nodePair = nodePairs.get(nodePairIndex);
             List<Pair<List<Link>, List<Link>>> pairs11ThisDemand = new ArrayList<>();
             final List<List<Link>> paths = new ArrayList<>(cpl.get(nodePair));
             final int P_d = paths.size();
@@ -1081,8 +1171,10 @@ public class NetPlan extends NetworkElement
                     }
                 }
             }
-            result.put(nodePair, pairs11ThisDemand);
-        }
+            pairs11PerNodePair.set(nodePairIndex, pairs11ThisDemand);
+        });
+        for (int nodePairIndex = 0; nodePairIndex < nodePairs.size(); nodePairIndex++)
+        	result.put(nodePairs.get(nodePairIndex), pairs11PerNodePair.get(nodePairIndex));
         return result;
     }
 
@@ -1224,25 +1316,54 @@ public class NetPlan extends NetworkElement
     public SortedMap<Demand, List<List<NetworkElement>>> computeUnicastCandidateServiceChainList(DoubleMatrix1D linkCosts, DoubleMatrix1D resourceCosts,
                                                                                            int K, double maxCostServiceChain, double maxLengthInKmPerSubpath, int maxNumHopsPerSubpath, double maxPropDelayInMsPerSubpath,
                                                                                            NetworkLayer... optionalLayerParameter)
+    {
+    	return computeUnicastCandidateServiceChainList(linkCosts, resourceCosts, K, maxCostServiceChain, maxLengthInKmPerSubpath, maxNumHopsPerSubpath, maxPropDelayInMsPerSubpath, null, optionalLayerParameter);
+    }
+
+    /**
+     * Computes for each demand (service chain request) up to k minimum cost service chain paths, as in
+     * {@link #computeUnicastCandidateServiceChainList(DoubleMatrix1D, DoubleMatrix1D, int, double, double, int, double, NetworkLayer...)}, processing the demands in
+     * parallel in the given pool (sequentially if {@code null}). The subpaths between node pairs computed for a demand are shared with the rest of the demands. 
+     * The output is the same as in the sequential version.
+     *
+     * @param linkCosts                  the cost of each link (if null, all links have cost one), all numbers must be strictly positive
+     * @param resourceCosts              a vector with the cost of each resource (if null, all resources have cost zero). All costs must be nonnegative. If a resource has a cost of Double.MAX_VALUE, it is as if it did not existed (cannot be traversed)
+     * @param K                          The maximum number of service chains to return (less than K may be returned if there are no different paths).
+     * @param maxCostServiceChain        Service chains with a cost higher than this are not enumerated
+     * @param maxLengthInKmPerSubpath    The maximum length in km in each subpath. Service chains not satisfying this are not enumerated
+     * @param maxNumHopsPerSubpath       The maximum number of traversed links in each subpath. Service chains not satisfying this are not enumerated
+     * @param maxPropDelayInMsPerSubpath The propagation delay summing the links in each subpath. Service chains not satisfying this are not enumerated
+     * @param pool                       the pool where to run the computations. If {@code null}, they are run sequentially
+     * @param optionalLayerParameter     the optional layer parameter
+     * @return SortedMap with all the computed service chain paths (values) per demands (keys)
+     */
+    public SortedMap<Demand, List<List<NetworkElement>>> computeUnicastCandidateServiceChainList(DoubleMatrix1D linkCosts, DoubleMatrix1D resourceCosts,
+                                                                                           int K, double maxCostServiceChain, double maxLengthInKmPerSubpath, int maxNumHopsPerSubpath, double maxPropDelayInMsPerSubpath,
+                                                                                           ForkJoinPool pool, NetworkLayer... optionalLayerParameter)
     {
         final NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        SortedMap<Pair<Node, Node>, List<Pair<List<Link>, Double>>> cacheSubpathLists = new TreeMap<>();
+        final Map<Pair<Node, Node>, List<Pair<List<Link>, Double>>> cacheSubpathLists = pool == null? new TreeMap<>() : new ConcurrentHashMap<>();
         if (linkCosts == null) linkCosts = DoubleFactory1D.dense.make(layer.links.size(), 1.0);
         if (resourceCosts == null) resourceCosts = DoubleFactory1D.dense.make(resources.size(), 0.0);
         SortedMap<Resource, Double> resourceCostMap = new TreeMap<Resource, Double>();
         for (int rIndex = 0; rIndex < resources.size(); rIndex++)
             resourceCostMap.put(resources.get(rIndex), resourceCosts.get(rIndex));
         SortedMap<Demand, List<List<NetworkElement>>> cpl = new TreeMap<Demand, List<List<NetworkElement>>>();
-        for (Demand d : layer.demands)
+        layer.getCompiledGraph();
+        final DoubleMatrix1D linkCostsToUse = linkCosts;
+        final List<List<List<NetworkElement>>> kSCsPerDemand = new ArrayList<>(Collections.nCopies(layer.demands.size(), null));
+        ParallelUtils.runInPool(pool, layer.demands.size(), dIndex ->
         {
+        	final Demand d = layer.demands.get(dIndex);
             List<Pair<List<NetworkElement>, Double>> kSCsInfo = GraphUtils.getKMinimumCostServiceChains(layer.links,
                     d.ingressNode, d.egressNode, d.mandatorySequenceOfTraversedResourceTypes,
-                    linkCosts, resourceCostMap,
+                    linkCostsToUse, resourceCostMap,
                     K, maxCostServiceChain, maxLengthInKmPerSubpath, maxNumHopsPerSubpath, maxPropDelayInMsPerSubpath,
                     cacheSubpathLists);
             List<List<NetworkElement>> kSCs = kSCsInfo.stream().map(e -> e.getFirst()).collect(Collectors.toList());
-            cpl.put(d, kSCs);
-        }
+            kSCsPerDemand.set(dIndex, kSCs);
+        });
+        for (Demand d : layer.demands) cpl.put(d, kSCsPerDemand.get(d.index));
         return cpl;
     }
 
@@ -1264,23 +1385,60 @@ public class NetPlan extends NetworkElement
     public SortedMap<Pair<Node, Node>, List<List<Link>>> computeUnicastCandidatePathList(DoubleMatrix1D linkCosts,
                                                                                    int K, double maxLengthInKm, int maxNumHops, double maxPropDelayInMs, double maxRouteCost,
                                                                                    double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath, SortedSet<Pair<Node, Node>> nodePairs, NetworkLayer... optionalLayerParameter)
+    {
+    	return computeUnicastCandidatePathList(linkCosts, K, maxLengthInKm, maxNumHops, maxPropDelayInMs, maxRouteCost, maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath, nodePairs, null, optionalLayerParameter);
+    }
+
+    /**
+     * <p>Computes for all the node pairs, a candidate path list in the given layer, composed of the k shortest paths according with the options indicated below.
+     * The node pairs with the same origin node are processed together, and the origins in parallel in the given pool (sequentially if {@code null}), sharing the graph compiled for the layer
+     * (see {@link NetworkLayer#getCompiledGraph()}). The output is the same as in the sequential version.</p>
+     *
+     * @param linkCosts                               the cost of each link (if null, all links have cost one), all numbers must be strictly positive
+     * @param K                                       Desired nummber of paths (a lower number of paths may be returned if there are less than {@code K} loop-less paths admissible)
+     * @param maxLengthInKm                           Maximum length of the path. If non-positive, no maximum limit is assumed
+     * @param maxNumHops                              Maximum number of hops. If non-positive, no maximum limit is assumed
+     * @param maxPropDelayInMs                        Maximum propagation delay of the path. If non-positive, no maximum limit is assumed
+     * @param maxRouteCost                            Maximum route cost. If non-positive, no maximum limit is assumed
+     * @param maxRouteCostFactorRespectToShortestPath Maximum route cost factor respect to the shortest path. If non-positive, no maximum limit is assumed
+     * @param maxRouteCostRespectToShortestPath       Maximum route cost respect to the shortest path. If non-positive, no maximum limit is assumed
+     * @param nodePairs                               if this parameter is not null, the paths are computed only for this node pairs
+     * @param pool                                    the pool where to run the computations. If {@code null}, they are run sequentially
+     * @param optionalLayerParameter                  the layer (optional)
+     * @return SortedMap with all the computed paths (values) per node pairs (keys)
+     */
+    public SortedMap<Pair<Node, Node>, List<List<Link>>> computeUnicastCandidatePathList(DoubleMatrix1D linkCosts,
+                                                                                   int K, double maxLengthInKm, int maxNumHops, double maxPropDelayInMs, double maxRouteCost,
+                                                                                   double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath, SortedSet<Pair<Node, Node>> nodePairs, ForkJoinPool pool, NetworkLayer... optionalLayerParameter)
     {
         checkIsModifiable();
         final NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
         if (linkCosts != null) if (linkCosts.size() != layer.links.size())
             throw new Net2PlanException("The array of costs must have the same length as the number of links in the layer");
         SortedMap<Pair<Node, Node>, List<List<Link>>> cpl = new TreeMap<>();
-        SortedMap<Link, Double> linkCostMap = new TreeMap<Link, Double>();
-        for (Link e : layer.links) linkCostMap.put(e, linkCosts == null ? 1.0 : linkCosts.get(e.index));
+        final CompiledGraph graph = layer.getCompiledGraph();
+        final double [] w_e = linkCosts == null? graph.getLinkCostVector(null, false) : linkCosts.toArray();
+        final KLooplessShortestPathsEngine engine = new KLooplessShortestPathsEngine(graph, w_e);
+
+        /* The node pairs are grouped by origin node: one shortest path tree from each origin serves all its destinations */
+        final SortedMap<Node, List<Node>> destinationsPerOrigin = new TreeMap<>();
         if (nodePairs == null)
         {
-            nodePairs = new TreeSet<>();
             for (Node n1 : nodes)
                 for (Node n2 : nodes)
-                    if (n1 != n2) nodePairs.add(Pair.of(n1, n2));
+                    if (n1 != n2) destinationsPerOrigin.computeIfAbsent(n1, n -> new ArrayList<>()).add(n2);
         }
-        for (Pair<Node, Node> pair : nodePairs)
-            cpl.put(pair, GraphUtils.getKLooplessShortestPaths(nodes, layer.links, pair.getFirst(), pair.getSecond(), linkCostMap, K, maxLengthInKm, maxNumHops, maxPropDelayInMs, maxRouteCost, maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath));
+        else for (Pair<Node, Node> pair : nodePairs) destinationsPerOrigin.computeIfAbsent(pair.getFirst(), n -> new ArrayList<>()).add(pair.getSecond());
+        final List<Node> originsList = new ArrayList<>(destinationsPerOrigin.keySet());
+        final List<SortedMap<Node, List<List<Link>>>> kPathsPerOrigin = new ArrayList<>(Collections.nCopies(originsList.size(), null));
+        ParallelUtils.runInPool(pool, originsList.size(), originIndex ->
+        {
+        	final Node origin = originsList.get(originIndex);
+        	kPathsPerOrigin.set(originIndex, GraphUtils.getKLooplessShortestPaths(engine, origin, destinationsPerOrigin.get(origin), K, maxLengthInKm, maxNumHops, maxPropDelayInMs, maxRouteCost, maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath));
+        });
+        for (int originIndex = 0; originIndex < originsList.size(); originIndex++)
+        	for (Entry<Node, List<List<Link>>> destinationPaths : kPathsPerOrigin.get(originIndex).entrySet())
+        		cpl.put(Pair.of(originsList.get(originIndex), destinationPaths.getKey()), destinationPaths.getValue());
         return cpl;
     }
 
@@ -1577,6 +1735,7 @@ public class NetPlan extends NetworkElement
         this.cache_nodesPerSiteName = netPlan.cache_nodesPerSiteName;
         this.cache_planningDomain2nodes = netPlan.cache_planningDomain2nodes;
         this.interLayerCoupling = netPlan.interLayerCoupling;
+        this.cache_topologicalPositionOfLayers = null;
         this.tags.clear(); this.tags.addAll(netPlan.tags);
         for (String tag : this.tags) // remove reference to origin netPlan in tags (the other network elements do not change, but NetPlan does) 
         { 
@@ -2277,15 +2436,15 @@ public class NetPlan extends NetworkElement
         this.cache_nodesDown = new TreeSet<Node>();
         this.cache_dynamicSrgs = new TreeSet<> ();
         this.cache_type2Resources = new TreeMap<>();
-        this.cache_id2NodeMap = new TreeMap<Long, Node>();
-        this.cache_id2ResourceMap = new TreeMap<Long, Resource>();
-        this.cache_id2LayerMap = new TreeMap<Long, NetworkLayer>();
-        this.cache_id2srgMap = new TreeMap<Long, SharedRiskGroup>();
-        this.cache_id2LinkMap = new TreeMap<Long, Link>();
-        this.cache_id2DemandMap = new TreeMap<Long, Demand>();
-        this.cache_id2MulticastDemandMap = new TreeMap<Long, MulticastDemand>();
-        this.cache_id2RouteMap = new TreeMap<Long, Route>();
-        this.cache_id2MulticastTreeMap = new TreeMap<Long, MulticastTree>();
+        this.cache_id2NodeMap = new LongIdIndex<Node>();
+        this.cache_id2ResourceMap = new LongIdIndex<Resource>();
+        this.cache_id2LayerMap = new LongIdIndex<NetworkLayer>();
+        this.cache_id2srgMap = new LongIdIndex<SharedRiskGroup>();
+        this.cache_id2LinkMap = new LongIdIndex<Link>();
+        this.cache_id2DemandMap = new LongIdIndex<Demand>();
+        this.cache_id2MulticastDemandMap = new LongIdIndex<MulticastDemand>();
+        this.cache_id2RouteMap = new LongIdIndex<Route>();
+        this.cache_id2MulticastTreeMap = new LongIdIndex<MulticastTree>();
         this.cache_taggedElements = new TreeMap<> ();
         this.cache_nodesPerSiteName = new TreeMap<> ();
         this.cache_planningDomain2nodes = new TreeMap<> (); 
@@ -2421,6 +2580,7 @@ public class NetPlan extends NetworkElement
         for (NetworkLayer newLayer : this.layers) newLayer.copyFrom(originNetPlan.layers.get(newLayer.index));
 
         this.interLayerCoupling = new DirectedAcyclicGraph<NetworkLayer, DemandLinkMapping>(DemandLinkMapping.class);
+        this.cache_topologicalPositionOfLayers = null;
         for (NetworkLayer layer : originNetPlan.interLayerCoupling.vertexSet())
             this.interLayerCoupling.addVertex(this.netPlan.getNetworkLayerFromId(layer.id));
         for (DemandLinkMapping mapping : originNetPlan.interLayerCoupling.edgeSet())
@@ -3039,21 +3199,8 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix2D getMatrixDemand2LinkTrafficCarried(SortedSet<Demand> demandsOfInterest , NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-    	if (demandsOfInterest == null) demandsOfInterest = new TreeSet<> (layer.demands);
-        DoubleMatrix2D x_de = DoubleFactory2D.sparse.make(layer.demands.size(), layer.links.size());
-    	for (Demand d : demandsOfInterest)
-    		if (d.isSourceRouting())
-    		{
-                for (Route r : d.getRoutes())
-                    for (Link e : r.cache_seqLinksRealPath)
-                        x_de.set(d.index, e.index, x_de.get(d.index, e.index) + r.getCarriedTraffic());
-    		}
-    		else
-    		{
-        		for (Entry<Link,Pair<Double,Double>> xde : d.cacheHbH_normCarriedOccupiedPerLinkCurrentState.entrySet())
-        			x_de.set(d.index, xde.getKey().index, xde.getValue().getSecond());
-    		}
-        return x_de;
+        if (demandsOfInterest == null) return layer.cache_matrixDemand2LinkTrafficCarried.get().copy();
+        return layer.computeMatrixDemand2LinkTrafficCarried(demandsOfInterest);
     }
 
     /**
@@ -3189,12 +3336,8 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix2D getMatrixLink2RouteAssignment(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        int E = layer.links.size();
-        int R = layer.routes.size();
-        DoubleMatrix2D delta_er = DoubleFactory2D.sparse.make(E, R);
-        for (Route r : layer.routes)
-            for (Link e : r.cache_seqLinksRealPath) delta_er.set(e.index, r.index, delta_er.get(e.index, r.index) + 1);
-        return delta_er;
+        if (layer.cache_matrixLink2RouteAssignment == null) layer.cache_matrixLink2RouteAssignment = layer.computeMatrixLink2RouteAssignment();
+        return layer.cache_matrixLink2RouteAssignment.copy();
     }
 
     /**
@@ -3231,8 +3374,8 @@ public class NetPlan extends NetworkElement
             for (Link e : s.getLinksAllLayers()) if (e.layer.equals(layer)) delta_es.set(e.index, s.index, 1);
             for (Node n : s.getNodes ())
             {
-                for (Link e : n.cache_nodeIncomingLinks) if (e.layer.equals(layer)) delta_es.set(e.index, s.index, 1);
-                for (Link e : n.cache_nodeOutgoingLinks) if (e.layer.equals(layer)) delta_es.set(e.index, s.index, 1);
+                for (Link e : Node.getCacheOfLayer(n.cache_nodeIncomingLinksPerLayer , layer)) delta_es.set(e.index, s.index, 1);
+                for (Link e : Node.getCacheOfLayer(n.cache_nodeOutgoingLinksPerLayer , layer)) delta_es.set(e.index, s.index, 1);
             }
         }
         return delta_es;
@@ -3652,11 +3795,8 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix2D getMatrixNodeLinkAdjacency(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        int N = nodes.size();
-        DoubleMatrix2D delta_nn = DoubleFactory2D.sparse.make(N, N);
-        for (Link e : layer.links)
-            delta_nn.set(e.originNode.index, e.destinationNode.index, delta_nn.get(e.originNode.index, e.destinationNode.index) + 1);
-        return delta_nn;
+        if (layer.cache_matrixNodeLinkAdjacency == null) layer.cache_matrixNodeLinkAdjacency = layer.computeMatrixNodeLinkAdjacency();
+        return layer.cache_matrixNodeLinkAdjacency.copy();
     }
 
     /**
@@ -3669,15 +3809,8 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix2D getMatrixNodeLinkIncidence(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        int N = nodes.size();
-        int E = layer.links.size();
-        DoubleMatrix2D delta_ne = DoubleFactory2D.sparse.make(N, E);
-        for (Link e : layer.links)
-        {
-            delta_ne.set(e.originNode.index, e.index, 1);
-            delta_ne.set(e.destinationNode.index, e.index, -1);
-        }
-        return delta_ne;
+        if (layer.cache_matrixNodeLinkIncidence == null) layer.cache_matrixNodeLinkIncidence = layer.computeMatrixNodeLinkIncidence(true , true);
+        return layer.cache_matrixNodeLinkIncidence.copy();
     }
 
     /**
@@ -3690,12 +3823,8 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix2D getMatrixNodeLinkIncomingIncidence(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        int N = nodes.size();
-        int E = layer.links.size();
-        DoubleMatrix2D delta_ne = DoubleFactory2D.sparse.make(N, E);
-        for (Link e : layer.links)
-            delta_ne.set(e.destinationNode.index, e.index, 1);
-        return delta_ne;
+        if (layer.cache_matrixNodeLinkIncomingIncidence == null) layer.cache_matrixNodeLinkIncomingIncidence = layer.computeMatrixNodeLinkIncidence(false , true);
+        return layer.cache_matrixNodeLinkIncomingIncidence.copy();
     }
 
     /**
@@ -3708,12 +3837,8 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix2D getMatrixNodeLinkOutgoingIncidence(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        int N = nodes.size();
-        int E = layer.links.size();
-        DoubleMatrix2D delta_ne = DoubleFactory2D.sparse.make(N, E);
-        for (Link e : layer.links)
-            delta_ne.set(e.originNode.index, e.index, 1);
-        return delta_ne;
+        if (layer.cache_matrixNodeLinkOutgoingIncidence == null) layer.cache_matrixNodeLinkOutgoingIncidence = layer.computeMatrixNodeLinkIncidence(true , false);
+        return layer.cache_matrixNodeLinkOutgoingIncidence.copy();
     }
 
     /**
@@ -3988,10 +4113,20 @@ public class NetPlan extends NetworkElement
      */
     public List<NetworkLayer> getNetworkLayerInTopologicalOrder()
     {
-        List<NetworkLayer> layers_topologicalSort = new LinkedList<NetworkLayer>();
-        Iterator<NetworkLayer> it = interLayerCoupling.iterator();
-        while (it.hasNext()) layers_topologicalSort.add(it.next());
-        return layers_topologicalSort;
+        return new LinkedList<NetworkLayer>(getTopologicalPositionOfLayers().keySet());
+    }
+
+    /* Returns the position of each layer in the bottom-up order of the coupling between layers (iterating the map follows this order). It is cached
+     * until the coupling between layers changes */
+    Map<NetworkLayer,Integer> getTopologicalPositionOfLayers()
+    {
+        if (cache_topologicalPositionOfLayers == null)
+        {
+            final Map<NetworkLayer,Integer> res = new LinkedHashMap<> ();
+            for (NetworkLayer layer : interLayerCoupling) res.put(layer, res.size());
+            cache_topologicalPositionOfLayers = res;
+        }
+        return cache_topologicalPositionOfLayers;
     }
 
     /**
@@ -4588,9 +4723,21 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix1D getVectorDemandCarriedTraffic(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        DoubleMatrix1D res = DoubleFactory1D.dense.make(layer.demands.size());
-        for (Demand e : layer.demands) res.set(e.index, e.carriedTraffic);
-        return res;
+        return layer.cache_vectorDemandCarriedTraffic.get().copy();
+    }
+
+    /**
+     * <p>Returns a read-only view of the vector returned by {@link #getVectorDemandCarriedTraffic(NetworkLayer...)}, with the carried traffic per demand, at the given layer. The vector is not copied: it is
+     * the one kept in the layer until the traffic or the elements of the layer change, so it should be used when the vector is read many times and
+     * not modified. The view keeps the values at the time it is obtained. If no layer is provided, the default layer is assumed.</p>
+     *
+     * @param optionalLayerParameter Network layer (optional)
+     * @return The read-only vector
+     */
+    public DoubleMatrix1D getVectorDemandCarriedTrafficView(NetworkLayer... optionalLayerParameter)
+    {
+        NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
+        return new UnmodifiableDoubleMatrix1D(layer.cache_vectorDemandCarriedTraffic.get());
     }
 
     /**
@@ -4705,9 +4852,21 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix1D getVectorDemandOfferedTraffic(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        DoubleMatrix1D res = DoubleFactory1D.dense.make(layer.demands.size());
-        for (Demand e : layer.demands) res.set(e.index, e.offeredTraffic);
-        return res;
+        return layer.cache_vectorDemandOfferedTraffic.get().copy();
+    }
+
+    /**
+     * <p>Returns a read-only view of the vector returned by {@link #getVectorDemandOfferedTraffic(NetworkLayer...)}, with the offered traffic per demand, at the given layer. The vector is not copied: it is
+     * the one kept in the layer until the traffic or the elements of the layer change, so it should be used when the vector is read many times and
+     * not modified. The view keeps the values at the time it is obtained. If no layer is provided, the default layer is assumed.</p>
+     *
+     * @param optionalLayerParameter Network layer (optional)
+     * @return The read-only vector
+     */
+    public DoubleMatrix1D getVectorDemandOfferedTrafficView(NetworkLayer... optionalLayerParameter)
+    {
+        NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
+        return new UnmodifiableDoubleMatrix1D(layer.cache_vectorDemandOfferedTraffic.get());
     }
 
     /**
@@ -4804,9 +4963,21 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix1D getVectorLinkCarriedTraffic(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        DoubleMatrix1D res = DoubleFactory1D.dense.make(layer.links.size());
-        for (Link e : layer.links) res.set(e.index, e.getCarriedTraffic());
-        return res;
+        return layer.cache_vectorLinkCarriedTraffic.get().copy();
+    }
+
+    /**
+     * <p>Returns a read-only view of the vector returned by {@link #getVectorLinkCarriedTraffic(NetworkLayer...)}, with the total carried traffic per link, at the given layer. The vector is not copied: it is
+     * the one kept in the layer until the traffic or the elements of the layer change, so it should be used when the vector is read many times and
+     * not modified. The view keeps the values at the time it is obtained. If no layer is provided, the default layer is assumed.</p>
+     *
+     * @param optionalLayerParameter Network layer (optional)
+     * @return The read-only vector
+     */
+    public DoubleMatrix1D getVectorLinkCarriedTrafficView(NetworkLayer... optionalLayerParameter)
+    {
+        NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
+        return new UnmodifiableDoubleMatrix1D(layer.cache_vectorLinkCarriedTraffic.get());
     }
 
     /**
@@ -4819,9 +4990,21 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix1D getVectorLinkOccupiedCapacity(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        DoubleMatrix1D res = DoubleFactory1D.dense.make(layer.links.size());
-        for (Link e : layer.links) res.set(e.index, e.getOccupiedCapacity());
-        return res;
+        return layer.cache_vectorLinkOccupiedCapacity.get().copy();
+    }
+
+    /**
+     * <p>Returns a read-only view of the vector returned by {@link #getVectorLinkOccupiedCapacity(NetworkLayer...)}, with the total occupied capacity in the links, at the given layer. The vector is not copied: it is
+     * the one kept in the layer until the traffic or the elements of the layer change, so it should be used when the vector is read many times and
+     * not modified. The view keeps the values at the time it is obtained. If no layer is provided, the default layer is assumed.</p>
+     *
+     * @param optionalLayerParameter Network layer (optional)
+     * @return The read-only vector
+     */
+    public DoubleMatrix1D getVectorLinkOccupiedCapacityView(NetworkLayer... optionalLayerParameter)
+    {
+        NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
+        return new UnmodifiableDoubleMatrix1D(layer.cache_vectorLinkOccupiedCapacity.get());
     }
 
     /**
@@ -5005,7 +5188,7 @@ public class NetPlan extends NetworkElement
         for (Node n : nodes)
         {
             double traf = 0;
-            for (Demand d : n.cache_nodeOutgoingDemands) if (d.layer == layer) traf += d.offeredTraffic;
+            for (Demand d : Node.getCacheOfLayer(n.cache_nodeOutgoingDemandsPerLayer , layer)) traf += d.offeredTraffic;
             res.set(n.index, traf);
         }
         return res;
@@ -5024,7 +5207,7 @@ public class NetPlan extends NetworkElement
         for (Node n : nodes)
         {
             double traf = 0;
-            for (Demand d : n.cache_nodeIncomingDemands) if (d.layer == layer) traf += d.offeredTraffic;
+            for (Demand d : Node.getCacheOfLayer(n.cache_nodeIncomingDemandsPerLayer , layer)) traf += d.offeredTraffic;
             res.set(n.index, traf);
         }
         return res;
@@ -5131,9 +5314,21 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix1D getVectorRouteCarriedTraffic(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        DoubleMatrix1D res = DoubleFactory1D.dense.make(layer.routes.size());
-        for (Route e : layer.routes) res.set(e.index, e.getCarriedTraffic());
-        return res;
+        return layer.cache_vectorRouteCarriedTraffic.get().copy();
+    }
+
+    /**
+     * <p>Returns a read-only view of the vector returned by {@link #getVectorRouteCarriedTraffic(NetworkLayer...)}, with the carried traffic per route, at the given layer. The vector is not copied: it is
+     * the one kept in the layer until the traffic or the elements of the layer change, so it should be used when the vector is read many times and
+     * not modified. The view keeps the values at the time it is obtained. If no layer is provided, the default layer is assumed.</p>
+     *
+     * @param optionalLayerParameter Network layer (optional)
+     * @return The read-only vector
+     */
+    public DoubleMatrix1D getVectorRouteCarriedTrafficView(NetworkLayer... optionalLayerParameter)
+    {
+        NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
+        return new UnmodifiableDoubleMatrix1D(layer.cache_vectorRouteCarriedTraffic.get());
     }
 
     /**
@@ -5438,9 +5633,21 @@ public class NetPlan extends NetworkElement
     public DoubleMatrix1D getVectorRouteOccupiedCapacity(NetworkLayer... optionalLayerParameter)
     {
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        DoubleMatrix1D res = DoubleFactory1D.dense.make(layer.routes.size());
-        for (Route e : layer.routes) res.set(e.index, e.getOccupiedCapacity());
-        return res;
+        return layer.cache_vectorRouteOccupiedCapacity.get().copy();
+    }
+
+    /**
+     * <p>Returns a read-only view of the vector returned by {@link #getVectorRouteOccupiedCapacity(NetworkLayer...)}, with the occupied capacity traffic per route, at the given layer. The vector is not copied: it is
+     * the one kept in the layer until the traffic or the elements of the layer change, so it should be used when the vector is read many times and
+     * not modified. The view keeps the values at the time it is obtained. If no layer is provided, the default layer is assumed.</p>
+     *
+     * @param optionalLayerParameter Network layer (optional)
+     * @return The read-only vector
+     */
+    public DoubleMatrix1D getVectorRouteOccupiedCapacityView(NetworkLayer... optionalLayerParameter)
+    {
+        NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
+        return new UnmodifiableDoubleMatrix1D(layer.cache_vectorRouteOccupiedCapacity.get());
     }
 
     /**
@@ -5698,15 +5905,18 @@ public class NetPlan extends NetworkElement
         netPlan.checkIsModifiable();
         if (netPlan.layers.size() == 1) throw new Net2PlanException("At least one layer must exist");
 
-        for (Route route : new LinkedList<Route>(layer.routes)) route.remove();
-        for (MulticastTree tree : new LinkedList<MulticastTree>(layer.multicastTrees)) tree.remove();
-        for (Link link : new LinkedList<Link>(layer.links)) link.remove();
-        for (Demand demand : new LinkedList<Demand>(layer.demands)) demand.remove();
-        for (MulticastDemand demand : new LinkedList<MulticastDemand>(layer.multicastDemands)) demand.remove();
-        for (Node node : nodes) node.removeUrlNodeIcon(layer);
+        final List<NetworkElement> elementsThisLayer = new ArrayList<> ();
+        elementsThisLayer.addAll(layer.routes);
+        elementsThisLayer.addAll(layer.multicastTrees);
+        elementsThisLayer.addAll(layer.links);
+        elementsThisLayer.addAll(layer.demands);
+        elementsThisLayer.addAll(layer.multicastDemands);
+        removeAll(elementsThisLayer);
+        for (Node node : nodes) { node.removeUrlNodeIcon(layer); node.removeCachesOfLayer(layer); }
         for (String tag : layer.tags) this.cache_taggedElements.get(tag).remove(layer);
         
         netPlan.interLayerCoupling.removeVertex(layer);
+        netPlan.cache_topologicalPositionOfLayers = null;
         netPlan.cache_id2LayerMap.remove(layer.id);
         NetPlan.removeNetworkElementAndShiftIndexes(netPlan.layers, layer.index);
         if (netPlan.defaultLayer.equals(layer)) netPlan.defaultLayer = netPlan.layers.get(0);
@@ -5714,6 +5924,153 @@ public class NetPlan extends NetworkElement
         if (ErrorHandling.isDebugEnabled()) netPlan.checkCachesConsistency();
     }
 
+    /**
+     * <p>Opens a batch of changes. Until the batch is closed with {@link #commit()}, the state derived from the traffic is not updated in each change,
+     * but once at the end: the carried traffic and occupied capacity of the links and resources, the carried traffic of the demands and multicast demands,
+     * the capacity of the links coupled to them, and the traffic of the hop-by-hop demands whose offered traffic or forwarding rules change
+     * (see {@link #setForwardingRule(Demand, Link, double)} and the {@code setForwardingRules} methods: the rules are set immediately, and a closed 
+     * routing cycle they may create is reported when the batch is committed).
+     * Then, an algorithm making many small changes (e.g. adding thousands of routes) does not compute the intermediate states. The resulting design
+     * is the same as applying the changes one by one.</p>
+     * <p>Within the batch, the methods returning these derived values may return outdated values. Batches can be nested: the updates
+     * are applied when the outermost batch is closed. The consistency checks of the debug mode are not run within the batch.</p>
+     */
+    public void beginBatch()
+    {
+        checkIsModifiable();
+        if (batchDepth ++ == 0)
+        {
+            batchPreviousErrorHandling = ErrorHandling.DEBUG;
+            ErrorHandling.DEBUG = false;
+        }
+    }
+
+    /**
+     * <p>Closes the batch of changes opened with {@link #beginBatch()}, updating the state derived from the traffic if this is the outermost batch.</p>
+     */
+    public void commit()
+    {
+        if (batchDepth == 0) throw new Net2PlanException("No batch of changes is open");
+        if (-- batchDepth > 0) return;
+        try
+        {
+            if (bulkRemovalDepth == 0) applyPendingDerivedStateUpdates();
+        }
+        finally
+        {
+            ErrorHandling.DEBUG = batchPreviousErrorHandling;
+        }
+        if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
+    }
+
+    /* Returns true if the state derived from the traffic is updated when the current batch or bulk removal is closed, and not in each change */
+    boolean isDeferringDerivedStateUpdates()
+    {
+        return batchDepth > 0 || bulkRemovalDepth > 0;
+    }
+
+    /* Updates the derived state of the elements recorded during a batch or a bulk removal, skipping the ones removed */
+    private void applyPendingDerivedStateUpdates()
+    {
+        /* The demands are visited once each, from the lower to the upper layers (the capacity of a coupled link is set after the traffic 
+         * of the layers below), and by id within a layer */
+        final Map<NetworkLayer,Integer> layerPositions = getTopologicalPositionOfLayers();
+        final HopByHopRoutingPropagationEngine propagationEngine = new HopByHopRoutingPropagationEngine();
+        for (Demand d : sortedBottomUp(cache_demandsPendingHopByHopUpdate , Demand::getLayer , layerPositions))
+            if (!d.isSourceRouting()) d.updateHopByHopRoutingToGivenFrs(d.cacheHbH_frs , propagationEngine);
+        cache_demandsPendingHopByHopUpdate.clear();
+        for (Demand d : sortedBottomUp(cache_demandsPendingCarriedTrafficUpdate , Demand::getLayer , layerPositions))
+        {
+            if (!d.isSourceRouting()) continue;
+            d.carriedTraffic = 0; for (Route r : d.cache_routes) d.carriedTraffic += r.getCarriedTraffic();
+            d.layer.incrementModificationCounter();
+            if (d.coupledUpperOrSameLayerLink != null)
+                d.coupledUpperOrSameLayerLink.updateCapacityAndZeroCapacityLinksAndRoutesCaches(d.carriedTraffic);
+        }
+        cache_demandsPendingCarriedTrafficUpdate.clear();
+        for (MulticastDemand d : sortedBottomUp(cache_multicastDemandsPendingCarriedTrafficUpdate , MulticastDemand::getLayer , layerPositions))
+        {
+            d.carriedTraffic = 0; for (MulticastTree t : d.cache_multicastTrees) d.carriedTraffic += t.getCarriedTraffic();
+            d.layer.incrementModificationCounter();
+            if (d.coupledUpperLayerLinks != null)
+                for (Link e : d.coupledUpperLayerLinks.values())
+                    e.updateCapacityAndZeroCapacityLinksAndRoutesCaches(d.carriedTraffic);
+        }
+        cache_multicastDemandsPendingCarriedTrafficUpdate.clear();
+        for (Resource res : cache_resourcesPendingOccupationUpdate)
+            if (!res.wasRemoved()) res.updateTotalOccupiedCapacity();
+        cache_resourcesPendingOccupationUpdate.clear();
+        for (Link e : cache_linksPendingTrafficUpdate)
+            if (!e.wasRemoved()) e.updateLinkTrafficAndOccupation();
+        cache_linksPendingTrafficUpdate.clear();
+        for (Entry<Demand,Triple<Boolean,Boolean,Boolean>> entry : cache_demandsPendingRouteCachesUpdate.entrySet())
+            if (!entry.getKey().wasRemoved() && entry.getKey().isSourceRouting())
+                entry.getKey().updateCachesDependingOnRoutes(entry.getValue().getFirst(), entry.getValue().getSecond(), entry.getValue().getThird());
+        cache_demandsPendingRouteCachesUpdate.clear();
+    }
+
+    /* Returns the elements not removed, from the lower to the upper layers, and by id within a layer */
+    private static <E extends NetworkElement> List<E> sortedBottomUp(Collection<E> elements , Function<E,NetworkLayer> layerOf , Map<NetworkLayer,Integer> layerPositions)
+    {
+        final List<E> res = new ArrayList<> (elements.size());
+        for (E e : elements) if (!e.wasRemoved()) res.add(e);
+        res.sort(Comparator.<E>comparingInt(e -> layerPositions.get(layerOf.apply(e))).thenComparing(Comparator.naturalOrder()));
+        return res;
+    }
+
+    /**
+     * <p>Removes the given network elements, as if calling the {@code remove()} method of each one. Then, the elements depending on a removed
+     * element (e.g. the routes of a removed demand or link) are also removed, and the elements of the collection already removed in this way are skipped.</p>
+     * <p>The lists of elements are compacted, and the element indexes updated, once at the end, instead of in each removal. Then, removing many
+     * elements (e.g. most of the routes of a layer) takes a time linear in the number of elements, and not quadratic. The network layers
+     * in the collection are removed at the end.</p>
+     *
+     * @param elements the links, demands, multicast demands, routes, multicast trees, nodes, resources, SRGs or network layers to remove
+     */
+    public void removeAll(Collection<? extends NetworkElement> elements)
+    {
+        checkIsModifiable();
+        for (NetworkElement e : elements)
+        {
+            checkInThisNetPlan(e);
+            if (e instanceof NetPlan) throw new Net2PlanException("A design cannot be removed from itself");
+        }
+        final List<NetworkLayer> layersToRemove = new ArrayList<> ();
+        final boolean previousErrorHandling = ErrorHandling.DEBUG;
+        ErrorHandling.DEBUG = false;
+        bulkRemovalDepth ++;
+        try
+        {
+            for (NetworkElement e : elements)
+            {
+                if (e.netPlan == null) continue; // removed before, as a consequence of another removal
+                if (e instanceof Route) ((Route) e).remove();
+                else if (e instanceof MulticastTree) ((MulticastTree) e).remove();
+                else if (e instanceof Demand) ((Demand) e).remove();
+                else if (e instanceof MulticastDemand) ((MulticastDemand) e).remove();
+                else if (e instanceof Link) ((Link) e).remove();
+                else if (e instanceof Resource) ((Resource) e).remove();
+                else if (e instanceof SharedRiskGroup) ((SharedRiskGroup) e).remove();
+                else if (e instanceof Node) ((Node) e).remove();
+                else if (e instanceof NetworkLayer) layersToRemove.add((NetworkLayer) e);
+                else throw new Net2PlanException("Unknown network element type: " + e);
+            }
+        }
+        finally
+        {
+            if (-- bulkRemovalDepth == 0)
+            {
+                for (ArrayList<? extends NetworkElement> x : cache_listsPendingCompaction) compactRemovedNetworkElements(x);
+                cache_listsPendingCompaction.clear();
+                if (batchDepth == 0) applyPendingDerivedStateUpdates();
+            }
+            ErrorHandling.DEBUG = previousErrorHandling;
+        }
+        for (NetworkLayer layer : layersToRemove)
+            if (layer.netPlan != null) removeNetworkLayer(layer);
+        if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
+    }
+
     /**
      * <p>Removes all the demands defined in the given layer. If no layer is provided, default layer is assumed.</p>
      *
@@ -5723,7 +6080,7 @@ public class NetPlan extends NetworkElement
     {
         checkIsModifiable();
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        for (Demand d : new ArrayList<Demand>(layer.demands)) d.remove();
+        removeAll(new ArrayList<Demand>(layer.demands));
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -5756,6 +6113,7 @@ public class NetPlan extends NetworkElement
         	e.cacheHbH_normCarriedOccupiedPerTraversingDemandCurrentState.clear();
             e.updateLinkTrafficAndOccupation();
         }
+        layer.incrementModificationCounter();
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -5784,7 +6142,7 @@ public class NetPlan extends NetworkElement
 		ErrorHandling.DEBUG = false;
         checkIsModifiable();
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        for (Link e : new ArrayList<Link>(layer.links)) e.remove();
+        removeAll(new ArrayList<Link>(layer.links));
 		ErrorHandling.DEBUG = previousErrorHandling;
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
@@ -5798,7 +6156,7 @@ public class NetPlan extends NetworkElement
     {
         checkIsModifiable();
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        for (MulticastDemand d : new ArrayList<MulticastDemand>(layer.multicastDemands)) d.remove();
+        removeAll(new ArrayList<MulticastDemand>(layer.multicastDemands));
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -5811,7 +6169,7 @@ public class NetPlan extends NetworkElement
     {
         checkIsModifiable();
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        for (MulticastTree t : new ArrayList<MulticastTree>(layer.multicastTrees)) t.remove();
+        removeAll(new ArrayList<MulticastTree>(layer.multicastTrees));
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -5825,9 +6183,11 @@ public class NetPlan extends NetworkElement
     {
         checkIsModifiable();
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        for (MulticastTree t : new ArrayList<MulticastTree>(layer.multicastTrees))
+        final List<MulticastTree> treesToRemove = new ArrayList<> ();
+        for (MulticastTree t : layer.multicastTrees)
             if ((t.carriedTrafficIfNotFailing < toleranceTrafficAndCapacityValueToConsiderUnusedTree) && (t.occupiedLinkCapacityIfNotFailing < toleranceTrafficAndCapacityValueToConsiderUnusedTree))
-                t.remove();
+                treesToRemove.add(t);
+        removeAll(treesToRemove);
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -5867,7 +6227,7 @@ public class NetPlan extends NetworkElement
             removeAllForwardingRules(layer); // to speed up things
         	removeAllRoutes(layer); // to speed up things
         }
-        for (Node n : new ArrayList<Node>(nodes)) n.remove();
+        removeAll(new ArrayList<Node>(nodes));
 		ErrorHandling.DEBUG = previousErrorHandling;
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
@@ -5887,7 +6247,7 @@ public class NetPlan extends NetworkElement
         {
         	for (Resource res : r.getSeqResourcesTraversed())
         		res.removeTraversingRoute(r);
-    		for (Node node : r.cache_seqNodesRealPath) node.cache_nodeAssociatedRoutes.remove(r);
+    		for (Node node : r.cache_seqNodesRealPath) Node.removeFromCache(node.cache_nodeAssociatedRoutes , node.cache_nodeAssociatedRoutesPerLayer , layer , r);
     		netPlan.cache_id2RouteMap.remove(r.id);
     		layer.cache_routesDown.remove (r);
     		layer.cache_routesTravLinkZeroCap.remove(r);
@@ -5910,6 +6270,8 @@ public class NetPlan extends NetworkElement
         	e.updateLinkTrafficAndOccupation(); // to include multicast
         }
         layer.routes.clear();
+        layer.cache_matrixLink2RouteAssignment = null;
+        layer.incrementModificationCounter();
 		
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
@@ -5925,7 +6287,8 @@ public class NetPlan extends NetworkElement
     {
         checkIsModifiable();
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        for (Route r : new ArrayList<Route>(layer.routes))
+        final List<Route> routesToRemove = new ArrayList<> ();
+        for (Route r : layer.routes)
         {
             if (r.currentCarriedTrafficIfNotFailing >= toleranceTrafficAndCapacityValueToConsiderUnusedRoute) continue;
             boolean emptyRoute = true;
@@ -5935,8 +6298,9 @@ public class NetPlan extends NetworkElement
                     emptyRoute = false;
                     break;
                 }
-            if (emptyRoute) r.remove();
+            if (emptyRoute) routesToRemove.add(r);
         }
+        removeAll(routesToRemove);
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -5950,8 +6314,10 @@ public class NetPlan extends NetworkElement
     {
         checkIsModifiable();
         NetworkLayer layer = checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-        for (Link e : new ArrayList<Link>(layer.links))
-            if (e.capacity < toleranceCapacityValueToConsiderUnusedLink) e.remove();
+        final List<Link> linksToRemove = new ArrayList<> ();
+        for (Link e : layer.links)
+            if (e.capacity < toleranceCapacityValueToConsiderUnusedLink) linksToRemove.add(e);
+        removeAll(linksToRemove);
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -5977,7 +6343,7 @@ public class NetPlan extends NetworkElement
     public void removeAllSRGs()
     {
         checkIsModifiable();
-        for (SharedRiskGroup s : new ArrayList<SharedRiskGroup>(srgs)) s.remove();
+        removeAll(new ArrayList<SharedRiskGroup>(srgs));
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -5987,7 +6353,7 @@ public class NetPlan extends NetworkElement
     public void removeAllResources()
     {
         checkIsModifiable();
-        for (Resource r : new ArrayList<Resource>(resources)) r.remove();
+        removeAll(new ArrayList<Resource>(resources));
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -6042,23 +6408,60 @@ public class NetPlan extends NetworkElement
      */
     public void saveToOutputStream(OutputStream outputStream)
     {
-        XMLStreamWriter2 writer = null;
+        saveToOutputStream(outputStream, false);
+    }
+
+    /**
+     * <p>Saves the current network plan to a given output stream. Optionally, the monitored or forecasted traffic series of the links and demands
+     * are stored compressed (see {@link com.net2plan.libraries.TrafficSeries#toStringListCompressed()}). This makes files with long series much smaller, but
+     * Net2Plan versions previous to the compressed form would read these series as empty.</p>
+     *
+     * @param outputStream Output stream
+     * @param compressTrafficSeries if {@code true}, the traffic series are stored compressed
+     */
+    public void saveToOutputStream(OutputStream outputStream, boolean compressTrafficSeries)
+    {
         try
         {
-            XMLOutputFactory2 output = (XMLOutputFactory2) XMLOutputFactory2.newFactory();
-            writer = (XMLStreamWriter2) output.createXMLStreamWriter(outputStream);
+            saveDocument(new DocumentWriterNetPlanXml(outputStream), compressTrafficSeries);
+        } catch (XMLStreamException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
 
-            writer.writeStartDocument("UTF-8", "1.0");
+    /**
+     * <p>Saves the current network plan to a given output stream, in the binary {@code .n2p} format. The binary format has the same
+     * information as the XML one, but it is more compact and faster to save and load. The designs in this format are read by the
+     * {@link #NetPlan(InputStream)} and {@link #NetPlan(File)} constructors, as the XML ones. The traffic series are always stored compressed
+     * (see {@link #saveToOutputStream(OutputStream, boolean)}), since only the versions that know the compressed form can read this format.</p>
+     *
+     * @param outputStream Output stream
+     */
+    public void saveToBinaryOutputStream(OutputStream outputStream)
+    {
+        try
+        {
+            saveDocument(new DocumentWriterNetPlanBinary(outputStream), true);
+        } catch (XMLStreamException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
 
-            XMLUtils.indent(writer, 0);
+    void saveDocument(IDocumentWriterNetPlan writer, boolean compressTrafficSeries) throws XMLStreamException
+    {
+        try
+        {
+            writer.indent(0);
             writer.writeStartElement("network");
             writer.writeAttribute("description", getDescription());
             writer.writeAttribute("name", getName());
-    		writer.writeAttribute("currentDate", new Long (getCurrentDate().getTime()).toString());
+    		writer.writeAttribute("currentDate", getCurrentDate().getTime());
             writer.writeAttribute("currentPlotNodeLayout", this.currentPlotNodeLayout);
             writer.writeAttribute("cache_definedPlotNodeLayouts", StringUtils.createEscapedString_asStringList(this.cache_definedPlotNodeLayouts));
             writer.writeAttribute("version", Version.getFileFormatVersion());
-            writer.writeAttribute("nextElementId", nextElementId.toString());
+            writer.writeAttribute("nextElementId", nextElementId.toLong());
             int counter = 0; 
             for (String planningDomain : this.cache_planningDomain2nodes.keySet())
             	writer.writeAttribute("planningDomain_" + (counter++), planningDomain); 
@@ -6066,7 +6469,7 @@ public class NetPlan extends NetworkElement
             
 //            for (String planningDomain : this.cache_planningDomain2nodes.keySet())
 //            {
-//                XMLUtils.indent(writer, 2);
+//                writer.indent(2);
 //                writer.writeEmptyElement("planningDomain");
 //                writer.writeAttribute("name", "");
 //                writer.writeAttribute("value", planningDomain);
@@ -6075,63 +6478,63 @@ public class NetPlan extends NetworkElement
             //SortedSet<Long> nodeIds_thisNetPlan = new TreeSet<Long> (getNodeIds());
             for (Node node : nodes)
             {
-                XMLUtils.indent(writer, 1);
+                writer.indent(1);
                 writer.writeStartElement("node");
 
                 final Point2D position = node.getXYPositionMap();
-                writer.writeAttribute("id", Long.toString(node.id));
+                writer.writeAttribute("id", node.id);
                 writer.writeAttribute("description", node.getDescription());
                 writer.writeAttribute("name", node.getName());
-                writer.writeAttribute("xCoord", Double.toString(position.getX()));
-                writer.writeAttribute("yCoord", Double.toString(position.getY()));
+                writer.writeAttribute("xCoord", position.getX());
+                writer.writeAttribute("yCoord", position.getY());
                 final List<String> mapLayoutPositionsStream = node.mapLayout2NodeXYPositionMap.entrySet().stream().
                         map(e->Arrays.asList(e.getKey() , "" + e.getValue().getX() , "" + e.getValue().getY())).
                         flatMap(e->e.stream()).
                         collect(Collectors.toList());
                 writer.writeAttribute("mapLayout2NodeXYPositionMap", StringUtils.createEscapedString_asStringList(mapLayoutPositionsStream));
                 
-                writer.writeAttribute("population", Double.toString(node.population));
+                writer.writeAttribute("population", node.population);
                 if (node.siteName != null) writer.writeAttribute("siteName", node.siteName);
-                writer.writeAttribute("isUp", Boolean.toString(node.isUp));
+                writer.writeAttribute("isUp", node.isUp);
                 int pdCounter = 0; for (String pd : node.getPlanningDomains()) 
                 	writer.writeAttribute("planningDomain_" + (pdCounter++), pd); 
                 
                 final SortedSet<NetworkLayer> layersWithIcons = layers.stream().filter(l -> node.getUrlNodeIcon(l) != null).collect(Collectors.toCollection(TreeSet::new));
                 final List<Long> idsLayersWithIcons = layersWithIcons.stream().map(l -> l.getId()).collect(Collectors.toList());
-                writer.writeAttribute("layersWithIconsDefined", CollectionUtils.join(idsLayersWithIcons, " "));
+                writer.writeAttribute("layersWithIconsDefined", LongUtils.toArray(idsLayersWithIcons));
                 for (NetworkLayer layer : layersWithIcons)
                     if (node.getUrlNodeIcon(layer) != null)
                     {
                         writer.writeAttribute("nodeIconURLLayer_" + layer.getId(), node.getUrlNodeIcon(layer).toString());
                         writer.writeAttribute("nodeIconRelativeSizeLayer_" + layer.getId(), "" + node.getNodeIconRelativeSize(layer));
                     }
-                for (String tag : node.tags) { XMLUtils.indent(writer, 2); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+                for (String tag : node.tags) { writer.indent(2); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
                 for (Entry<String, String> entry : node.attributes.entrySet())
                 {
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeEmptyElement("attribute");
                     writer.writeAttribute("key", entry.getKey());
                     writer.writeAttribute("value", entry.getValue());
                 }
 
-                XMLUtils.indent(writer, 1);
+                writer.indent(1);
                 writer.writeEndElement();
             }
 
             for (Resource res : resources)
             {
-                XMLUtils.indent(writer, 1);
+                writer.indent(1);
                 writer.writeStartElement("resource");
 
-                writer.writeAttribute("id", Long.toString(res.id));
+                writer.writeAttribute("id", res.id);
                 writer.writeAttribute("description", res.getDescription());
                 writer.writeAttribute("name", res.getName());
-                writer.writeAttribute("hostNodeId", Long.toString(res.iAttachedToANode()? res.hostNode.get().id : -1));
+                writer.writeAttribute("hostNodeId", res.iAttachedToANode()? res.hostNode.get().id : -1);
                 writer.writeAttribute("type", res.type);
                 writer.writeAttribute("capacityMeasurementUnits", res.capacityMeasurementUnits);
-                writer.writeAttribute("processingTimeToTraversingTrafficInMs", Double.toString(res.processingTimeToTraversingTrafficInMs));
-                writer.writeAttribute("capacity", Double.toString(res.capacity));
+                writer.writeAttribute("processingTimeToTraversingTrafficInMs", res.processingTimeToTraversingTrafficInMs);
+                writer.writeAttribute("capacity", res.capacity);
                 if (res.urlIcon != null) writer.writeAttribute("urlIcon", res.urlIcon.toString());
 
                 List<Double> baseResourceAndOccupiedCapacitiesMap = new LinkedList<Double>();
@@ -6140,31 +6543,31 @@ public class NetPlan extends NetworkElement
                     baseResourceAndOccupiedCapacitiesMap.add((double) br.getKey().id);
                     baseResourceAndOccupiedCapacitiesMap.add(br.getValue());
                 }
-                writer.writeAttribute("baseResourceAndOccupiedCapacitiesMap", CollectionUtils.join(baseResourceAndOccupiedCapacitiesMap, " "));
+                writer.writeAttribute("baseResourceAndOccupiedCapacitiesMap", DoubleUtils.toArray(baseResourceAndOccupiedCapacitiesMap));
 
-                for (String tag : res.tags) { XMLUtils.indent(writer, 2); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+                for (String tag : res.tags) { writer.indent(2); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
                 for (Entry<String, String> entry : res.attributes.entrySet())
                 {
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeEmptyElement("attribute");
                     writer.writeAttribute("key", entry.getKey());
                     writer.writeAttribute("value", entry.getValue());
                 }
 
-                XMLUtils.indent(writer, 1);
+                writer.indent(1);
                 writer.writeEndElement();
             }
 
             for (NetworkLayer layer : layers)
             {
-                XMLUtils.indent(writer, 1);
+                writer.indent(1);
                 writer.writeStartElement("layer");
 
-                writer.writeAttribute("id", Long.toString(layer.id));
+                writer.writeAttribute("id", layer.id);
                 writer.writeAttribute("description", layer.getDescription());
                 writer.writeAttribute("name", layer.getName());
-                writer.writeAttribute("isDefaultLayer", Boolean.toString(defaultLayer == layer));
+                writer.writeAttribute("isDefaultLayer", defaultLayer == layer);
                 writer.writeAttribute("linkCapacityUnitsName", layer.linkCapacityUnitsName);
                 writer.writeAttribute("demandTrafficUnitsName", layer.demandTrafficUnitsName);
                 if (layer.defaultNodeIconURL != null)
@@ -6172,58 +6575,58 @@ public class NetPlan extends NetworkElement
 
                 for (Link link : layer.links)
                 {
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeStartElement("link");
 
-                    writer.writeAttribute("id", Long.toString(link.id));
+                    writer.writeAttribute("id", link.id);
                     writer.writeAttribute("description", link.getDescription());
                     writer.writeAttribute("name", link.getName());
-                    writer.writeAttribute("originNodeId", Long.toString(link.originNode.id));
-                    writer.writeAttribute("destinationNodeId", Long.toString(link.destinationNode.id));
-                    writer.writeAttribute("capacity", Double.toString(link.capacity));
-                    writer.writeAttribute("lengthInKm", Double.toString(link.lengthInKm));
-                    writer.writeAttribute("bidirectionalPairId", Long.toString(link.bidirectionalPair == null? -1 : link.bidirectionalPair.id));
-                    writer.writeAttribute("nominalColor", Integer.toString(link.getNominalColor().getRGB()));
-                    writer.writeAttribute("propagationSpeedInKmPerSecond", Double.toString(link.propagationSpeedInKmPerSecond));
-                    writer.writeAttribute("isUp", Boolean.toString(link.isUp));
-                    writer.writeAttribute("monitoredOrForecastedTraffics", StringUtils.createEscapedString_asStringList(link.getMonitoredOrForecastedCarriedTraffic().toStringList()));
+                    writer.writeAttribute("originNodeId", link.originNode.id);
+                    writer.writeAttribute("destinationNodeId", link.destinationNode.id);
+                    writer.writeAttribute("capacity", link.capacity);
+                    writer.writeAttribute("lengthInKm", link.lengthInKm);
+                    writer.writeAttribute("bidirectionalPairId", link.bidirectionalPair == null? -1 : link.bidirectionalPair.id);
+                    writer.writeAttribute("nominalColor", link.getNominalColor().getRGB());
+                    writer.writeAttribute("propagationSpeedInKmPerSecond", link.propagationSpeedInKmPerSecond);
+                    writer.writeAttribute("isUp", link.isUp);
+                    writer.writeAttribute("monitoredOrForecastedTraffics", StringUtils.createEscapedString_asStringList(compressTrafficSeries? link.getMonitoredOrForecastedCarriedTraffic().toStringListCompressed() : link.getMonitoredOrForecastedCarriedTraffic().toStringList()));
                     writer.writeAttribute("trafficPredictor", StringUtils.createEscapedString_asStringList(link.getTrafficPredictor().isPresent()? Arrays.asList(
                     		link.getTrafficPredictor().get().getTpType().toString() , 
                     		link.getTrafficPredictor().get().computeInitializationString() , 
                     		link.getTrafficPredictor().get().getTpType().isManual() || link.getTrafficPredictor().get().getStatistics() == null? "" : link.getTrafficPredictor().get().getStatistics().getInitializationString() 
                     		)  : Arrays.asList()));
 
-                    for (String tag : link.tags) { XMLUtils.indent(writer, 3); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+                    for (String tag : link.tags) { writer.indent(3); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
                     for (Entry<String, String> entry : link.attributes.entrySet())
                     {
-                        XMLUtils.indent(writer, 3);
+                        writer.indent(3);
                         writer.writeEmptyElement("attribute");
                         writer.writeAttribute("key", entry.getKey());
                         writer.writeAttribute("value", entry.getValue());
                     }
 
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeEndElement();
                 }
 
                 for (Demand demand : layer.demands)
                 {
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeStartElement("demand");
 
-                    writer.writeAttribute("id", Long.toString(demand.id));
+                    writer.writeAttribute("id", demand.id);
                     writer.writeAttribute("description", demand.getDescription());
                     writer.writeAttribute("name", demand.getName());
-                    writer.writeAttribute("ingressNodeId", Long.toString(demand.ingressNode.id));
-                    writer.writeAttribute("egressNodeId", Long.toString(demand.egressNode.id));
-                    writer.writeAttribute("offeredTraffic", Double.toString(demand.offeredTraffic));
+                    writer.writeAttribute("ingressNodeId", demand.ingressNode.id);
+                    writer.writeAttribute("egressNodeId", demand.egressNode.id);
+                    writer.writeAttribute("offeredTraffic", demand.offeredTraffic);
                     writer.writeAttribute("intendedRecoveryType", demand.recoveryType.toString());
                     writer.writeAttribute("routingType", demand.routingType.name());
-                    writer.writeAttribute("bidirectionalPairId", Long.toString(demand.bidirectionalPair == null? -1 : demand.bidirectionalPair.id));
-                    writer.writeAttribute("maximumAcceptableE2EWorstCaseLatencyInMs", Double.toString(demand.maximumAcceptableE2EWorstCaseLatencyInMs));
-                    writer.writeAttribute("offeredTrafficGrowthFactorPerPeriodZeroIsNoGrowth", Double.toString(demand.offeredTrafficGrowthFactorPerPeriodZeroIsNoGrowth));
-                    writer.writeAttribute("monitoredOrForecastedTraffics", StringUtils.createEscapedString_asStringList(demand.getMonitoredOrForecastedOfferedTraffic().toStringList()));
+                    writer.writeAttribute("bidirectionalPairId", demand.bidirectionalPair == null? -1 : demand.bidirectionalPair.id);
+                    writer.writeAttribute("maximumAcceptableE2EWorstCaseLatencyInMs", demand.maximumAcceptableE2EWorstCaseLatencyInMs);
+                    writer.writeAttribute("offeredTrafficGrowthFactorPerPeriodZeroIsNoGrowth", demand.offeredTrafficGrowthFactorPerPeriodZeroIsNoGrowth);
+                    writer.writeAttribute("monitoredOrForecastedTraffics", StringUtils.createEscapedString_asStringList(compressTrafficSeries? demand.getMonitoredOrForecastedOfferedTraffic().toStringListCompressed() : demand.getMonitoredOrForecastedOfferedTraffic().toStringList()));
                     writer.writeAttribute("trafficPredictor", StringUtils.createEscapedString_asStringList(demand.getTrafficPredictor().isPresent()? Arrays.asList(
                     		demand.getTrafficPredictor().get().getTpType().toString() , 
                     		demand.getTrafficPredictor().get().computeInitializationString() , 
@@ -6233,76 +6636,76 @@ public class NetPlan extends NetworkElement
                     
                     for (String type : demand.mandatorySequenceOfTraversedResourceTypes)
                     {
-                        XMLUtils.indent(writer, 2);
+                        writer.indent(2);
                         writer.writeEmptyElement("serviceChainResourceTypeOfSequence");
                         writer.writeAttribute("type", type);
                     }
 
-                    for (String tag : demand.tags) { XMLUtils.indent(writer, 3); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+                    for (String tag : demand.tags) { writer.indent(3); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
                     for (Entry<String, String> entry : demand.attributes.entrySet())
                     {
-                        XMLUtils.indent(writer, 3);
+                        writer.indent(3);
                         writer.writeEmptyElement("attribute");
                         writer.writeAttribute("key", entry.getKey());
                         writer.writeAttribute("value", entry.getValue());
                     }
 
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeEndElement();
                 }
 
                 for (MulticastDemand demand : layer.multicastDemands)
                 {
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeStartElement("multicastDemand");
-                    writer.writeAttribute("id", Long.toString(demand.id));
+                    writer.writeAttribute("id", demand.id);
                     writer.writeAttribute("description", demand.getDescription());
                     writer.writeAttribute("name", demand.getName());
-                    writer.writeAttribute("ingressNodeId", Long.toString(demand.ingressNode.id));
+                    writer.writeAttribute("ingressNodeId", demand.ingressNode.id);
                     List<Long> egressNodeIds = new LinkedList<Long>();
                     for (Node n : demand.egressNodes) egressNodeIds.add(n.id);
-                    writer.writeAttribute("egressNodeIds", CollectionUtils.join(egressNodeIds, " "));
-                    writer.writeAttribute("offeredTraffic", Double.toString(demand.offeredTraffic));
-                    writer.writeAttribute("maximumAcceptableE2EWorstCaseLatencyInMs", Double.toString(demand.maximumAcceptableE2EWorstCaseLatencyInMs));
-                    writer.writeAttribute("offeredTrafficGrowthFactorPerPeriodZeroIsNoGrowth", Double.toString(demand.offeredTrafficGrowthFactorPerPeriodZeroIsNoGrowth));
+                    writer.writeAttribute("egressNodeIds", LongUtils.toArray(egressNodeIds));
+                    writer.writeAttribute("offeredTraffic", demand.offeredTraffic);
+                    writer.writeAttribute("maximumAcceptableE2EWorstCaseLatencyInMs", demand.maximumAcceptableE2EWorstCaseLatencyInMs);
+                    writer.writeAttribute("offeredTrafficGrowthFactorPerPeriodZeroIsNoGrowth", demand.offeredTrafficGrowthFactorPerPeriodZeroIsNoGrowth);
                     writer.writeAttribute("qosType", demand.qosType);
-                    writer.writeAttribute("monitoredOrForecastedTraffics", StringUtils.createEscapedString_asStringList(demand.getMonitoredOrForecastedOfferedTraffic().toStringList()));
+                    writer.writeAttribute("monitoredOrForecastedTraffics", StringUtils.createEscapedString_asStringList(compressTrafficSeries? demand.getMonitoredOrForecastedOfferedTraffic().toStringListCompressed() : demand.getMonitoredOrForecastedOfferedTraffic().toStringList()));
                     writer.writeAttribute("trafficPredictor", StringUtils.createEscapedString_asStringList(demand.getTrafficPredictor().isPresent()? Arrays.asList(
                     		demand.getTrafficPredictor().get().getTpType().toString() , 
                     		demand.getTrafficPredictor().get().computeInitializationString() , 
                     		demand.getTrafficPredictor().get().getTpType().isManual() || demand.getTrafficPredictor().get().getStatistics() == null? "" : demand.getTrafficPredictor().get().getStatistics().getInitializationString() 
                     		)  : Arrays.asList()));
 
-                    for (String tag : demand.tags) { XMLUtils.indent(writer, 3); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+                    for (String tag : demand.tags) { writer.indent(3); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
                     for (Entry<String, String> entry : demand.attributes.entrySet())
                     {
-                        XMLUtils.indent(writer, 3);
+                        writer.indent(3);
                         writer.writeEmptyElement("attribute");
                         writer.writeAttribute("key", entry.getKey());
                         writer.writeAttribute("value", entry.getValue());
                     }
 
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeEndElement();
                 }
 
                 for (MulticastTree tree : layer.multicastTrees)
                 {
-                    XMLUtils.indent(writer, 3);
+                    writer.indent(3);
                     writer.writeStartElement("multicastTree");
 
-                    writer.writeAttribute("id", Long.toString(tree.id));
+                    writer.writeAttribute("id", tree.id);
                     writer.writeAttribute("description", tree.getDescription());
                     writer.writeAttribute("name", tree.getName());
-                    writer.writeAttribute("demandId", Long.toString(tree.demand.id));
-                    writer.writeAttribute("carriedTrafficIfNotFailing", Double.toString(tree.carriedTrafficIfNotFailing));
-                    writer.writeAttribute("occupiedLinkCapacityIfNotFailing", Double.toString(tree.occupiedLinkCapacityIfNotFailing));
+                    writer.writeAttribute("demandId", tree.demand.id);
+                    writer.writeAttribute("carriedTrafficIfNotFailing", tree.carriedTrafficIfNotFailing);
+                    writer.writeAttribute("occupiedLinkCapacityIfNotFailing", tree.occupiedLinkCapacityIfNotFailing);
 
                     List<Long> linkIds = new LinkedList<Long>();
                     for (Link e : tree.linkSet) linkIds.add(e.id);
-                    writer.writeAttribute("currentSetLinks", CollectionUtils.join(linkIds, " "));
+                    writer.writeAttribute("currentSetLinks", LongUtils.toArray(linkIds));
                     /* If the original link set was removed, it is replaced by the current link set */
                     boolean initialLinkSetNotRemoved = true;
                     for (Link e : tree.initialSetLinksWhenWasCreated)
@@ -6314,19 +6717,19 @@ public class NetPlan extends NetworkElement
                     linkIds = new LinkedList<Long>();
                     for (Link e : initialLinkSetNotRemoved ? tree.initialSetLinksWhenWasCreated : tree.linkSet)
                         linkIds.add(e.id);
-                    writer.writeAttribute("initialSetLinks", CollectionUtils.join(linkIds, " "));
+                    writer.writeAttribute("initialSetLinks", LongUtils.toArray(linkIds));
 
-                    for (String tag : tree.tags) { XMLUtils.indent(writer, 3); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+                    for (String tag : tree.tags) { writer.indent(3); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
                     for (Entry<String, String> entry : tree.attributes.entrySet())
                     {
-                        XMLUtils.indent(writer, 3);
+                        writer.indent(3);
                         writer.writeEmptyElement("attribute");
                         writer.writeAttribute("key", entry.getKey());
                         writer.writeAttribute("value", entry.getValue());
                     }
 
-                    XMLUtils.indent(writer, 3);
+                    writer.indent(3);
                     writer.writeEndElement();
                 }
 
@@ -6334,50 +6737,50 @@ public class NetPlan extends NetworkElement
 //                if (layer.routingType == RoutingType.SOURCE_ROUTING)
                 /* source routing information */
                 {
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeStartElement("sourceRouting");
 
                     for (Route route : layer.routes)
                     {
-                        XMLUtils.indent(writer, 3);
+                        writer.indent(3);
                         writer.writeStartElement("route");
 
-                        writer.writeAttribute("id", Long.toString(route.id));
+                        writer.writeAttribute("id", route.id);
                         writer.writeAttribute("description", route.getDescription());
                         writer.writeAttribute("name", route.getName());
-                        writer.writeAttribute("demandId", Long.toString(route.demand.id));
+                        writer.writeAttribute("demandId", route.demand.id);
 
-                        writer.writeAttribute("currentCarriedTrafficIfNotFailing", Double.toString(route.currentCarriedTrafficIfNotFailing));
-                        writer.writeAttribute("currentLinksAndResourcesOccupationIfNotFailing", CollectionUtils.join(route.currentLinksAndResourcesOccupationIfNotFailing, " "));
-                        writer.writeAttribute("currentPath", CollectionUtils.join(NetPlan.getIds(route.currentPath), " "));
-                        writer.writeAttribute("bidirectionalPairId", Long.toString(route.bidirectionalPair == null? -1 : route.bidirectionalPair.id));
+                        writer.writeAttribute("currentCarriedTrafficIfNotFailing", route.currentCarriedTrafficIfNotFailing);
+                        writer.writeAttribute("currentLinksAndResourcesOccupationIfNotFailing", DoubleUtils.toArray(route.currentLinksAndResourcesOccupationIfNotFailing));
+                        writer.writeAttribute("currentPath", LongUtils.toArray(NetPlan.getIds(route.currentPath)));
+                        writer.writeAttribute("bidirectionalPairId", route.bidirectionalPair == null? -1 : route.bidirectionalPair.id);
 
-                        writer.writeAttribute("initialStateCarriedTrafficIfNotFailing", Double.toString(route.initialStateCarriedTrafficIfNotFailing));
-                        writer.writeAttribute("initialStateOccupationIfNotFailing", CollectionUtils.join(route.initialStateOccupationIfNotFailing, " "));
-                        writer.writeAttribute("initialStatePath", CollectionUtils.join(NetPlan.getIds(route.initialStatePath), " "));
+                        writer.writeAttribute("initialStateCarriedTrafficIfNotFailing", route.initialStateCarriedTrafficIfNotFailing);
+                        writer.writeAttribute("initialStateOccupationIfNotFailing", DoubleUtils.toArray(route.initialStateOccupationIfNotFailing));
+                        writer.writeAttribute("initialStatePath", LongUtils.toArray(NetPlan.getIds(route.initialStatePath)));
 
-                        writer.writeAttribute("backupRoutes", CollectionUtils.join(NetPlan.getIds(route.backupRoutes), " "));
+                        writer.writeAttribute("backupRoutes", LongUtils.toArray(NetPlan.getIds(route.backupRoutes)));
 
-                        for (String tag : route.tags) { XMLUtils.indent(writer, 4); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+                        for (String tag : route.tags) { writer.indent(4); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
                         for (Entry<String, String> entry : route.attributes.entrySet())
                         {
-                            XMLUtils.indent(writer, 4);
+                            writer.indent(4);
                             writer.writeEmptyElement("attribute");
                             writer.writeAttribute("key", entry.getKey());
                             writer.writeAttribute("value", entry.getValue());
                         }
 
-                        XMLUtils.indent(writer, 3);
+                        writer.indent(3);
                         writer.writeEndElement();
                     }
 
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeEndElement();
                 } 
                 /* hop-by-hop information */
                 {
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeStartElement("hopByHopRouting");
                     for (Demand d : layer.demands)
                     	for (Entry<Link,Double> fr : d.cacheHbH_frs.entrySet())
@@ -6385,41 +6788,41 @@ public class NetPlan extends NetworkElement
                             final int indexDemand = d.index;
                             final int indexLink = fr.getKey().index;
                             final double splittingRatio = fr.getValue();
-                            XMLUtils.indent(writer, 3);
+                            writer.indent(3);
                             writer.writeEmptyElement("forwardingRule");
-                            writer.writeAttribute("demandId", Long.toString(layer.demands.get(indexDemand).id));
-                            writer.writeAttribute("linkId", Long.toString(layer.links.get(indexLink).id));
-                            writer.writeAttribute("splittingRatio", Double.toString(splittingRatio));
+                            writer.writeAttribute("demandId", layer.demands.get(indexDemand).id);
+                            writer.writeAttribute("linkId", layer.links.get(indexLink).id);
+                            writer.writeAttribute("splittingRatio", splittingRatio);
                     	}
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeEndElement();
                 }
 
-                for (String tag : layer.tags) { XMLUtils.indent(writer, 2); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+                for (String tag : layer.tags) { writer.indent(2); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
                 for (Entry<String, String> entry : layer.attributes.entrySet())
                 {
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeEmptyElement("attribute");
                     writer.writeAttribute("key", entry.getKey());
                     writer.writeAttribute("value", entry.getValue());
                 }
 
-                XMLUtils.indent(writer, 1);
+                writer.indent(1);
                 writer.writeEndElement();
             }
 
             for (SharedRiskGroup srg : srgs)
             {
-                XMLUtils.indent(writer, 1);
+                writer.indent(1);
                 writer.writeStartElement("srg");
 
-                writer.writeAttribute("id", Long.toString(srg.id));
+                writer.writeAttribute("id", srg.id);
                 writer.writeAttribute("description", srg.getDescription());
                 writer.writeAttribute("name", srg.getName());
-                writer.writeAttribute("meanTimeToFailInHours", Double.toString(srg.meanTimeToFailInHours));
-                writer.writeAttribute("meanTimeToRepairInHours", Double.toString(srg.meanTimeToRepairInHours));
-                writer.writeAttribute("isDynamic", Boolean.toString(srg.isDynamicSrg()));
+                writer.writeAttribute("meanTimeToFailInHours", srg.meanTimeToFailInHours);
+                writer.writeAttribute("meanTimeToRepairInHours", srg.meanTimeToRepairInHours);
+                writer.writeAttribute("isDynamic", srg.isDynamicSrg());
                 if (srg.isDynamicSrg())
                 {
                     writer.writeAttribute("dynamicSrgClassName", srg.getDynamicSrgImplementation().getClass().getName());
@@ -6427,22 +6830,22 @@ public class NetPlan extends NetworkElement
                 }
                 else
                 {
-                    writer.writeAttribute("nodes", CollectionUtils.join(NetPlan.getIds(srg.getNodes()), " "));
-                    writer.writeAttribute("links", CollectionUtils.join(NetPlan.getIds(srg.getLinksAllLayers()), " "));
+                    writer.writeAttribute("nodes", LongUtils.toArray(NetPlan.getIds(srg.getNodes())));
+                    writer.writeAttribute("links", LongUtils.toArray(NetPlan.getIds(srg.getLinksAllLayers())));
                 }
                 
 
-                for (String tag : srg.tags) { XMLUtils.indent(writer, 2); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+                for (String tag : srg.tags) { writer.indent(2); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
                 for (Entry<String, String> entry : srg.attributes.entrySet())
                 {
-                    XMLUtils.indent(writer, 2);
+                    writer.indent(2);
                     writer.writeEmptyElement("attribute");
                     writer.writeAttribute("key", entry.getKey());
                     writer.writeAttribute("value", entry.getValue());
                 }
 
-                XMLUtils.indent(writer, 1);
+                writer.indent(1);
                 writer.writeEndElement();
             }
 
@@ -6450,19 +6853,19 @@ public class NetPlan extends NetworkElement
             {
                 for (Entry<Demand, Link> coupling : d_e.demandLinkMapping.entrySet())
                 {
-                    XMLUtils.indent(writer, 1);
+                    writer.indent(1);
                     writer.writeEmptyElement("layerCouplingDemand");
-                    writer.writeAttribute("lowerLayerDemandId", "" + coupling.getKey().id);
-                    writer.writeAttribute("upperLayerLinkId", "" + coupling.getValue().id);
+                    writer.writeAttribute("lowerLayerDemandId", coupling.getKey().id);
+                    writer.writeAttribute("upperLayerLinkId", coupling.getValue().id);
                 }
                 for (Entry<MulticastDemand, SortedSet<Link>> coupling : d_e.multicastDemandLinkMapping.entrySet())
                 {
-                    XMLUtils.indent(writer, 1);
+                    writer.indent(1);
                     writer.writeEmptyElement("layerCouplingMulticastDemand");
                     List<Long> linkIds = new LinkedList<Long>();
                     for (Link e : coupling.getValue()) linkIds.add(e.id);
-                    writer.writeAttribute("lowerLayerDemandId", "" + coupling.getKey().id);
-                    writer.writeAttribute("upperLayerLinkIds", CollectionUtils.join(linkIds, " "));
+                    writer.writeAttribute("lowerLayerDemandId", coupling.getKey().id);
+                    writer.writeAttribute("upperLayerLinkIds", LongUtils.toArray(linkIds));
                 }
             }
             
@@ -6472,42 +6875,31 @@ public class NetPlan extends NetworkElement
                 {
                     if (coupling.isCoupledInSameLayer())
                     {
-                        XMLUtils.indent(writer, 1);
+                        writer.indent(1);
                         writer.writeEmptyElement("sameLayerCouplingDemand");
-                        writer.writeAttribute("layerDemandId", "" + coupling.id);
-                        writer.writeAttribute("layerLinkId", "" + coupling.coupledUpperOrSameLayerLink.id);
+                        writer.writeAttribute("layerDemandId", coupling.id);
+                        writer.writeAttribute("layerLinkId", coupling.coupledUpperOrSameLayerLink.id);
                     }
                 }
             }
             
             
-            for (String tag : this.tags) { XMLUtils.indent(writer, 1); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
+            for (String tag : this.tags) { writer.indent(1); writer.writeEmptyElement("tag"); writer.writeAttribute("value", tag); }
 
             for (Entry<String, String> entry : this.attributes.entrySet())
             {
-                XMLUtils.indent(writer, 1);
+                writer.indent(1);
                 writer.writeEmptyElement("attribute");
                 writer.writeAttribute("key", entry.getKey());
                 writer.writeAttribute("value", entry.getValue());
             }
 
-            XMLUtils.indent(writer, 0);
+            writer.indent(0);
             writer.writeEndElement();
             writer.writeEndDocument();
-            writer.flush();
-        } catch (XMLStreamException e)
-        {
-            throw new RuntimeException(e);
         } finally
         {
-            try
-            {
-                assert writer != null;
-                writer.close();
-            } catch (XMLStreamException e)
-            {
-                e.printStackTrace();
-            }
+            writer.close();
         }
     }
 
@@ -6605,6 +6997,8 @@ public class NetPlan extends NetworkElement
                     affectedNodes.add(node);
                 }
 
+        for (Link link : affectedLinks) link.layer.cache_compiledGraph = null;
+
         SortedSet<Demand> affectedDemandsHopByHopRouting = new TreeSet<>();
         SortedSet<Route> affectedRoutesSourceRouting = new TreeSet<Route>();
         SortedSet<MulticastTree> affectedTrees = new TreeSet<MulticastTree>();
@@ -6620,9 +7014,20 @@ public class NetPlan extends NetworkElement
                 affectedTrees.addAll(n.getOutgoingMulticastTrees(layer)); // for trees without links, only ingress node
 
         //		System.out.println ("affected routes: " + affectedRoutesSourceRouting);
-        for (Demand d : affectedDemandsHopByHopRouting) d.updateHopByHopRoutingToGivenFrs(d.cacheHbH_frs);
-        netPlan.updateFailureStateRoutesAndTrees(affectedRoutesSourceRouting);
-        netPlan.updateFailureStateRoutesAndTrees(affectedTrees);
+        final HopByHopRoutingPropagationEngine propagationEngine = new HopByHopRoutingPropagationEngine();
+        for (Demand d : affectedDemandsHopByHopRouting) d.updateHopByHopRoutingToGivenFrs(d.cacheHbH_frs , propagationEngine);
+
+        /* the routes and trees changing their state are one batch: each link and demand affected (in any layer) is updated once, at the end */
+        beginBatch();
+        try
+        {
+            netPlan.updateFailureStateRoutesAndTrees(affectedRoutesSourceRouting);
+            netPlan.updateFailureStateRoutesAndTrees(affectedTrees);
+        }
+        finally
+        {
+            commit();
+        }
 
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
@@ -6685,7 +7090,7 @@ public class NetPlan extends NetworkElement
         	newFrs.remove(link);
         else
         	newFrs.put(link ,  splittingRatio);
-        demand.updateHopByHopRoutingToGivenFrs(newFrs);
+        demand.updateHopByHopRoutingToGivenFrsOrDefer(newFrs , new HopByHopRoutingPropagationEngine());
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
         return previousValueFr;
     }
@@ -6770,8 +7175,9 @@ public class NetPlan extends NetworkElement
         for (double val : sumOutFrs.values()) if (val > 1 + Configuration.precisionFactor)
         	throw new Net2PlanException ();
 
+        final HopByHopRoutingPropagationEngine propagationEngine = new HopByHopRoutingPropagationEngine();
         for (Demand d : newForwardingRules.keySet())
-        	d.updateHopByHopRoutingToGivenFrs(newForwardingRules.get(d));
+        	d.updateHopByHopRoutingToGivenFrsOrDefer(newForwardingRules.get(d) , propagationEngine);
 
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
@@ -6837,9 +7243,10 @@ public class NetPlan extends NetworkElement
             frMap.put(link, splittingFactor);
         }
 
+        final HopByHopRoutingPropagationEngine propagationEngine = new HopByHopRoutingPropagationEngine();
         for (Demand d : demandsToUpdate)
         	if (!d.isSourceRouting()) 
-        		d.updateHopByHopRoutingToGivenFrs(newFrs.containsKey(d)? newFrs.get(d) : new TreeMap<> ());
+        		d.updateHopByHopRoutingToGivenFrsOrDefer(newFrs.containsKey(d)? newFrs.get(d) : new TreeMap<> () , propagationEngine);
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -7096,11 +7503,13 @@ public class NetPlan extends NetworkElement
             {
             	SortedMap<Demand,SortedMap<Link,Double>> newFrs = GraphUtils.convert_xp2fdeMap(layer.routes);
                 removeAllRoutes(layer);
+                final HopByHopRoutingPropagationEngine propagationEngine = new HopByHopRoutingPropagationEngine();
                 for (Demand d : layer.demands)
                 {
                 	d.routingType = RoutingType.HOP_BY_HOP_ROUTING;
-                	if (newFrs.containsKey(d)) d.updateHopByHopRoutingToGivenFrs(newFrs.get(d));
+                	if (newFrs.containsKey(d)) d.updateHopByHopRoutingToGivenFrs(newFrs.get(d) , propagationEngine);
                 }
+                layer.incrementModificationCounter();
                 break;
             }
 
@@ -7108,6 +7517,9 @@ public class NetPlan extends NetworkElement
             {
 //            	ProfileUtils.printTime("Start setRoutingType -- to SR");
             	final SortedSet<Demand> originalDemandsHbhRouted = new TreeSet<> (getDemandsHopByHopRouted(layer));
+                /* the routes are created from the current hop-by-hop traffic, then it cannot wait to the end of the batch */
+                for (Demand d : originalDemandsHbhRouted)
+                	if (cache_demandsPendingHopByHopUpdate.remove(d)) d.updateHopByHopRoutingToGivenFrs(d.cacheHbH_frs);
                 final DoubleMatrix2D trafficInLinks_xde = getMatrixDemand2LinkTrafficCarried(originalDemandsHbhRouted , layer);
 //            	ProfileUtils.printTime("Start setRoutingType -- to SR -- 1");
 //                for (Link e : layer.links)
@@ -7121,6 +7533,7 @@ public class NetPlan extends NetworkElement
 
             	for (Demand d : originalDemandsHbhRouted)
                     d.routingType = RoutingType.SOURCE_ROUTING;
+                layer.incrementModificationCounter();
 
 //            	ProfileUtils.printTime("Start setRoutingType -- to SR -- 2");
                 List<Demand> d_p = new LinkedList<Demand>();
@@ -7193,11 +7606,13 @@ public class NetPlan extends NetworkElement
         if (offeredTrafficVector.size() != layer.demands.size()) throw new Net2PlanException("Wrong veector size");
         if (offeredTrafficVector.size() > 0) if (offeredTrafficVector.getMinLocation()[0] < 0)
             throw new Net2PlanException("Offered traffic must be greater or equal than zero");
+        final HopByHopRoutingPropagationEngine propagationEngine = new HopByHopRoutingPropagationEngine();
         for (Demand d : layer.demands)
         {
             d.offeredTraffic = offeredTrafficVector.get(d.index);
-            if (d.routingType == RoutingType.HOP_BY_HOP_ROUTING) d.updateHopByHopRoutingToGivenFrs(d.cacheHbH_frs);
+            if (d.routingType == RoutingType.HOP_BY_HOP_ROUTING) d.updateHopByHopRoutingToGivenFrs(d.cacheHbH_frs , propagationEngine);
         }
+        layer.incrementModificationCounter();
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -7241,6 +7656,7 @@ public class NetPlan extends NetworkElement
             throw new Net2PlanException("Offered traffic must be greater or equal than zero");
         for (MulticastDemand d : layer.multicastDemands)
             d.offeredTraffic = offeredTrafficVector.get(d.index);
+        layer.incrementModificationCounter();
         if (ErrorHandling.isDebugEnabled()) this.checkCachesConsistency();
     }
 
@@ -7697,7 +8113,7 @@ public class NetPlan extends NetworkElement
 //		return m;
 //	}
 
-    void checkCachesConsistency(List<? extends NetworkElement> list, SortedMap<Long, ? extends NetworkElement> cache, boolean mustBeSameSize)
+    void checkCachesConsistency(List<? extends NetworkElement> list, LongIdIndex<? extends NetworkElement> cache, boolean mustBeSameSize)
     {
         if (mustBeSameSize)
             if (cache.size() != list.size()) throw new RuntimeException("Bad: cache: " + cache + ", list: " + list);
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.interfaces.networkDesign;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * <p>An immutable version of a design, e.g. each of the states kept to undo the user changes, or the design before running an algorithm
+ * that may fail. A new design equal to the one in the snapshot is obtained with {@link #restore()}.</p>
+ *
+ * <p>The state of each node, resource, link, demand, multicast demand and tree, route, forwarding rule, SRG and layer is kept in its own record:
+ * the part of the binary {@code .n2p} document (see {@link NetPlan#saveToBinaryOutputStream(java.io.OutputStream)}) that describes it. A snapshot
+ * taken from a previous one (see {@link #of(NetPlan, NetPlanSnapshot)}) shares with it the records of the elements that did not change, so
+ * a sequence of snapshots of a design, with a few changes between them, keeps a copy of the design, plus a record per element changed.
+ * Taking a snapshot writes each element once, to compare it with its previous record, and keeps nothing for the unchanged elements. It is
+ * cheaper than a {@link NetPlan#copy()} of the design, that creates all the elements and their caches again.</p>
+ *
+ * @author Pablo Pavon-Marino
+ */
+public final class NetPlanSnapshot
+{
+	/* The elements that contain other elements: their start (with their attributes) and their end are records on their own */
+	private static final List<String> CONTAINER_ELEMENTS = Arrays.asList("network" , "layer" , "sourceRouting" , "hopByHopRouting");
+
+	/* The records in the order of the document. The binary document without dictionary is the concatenation of them */
+	final Record [] records;
+
+	private NetPlanSnapshot (Record [] records)
+	{
+		this.records = records;
+	}
+
+	/**
+	 * <p>Takes a snapshot of the given design. The design is not modified.</p>
+	 * @param netPlan the design
+	 * @return the snapshot
+	 */
+	public static NetPlanSnapshot of (NetPlan netPlan)
+	{
+		return of (netPlan , null);
+	}
+
+	/**
+	 * <p>Takes a snapshot of the given design, sharing with the given previous snapshot (e.g. the one of the same design before the last change) the
+	 * records of the elements that are the same in both. The design is not modified.</p>
+	 * @param netPlan the design
+	 * @param previous the snapshot to share the records with, or {@code null} if none
+	 * @return the snapshot
+	 */
+	public static NetPlanSnapshot of (NetPlan netPlan , NetPlanSnapshot previous)
+	{
+		final RecordWriter writer = new RecordWriter(previous);
+		try
+		{
+			netPlan.saveDocument(writer , true);
+		} catch (XMLStreamException e)
+		{
+			throw new RuntimeException(e);
+		}
+		return new NetPlanSnapshot(writer.records.toArray(new Record [writer.records.size()]));
+	}
+
+	/**
+	 * <p>Returns a new design, equal to the one in the snapshot. The snapshot is not changed, so it can be restored again.</p>
+	 * @return the design
+	 */
+	public NetPlan restore ()
+	{
+		return new NetPlan(new RecordsInputStream(records));
+	}
+
+	/* The bytes of the part of the document of an element. Two records with the same bytes are the same */
+	static final class Record
+	{
+		private final byte [] bytes;
+		private final int length;
+		private final int hash;
+
+		private Record (byte [] bytes , int length)
+		{
+			this.bytes = bytes;
+			this.length = length;
+			int h = 1;
+			for (int cont = 0; cont < length ; cont ++) h = 31 * h + bytes [cont];
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode () { return hash; }
+
+		@Override
+		public boolean equals (Object o)
+		{
+			if (this == o) return true;
+			if (!(o instanceof Record)) return false;
+			final Record r = (Record) o;
+			if ((r.length != length) || (r.hash != hash)) return false;
+			for (int cont = 0; cont < length ; cont ++) if (r.bytes [cont] != bytes [cont]) return false;
+			return true;
+		}
+	}
+
+	/* Writes the document in binary without dictionary, cutting it in a record per element. Each record equal to one in the previous snapshot
+	 * (or to a previous one in this snapshot) is replaced by it */
+	private static final class RecordWriter implements IDocumentWriterNetPlan
+	{
+		private final Map<Record,Record> pool = new HashMap<> ();
+		private final List<Record> records = new ArrayList<> ();
+		private final Sink sink = new Sink ();
+		private final DocumentWriterNetPlanBinary writer = new DocumentWriterNetPlanBinary(sink , false);
+		private int depthInElement = 0; // 0 if the last element open is a container
+
+		private RecordWriter (NetPlanSnapshot previous)
+		{
+			if (previous != null) for (Record r : previous.records) pool.put(r , r);
+		}
+
+		@Override
+		public void writeStartElement (String name) throws XMLStreamException
+		{
+			if (depthInElement == 0)
+			{
+				endRecord();
+				if (!CONTAINER_ELEMENTS.contains(name)) depthInElement = 1;
+			}
+			else depthInElement ++;
+			writer.writeStartElement(name);
+		}
+
+		@Override
+		public void writeEmptyElement (String name) throws XMLStreamException
+		{
+			if (depthInElement == 0) endRecord();
+			writer.writeEmptyElement(name);
+		}
+
+		@Override
+		public void writeEndElement () throws XMLStreamException
+		{
+			if (depthInElement == 0) { endRecord(); writer.writeEndElement(); return; }
+			writer.writeEndElement();
+			if (-- depthInElement == 0) endRecord();
+		}
+
+		@Override
+		public void writeAttribute (String name , String value) throws XMLStreamException { writer.writeAttribute(name , value); }
+
+		@Override
+		public void writeAttribute (String name , long value) throws XMLStreamException { writer.writeAttribute(name , value); }
+
+		@Override
+		public void writeAttribute (String name , double value) throws XMLStreamException { writer.writeAttribute(name , value); }
+
+		@Override
+		public void writeAttribute (String name , boolean value) throws XMLStreamException { writer.writeAttribute(name , value); }
+
+		@Override
+		public void writeAttribute (String name , long [] values) throws XMLStreamException { writer.writeAttribute(name , values); }
+
+		@Override
+		public void writeAttribute (String name , double [] values) throws XMLStreamException { writer.writeAttribute(name , values); }
+
+		@Override
+		public void indent (int level) { }
+
+		@Override
+		public void writeEndDocument () throws XMLStreamException
+		{
+			writer.writeEndDocument();
+			endRecord();
+		}
+
+		@Override
+		public void close () { }
+
+		/* The bytes written since the last record are a new record */
+		private void endRecord () throws XMLStreamException
+		{
+			writer.flushWrittenElements();
+			if (sink.size() == 0) return;
+			Record r = pool.get(new Record(sink.getBytes() , sink.size()));
+			if (r == null)
+			{
+				final byte [] bytes = Arrays.copyOf(sink.getBytes() , sink.size());
+				r = new Record(bytes , bytes.length);
+				pool.put(r , r);
+			}
+			records.add(r);
+			sink.reset();
+		}
+	}
+
+	private static final class Sink extends ByteArrayOutputStream
+	{
+		private byte [] getBytes () { return buf; }
+	}
+
+	private static final class RecordsInputStream extends InputStream
+	{
+		private final Record [] records;
+		private int recordIndex = 0;
+		private int position = 0;
+
+		private RecordsInputStream (Record [] records) { this.records = records; }
+
+		@Override
+		public int read ()
+		{
+			if (!moveToNextByte()) return -1;
+			return records [recordIndex].bytes [position ++] & 0xFF;
+		}
+
+		@Override
+		public int read (byte [] b , int off , int len)
+		{
+			if (len == 0) return 0;
+			if (!moveToNextByte()) return -1;
+			final int n = Math.min(len , records [recordIndex].length - position);
+			System.arraycopy(records [recordIndex].bytes , position , b , off , n);
+			position += n;
+			return n;
+		}
+
+		/* Returns false if there are no more bytes */
+		private boolean moveToNextByte ()
+		{
+			while ((recordIndex < records.length) && (position == records [recordIndex].length)) { recordIndex ++; position = 0; }
+			return recordIndex < records.length;
+		}
+	}
+}
@@ -19,6 +19,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.function.Function;
 
 import com.net2plan.internal.AttributeMap;
 import com.net2plan.internal.Constants.NetworkElementType;
@@ -38,6 +39,19 @@ public abstract class NetworkElement implements Comparable<NetworkElement>
 {
 	private final static String MATRIX_COLSEPARATOR = " ";
 	private final static String MATRIX_ROWSEPARATOR = ";";
+	private final static Function<String,Double> PARSER_DOUBLE = Double::parseDouble;
+	private final static Function<String,List<Double>> PARSER_DOUBLELIST = val -> 
+	{
+		final String [] parts = val.split(MATRIX_COLSEPARATOR,-1);
+		final List<Double> res = new ArrayList<> (parts.length);
+		for (String part : parts)
+		{
+			if (part.equals("")) continue;
+			res.add(Double.parseDouble(part));
+		}
+		return res;
+	};
+	private final static Function<String,List<String>> PARSER_STRINGLIST = val -> StringUtils.readEscapedString_asStringList (val , null);
 
 	protected NetPlan netPlan;
 	final protected long id;
@@ -167,12 +181,25 @@ public abstract class NetworkElement implements Comparable<NetworkElement>
 	 */
 	public Double getAttributeAsDouble (String key , Double defaultValue)
 	{
-		final String val = attributes.get(key);
-		if (val == null) return defaultValue;
-		try 
-		{
-			return Double.parseDouble(val);
-		} catch (Exception ee) { return defaultValue; }
+		final Double val = attributes.getParsedValue(key, PARSER_DOUBLE);
+		return val == null? defaultValue : val;
+	}
+
+	/**
+	 * Returns the value of a given attribute for this network element, parsed with the given function. The parsed value is kept, and returned in
+	 * next calls with the same function object until the attribute is set again, so the function should be a constant, and the returned object
+	 * should not be modified (mutable objects should be copied)
+	 * @param <T> the type of the parsed value
+	 * @param key Attribute name
+	 * @param parser the function parsing the attribute value
+	 * @param defaultValue default value to return if not found, or could not be parsed (the function returned null or raised an exception)
+	 * @return see above
+	 */
+	public <T> T getAttributeAsParsedValue (String key , Function<String,T> parser , T defaultValue)
+	{
+		checkAttachedToNetPlanObject();
+		final T val = attributes.getParsedValue(key, parser);
+		return val == null? defaultValue : val;
 	}
 	
 	/**
@@ -251,19 +278,8 @@ public abstract class NetworkElement implements Comparable<NetworkElement>
 	public List<Double> getAttributeAsDoubleList (String key , List<Double> defaultValue)
 	{
 		checkAttachedToNetPlanObject();
-		final String val = attributes.get(key);
-		if (val == null) return defaultValue;  
-		try 
-		{
-			final String [] parts = val.split(MATRIX_COLSEPARATOR,-1);
-			final List<Double> res = new ArrayList<> (parts.length);
-			for (String part : parts)
-			{
-				if (part.equals("")) continue;
-				res.add(Double.parseDouble(part));
-			}
-			return res;
-		} catch (Exception ee) { ee.printStackTrace();return defaultValue; }
+		final List<Double> val = attributes.getParsedValue(key, PARSER_DOUBLELIST);
+		return val == null? defaultValue : new ArrayList<> (val);
 	}
 
 	/**
@@ -275,9 +291,8 @@ public abstract class NetworkElement implements Comparable<NetworkElement>
 	public List<String> getAttributeAsStringList (String key , List<String> defaultValue)
 	{
 		checkAttachedToNetPlanObject();
-		final String val = attributes.get(key);
-		if (val == null) return defaultValue;  
-		return StringUtils.readEscapedString_asStringList (val , defaultValue);
+		final List<String> val = attributes.getParsedValue(key, PARSER_STRINGLIST);
+		return val == null? defaultValue : new ArrayList<> (val);
 	}
 	
 	/**
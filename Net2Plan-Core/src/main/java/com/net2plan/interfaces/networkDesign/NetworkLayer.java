@@ -13,6 +13,8 @@ package com.net2plan.interfaces.networkDesign;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -20,10 +22,18 @@ import java.util.SortedMap;
 import java.util.Map.Entry;
 import java.util.SortedSet;
 import java.util.SortedSet;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.Sets;
+
+import cern.colt.matrix.tdouble.DoubleFactory1D;
+import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import com.net2plan.internal.AttributeMap;
+import com.net2plan.libraries.CompiledGraph;
 import com.net2plan.utils.Pair;
 
 /** <p>This class contains a representation of a network layer. This is an structure which contains a set of demands, multicast demands and links. 
@@ -60,6 +70,23 @@ public class NetworkLayer extends NetworkElement
 	SortedMap<Pair<Node,Node>,SortedSet<Link>> cache_nodePairLinksThisLayer;
 	SortedMap<Pair<Node,Node>,SortedSet<Demand>> cache_nodePairDemandsThisLayer;
 	SortedMap<String,Pair<SortedSet<Demand>,SortedSet<MulticastDemand>>> cache_qosTypes2DemandMap;
+	CompiledGraph cache_compiledGraph;
+	/* Matrices that only depend on the nodes, links and route paths of this layer. The getters in NetPlan return copies of them */
+	DoubleMatrix2D cache_matrixNodeLinkAdjacency;
+	DoubleMatrix2D cache_matrixNodeLinkIncidence;
+	DoubleMatrix2D cache_matrixNodeLinkIncomingIncidence;
+	DoubleMatrix2D cache_matrixNodeLinkOutgoingIncidence;
+	DoubleMatrix2D cache_matrixLink2RouteAssignment;
+	/* Incremented each time the traffic, the occupation, the capacity or the failure state of the elements of this layer may have changed, or
+	 * elements were added or removed. The values below are kept while it does not change. The getters in NetPlan return copies of them, or read-only views */
+	long modificationCounter;
+	final VersionedValue<DoubleMatrix1D> cache_vectorLinkCarriedTraffic = new VersionedValue<> (() -> computeVectorLinks(Link::getCarriedTraffic));
+	final VersionedValue<DoubleMatrix1D> cache_vectorLinkOccupiedCapacity = new VersionedValue<> (() -> computeVectorLinks(Link::getOccupiedCapacity));
+	final VersionedValue<DoubleMatrix1D> cache_vectorDemandOfferedTraffic = new VersionedValue<> (() -> computeVectorDemands(Demand::getOfferedTraffic));
+	final VersionedValue<DoubleMatrix1D> cache_vectorDemandCarriedTraffic = new VersionedValue<> (() -> computeVectorDemands(Demand::getCarriedTraffic));
+	final VersionedValue<DoubleMatrix1D> cache_vectorRouteCarriedTraffic = new VersionedValue<> (() -> computeVectorRoutes(Route::getCarriedTraffic));
+	final VersionedValue<DoubleMatrix1D> cache_vectorRouteOccupiedCapacity = new VersionedValue<> (() -> computeVectorRoutes(Route::getOccupiedCapacity));
+	final VersionedValue<DoubleMatrix2D> cache_matrixDemand2LinkTrafficCarried = new VersionedValue<> (() -> computeMatrixDemand2LinkTrafficCarried(demands));
 	
 	URL defaultNodeIconURL;
 
@@ -93,6 +120,8 @@ public class NetworkLayer extends NetworkElement
 		this.cache_nodePairLinksThisLayer = new TreeMap<> ();
 		this.cache_nodePairDemandsThisLayer = new TreeMap<> ();
 		this.cache_qosTypes2DemandMap = new TreeMap<> ();
+		this.cache_compiledGraph = null;
+		invalidateCachedMatrices();
 
 //		this.forwardingRulesNoFailureState_f_de = null;
 //		this.forwardingRulesCurrentFailureState_x_de = null;
@@ -121,6 +150,8 @@ public class NetworkLayer extends NetworkElement
 		this.cache_multicastTreesTravLinkZeroCap.clear(); for (MulticastTree t : origin.cache_multicastTreesTravLinkZeroCap) this.cache_multicastTreesTravLinkZeroCap.add(this.netPlan.getMulticastTreeFromId (t.id));
 		this.cache_nodePairLinksThisLayer.clear(); for (Entry<Pair<Node,Node>,SortedSet<Link>> entry : origin.cache_nodePairLinksThisLayer.entrySet()) this.cache_nodePairLinksThisLayer.put(Pair.of(this.netPlan.getNodeFromId(entry.getKey().getFirst().getId()) , this.netPlan.getNodeFromId(entry.getKey().getSecond().getId())) , (SortedSet<Link>) (SortedSet<?>) this.netPlan.translateCollectionToThisNetPlan(entry.getValue()));
 		this.cache_nodePairDemandsThisLayer.clear(); for (Entry<Pair<Node,Node>,SortedSet<Demand>> entry : origin.cache_nodePairDemandsThisLayer.entrySet()) this.cache_nodePairDemandsThisLayer.put(Pair.of(this.netPlan.getNodeFromId(entry.getKey().getFirst().getId()) , this.netPlan.getNodeFromId(entry.getKey().getSecond().getId())) , (SortedSet<Demand>) (SortedSet<?>) this.netPlan.translateCollectionToThisNetPlan(entry.getValue()));
+		this.cache_compiledGraph = null;
+		invalidateCachedMatrices();
 		this.cache_qosTypes2DemandMap.clear(); for (Entry<String,Pair<SortedSet<Demand>,SortedSet<MulticastDemand>>> entry : origin.cache_qosTypes2DemandMap.entrySet()) this.cache_qosTypes2DemandMap.put(entry.getKey() , Pair.of((SortedSet<Demand>) (SortedSet<?>) this.netPlan.translateCollectionToThisNetPlan(entry.getValue().getFirst()) , (SortedSet<MulticastDemand>) (SortedSet<?>) this.netPlan.translateCollectionToThisNetPlan(entry.getValue().getSecond())));
 		
 		for (Link e : origin.links) this.links.get(e.index).copyFrom(e);
@@ -135,6 +166,128 @@ public class NetworkLayer extends NetworkElement
 	 */
 	public boolean isDefaultLayer () { return netPlan.getNetworkLayerDefault() == this; }
 
+	/** Returns the snapshot of the graph with all the nodes in the design, and all the links in this layer, compiled into primitive arrays, 
+	 * where the node and link positions are their indexes. The snapshot is kept until links of this layer are added or removed, change its failure state 
+	 * (or its end nodes do), or nodes are added or removed. Then, it can be reused by the shortest path algorithms in {@link com.net2plan.libraries.GraphUtils}
+	 * @return see above
+	 */
+	public CompiledGraph getCompiledGraph ()
+	{
+		checkAttachedToNetPlanObject();
+		CompiledGraph res = cache_compiledGraph;
+		if (res == null) { res = CompiledGraph.of(netPlan.nodes, links); this.cache_compiledGraph = res; }
+		return res;
+	}
+
+	/* Called when the traffic, the occupation, the capacity or the failure state of the elements of this layer may have changed, or elements were added or
+	 * removed: the cached values are not valid anymore */
+	void incrementModificationCounter ()
+	{
+		this.modificationCounter ++;
+	}
+
+	/* Called when nodes or links are added or removed: the link indexes may change, so the link-route matrix is dropped as well */
+	void invalidateCachedMatrices ()
+	{
+		incrementModificationCounter();
+		this.cache_matrixNodeLinkAdjacency = null;
+		this.cache_matrixNodeLinkIncidence = null;
+		this.cache_matrixNodeLinkIncomingIncidence = null;
+		this.cache_matrixNodeLinkOutgoingIncidence = null;
+		this.cache_matrixLink2RouteAssignment = null;
+	}
+
+	DoubleMatrix2D computeMatrixNodeLinkAdjacency ()
+	{
+		final DoubleMatrix2D delta_nn = DoubleFactory2D.sparse.make(netPlan.nodes.size(), netPlan.nodes.size());
+		for (Link e : links)
+			delta_nn.set(e.originNode.index, e.destinationNode.index, delta_nn.get(e.originNode.index, e.destinationNode.index) + 1);
+		return delta_nn;
+	}
+
+	DoubleMatrix2D computeMatrixNodeLinkIncidence (boolean outgoing , boolean incoming)
+	{
+		final DoubleMatrix2D delta_ne = DoubleFactory2D.sparse.make(netPlan.nodes.size(), links.size());
+		for (Link e : links)
+		{
+			if (outgoing) delta_ne.set(e.originNode.index, e.index, 1);
+			if (incoming) delta_ne.set(e.destinationNode.index, e.index, outgoing? -1 : 1);
+		}
+		return delta_ne;
+	}
+
+	DoubleMatrix2D computeMatrixLink2RouteAssignment ()
+	{
+		final DoubleMatrix2D delta_er = DoubleFactory2D.sparse.make(links.size(), routes.size());
+		for (Route r : routes)
+			for (Link e : r.cache_seqLinksRealPath) delta_er.set(e.index, r.index, delta_er.get(e.index, r.index) + 1);
+		return delta_er;
+	}
+
+	DoubleMatrix1D computeVectorLinks (ToDoubleFunction<Link> value)
+	{
+		final DoubleMatrix1D res = DoubleFactory1D.dense.make(links.size());
+		for (Link e : links) res.set(e.index, value.applyAsDouble(e));
+		return res;
+	}
+
+	DoubleMatrix1D computeVectorDemands (ToDoubleFunction<Demand> value)
+	{
+		final DoubleMatrix1D res = DoubleFactory1D.dense.make(demands.size());
+		for (Demand d : demands) res.set(d.index, value.applyAsDouble(d));
+		return res;
+	}
+
+	DoubleMatrix1D computeVectorRoutes (ToDoubleFunction<Route> value)
+	{
+		final DoubleMatrix1D res = DoubleFactory1D.dense.make(routes.size());
+		for (Route r : routes) res.set(r.index, value.applyAsDouble(r));
+		return res;
+	}
+
+	DoubleMatrix2D computeMatrixDemand2LinkTrafficCarried (Collection<Demand> demandsOfInterest)
+	{
+		final DoubleMatrix2D x_de = DoubleFactory2D.sparse.make(demands.size(), links.size());
+		for (Demand d : demandsOfInterest)
+			if (d.isSourceRouting())
+			{
+				for (Route r : d.getRoutes())
+					for (Link e : r.cache_seqLinksRealPath)
+						x_de.set(d.index, e.index, x_de.get(d.index, e.index) + r.getCarriedTraffic());
+			}
+			else
+			{
+				for (Entry<Link,Pair<Double,Double>> xde : d.cacheHbH_normCarriedOccupiedPerLinkCurrentState.entrySet())
+					x_de.set(d.index, xde.getKey().index, xde.getValue().getSecond());
+			}
+		return x_de;
+	}
+
+	/* A value computed from the state of the layer, valid while the modification counter of the layer does not change. The value is kept together
+	 * with the count when it was computed, so the threads reading it at the same time see a consistent pair */
+	final class VersionedValue<T>
+	{
+		private final Supplier<T> computation;
+		private volatile Pair<Long,T> countAndValue;
+
+		VersionedValue (Supplier<T> computation) { this.computation = computation; }
+
+		T get ()
+		{
+			Pair<Long,T> res = countAndValue;
+			final long count = modificationCounter;
+			if ((res == null) || (res.getFirst() != count)) { res = Pair.unmodifiableOf(count, computation.get()); this.countAndValue = res; }
+			return res.getSecond();
+		}
+
+		/* For debug purposes: the value kept, if still valid, must be the same as the one computed now */
+		void checkCachesConsistency ()
+		{
+			final Pair<Long,T> res = countAndValue;
+			if ((res != null) && (res.getFirst() == modificationCounter) && !res.getSecond().equals(computation.get())) throw new RuntimeException ("Bad: cached value not updated after a change in layer " + NetworkLayer.this);
+		}
+	}
+
 	/** Returns true if the provided network layer is a deep copy of this
 	 * @param e2 the other element
 	 * @return see above
@@ -292,6 +445,19 @@ public class NetworkLayer extends NetworkElement
 		}
 		for (Demand d : this.demands) if (!this.cache_nodePairDemandsThisLayer.get(Pair.of(d.getIngressNode(),d.getEgressNode())).contains(d)) throw new RuntimeException ();
 		for (Link e : this.links) if (!this.cache_nodePairLinksThisLayer.get(Pair.of(e.getOriginNode(),e.getDestinationNode())).contains(e)) throw new RuntimeException ();
+		if (cache_compiledGraph != null)
+		{
+			if (cache_compiledGraph.getNumberOfNodes() != netPlan.nodes.size() || cache_compiledGraph.getNumberOfLinks() != links.size()) throw new RuntimeException ();
+			for (Node n : netPlan.nodes) if (cache_compiledGraph.getNode(n.index) != n) throw new RuntimeException ();
+			for (Link e : links) if (cache_compiledGraph.getLink(e.index) != e || cache_compiledGraph.isLinkUp(e.index) != (e.isUp && e.originNode.isUp && e.destinationNode.isUp)) throw new RuntimeException ();
+		}
+		if (cache_matrixNodeLinkAdjacency != null && !cache_matrixNodeLinkAdjacency.equals(computeMatrixNodeLinkAdjacency())) throw new RuntimeException ();
+		if (cache_matrixNodeLinkIncidence != null && !cache_matrixNodeLinkIncidence.equals(computeMatrixNodeLinkIncidence(true , true))) throw new RuntimeException ();
+		if (cache_matrixNodeLinkIncomingIncidence != null && !cache_matrixNodeLinkIncomingIncidence.equals(computeMatrixNodeLinkIncidence(false , true))) throw new RuntimeException ();
+		if (cache_matrixNodeLinkOutgoingIncidence != null && !cache_matrixNodeLinkOutgoingIncidence.equals(computeMatrixNodeLinkIncidence(true , false))) throw new RuntimeException ();
+		if (cache_matrixLink2RouteAssignment != null && !cache_matrixLink2RouteAssignment.equals(computeMatrixLink2RouteAssignment())) throw new RuntimeException ();
+		for (VersionedValue<?> value : Arrays.asList(cache_vectorLinkCarriedTraffic, cache_vectorLinkOccupiedCapacity, cache_vectorDemandOfferedTraffic, cache_vectorDemandCarriedTraffic, cache_vectorRouteCarriedTraffic, cache_vectorRouteOccupiedCapacity, cache_matrixDemand2LinkTrafficCarried))
+			value.checkCachesConsistency();
 	}
 
 
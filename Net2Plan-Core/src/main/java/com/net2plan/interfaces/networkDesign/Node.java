@@ -13,16 +13,21 @@ package com.net2plan.interfaces.networkDesign;
 
 import java.awt.geom.Point2D;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.Map.Entry;
 import java.util.SortedSet;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.net2plan.internal.AttributeMap;
@@ -60,6 +65,15 @@ public class Node extends NetworkElement
 	SortedSet<Route> cache_nodeAssociatedRoutes;
 	SortedSet<MulticastTree> cache_nodeAssociatedulticastTrees;
 	SortedSet<Resource> cache_nodeResources;
+	/* The links, demands, multicast demands, routes and trees above, per layer, so the getters of one layer do not filter the elements of all the layers */
+	Map<NetworkLayer,SortedSet<Link>> cache_nodeIncomingLinksPerLayer;
+	Map<NetworkLayer,SortedSet<Link>> cache_nodeOutgoingLinksPerLayer;
+	Map<NetworkLayer,SortedSet<Demand>> cache_nodeIncomingDemandsPerLayer;
+	Map<NetworkLayer,SortedSet<Demand>> cache_nodeOutgoingDemandsPerLayer;
+	Map<NetworkLayer,SortedSet<MulticastDemand>> cache_nodeIncomingMulticastDemandsPerLayer;
+	Map<NetworkLayer,SortedSet<MulticastDemand>> cache_nodeOutgoingMulticastDemandsPerLayer;
+	Map<NetworkLayer,SortedSet<Route>> cache_nodeAssociatedRoutesPerLayer;
+	Map<NetworkLayer,SortedSet<MulticastTree>> cache_nodeAssociatedulticastTreesPerLayer;
 	SortedMap<NetworkLayer,Pair<URL,Double>> mapLayer2URLSpecificIcon;
 	
 	/**
@@ -98,6 +112,14 @@ public class Node extends NetworkElement
 		this.cache_nodeResources = new TreeSet<Resource> ();
 		this.cache_nodeAssociatedRoutes = new TreeSet<Route> ();
 		this.cache_nodeAssociatedulticastTrees = new TreeSet<MulticastTree> ();
+		this.cache_nodeIncomingLinksPerLayer = new HashMap<> ();
+		this.cache_nodeOutgoingLinksPerLayer = new HashMap<> ();
+		this.cache_nodeIncomingDemandsPerLayer = new HashMap<> ();
+		this.cache_nodeOutgoingDemandsPerLayer = new HashMap<> ();
+		this.cache_nodeIncomingMulticastDemandsPerLayer = new HashMap<> ();
+		this.cache_nodeOutgoingMulticastDemandsPerLayer = new HashMap<> ();
+		this.cache_nodeAssociatedRoutesPerLayer = new HashMap<> ();
+		this.cache_nodeAssociatedulticastTreesPerLayer = new HashMap<> ();
 		this.mapLayer2URLSpecificIcon = new TreeMap <> ();
 		this.planningDomains = new TreeSet<> ();
 		this.population = 0;
@@ -126,6 +148,66 @@ public class Node extends NetworkElement
 		this.cache_nodeResources.clear(); for (Resource r : origin.cache_nodeResources) this.cache_nodeResources.add(this.netPlan.getResourceFromId(r.id));
 		this.cache_nodeAssociatedRoutes.clear (); for (Route r : origin.cache_nodeAssociatedRoutes) this.cache_nodeAssociatedRoutes.add(this.netPlan.getRouteFromId (r.id));
 		this.cache_nodeAssociatedulticastTrees.clear (); for (MulticastTree t : origin.cache_nodeAssociatedulticastTrees) this.cache_nodeAssociatedulticastTrees.add(this.netPlan.getMulticastTreeFromId(t.id));
+		rebuildCachePerLayer(cache_nodeIncomingLinksPerLayer , cache_nodeIncomingLinks , e -> e.layer);
+		rebuildCachePerLayer(cache_nodeOutgoingLinksPerLayer , cache_nodeOutgoingLinks , e -> e.layer);
+		rebuildCachePerLayer(cache_nodeIncomingDemandsPerLayer , cache_nodeIncomingDemands , d -> d.layer);
+		rebuildCachePerLayer(cache_nodeOutgoingDemandsPerLayer , cache_nodeOutgoingDemands , d -> d.layer);
+		rebuildCachePerLayer(cache_nodeIncomingMulticastDemandsPerLayer , cache_nodeIncomingMulticastDemands , d -> d.layer);
+		rebuildCachePerLayer(cache_nodeOutgoingMulticastDemandsPerLayer , cache_nodeOutgoingMulticastDemands , d -> d.layer);
+		rebuildCachePerLayer(cache_nodeAssociatedRoutesPerLayer , cache_nodeAssociatedRoutes , r -> r.layer);
+		rebuildCachePerLayer(cache_nodeAssociatedulticastTreesPerLayer , cache_nodeAssociatedulticastTrees , t -> t.layer);
+	}
+
+	/* Adds the element to one of the caches of the node, and to the same cache per layer */
+	static <E extends NetworkElement> void addToCache (SortedSet<E> cacheAllLayers , Map<NetworkLayer,SortedSet<E>> cachePerLayer , NetworkLayer layer , E element)
+	{
+		cacheAllLayers.add(element);
+		cachePerLayer.computeIfAbsent(layer , l -> new TreeSet<> ()).add(element);
+	}
+
+	/* Removes the element from one of the caches of the node, and from the same cache per layer */
+	static <E extends NetworkElement> void removeFromCache (SortedSet<E> cacheAllLayers , Map<NetworkLayer,SortedSet<E>> cachePerLayer , NetworkLayer layer , E element)
+	{
+		cacheAllLayers.remove(element);
+		final SortedSet<E> cacheThisLayer = cachePerLayer.get(layer);
+		if (cacheThisLayer != null) cacheThisLayer.remove(element);
+	}
+
+	/* The returned set is a view, so it reflects the later changes in the layer */
+	static <E extends NetworkElement> SortedSet<E> getCacheOfLayer (Map<NetworkLayer,SortedSet<E>> cachePerLayer , NetworkLayer layer)
+	{
+		return Collections.unmodifiableSortedSet(cachePerLayer.computeIfAbsent(layer , l -> new TreeSet<> ()));
+	}
+
+	/* The sets are emptied and filled again, not replaced, so the views returned before are still valid */
+	private static <E extends NetworkElement> void rebuildCachePerLayer (Map<NetworkLayer,SortedSet<E>> cachePerLayer , Collection<E> cacheAllLayers , Function<E,NetworkLayer> layerOf)
+	{
+		for (SortedSet<E> cacheThisLayer : cachePerLayer.values()) cacheThisLayer.clear();
+		for (E element : cacheAllLayers) cachePerLayer.computeIfAbsent(layerOf.apply(element) , l -> new TreeSet<> ()).add(element);
+	}
+
+	private static <E extends NetworkElement> void checkCachePerLayer (Map<NetworkLayer,SortedSet<E>> cachePerLayer , Collection<E> cacheAllLayers , Function<E,NetworkLayer> layerOf)
+	{
+		int numElements = 0;
+		for (Entry<NetworkLayer,SortedSet<E>> entry : cachePerLayer.entrySet())
+		{
+			for (E element : entry.getValue()) if (layerOf.apply(element) != entry.getKey() || !cacheAllLayers.contains(element)) throw new RuntimeException ("Bad");
+			numElements += entry.getValue().size();
+		}
+		if (numElements != cacheAllLayers.size()) throw new RuntimeException ("Bad");
+	}
+
+	/* Called when the layer is removed */
+	void removeCachesOfLayer (NetworkLayer layer)
+	{
+		cache_nodeIncomingLinksPerLayer.remove(layer);
+		cache_nodeOutgoingLinksPerLayer.remove(layer);
+		cache_nodeIncomingDemandsPerLayer.remove(layer);
+		cache_nodeOutgoingDemandsPerLayer.remove(layer);
+		cache_nodeIncomingMulticastDemandsPerLayer.remove(layer);
+		cache_nodeOutgoingMulticastDemandsPerLayer.remove(layer);
+		cache_nodeAssociatedRoutesPerLayer.remove(layer);
+		cache_nodeAssociatedulticastTreesPerLayer.remove(layer);
 	}
 	
 	boolean isDeepCopy (Node e2)
@@ -221,7 +303,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (Demand d : cache_nodeIncomingDemands) if (d.layer.equals (layer)) accum += d.offeredTraffic;
+		double accum = 0; for (Demand d : getCacheOfLayer(cache_nodeIncomingDemandsPerLayer , layer)) accum += d.offeredTraffic;
 		return accum;
 	}
 
@@ -235,7 +317,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (Link e : cache_nodeIncomingLinks) if (e.layer.equals (layer)) accum += e.getCarriedTraffic();
+		double accum = 0; for (Link e : getCacheOfLayer(cache_nodeIncomingLinksPerLayer , layer)) accum += e.getCarriedTraffic();
 		return accum;
 	}
 
@@ -248,7 +330,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (Link e : cache_nodeOutgoingLinks) if (e.layer.equals (layer)) accum += e.getCarriedTraffic();
+		double accum = 0; for (Link e : getCacheOfLayer(cache_nodeOutgoingLinksPerLayer , layer)) accum += e.getCarriedTraffic();
 		return accum;
 	}
 
@@ -261,7 +343,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (Link e : cache_nodeIncomingLinks) if (e.layer.equals (layer)) accum += e.capacity;
+		double accum = 0; for (Link e : getCacheOfLayer(cache_nodeIncomingLinksPerLayer , layer)) accum += e.capacity;
 		return accum;
 	}
 
@@ -274,7 +356,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (Link e : cache_nodeOutgoingLinks) if (e.layer.equals (layer)) accum += e.capacity;
+		double accum = 0; for (Link e : getCacheOfLayer(cache_nodeOutgoingLinksPerLayer , layer)) accum += e.capacity;
 		return accum;
 	}
 
@@ -289,7 +371,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (Demand d : cache_nodeOutgoingDemands) if (d.layer.equals (layer)) accum += d.offeredTraffic;
+		double accum = 0; for (Demand d : getCacheOfLayer(cache_nodeOutgoingDemandsPerLayer , layer)) accum += d.offeredTraffic;
 		return accum;
 	}
 
@@ -303,7 +385,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (MulticastDemand d : cache_nodeIncomingMulticastDemands) if (d.layer.equals (layer)) accum += d.offeredTraffic;
+		double accum = 0; for (MulticastDemand d : getCacheOfLayer(cache_nodeIncomingMulticastDemandsPerLayer , layer)) accum += d.offeredTraffic;
 		return accum;
 	}
 
@@ -317,7 +399,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (MulticastDemand d : cache_nodeOutgoingMulticastDemands) if (d.layer.equals (layer)) accum += d.offeredTraffic;
+		double accum = 0; for (MulticastDemand d : getCacheOfLayer(cache_nodeOutgoingMulticastDemandsPerLayer , layer)) accum += d.offeredTraffic;
 		return accum;
 	}
 
@@ -330,7 +412,7 @@ public class Node extends NetworkElement
 		checkAttachedToNetPlanObject();
 		netPlan.checkIsModifiable();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		for (Link e : cache_nodeOutgoingLinks) if (e.layer.equals (layer)) e.removeAllForwardingRules();
+		for (Link e : getCacheOfLayer(cache_nodeOutgoingLinksPerLayer , layer)) e.removeAllForwardingRules();
 		if (ErrorHandling.isDebugEnabled()) netPlan.checkCachesConsistency();
 	}
 
@@ -345,7 +427,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (Demand d : cache_nodeIncomingDemands) if (d.layer.equals (layer)) accum += d.carriedTraffic;
+		double accum = 0; for (Demand d : getCacheOfLayer(cache_nodeIncomingDemandsPerLayer , layer)) accum += d.carriedTraffic;
 		return accum;
 	}
 
@@ -359,7 +441,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (Demand d : cache_nodeOutgoingDemands) if (d.layer.equals (layer)) accum += d.carriedTraffic;
+		double accum = 0; for (Demand d : getCacheOfLayer(cache_nodeOutgoingDemandsPerLayer , layer)) accum += d.carriedTraffic;
 		return accum;
 	}
 
@@ -373,7 +455,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (MulticastDemand d : cache_nodeIncomingMulticastDemands) if (d.layer.equals (layer)) accum += d.carriedTraffic;
+		double accum = 0; for (MulticastDemand d : getCacheOfLayer(cache_nodeIncomingMulticastDemandsPerLayer , layer)) accum += d.carriedTraffic;
 		return accum;
 	}
 
@@ -387,7 +469,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		double accum = 0; for (MulticastDemand d : cache_nodeOutgoingMulticastDemands) if (d.layer.equals (layer)) accum += d.carriedTraffic;
+		double accum = 0; for (MulticastDemand d : getCacheOfLayer(cache_nodeOutgoingMulticastDemandsPerLayer , layer)) accum += d.carriedTraffic;
 		return accum;
 	}
 
@@ -401,7 +483,7 @@ public class Node extends NetworkElement
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
 		SortedSet<Node> res = new TreeSet<Node> ();
-		for (Link e : cache_nodeIncomingLinks) if (e.layer.equals (layer)) res.add (e.originNode);
+		for (Link e : getCacheOfLayer(cache_nodeIncomingLinksPerLayer , layer)) res.add (e.originNode);
 		return res;
 	}
 
@@ -415,7 +497,7 @@ public class Node extends NetworkElement
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
 		SortedSet<Node> res = new TreeSet<Node> ();
-		for (Link e : cache_nodeOutgoingLinks) if (e.layer.equals (layer)) res.add (e.destinationNode);
+		for (Link e : getCacheOfLayer(cache_nodeOutgoingLinksPerLayer , layer)) res.add (e.destinationNode);
 		return res;
 	}
 
@@ -497,14 +579,13 @@ public class Node extends NetworkElement
 	/**
 	 * <p>Returns the set of links ending in the node, in the given layer. If no layer is provided, the default layer is assumed.</p>
 	 * @param optionalLayerParameter the layer
-	 * @return the of incoming links, or an empty set if none
+	 * @return the set of incoming links, or an empty set if none (as an unmodifiable set)
 	 */
 	public SortedSet<Link> getIncomingLinks(NetworkLayer ... optionalLayerParameter)
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<Link> res = new TreeSet<Link> (); for (Link e : cache_nodeIncomingLinks) if (e.layer.equals(layer)) res.add (e);
-		return res;
+		return getCacheOfLayer(cache_nodeIncomingLinksPerLayer , layer);
 	}
 
 	/** Returns the layers where this node is working: has at least one link, or demand, or multicast demand at the given layer associated to it. 
@@ -554,14 +635,13 @@ public class Node extends NetworkElement
 	/**
 	 * <p>Returns the set of links initiated in the node, in the given layer. If no layer is provided, the default layer is assumed.</p>
 	 * @param optionalLayerParameter Network layer (optional)
-	 * @return The set of outgoing links, or an empty set if none
+	 * @return The set of outgoing links, or an empty set if none (as an unmodifiable set)
 	 */
 	public SortedSet<Link> getOutgoingLinks(NetworkLayer ... optionalLayerParameter)
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<Link> res = new TreeSet<Link> (); for (Link e : cache_nodeOutgoingLinks) if (e.layer.equals(layer)) res.add (e);
-		return res;
+		return getCacheOfLayer(cache_nodeOutgoingLinksPerLayer , layer);
 	}
 
 	/**
@@ -620,14 +700,13 @@ public class Node extends NetworkElement
 	/**
 	 * <p>Returns the set of demands ending in the node, in the given layer. If no layer is provided, the default layer is assumed.</p>
 	 * @param optionalLayerParameter Network layer (optional)
-	 * @return the demands, or an empty set if none
+	 * @return the demands, or an empty set if none (as an unmodifiable set)
 	 */
 	public SortedSet<Demand> getIncomingDemands(NetworkLayer ... optionalLayerParameter)
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<Demand> res = new TreeSet<Demand> (); for (Demand e : cache_nodeIncomingDemands) if (e.layer.equals(layer)) res.add (e);
-		return res;
+		return getCacheOfLayer(cache_nodeIncomingDemandsPerLayer , layer);
 	}
 
 	/**
@@ -658,7 +737,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<Route> res = new TreeSet<Route> (); for (Demand d : cache_nodeIncomingDemands) if (d.layer.equals(layer)) res.addAll (d.cache_routes);
+		SortedSet<Route> res = new TreeSet<Route> (); for (Demand d : getCacheOfLayer(cache_nodeIncomingDemandsPerLayer , layer)) res.addAll (d.cache_routes);
 		return res;
 	}
 
@@ -671,7 +750,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<MulticastTree> res = new TreeSet<MulticastTree> (); for (MulticastDemand e : cache_nodeIncomingMulticastDemands) if (e.layer.equals(layer)) res.addAll (e.cache_multicastTrees);
+		SortedSet<MulticastTree> res = new TreeSet<MulticastTree> (); for (MulticastDemand e : getCacheOfLayer(cache_nodeIncomingMulticastDemandsPerLayer , layer)) res.addAll (e.cache_multicastTrees);
 		return res;
 	}
 
@@ -684,7 +763,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<Route> res = new TreeSet<Route> (); for (Demand d : cache_nodeOutgoingDemands) if (d.layer.equals(layer)) res.addAll (d.cache_routes);
+		SortedSet<Route> res = new TreeSet<Route> (); for (Demand d : getCacheOfLayer(cache_nodeOutgoingDemandsPerLayer , layer)) res.addAll (d.cache_routes);
 		return res;
 	}
 
@@ -697,7 +776,7 @@ public class Node extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<MulticastTree> res = new TreeSet<MulticastTree> (); for (MulticastDemand e : cache_nodeOutgoingMulticastDemands) if (e.layer.equals(layer)) res.addAll (e.cache_multicastTrees);
+		SortedSet<MulticastTree> res = new TreeSet<MulticastTree> (); for (MulticastDemand e : getCacheOfLayer(cache_nodeOutgoingMulticastDemandsPerLayer , layer)) res.addAll (e.cache_multicastTrees);
 		return res;
 	}
 
@@ -705,55 +784,49 @@ public class Node extends NetworkElement
 	/**
 	 * <p>Returns the set of demands initiated in the node, in the given layer. If no layer is provided, the default layer is assumed.</p>
 	 * @param optionalLayerParameter Network layer (optional)
-	 * @return The demands, or an empty set if none
+	 * @return The demands, or an empty set if none (as an unmodifiable set)
 	 */
 	public SortedSet<Demand> getOutgoingDemands(NetworkLayer ... optionalLayerParameter)
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<Demand> res = new TreeSet<Demand> (); for (Demand e : cache_nodeOutgoingDemands) if (e.layer.equals(layer)) res.add (e);
-		return res;
+		return getCacheOfLayer(cache_nodeOutgoingDemandsPerLayer , layer);
 	}
 
 	/**
 	 * <p>Returns the set of multicast demands ending in the node, in the given layer. If no layer is provided, the default layer is assumed.</p>
 	 * @param optionalLayerParameter Network layer (optional)
-	 * @return The demands, or an empty set if none
+	 * @return The demands, or an empty set if none (as an unmodifiable set)
 	 */
 	public SortedSet<MulticastDemand> getIncomingMulticastDemands(NetworkLayer ... optionalLayerParameter)
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<MulticastDemand> res = new TreeSet<MulticastDemand> (); for (MulticastDemand e : cache_nodeIncomingMulticastDemands) if (e.layer.equals(layer)) res.add (e);
-		return res;
+		return getCacheOfLayer(cache_nodeIncomingMulticastDemandsPerLayer , layer);
 	}
 
 	/**
 	 * <p>Returns the set of multicast demands initiated in the node, in the given layer. If no layer is provided, the default layer is assumed.</p>
 	 * @param optionalLayerParameter Network layer (optional)
-	 * @return The demands, or an empty set if none
+	 * @return The demands, or an empty set if none (as an unmodifiable set)
 	 */
 	public SortedSet<MulticastDemand> getOutgoingMulticastDemands(NetworkLayer ... optionalLayerParameter)
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<MulticastDemand> res = new TreeSet<MulticastDemand> (); for (MulticastDemand e : cache_nodeOutgoingMulticastDemands) if (e.layer.equals(layer)) res.add (e);
-		return res;
+		return getCacheOfLayer(cache_nodeOutgoingMulticastDemandsPerLayer , layer);
 	}
 
 	/**
 	 * <p>Returns the set of routes that start, end or traverse this node, in the given layer. If no layer is provided, the default layer is assumed.</p>
 	 * @param optionalLayerParameter Network layer (optional)
-	 * @return The routes, or an empty set if none
+	 * @return The routes, or an empty set if none (as an unmodifiable set)
 	 */
 	public SortedSet<Route> getAssociatedRoutes (NetworkLayer ... optionalLayerParameter)
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<Route> res = new TreeSet<Route> (); 
-		for (Link e : cache_nodeIncomingLinks) if (e.layer.equals (layer)) res.addAll (e.cache_traversingRoutes.keySet()); 
-		for (Link e : cache_nodeOutgoingLinks) if (e.layer.equals (layer)) res.addAll (e.cache_traversingRoutes.keySet()); 
-		return res;
+		return getCacheOfLayer(cache_nodeAssociatedRoutesPerLayer , layer);
 	}
 
     /**
@@ -767,16 +840,14 @@ public class Node extends NetworkElement
         checkAttachedToNetPlanObject();
         NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
         SortedSet<Route> res = new TreeSet<Route> (); 
-        for (Link e : cache_nodeIncomingLinks)
+        for (Link e : getCacheOfLayer(cache_nodeIncomingLinksPerLayer , layer))
         {
-            if (!e.layer.equals (layer)) continue;
             for (Route r : e.cache_traversingRoutes.keySet())
                 if (r.getSeqIntermediateNodes().contains(this))
                     res.add(r);
         }
-        for (Link e : cache_nodeOutgoingLinks) 
+        for (Link e : getCacheOfLayer(cache_nodeOutgoingLinksPerLayer , layer))
         {
-            if (!e.layer.equals (layer)) continue;
             for (Route r : e.cache_traversingRoutes.keySet())
                 if (r.getSeqIntermediateNodes().contains(this))
                     res.add(r);
@@ -788,16 +859,13 @@ public class Node extends NetworkElement
 	/**
 	 * <p>Returns the set of multicast trees that start, end or traverse this node, in the given layer. If no layer is provided, the default layer is assumed. </p>
 	 * @param optionalLayerParameter Network layer (optional
-	 * @return The trees, or an empty set if none
+	 * @return The trees, or an empty set if none (as an unmodifiable set)
 	 */
 	public SortedSet<MulticastTree> getAssociatedMulticastTrees (NetworkLayer ... optionalLayerParameter)
 	{
 		checkAttachedToNetPlanObject();
 		NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayerParameter);
-		SortedSet<MulticastTree> res = new TreeSet<MulticastTree> (); 
-		for (Link e : cache_nodeIncomingLinks) if (e.layer.equals (layer)) res.addAll (e.cache_traversingTrees); 
-		for (Link e : cache_nodeOutgoingLinks) if (e.layer.equals (layer)) res.addAll (e.cache_traversingTrees); 
-		return res;
+		return getCacheOfLayer(cache_nodeAssociatedulticastTreesPerLayer , layer);
 	}
 
 	/**
@@ -834,20 +902,24 @@ public class Node extends NetworkElement
 		checkAttachedToNetPlanObject();
 		netPlan.checkIsModifiable();
 
-		for (Resource resource : new LinkedList<Resource> (cache_nodeResources)) resource.remove();
-		for (MulticastTree tree : new LinkedList<MulticastTree> (cache_nodeAssociatedulticastTrees)) tree.remove ();
-		for (Route route : new LinkedList<Route> (cache_nodeAssociatedRoutes)) route.remove ();
-		for (SharedRiskGroup srg : new LinkedList<SharedRiskGroup> (cache_nodeNonDynamicSRGs)) srg.remove ();
-		for (Link link : new LinkedList<Link> (cache_nodeIncomingLinks)) link.remove (); 
-		for (Link link : new LinkedList<Link> (cache_nodeOutgoingLinks)) link.remove (); 
-		for (Demand demand : new LinkedList<Demand> (cache_nodeIncomingDemands)) demand.remove ();
-		for (Demand demand : new LinkedList<Demand> (cache_nodeOutgoingDemands)) demand.remove ();
-		for (MulticastDemand demand : new LinkedList<MulticastDemand> (cache_nodeIncomingMulticastDemands)) demand.remove ();
-		for (MulticastDemand demand : new LinkedList<MulticastDemand> (cache_nodeOutgoingMulticastDemands)) demand.remove ();
+		/* The elements depending on this node are removed in one bulk removal */
+		final List<NetworkElement> dependingElements = new ArrayList<> ();
+		dependingElements.addAll(cache_nodeResources);
+		dependingElements.addAll(cache_nodeAssociatedulticastTrees);
+		dependingElements.addAll(cache_nodeAssociatedRoutes);
+		dependingElements.addAll(cache_nodeNonDynamicSRGs);
+		dependingElements.addAll(cache_nodeIncomingLinks);
+		dependingElements.addAll(cache_nodeOutgoingLinks);
+		dependingElements.addAll(cache_nodeIncomingDemands);
+		dependingElements.addAll(cache_nodeOutgoingDemands);
+		dependingElements.addAll(cache_nodeIncomingMulticastDemands);
+		dependingElements.addAll(cache_nodeOutgoingMulticastDemands);
+		netPlan.removeAll(dependingElements);
 		
 		netPlan.cache_id2NodeMap.remove (id);
         for (String tag : tags) netPlan.cache_taggedElements.get(tag).remove(this);
 		NetPlan.removeNetworkElementAndShiftIndexes(netPlan.nodes , this.index);
+		for (NetworkLayer layer : netPlan.layers) { layer.cache_compiledGraph = null; layer.invalidateCachedMatrices(); }
         final NetPlan npOld = this.netPlan;
         removeId();
         if (ErrorHandling.isDebugEnabled()) npOld.checkCachesConsistency();
@@ -959,6 +1031,14 @@ public class Node extends NetworkElement
 		for (SharedRiskGroup srg : cache_nodeNonDynamicSRGs) if (!srg.getNodes().contains(this)) throw new RuntimeException ("Bad");
 		for (Route route : cache_nodeAssociatedRoutes) if (!route.cache_seqNodesRealPath.contains(this)) throw new RuntimeException ("Bad: " + cache_nodeAssociatedRoutes);
 		for (MulticastTree tree : cache_nodeAssociatedulticastTrees) if (!tree.cache_traversedNodes.contains(this)) throw new RuntimeException ("Bad");
+		checkCachePerLayer(cache_nodeIncomingLinksPerLayer , cache_nodeIncomingLinks , e -> e.layer);
+		checkCachePerLayer(cache_nodeOutgoingLinksPerLayer , cache_nodeOutgoingLinks , e -> e.layer);
+		checkCachePerLayer(cache_nodeIncomingDemandsPerLayer , cache_nodeIncomingDemands , d -> d.layer);
+		checkCachePerLayer(cache_nodeOutgoingDemandsPerLayer , cache_nodeOutgoingDemands , d -> d.layer);
+		checkCachePerLayer(cache_nodeIncomingMulticastDemandsPerLayer , cache_nodeIncomingMulticastDemands , d -> d.layer);
+		checkCachePerLayer(cache_nodeOutgoingMulticastDemandsPerLayer , cache_nodeOutgoingMulticastDemands , d -> d.layer);
+		checkCachePerLayer(cache_nodeAssociatedRoutesPerLayer , cache_nodeAssociatedRoutes , r -> r.layer);
+		checkCachePerLayer(cache_nodeAssociatedulticastTreesPerLayer , cache_nodeAssociatedulticastTrees , t -> t.layer);
 		if (!this.mapLayout2NodeXYPositionMap.keySet().equals(netPlan.cache_definedPlotNodeLayouts)) throw new RuntimeException ("Bad");
 	}
 
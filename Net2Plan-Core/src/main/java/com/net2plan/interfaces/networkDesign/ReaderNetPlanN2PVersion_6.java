@@ -60,13 +60,24 @@ import cern.colt.matrix.tdouble.DoubleMatrix2D;
 class ReaderNetPlanN2PVersion_6 implements IReaderNetPlan //extends NetPlanFormat_v3
 {
 	private boolean hasAlreadyReadOneLayer;
-	private XMLStreamReader2 xmlStreamReader;
+	private IDocumentReaderNetPlan xmlStreamReader;
 	private SortedMap<Route,List<Long>> backupRouteIdsMap;
 	private SortedMap<Long , List<Triple<Node,URL,Double>>> nodeAndLayerToIconURLMap;
 	private SortedSet<Demand> newNpDemandsWithRoutingTypeNotDefined = new TreeSet<> ();
 	
 	@Override
     public void create(NetPlan netPlan, XMLStreamReader2 xmlStreamReader) throws XMLStreamException
+	{
+		create(netPlan, new DocumentReaderNetPlanXml(xmlStreamReader));
+	}
+
+	/**
+	 * Reads the design from the given document, positioned at the start of the root element. The document may be in the XML or in the binary format
+	 * @param netPlan the design to fill
+	 * @param xmlStreamReader the document reader
+	 * @throws XMLStreamException if the document is not well formed
+	 */
+	void create(NetPlan netPlan, IDocumentReaderNetPlan xmlStreamReader) throws XMLStreamException
 	{
 		ProfileUtils.printTime("" , -1);
 		this.hasAlreadyReadOneLayer = false;
@@ -266,12 +277,7 @@ class ReaderNetPlanN2PVersion_6 implements IReaderNetPlan //extends NetPlanForma
 		newDemand.setQoSType(qosType);
         newDemand.setName(getStringOrDefault("name", ""));
         newDemand.setDescription(getStringOrDefault("description", ""));
-        try
-        {
-        	final List<String> rows = StringUtils.readEscapedString_asStringList (getString("monitoredOrForecastedTraffics") , new ArrayList<> ());
-        	final TrafficSeries readTimeSerie = TrafficSeries.createFromStringList(rows);
-            newDemand.setMonitoredOrForecastedOfferedTraffic(readTimeSerie);
-        } catch (Exception e) {}
+        newDemand.setMonitoredOrForecastedOfferedTraffic(readMonitoredOrForecastedTraffics("demand " + demandId));
         try
         {
         	final List<String> rows = StringUtils.readEscapedString_asStringList (getString("trafficPredictor") , new ArrayList<> ());
@@ -426,8 +432,10 @@ class ReaderNetPlanN2PVersion_6 implements IReaderNetPlan //extends NetPlanForma
 					String endElementName = xmlStreamReader.getName().toString();
 					if (endElementName.equals("hopByHopRouting")) 
 					{ 
-						NetworkLayer thisLayer = netPlan.getNetworkLayerFromId(layerId); 
-						netPlan.setForwardingRules(f_de , new TreeSet<> (netPlan.getDemandsHopByHopRouted(thisLayer)) , thisLayer); 
+						NetworkLayer thisLayer = netPlan.getNetworkLayerFromId(layerId);
+						final TreeSet<Demand> hopByHopDemands = new TreeSet<> (netPlan.getDemandsHopByHopRouted(thisLayer));
+						/* Nothing to set if all the demands are source routed: avoids scanning the D x E matrix */
+						if (!hopByHopDemands.isEmpty()) netPlan.setForwardingRules(f_de , hopByHopDemands , thisLayer);
 						return; 
 					}
 					break;
@@ -454,12 +462,7 @@ class ReaderNetPlanN2PVersion_6 implements IReaderNetPlan //extends NetPlanForma
 		newLink.setFailureState(isUp);
         newLink.setName(getStringOrDefault("name", ""));
         newLink.setDescription(getStringOrDefault("description", ""));
-        try
-        {
-        	final List<String> rows = StringUtils.readEscapedString_asStringList (getString("monitoredOrForecastedTraffics") , new ArrayList<> ());
-        	final TrafficSeries readTimeSerie = TrafficSeries.createFromStringList(rows);
-            newLink.setMonitoredOrForecastedCarriedTraffic(readTimeSerie);
-        } catch (Exception e) {}
+        newLink.setMonitoredOrForecastedCarriedTraffic(readMonitoredOrForecastedTraffics("link " + linkId));
         try
         {
         	final List<String> rows = StringUtils.readEscapedString_asStringList (getString("trafficPredictor") , new ArrayList<> ());
@@ -650,12 +653,7 @@ class ReaderNetPlanN2PVersion_6 implements IReaderNetPlan //extends NetPlanForma
 		newDemand.setQoSType(qosType);
         newDemand.setName(getStringOrDefault("name", ""));
         newDemand.setDescription(getStringOrDefault("description", ""));
-        try
-        {
-        	final List<String> rows = StringUtils.readEscapedString_asStringList (getString("monitoredOrForecastedTraffics") , new ArrayList<> ());
-        	final TrafficSeries readTimeSerie = TrafficSeries.createFromStringList(rows);
-            newDemand.setMonitoredOrForecastedOfferedTraffic(readTimeSerie);
-        } catch (Exception e) {}
+        newDemand.setMonitoredOrForecastedOfferedTraffic(readMonitoredOrForecastedTraffics("multicast demand " + demandId));
         try
         {
         	final List<String> rows = StringUtils.readEscapedString_asStringList (getString("trafficPredictor") , new ArrayList<> ());
@@ -731,6 +729,19 @@ class ReaderNetPlanN2PVersion_6 implements IReaderNetPlan //extends NetPlanForma
 		readAndAddAttributesToEndAndPdForNodes (newTree , "multicastTree");
 	}
 
+    /* The traffic series in the monitoredOrForecastedTraffics attribute, or an empty one if there is no such attribute (as in older files). A corrupt series is not ignored */
+    private TrafficSeries readMonitoredOrForecastedTraffics (String elementDescription)
+    {
+    	final String attribute = getStringOrDefault("monitoredOrForecastedTraffics", null);
+    	if (attribute == null) return new TrafficSeries ();
+    	try
+    	{
+    		return TrafficSeries.createFromStringList(StringUtils.readEscapedString_asStringList (attribute , new ArrayList<> ()));
+    	} catch (Net2PlanException e) 
+    	{ 
+    		throw new Net2PlanException ("Attribute monitoredOrForecastedTraffics of " + elementDescription + ": " + e.getMessage()); 
+    	}
+    }
     private String getStringOrDefault (String name , String defaultVal) 
     { 
         try
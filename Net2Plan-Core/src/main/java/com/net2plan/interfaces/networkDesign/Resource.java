@@ -15,6 +15,7 @@ package com.net2plan.interfaces.networkDesign;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
@@ -411,13 +412,15 @@ public class Resource extends NetworkElement
 		if (!this.iAttachedToANode())throw new Net2PlanException ("The resource is not attached to a node");
 		if (!r.getSeqNodes().contains(this.hostNode.get())) throw new Net2PlanException ("The route does not traverse the host node of this resource");
 		this.cache_traversingRoutesAndOccupiedCapacitiesIfNotFailingRoute.put(r , resourceOccupiedCapacityByThisRouteIfNotFailing);
-		updateTotalOccupiedCapacity();
+		if (netPlan.isDeferringDerivedStateUpdates()) netPlan.cache_resourcesPendingOccupationUpdate.add(this);
+		else updateTotalOccupiedCapacity();
 	}
 
 	void removeTraversingRoute (Route r)
 	{
 		this.cache_traversingRoutesAndOccupiedCapacitiesIfNotFailingRoute.remove(r);
-		updateTotalOccupiedCapacity();
+		if (netPlan.isDeferringDerivedStateUpdates()) netPlan.cache_resourcesPendingOccupationUpdate.add(this);
+		else updateTotalOccupiedCapacity();
 	}
 
 	
@@ -440,8 +443,9 @@ public class Resource extends NetworkElement
 	{
 		checkAttachedToNetPlanObject();
 		netPlan.checkIsModifiable();
-		for (Route r : new ArrayList<> (cache_traversingRoutesAndOccupiedCapacitiesIfNotFailingRoute.keySet())) r.remove();
-		for (Resource upperResource : new ArrayList<> (capacityUpperResourcesOccupyInMe.keySet())) upperResource.remove();
+		final List<NetworkElement> traversingRoutesAndUpperResources = new ArrayList<> (cache_traversingRoutesAndOccupiedCapacitiesIfNotFailingRoute.keySet());
+		traversingRoutesAndUpperResources.addAll(capacityUpperResourcesOccupyInMe.keySet());
+		netPlan.removeAll(traversingRoutesAndUpperResources);
 		for (Resource baseResource : new ArrayList<> (capacityIOccupyInBaseResource.keySet())) baseResource.removeUpperResourceOccupation(this);
 		netPlan.cache_id2ResourceMap.remove (id);
 		SortedSet<Resource> resourcesThisType = netPlan.cache_type2Resources.get(type);
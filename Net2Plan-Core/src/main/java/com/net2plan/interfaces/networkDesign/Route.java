@@ -609,7 +609,7 @@ public class Route extends NetworkElement
 
 		if (bidirectionalPair != null) { this.bidirectionalPair.bidirectionalPair = null; this.bidirectionalPair = null; }
 		
-		for (Node node : cache_seqNodesRealPath) node.cache_nodeAssociatedRoutes.remove(this);
+		for (Node node : cache_seqNodesRealPath) Node.removeFromCache(node.cache_nodeAssociatedRoutes , node.cache_nodeAssociatedRoutesPerLayer , layer , this);
 		for (Link link : cache_seqLinksRealPath)
 			link.cache_traversingRoutes.remove(this);
 		demand.cache_routes.remove(this);
@@ -621,6 +621,8 @@ public class Route extends NetworkElement
 		layer.cache_routesDown.remove (this);
                 layer.cache_routesTravLinkZeroCap.remove(this);
 		NetPlan.removeNetworkElementAndShiftIndexes(layer.routes , index);
+		layer.cache_matrixLink2RouteAssignment = null;
+		layer.incrementModificationCounter();
 
 		/* remove the resources info */
 		for (NetworkElement e : cache_linkAndResourcesTraversedOccupiedCapIfnotFailMap.keySet())
@@ -628,23 +630,17 @@ public class Route extends NetworkElement
 
         for (String tag : tags) netPlan.cache_taggedElements.get(tag).remove(this);
         
-        /* potentially update demand routing cycle type */
-        if (cache_hasLoops)
+        /* potentially update demand routing cycle type, and worst case propagation time and length (in a batch or bulk removal, once at the end) */
+        final boolean updateCycleType = cache_hasLoops;
+        final boolean updateWorstCasePropagationTime = demand.cache_worstCasePropagationTimeMs <= this.cache_propagationDelayMs;
+        final boolean updateWorstCaseLength = demand.cache_worstCaseLengthInKm <= this.getLengthInKm();
+        if (updateCycleType || updateWorstCasePropagationTime || updateWorstCaseLength)
         {
-        	demand.routingCycleType = RoutingCycleType.LOOPLESS;
-        	for (Route r : demand.cache_routes) if (r.cache_hasLoops) { demand.routingCycleType = RoutingCycleType.OPEN_CYCLES; break; }
-        }
-
-        if (demand.cache_worstCasePropagationTimeMs <= this.cache_propagationDelayMs)
-        {
-        	demand.cache_worstCasePropagationTimeMs = 0;
-        	for (Route r : demand.cache_routes) demand.cache_worstCasePropagationTimeMs = Math.max(demand.cache_worstCasePropagationTimeMs, r.cache_propagationDelayMs);
-        }
-
-        if (demand.cache_worstCaseLengthInKm <= this.getLengthInKm())
-        {
-        	demand.cache_worstCaseLengthInKm = 0;
-        	for (Route r : demand.cache_routes) demand.cache_worstCaseLengthInKm = Math.max(demand.cache_worstCaseLengthInKm, r.getLengthInKm());
+        	if (netPlan.isDeferringDerivedStateUpdates())
+        		netPlan.cache_demandsPendingRouteCachesUpdate.merge(demand, Triple.of(updateCycleType, updateWorstCasePropagationTime, updateWorstCaseLength), 
+        				(t1,t2) -> Triple.of(t1.getFirst() || t2.getFirst(), t1.getSecond() || t2.getSecond(), t1.getThird() || t2.getThird()));
+        	else
+        		demand.updateCachesDependingOnRoutes(updateCycleType, updateWorstCasePropagationTime, updateWorstCaseLength);
         }
 
         final NetPlan npOld = this.netPlan;
@@ -699,19 +695,29 @@ public class Route extends NetworkElement
 
 		this.currentCarriedTrafficIfNotFailing = newCarriedTraffic;
 		this.currentLinksAndResourcesOccupationIfNotFailing = new ArrayList<Double> (linkAndResourcesOccupationInformation);
+		layer.incrementModificationCounter();
 
 		/* Now the update of the links and resources occupation */
 		this.cache_linkAndResourcesTraversedOccupiedCapIfnotFailMap = updateLinkResourceOccupationCache ();
 
-		demand.carriedTraffic = 0; for (Route r : demand.cache_routes) demand.carriedTraffic += r.getCarriedTraffic();
-		if (demand.coupledUpperOrSameLayerLink != null)
-			demand.coupledUpperOrSameLayerLink.updateCapacityAndZeroCapacityLinksAndRoutesCaches(demand.carriedTraffic);
+		/* in a batch, the demand and link traffics are computed once at the end */
+		final boolean deferUpdates = netPlan.isDeferringDerivedStateUpdates();
+		if (deferUpdates) netPlan.cache_demandsPendingCarriedTrafficUpdate.add(demand);
+		else
+		{
+			demand.carriedTraffic = 0; for (Route r : demand.cache_routes) demand.carriedTraffic += r.getCarriedTraffic();
+			if (demand.coupledUpperOrSameLayerLink != null)
+				demand.coupledUpperOrSameLayerLink.updateCapacityAndZeroCapacityLinksAndRoutesCaches(demand.carriedTraffic);
+		}
 
 		for (NetworkElement e : cache_linkAndResourcesTraversedOccupiedCapIfnotFailMap.keySet())
 			if (e instanceof Resource)
 				((Resource) e).addTraversingRoute(this , cache_linkAndResourcesTraversedOccupiedCapIfnotFailMap.get(e));
 			else if (e instanceof Link)
-				((Link) e).updateLinkTrafficAndOccupation();
+			{
+				if (deferUpdates) netPlan.cache_linksPendingTrafficUpdate.add((Link) e);
+				else ((Link) e).updateLinkTrafficAndOccupation();
+			}
 
 
 		if (ErrorHandling.isDebugEnabled()) netPlan.checkCachesConsistency();
@@ -752,13 +758,15 @@ public class Route extends NetworkElement
 		for (Link link : this.cache_seqLinksRealPath)
 			link.cache_traversingRoutes.remove (this);
 		for (Node node : cache_seqNodesRealPath)
-			node.cache_nodeAssociatedRoutes.remove (this);
+			Node.removeFromCache(node.cache_nodeAssociatedRoutes , node.cache_nodeAssociatedRoutesPerLayer , layer , this);
 		layer.cache_routesDown.remove(this);
 		layer.cache_routesTravLinkZeroCap.remove(this);
 
 		/* Update this route info */
 		this.currentPath = new LinkedList<NetworkElement> (newPath);
 		this.cache_seqLinksRealPath = new LinkedList<Link> (newSeqLinks);
+		layer.cache_matrixLink2RouteAssignment = null;
+		layer.incrementModificationCounter();
 		boolean isRouteUp = demand.ingressNode.isUp;
 		boolean isRouteTravZeroCapLinks = false;
 		this.cache_seqNodesRealPath = new LinkedList<Node> (); cache_seqNodesRealPath.add (demand.getIngressNode());
@@ -777,7 +785,7 @@ public class Route extends NetworkElement
 			if (numPassingTimes == null) numPassingTimes = 1; else numPassingTimes ++; link.cache_traversingRoutes.put (this , numPassingTimes);
 		}
 		for (Node node : cache_seqNodesRealPath)
-			node.cache_nodeAssociatedRoutes.add (this);
+			Node.addToCache(node.cache_nodeAssociatedRoutes , node.cache_nodeAssociatedRoutesPerLayer , layer , this);
 		this.cache_hasLoops = hasLoops(cache_seqNodesRealPath);
 		if (cache_hasLoops) demand.routingCycleType = RoutingCycleType.OPEN_CYCLES;
 
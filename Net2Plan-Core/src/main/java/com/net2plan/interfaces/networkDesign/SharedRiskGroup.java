@@ -186,8 +186,8 @@ public class SharedRiskGroup extends NetworkElement
 		for (Link e : getLinksAllLayers()) if (e.layer == layer) res.add (e);
 		for (Node n : getNodes ()) 
 		{
-			for (Link e : n.cache_nodeIncomingLinks) if (e.layer == layer) res.add (e);
-			for (Link e : n.cache_nodeOutgoingLinks) if (e.layer == layer) res.add (e);
+			for (Link e : Node.getCacheOfLayer(n.cache_nodeIncomingLinksPerLayer , layer)) res.add (e);
+			for (Link e : Node.getCacheOfLayer(n.cache_nodeOutgoingLinksPerLayer , layer)) res.add (e);
 		}
 		return res;
 	}
@@ -213,7 +213,7 @@ public class SharedRiskGroup extends NetworkElement
 	{
 		SortedSet<Route> res = new TreeSet<Route> ();
 		for (Link e : getLinksAllLayers()) for (Route r : e.cache_traversingRoutes.keySet()) if (r.layer.equals(layer)) res.add (r);
-		for (Node n : getNodes()) for (Route r : n.cache_nodeAssociatedRoutes) if (r.layer.equals(layer)) res.add (r);
+		for (Node n : getNodes()) for (Route r : Node.getCacheOfLayer(n.cache_nodeAssociatedRoutesPerLayer , layer)) res.add (r);
 		return res;
 	}
 
@@ -238,7 +238,7 @@ public class SharedRiskGroup extends NetworkElement
 	{
 		SortedSet<MulticastTree> res = new TreeSet<MulticastTree> ();
 		for (Link e : getLinksAllLayers()) for (MulticastTree t : e.cache_traversingTrees) if (t.layer.equals(layer)) res.add (t);
-		for (Node n : getNodes ()) for (MulticastTree t : n.cache_nodeAssociatedulticastTrees) if (t.layer.equals(layer)) res.add (t);
+		for (Node n : getNodes ()) for (MulticastTree t : Node.getCacheOfLayer(n.cache_nodeAssociatedulticastTreesPerLayer , layer)) res.add (t);
 		return res;
 	}
 
@@ -20,16 +20,32 @@ package com.net2plan.internal;
 
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * Extends {@code TreeMap} to forbid 'null or empty' keys.
  * 
+ * <p>It also keeps the values of the attributes already parsed (see {@link #getParsedValue(String, Function)}), so the strings are not
+ * parsed again until the attribute is set again.</p>
+ * 
  * @author Pablo Pavon-Marino, Jose-Luis Izquierdo-Zaragoza
  * @since 0.3.0
  */
 public class AttributeMap extends TreeMap<String, String>
 {
 	private static final long serialVersionUID = 1L;
+	private static final Object NOT_PARSEABLE = new Object ();
+
+	/* Parsed value of an attribute: the string it was parsed from, and the parser used */
+	private static final class ParsedValue
+	{
+		private final String stringValue;
+		private final Function<String,?> parser;
+		private final Object value;
+		private ParsedValue (String stringValue , Function<String,?> parser , Object value) { this.stringValue = stringValue; this.parser = parser; this.value = value; }
+	}
+	private transient volatile ConcurrentHashMap<String,ParsedValue> cache_parsedValues = null;
 	
 	/**
 	 * Default constructor.
@@ -55,10 +71,41 @@ public class AttributeMap extends TreeMap<String, String>
 		for (Map.Entry<String, String> entry : m.entrySet()) put(new String (entry.getKey()), new String (entry.getValue()));
 	}
 
+	/**
+	 * Returns the value of the attribute parsed with the given parser, or null if the attribute does not exist, or the parser
+	 * returns null or throws an exception. The parsed value is kept and returned in next calls with the same parser object, while the
+	 * attribute is not set again. Then, the parser should be a constant, and the returned value must not be modified (mutable values
+	 * should be copied by the caller).
+	 * 
+	 * @param <T> Type of the parsed value
+	 * @param key Attribute name
+	 * @param parser Function parsing the attribute value
+	 * @return see above
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getParsedValue(String key, Function<String,T> parser)
+	{
+		final String stringValue = get(key);
+		if (stringValue == null) return null;
+		ConcurrentHashMap<String,ParsedValue> cache = cache_parsedValues;
+		if (cache == null) { cache = new ConcurrentHashMap<> (); cache_parsedValues = cache; }
+
+		/* The string instance is checked too, so the value is never stale even if the map is modified by other means than put */
+		final ParsedValue parsedValue = cache.get(key);
+		if (parsedValue != null && parsedValue.stringValue == stringValue && parsedValue.parser == parser)
+			return parsedValue.value == NOT_PARSEABLE? null : (T) parsedValue.value;
+		T value;
+		try { value = parser.apply(stringValue); } catch (Exception e) { value = null; }
+		cache.put(key, new ParsedValue(stringValue, parser, value == null? NOT_PARSEABLE : value));
+		return value;
+	}
+
 	@Override
 	public String put(String key, String value)
 	{
 		if (key == null || key.isEmpty()) throw new RuntimeException("Key cannot be null or empty");
+		final ConcurrentHashMap<String,ParsedValue> cache = cache_parsedValues;
+		if (cache != null) cache.remove(key);
 		return super.put(key, value);
 	}
 	
@@ -66,6 +113,30 @@ public class AttributeMap extends TreeMap<String, String>
 	public void putAll(Map<? extends String, ? extends String> m)
 	{
 		if (m == null) { clear(); return; }
+		cache_parsedValues = null;
 		super.putAll(m);
 	}
+
+	@Override
+	public String remove(Object key)
+	{
+		final ConcurrentHashMap<String,ParsedValue> cache = cache_parsedValues;
+		if (cache != null && key != null) cache.remove(key);
+		return super.remove(key);
+	}
+
+	@Override
+	public void clear()
+	{
+		cache_parsedValues = null;
+		super.clear();
+	}
+
+	@Override
+	public Object clone()
+	{
+		final AttributeMap res = (AttributeMap) super.clone();
+		res.cache_parsedValues = null;
+		return res;
+	}
 }
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.internal;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.DoubleMatrix3D;
+
+/**
+ * Read-only view of a {@code DoubleMatrix1D}: any attempt to change its values throws an {@code UnsupportedOperationException}.
+ * The views of the view (e.g. {@code viewPart}) are also read-only, while the copies and the new matrices created from it
+ * (e.g. {@code copy}, {@code like}) can be modified.
+ *
+ * @author Pablo Pavon-Marino
+ */
+public class UnmodifiableDoubleMatrix1D extends DoubleMatrix1D
+{
+	private static final long serialVersionUID = 1L;
+	private final DoubleMatrix1D content;
+
+	/**
+	 * Creates a read-only view of the given vector. Changes in the given vector are seen in the view
+	 *
+	 * @param content the vector
+	 */
+	public UnmodifiableDoubleMatrix1D (DoubleMatrix1D content)
+	{
+		this.content = content;
+		setUp((int) content.size());
+	}
+
+	@Override
+	public double getQuick (int index)
+	{
+		return content.getQuick(zero + index * stride);
+	}
+
+	@Override
+	public void setQuick (int index , double value)
+	{
+		throw new UnsupportedOperationException("Unmodifiable DoubleMatrix1D");
+	}
+
+	@Override
+	public Object elements ()
+	{
+		return copy().elements();
+	}
+
+	@Override
+	public DoubleMatrix1D like (int size)
+	{
+		return content.like(size);
+	}
+
+	@Override
+	public DoubleMatrix2D like2D (int rows , int columns)
+	{
+		return content.like2D(rows, columns);
+	}
+
+	@Override
+	public DoubleMatrix2D reshape (int rows , int columns)
+	{
+		return copy().reshape(rows, columns);
+	}
+
+	@Override
+	public DoubleMatrix3D reshape (int slices , int rows , int columns)
+	{
+		return copy().reshape(slices, rows, columns);
+	}
+
+	@Override
+	protected DoubleMatrix1D viewSelectionLike (int [] offsets)
+	{
+		/* The offsets are positions in the content vector, as in getQuick */
+		return new UnmodifiableDoubleMatrix1D(content.viewSelection(offsets));
+	}
+}
@@ -340,6 +340,19 @@ public class SimKernel implements IEventCallback
 		return parameters;
 	}
 
+	/**
+	 * Returns the main network-wide and per-layer simulation results, as a map from the result name to its value. The map is empty
+	 * if the statistics were disabled or there are no results.
+	 * 
+	 * @return Map from the result name to its value
+	 * @since 0.6.6
+	 */
+	public Map<String, Double> getSimulationSummary()
+	{
+		if (stats == null) return new LinkedHashMap<String, Double>();
+		return stats.getSummary(getSimCore().getFutureEventList().getCurrentSimulationTime());
+	}
+
 	/**
 	 * Returns the simulation report.
 	 * 
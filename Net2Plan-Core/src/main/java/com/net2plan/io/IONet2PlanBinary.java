@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+
+
+package com.net2plan.io;
+
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.internal.Constants.IOFeature;
+import com.net2plan.internal.plugins.IOFilter;
+import com.net2plan.utils.Triple;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * IO filter for the binary Net2Plan format. It stores the same information as the {@code .n2p} XML format, in a more compact form
+ * which is faster to save and load (see {@link NetPlan#saveToBinaryOutputStream(OutputStream)}).
+ *
+ * @author Pablo Pavon-Marino
+ */
+public class IONet2PlanBinary extends IOFilter
+{
+	private final static String title = "Net2Plan (binary)";
+	private final static String extension = "n2pb";
+
+	/**
+	 * Default constructor.
+	 */
+	public IONet2PlanBinary()
+	{
+		super(title, EnumSet.allOf(IOFeature.class), extension);
+	}
+
+	@Override
+	public String getName()
+	{
+		return title + " import/export filter";
+	}
+
+	@Override
+	public List<Triple<String, String, String>> getParameters()
+	{
+		return null;
+	}
+
+	@Override
+	public NetPlan readDemandSetFromFile(File file)
+	{
+		NetPlan netPlan = readFromFile(file);
+		for (NetworkLayer layer : netPlan.getNetworkLayers ())
+			if (!layer.equals(netPlan.getNetworkLayerDefault()))
+					netPlan.removeNetworkLayer (layer);
+		netPlan.removeAllLinks();
+		netPlan.removeAllUnicastRoutingInformation();
+		netPlan.removeAllSRGs();
+
+		return netPlan;
+	}
+
+	@Override
+	public NetPlan readFromFile(File file)
+	{
+		return new NetPlan(file);
+	}
+
+	@Override
+	public void saveDemandSetToFile(NetPlan netPlan, File file)
+	{
+		for (NetworkLayer layer : netPlan.getNetworkLayers ())
+			if (!layer.equals(netPlan.getNetworkLayerDefault()))
+					netPlan.removeNetworkLayer (layer);
+		netPlan.removeAllLinks();
+		netPlan.removeAllUnicastRoutingInformation();
+		netPlan.removeAllSRGs();
+		saveToFile(netPlan, file);
+	}
+
+	@Override
+	public void saveToFile(NetPlan netPlan, File file)
+	{
+		if (!file.getPath().toLowerCase(Locale.getDefault()).endsWith("." + extension)) file = new File(file.getPath() + "." + extension);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file)))
+		{
+			netPlan.saveToBinaryOutputStream(os);
+		} catch (IOException e)
+		{
+			throw new Net2PlanException(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,433 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.libraries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.interfaces.networkDesign.Node;
+
+/**
+ * <p>Immutable snapshot of a directed multigraph of nodes and links, compiled into primitive arrays: nodes and links are identified
+ * by their position in the snapshot, and the outgoing and incoming links of each node are stored in compressed (CSR) form.</p>
+ * <p>The snapshot of all the nodes and links of a layer is cached in the layer (see {@link NetworkLayer#getCompiledGraph()}), and
+ * is discarded when links are added or removed, or change its failure state. Then, it can be reused by any number of shortest path computations,
+ * also from different threads. The link costs are given in each call as a {@code double []} vector,
+ * indexed by link position (see {@link #getLinkCostVector(Map, boolean)}). A cost of {@code Double.MAX_VALUE} means that the link cannot be used.</p>
+ *
+ * @author Pablo Pavon-Marino
+ */
+public class CompiledGraph
+{
+	private final Node [] nodes;
+	private final Link [] links;
+	private final int [] nodePosition_nIndex;
+	private final int [] originNode_e;
+	private final int [] destinationNode_e;
+	private final boolean [] isUp_e;
+	private final int [] firstOut_n;
+	private final int [] outLinks;
+	private final int [] firstIn_n;
+	private final int [] inLinks;
+
+	private CompiledGraph (Collection<Node> nodes , Collection<Link> links)
+	{
+		final int N = nodes.size();
+		final int E = links.size();
+		this.nodes = nodes.toArray(new Node [N]);
+		this.links = links.toArray(new Link [E]);
+		int maxNodeIndex = -1;
+		for (Node n : this.nodes) maxNodeIndex = Math.max(maxNodeIndex, n.getIndex());
+		this.nodePosition_nIndex = new int [maxNodeIndex + 1];
+		Arrays.fill(nodePosition_nIndex, -1);
+		for (int n = 0; n < N ; n ++) nodePosition_nIndex [this.nodes [n].getIndex()] = n;
+
+		this.originNode_e = new int [E];
+		this.destinationNode_e = new int [E];
+		this.isUp_e = new boolean [E];
+		final int [] outDegree_n = new int [N];
+		final int [] inDegree_n = new int [N];
+		for (int e = 0; e < E ; e ++)
+		{
+			final Link link = this.links [e];
+			originNode_e [e] = getNodePosition(link.getOriginNode());
+			destinationNode_e [e] = getNodePosition(link.getDestinationNode());
+			if ((originNode_e [e] == -1) || (destinationNode_e [e] == -1)) throw new RuntimeException("Bad");
+			isUp_e [e] = link.isUp() && link.getOriginNode().isUp() && link.getDestinationNode().isUp();
+			outDegree_n [originNode_e [e]] ++;
+			inDegree_n [destinationNode_e [e]] ++;
+		}
+
+		/* Outgoing and incoming links per node, in compressed form, keeping the links order */
+		this.firstOut_n = new int [N + 1];
+		this.firstIn_n = new int [N + 1];
+		for (int n = 0; n < N ; n ++) { firstOut_n [n+1] = firstOut_n [n] + outDegree_n [n]; firstIn_n [n+1] = firstIn_n [n] + inDegree_n [n]; }
+		this.outLinks = new int [E];
+		this.inLinks = new int [E];
+		final int [] nextFreeOut_n = Arrays.copyOf(firstOut_n, N);
+		final int [] nextFreeIn_n = Arrays.copyOf(firstIn_n, N);
+		for (int e = 0; e < E ; e ++)
+		{
+			outLinks [nextFreeOut_n [originNode_e [e]] ++] = e;
+			inLinks [nextFreeIn_n [destinationNode_e [e]] ++] = e;
+		}
+	}
+
+	/**
+	 * Compiles the graph with the given nodes and links. The positions of the nodes and links in the snapshot are their positions in the given collections.
+	 * All the nodes must belong to the same design, and the end nodes of all the links must be in the given nodes.
+	 * @param nodes Collection of nodes
+	 * @param links Collection of links
+	 * @return the compiled graph
+	 */
+	public static CompiledGraph of (Collection<Node> nodes , Collection<Link> links)
+	{
+		return new CompiledGraph(nodes , links);
+	}
+
+	/**
+	 * Returns the number of nodes in the graph
+	 * @return see above
+	 */
+	public int getNumberOfNodes () { return nodes.length; }
+
+	/**
+	 * Returns the number of links in the graph
+	 * @return see above
+	 */
+	public int getNumberOfLinks () { return links.length; }
+
+	/**
+	 * Returns the node in the given position
+	 * @param position the position
+	 * @return see above
+	 */
+	public Node getNode (int position) { return nodes [position]; }
+
+	/**
+	 * Returns the link in the given position
+	 * @param position the position
+	 * @return see above
+	 */
+	public Link getLink (int position) { return links [position]; }
+
+	/**
+	 * Returns the position of the given node in the graph, or -1 if the node is not in the graph
+	 * @param node the node
+	 * @return see above
+	 */
+	public int getNodePosition (Node node)
+	{
+		final int index = node.getIndex();
+		if ((index < 0) || (index >= nodePosition_nIndex.length)) return -1;
+		final int position = nodePosition_nIndex [index];
+		return (position != -1) && (nodes [position] == node)? position : -1;
+	}
+
+	/**
+	 * Returns true if the link in the given position was up, and also its end nodes, when the graph was compiled
+	 * @param position the link position
+	 * @return see above
+	 */
+	public boolean isLinkUp (int position) { return isUp_e [position]; }
+
+	/**
+	 * Returns the vector of link costs to use in the shortest path computations, indexed by link position
+	 * @param linkCostMap Cost per link. If {@code null}, all the links have cost one. A value of Double.MAX_VALUE means that the link cannot be used
+	 * @param excludeLinksDown if true, the links down (or with an end node down) have cost Double.MAX_VALUE
+	 * @return see above
+	 */
+	public double [] getLinkCostVector (Map<Link, Double> linkCostMap , boolean excludeLinksDown)
+	{
+		final double [] w_e = new double [links.length];
+		for (int e = 0; e < links.length ; e ++)
+		{
+			if (excludeLinksDown && !isUp_e [e]) { w_e [e] = Double.MAX_VALUE; continue; }
+			if (linkCostMap == null) { w_e [e] = 1.0; continue; }
+			final Double value = linkCostMap.get(links [e]);
+			if (value == null) throw new Net2PlanException("Bad - No weight for link " + links [e]);
+			w_e [e] = value;
+		}
+		return w_e;
+	}
+
+	/**
+	 * Returns the shortest path between two nodes, computed using Dijkstra's algorithm.
+	 * @param originNode Origin node
+	 * @param destinationNode Destination node
+	 * @param w_e the cost of each link, indexed by link position. Links with cost Double.MAX_VALUE are not considered
+	 * @return Sequence of links in the shortest path (empty, if destination not reachable from origin)
+	 */
+	public List<Link> getShortestPath (Node originNode , Node destinationNode , double [] w_e)
+	{
+		final int origin = getNodePosition(originNode);
+		final int destination = getNodePosition(destinationNode);
+		if ((origin == -1) || (destination == -1) || (origin == destination)) return new ArrayList<> ();
+		final DijkstraTree tree = new DijkstraTree(origin, destination, w_e, null, null, null);
+		return toLinkList(tree.getPath(destination));
+	}
+
+	/**
+	 * <p>Returns the K-loopless shortest paths between two nodes, satisfying some user-defined constraints, using Yen's algorithm. If only <i>n</i> shortest path are found (n&lt;K), those are returned.
+	 * The constraints are the same as in {@link GraphUtils#getKLooplessShortestPaths(List, List, Node, Node, Map, int, double, int, double, double, double, double)},
+	 * but a value of {@code Double.MAX_VALUE} (or {@code Integer.MAX_VALUE}) means that no limit is assumed. To compute the paths of several
+	 * node pairs with the same costs, a {@link KLooplessShortestPathsEngine} should be used instead, so the shortest path trees are shared among them.</p>
+	 * <p>Reference: {@code J.Y. Yen, "Finding the K Shortest Loopless Paths in a Network," <i>Management Science</i>, vol. 17, no. 11, pp. 712-716, Jul. 1971}</p>
+	 * @param originNode Origin node
+	 * @param destinationNode Destination node
+	 * @param w_e the cost of each link, indexed by link position. Links with cost Double.MAX_VALUE are not considered
+	 * @param K Desired number of paths
+	 * @param maxLengthInKm Maximum length of the path
+	 * @param maxNumHops Maximum number of hops
+	 * @param maxPropDelayInMs Maximum propagation delay of the path
+	 * @param maxRouteCost Maximum route cost
+	 * @param maxRouteCostFactorRespectToShortestPath Maximum route cost factor respect to the shortest path
+	 * @param maxRouteCostRespectToShortestPath Maximum route cost respect to the shortest path
+	 * @return K-shortest paths, in increasing order of cost
+	 */
+	public List<List<Link>> getKLooplessShortestPaths (Node originNode , Node destinationNode , double [] w_e , int K , double maxLengthInKm, int maxNumHops, double maxPropDelayInMs, double maxRouteCost, double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath)
+	{
+		return new KLooplessShortestPathsEngine(this, w_e).getKLooplessShortestPaths(originNode, destinationNode, K, maxLengthInKm, maxNumHops, maxPropDelayInMs, maxRouteCost, maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath);
+	}
+
+	/**
+	 * <p>Returns the shortest pair of link-disjoint paths, where each item represents a path, using Suurballe-Tarjan's algorithm.
+	 * The number of returned items will be equal to the number of paths found: when empty, no path was found; when {@code size()} = 1, only one path was found;
+	 * and when {@code size()} = 2, the link-disjoint paths were found (in increasing order of cost).</p>
+	 * <p>Reference: {@code J.W. Suurballe, R.E. Tarjan, "A Quick Method for Finding Shortest Pairs of Disjoint Paths," <i>Networks</i>, vol. 14, no. 2, pp. 325-335, 1984}</p>
+	 * @param originNode Origin node
+	 * @param destinationNode Destination node
+	 * @param w_e the cost of each link, indexed by link position. Links with cost Double.MAX_VALUE are not considered
+	 * @return Shortest pair of link-disjoint paths
+	 */
+	public List<List<Link>> getTwoLinkDisjointPaths (Node originNode , Node destinationNode , double [] w_e)
+	{
+		final List<List<Link>> res = new ArrayList<> ();
+		final int origin = getNodePosition(originNode);
+		final int destination = getNodePosition(destinationNode);
+		if ((origin == -1) || (destination == -1) || (origin == destination)) return res;
+
+		/* Shortest path tree from the origin node to all the nodes */
+		final DijkstraTree tree = new DijkstraTree(origin, -1, w_e, null, null, null);
+		final int [] sp = tree.getPath(destination);
+		if (sp == null) return res;
+		res.add(toLinkList(sp));
+
+		/* Reduced costs: c'(v,w) = c(v,w) - d (s,w) + d (s,v), and the links of the shortest path are reversed */
+		final double [] reducedCost_e = new double [links.length];
+		for (int e = 0; e < links.length ; e ++)
+		{
+			if ((w_e [e] == Double.MAX_VALUE) || !tree.isReached(originNode_e [e])) { reducedCost_e [e] = Double.MAX_VALUE; continue; }
+			final double reducedCost = w_e [e] - tree.distance_n [destinationNode_e [e]] + tree.distance_n [originNode_e [e]];
+			reducedCost_e [e] = reducedCost < 0? 0 : reducedCost; /* Numerical errors */
+		}
+		final boolean [] isReversedLink = new boolean [links.length];
+		for (int e : sp) { isReversedLink [e] = true; reducedCost_e [e] = 0; }
+		final int [] revSp = new DijkstraTree(origin, destination, reducedCost_e, null, null, isReversedLink).getPath(destination);
+		if (revSp == null) return res; /* no alternate path */
+
+		/* Remove the links in both paths (traversed in opposite directions) */
+		final List<Integer> path1 = new ArrayList<> (); for (int e : sp) path1.add(e);
+		final List<Integer> path2 = new ArrayList<> (); for (int e : revSp) path2.add(e);
+		for (int e : revSp)
+		{
+			if (!isReversedLink [e]) continue;
+			if ((originNode_e [e] == origin) || (destinationNode_e [e] == destination)) return res;
+			path1.remove(Integer.valueOf(e));
+			path2.remove(Integer.valueOf(e));
+		}
+		if (path1.isEmpty() || path2.isEmpty()) return res;
+
+		/* Now recombine the two paths */
+		final List<Integer> union = new ArrayList<> (path1); union.addAll(path2);
+		final int [] p1 = recombinePath(path1.get(0), destination, union);
+		if (p1 == null) return res;
+		final int [] p2 = recombinePath(path2.get(0), destination, union);
+		if (p2 == null) return res;
+		final boolean p1First = getPathCost(p1, w_e) <= getPathCost(p2, w_e);
+		res.clear();
+		res.add(toLinkList(p1First? p1 : p2));
+		res.add(toLinkList(p1First? p2 : p1));
+		return res;
+	}
+
+	private int [] recombinePath (int firstLink , int destination , List<Integer> union)
+	{
+		final List<Integer> p = new ArrayList<> ();
+		p.add(firstLink);
+		union.remove(Integer.valueOf(firstLink));
+		int curDest;
+		while ((curDest = destinationNode_e [p.get(p.size() - 1)]) != destination)
+		{
+			boolean progress = false;
+			for (int cont = 0; cont < union.size() ; cont ++)
+			{
+				final int e = union.get(cont);
+				if (originNode_e [e] != curDest) continue;
+				p.add(e);
+				union.remove(cont);
+				progress = true;
+				break;
+			}
+			if (!progress) return null;
+			if (union.isEmpty())
+			{
+				if (destinationNode_e [p.get(p.size() - 1)] != destination) throw new RuntimeException("Bad");
+				break;
+			}
+		}
+		final int [] res = new int [p.size()];
+		for (int cont = 0; cont < res.length ; cont ++) res [cont] = p.get(cont);
+		return res;
+	}
+
+	static double getPathCost (int [] path , double [] w_e)
+	{
+		double cost = 0; for (int e : path) cost += w_e [e];
+		return cost;
+	}
+
+	List<Link> toLinkList (int [] path)
+	{
+		final List<Link> res = new ArrayList<> (path == null? 0 : path.length);
+		if (path != null) for (int e : path) res.add(links [e]);
+		return res;
+	}
+
+	/* Dijkstra's shortest path tree rooted at a node, with a binary heap with lazy deletion. If towardsRoot is false, the distances are from the root
+	 * to each node, and if true, from each node to the root (the links are scanned backwards). If a target node is given, the algorithm stops when it
+	 * is settled. Blocked nodes are not reached, blocked links are not used, and the reversed links are traversed in the opposite direction.
+	 * Links with cost Double.MAX_VALUE are not used. If a heuristic h_n is given (a consistent lower bound of the distance of each node to the target,
+	 * Double.MAX_VALUE if it cannot reach the target), the nodes are settled in the order of distance plus heuristic (A* search) */
+	class DijkstraTree
+	{
+		final boolean towardsRoot;
+		final double [] distance_n;
+		final int [] predecessorLink_n;
+
+		DijkstraTree (int root , int target , double [] w_e , boolean [] isBlockedLink , boolean [] isBlockedNode , boolean [] isReversedLink)
+		{
+			this (root , target , w_e , isBlockedLink , isBlockedNode , isReversedLink , false , null);
+		}
+
+		DijkstraTree (int root , int target , double [] w_e , boolean [] isBlockedLink , boolean [] isBlockedNode , boolean [] isReversedLink , boolean towardsRoot , double [] h_n)
+		{
+			final int N = nodes.length;
+			this.towardsRoot = towardsRoot;
+			this.distance_n = new double [N];
+			this.predecessorLink_n = new int [N];
+			Arrays.fill(distance_n, Double.MAX_VALUE);
+			Arrays.fill(predecessorLink_n, -1);
+			final boolean [] isSettled = new boolean [N];
+			int [] heapNode = new int [N + 1];
+			double [] heapKey = new double [N + 1];
+			int heapSize = 0;
+			distance_n [root] = 0;
+			heapNode [0] = root; heapKey [0] = h_n == null? 0 : h_n [root]; heapSize = 1;
+			while (heapSize > 0)
+			{
+				final int n = heapNode [0];
+				final double key = heapKey [0];
+				heapSize --;
+				if (heapSize > 0) siftDown (heapNode , heapKey , heapSize , heapNode [heapSize] , heapKey [heapSize]);
+				if (isSettled [n] || (key > (h_n == null? distance_n [n] : distance_n [n] + h_n [n]))) continue;
+				isSettled [n] = true;
+				if (n == target) break;
+				for (int pass = 0; pass < 2 ; pass ++)
+				{
+					/* First pass: links in the direction of the tree. Second pass: reversed links, in the opposite one */
+					if ((pass == 1) && (isReversedLink == null)) break;
+					final boolean scanOutLinks = (pass == 0) != towardsRoot;
+					final int [] first = scanOutLinks? firstOut_n : firstIn_n;
+					final int [] adjacentLinks = scanOutLinks? outLinks : inLinks;
+					for (int pos = first [n] ; pos < first [n+1] ; pos ++)
+					{
+						final int e = adjacentLinks [pos];
+						if ((isReversedLink != null) && (isReversedLink [e] != (pass == 1))) continue;
+						if ((isBlockedLink != null) && isBlockedLink [e]) continue;
+						final double w = w_e [e];
+						if (w == Double.MAX_VALUE) continue;
+						if (w < 0) throw new Net2PlanException("Link costs must be non-negative");
+						final int next = scanOutLinks? destinationNode_e [e] : originNode_e [e];
+						if (isSettled [next] || ((isBlockedNode != null) && isBlockedNode [next])) continue;
+						if ((h_n != null) && (h_n [next] == Double.MAX_VALUE)) continue;
+						final double newDistance = distance_n [n] + w;
+						if (newDistance >= distance_n [next]) continue;
+						distance_n [next] = newDistance;
+						predecessorLink_n [next] = e;
+						if (heapSize == heapNode.length) { heapNode = Arrays.copyOf(heapNode, 2 * heapSize); heapKey = Arrays.copyOf(heapKey, 2 * heapSize); }
+						siftUp (heapNode , heapKey , heapSize ++ , next , h_n == null? newDistance : newDistance + h_n [next]);
+					}
+				}
+			}
+		}
+
+		boolean isReached (int n) { return distance_n [n] != Double.MAX_VALUE; }
+
+		/* The sequence of links from the root to the given node (or from the given node to the root, if towardsRoot), or null if not reached */
+		int [] getPath (int n)
+		{
+			if (!isReached(n)) return null;
+			int numHops = 0;
+			for (int current = n ; predecessorLink_n [current] != -1 ; numHops ++) current = previousNode(current);
+			final int [] path = new int [numHops];
+			int cont = 0;
+			for (int current = n ; predecessorLink_n [current] != -1 ; current = previousNode(current))
+				path [towardsRoot? cont ++ : -- numHops] = predecessorLink_n [current];
+			return path;
+		}
+
+		/* The node after the given one in the path towards the root */
+		int previousNode (int n)
+		{
+			final int e = predecessorLink_n [n];
+			return destinationNode_e [e] == n? originNode_e [e] : destinationNode_e [e];
+		}
+	}
+
+	/* Package-private access to the compiled arrays, for the path computation engines */
+	int getOriginNodePosition (int e) { return originNode_e [e]; }
+
+	int getDestinationNodePosition (int e) { return destinationNode_e [e]; }
+
+	private static void siftUp (int [] heapNode , double [] heapKey , int pos , int node , double key)
+	{
+		while (pos > 0)
+		{
+			final int parent = (pos - 1) / 2;
+			if (heapKey [parent] <= key) break;
+			heapNode [pos] = heapNode [parent]; heapKey [pos] = heapKey [parent];
+			pos = parent;
+		}
+		heapNode [pos] = node; heapKey [pos] = key;
+	}
+
+	private static void siftDown (int [] heapNode , double [] heapKey , int heapSize , int node , double key)
+	{
+		int pos = 0;
+		while (true)
+		{
+			int child = 2 * pos + 1;
+			if (child >= heapSize) break;
+			if ((child + 1 < heapSize) && (heapKey [child + 1] < heapKey [child])) child ++;
+			if (heapKey [child] >= key) break;
+			heapNode [pos] = heapNode [child]; heapKey [pos] = heapKey [child];
+			pos = child;
+		}
+		heapNode [pos] = node; heapKey [pos] = key;
+	}
+}
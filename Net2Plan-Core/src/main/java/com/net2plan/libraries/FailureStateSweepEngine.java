@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+
+package com.net2plan.libraries;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.interfaces.networkDesign.SharedRiskGroup;
+
+/**
+ * <p>Engine to evaluate a network design in a list of failure states (each one, a set of SRGs simultaneously down), using several threads.</p>
+ * <p>The baseline design is only read during the sweep, and must not be modified meanwhile. Each worker thread makes one copy of it at start, and reuses
+ * it for all the failure states it evaluates: the SRGs of the state are set as down in the copy, the evaluator is called, and the copy is reset to
+ * the baseline before the next state, according to the {@link ResetMode} of the engine.</p>
+ * <p>The per-state results are not stored: they are streamed into a {@link Collector} (e.g. one computing availabilities or worst-case values).
+ * Each worker accumulates in its own result container, and the containers are combined at the end in worker order. Failure state i is
+ * evaluated by the worker i mod T (T the number of threads), so the result does not depend on the thread scheduling.</p>
+ *
+ * @author Pablo Pavon-Marino
+ */
+public class FailureStateSweepEngine
+{
+	/**
+	 * The way the copy of the design in each worker is brought back to the baseline state after evaluating a failure state
+	 */
+	public enum ResetMode
+	{
+		/** The evaluator does not modify the design (e.g. just reads the carried traffic in the failure state): only the links and nodes set as down by the failure state are set as up again */
+		FAILURE_STATE_ONLY,
+		/** The evaluator can modify the design in any form (e.g. runs a provisioning algorithm): the baseline design is copied again on the same worker copy */
+		FULL
+	}
+
+	/**
+	 * Evaluates the network in a failure state
+	 * @param <R> the type of the result of the evaluation
+	 */
+	@FunctionalInterface
+	public interface IFailureStateEvaluator<R>
+	{
+		/**
+		 * Evaluates the network in a failure state. The design received is the copy of the worker thread, with the SRGs of the failure state set as down.
+		 * Since the copy is reused, the result should not keep references to its elements (identify them by their ids instead)
+		 * @param failureStateIndex the index of the failure state in the list given to the sweep
+		 * @param npInFailureState the design in the failure state
+		 * @return the evaluation result
+		 */
+		public R evaluate (int failureStateIndex , NetPlan npInFailureState);
+	}
+
+	private final NetPlan baseline;
+	private final int numThreads;
+	private final ResetMode resetMode;
+
+	/**
+	 * Creates the engine
+	 * @param baseline the design to evaluate, which is not modified
+	 * @param numThreads the number of worker threads (each one with its own copy of the design)
+	 * @param resetMode how the worker copies are reset between failure states
+	 */
+	public FailureStateSweepEngine (NetPlan baseline , int numThreads , ResetMode resetMode)
+	{
+		if (baseline == null || resetMode == null) throw new Net2PlanException ("Wrong input parameters");
+		if (numThreads < 1) throw new Net2PlanException ("The number of threads must be at least one");
+		this.baseline = baseline;
+		this.numThreads = numThreads;
+		this.resetMode = resetMode;
+	}
+
+	/**
+	 * Returns the design evaluated
+	 * @return see above
+	 */
+	public NetPlan getBaseline () { return baseline; }
+
+	/**
+	 * Returns the number of worker threads
+	 * @return see above
+	 */
+	public int getNumberOfThreads () { return numThreads; }
+
+	/**
+	 * Returns the reset mode of the worker copies
+	 * @return see above
+	 */
+	public ResetMode getResetMode () { return resetMode; }
+
+	/**
+	 * Evaluates all the failure states, with the same evaluator in all the workers. The evaluator must then be safe for concurrent use
+	 * @param failureStates the failure states, as sets of SRGs of the baseline design (e.g. as returned by {@link SRGUtils#enumerateFailureStates(Collection, boolean, boolean)})
+	 * @param evaluator the evaluator
+	 * @param aggregator the collector receiving the per-state results
+	 * @param <R> the type of the per-state results
+	 * @param <A> the type of the per-worker result containers
+	 * @param <T> the type of the aggregated result
+	 * @return the aggregated result
+	 */
+	public <R,A,T> T sweep (List<? extends Collection<SharedRiskGroup>> failureStates , IFailureStateEvaluator<R> evaluator , Collector<? super R,A,T> aggregator)
+	{
+		if (evaluator == null) throw new Net2PlanException ("Wrong input parameters");
+		return sweepWithEvaluatorPerWorker(failureStates, () -> evaluator, aggregator);
+	}
+
+	/**
+	 * Evaluates all the failure states. The evaluator supplier is called once in each worker thread, so evaluators that are not safe for concurrent use
+	 * (e.g. an algorithm storing state in its fields) can be used, creating one instance per worker
+	 * @param failureStates the failure states, as sets of SRGs of the baseline design (e.g. as returned by {@link SRGUtils#enumerateFailureStates(Collection, boolean, boolean)})
+	 * @param evaluatorPerWorker the supplier of the evaluator of each worker
+	 * @param aggregator the collector receiving the per-state results
+	 * @param <R> the type of the per-state results
+	 * @param <A> the type of the per-worker result containers
+	 * @param <T> the type of the aggregated result
+	 * @return the aggregated result
+	 */
+	@SuppressWarnings("unchecked")
+	public <R,A,T> T sweepWithEvaluatorPerWorker (List<? extends Collection<SharedRiskGroup>> failureStates , Supplier<? extends IFailureStateEvaluator<R>> evaluatorPerWorker , Collector<? super R,A,T> aggregator)
+	{
+		if (failureStates == null || evaluatorPerWorker == null || aggregator == null) throw new Net2PlanException ("Wrong input parameters");
+		for (Collection<SharedRiskGroup> state : failureStates)
+			for (SharedRiskGroup srg : state)
+				if (srg.getNetPlan() != baseline) throw new Net2PlanException ("The SRGs of the failure states must belong to the baseline design");
+
+		final int numWorkers = Math.max(1 , Math.min(numThreads , failureStates.size()));
+		final List<A> perWorkerContainers = new ArrayList<> (numWorkers);
+		if (numWorkers == 1)
+		{
+			perWorkerContainers.add(runWorker(0 , 1 , failureStates , evaluatorPerWorker , aggregator));
+		}
+		else
+		{
+			final ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+			try
+			{
+				final List<Future<A>> futures = new ArrayList<> (numWorkers);
+				for (int worker = 0 ; worker < numWorkers ; worker ++)
+				{
+					final int firstState = worker;
+					futures.add(pool.submit(() -> runWorker(firstState , numWorkers , failureStates , evaluatorPerWorker , aggregator)));
+				}
+				for (Future<A> future : futures)
+				{
+					try { perWorkerContainers.add(future.get()); }
+					catch (InterruptedException e) { Thread.currentThread().interrupt(); throw new Net2PlanException ("The failure state sweep was interrupted"); }
+					catch (ExecutionException e)
+					{
+						for (Future<A> f : futures) f.cancel(true);
+						final Throwable cause = e.getCause();
+						if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+						if (cause instanceof Error) throw (Error) cause;
+						throw new Net2PlanException ("Error evaluating a failure state: " + cause);
+					}
+				}
+			}
+			finally
+			{
+				pool.shutdownNow();
+			}
+		}
+
+		final BinaryOperator<A> combiner = aggregator.combiner();
+		A res = perWorkerContainers.get(0);
+		for (int worker = 1 ; worker < perWorkerContainers.size() ; worker ++)
+			res = combiner.apply(res, perWorkerContainers.get(worker));
+		if (aggregator.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) return (T) res;
+		return aggregator.finisher().apply(res);
+	}
+
+	private <R,A> A runWorker (int firstState , int stateStep , List<? extends Collection<SharedRiskGroup>> failureStates , Supplier<? extends IFailureStateEvaluator<R>> evaluatorPerWorker , Collector<? super R,A,?> aggregator)
+	{
+		final IFailureStateEvaluator<R> evaluator = evaluatorPerWorker.get();
+		final BiConsumer<A, ? super R> accumulator = aggregator.accumulator();
+		final A container = aggregator.supplier().get();
+		final NetPlan np = baseline.copy();
+		boolean copyModified = false;
+		for (int failureState = firstState ; failureState < failureStates.size() ; failureState += stateStep)
+		{
+			if (Thread.currentThread().isInterrupted()) throw new Net2PlanException ("The failure state sweep was interrupted");
+			if (copyModified) { np.copyFrom(baseline); copyModified = false; }
+
+			/* Set as down the links and nodes of the SRGs, keeping the ones that were up to restore them later */
+			final SortedSet<Link> linksToSetAsDown = new TreeSet<> ();
+			final SortedSet<Node> nodesToSetAsDown = new TreeSet<> ();
+			for (SharedRiskGroup srgBaseline : failureStates.get(failureState))
+			{
+				final SharedRiskGroup srg = np.getSRGFromId(srgBaseline.getId());
+				for (Link e : srg.getLinksAllLayers()) if (e.isUp()) linksToSetAsDown.add(e);
+				for (Node n : srg.getNodes()) if (n.isUp()) nodesToSetAsDown.add(n);
+			}
+			if (!linksToSetAsDown.isEmpty() || !nodesToSetAsDown.isEmpty())
+				np.setLinksAndNodesFailureState(null , linksToSetAsDown , null , nodesToSetAsDown);
+
+			accumulator.accept(container , evaluator.evaluate(failureState , np));
+
+			/* Bring the copy back to the baseline */
+			if (resetMode == ResetMode.FULL) copyModified = true;
+			else if (!linksToSetAsDown.isEmpty() || !nodesToSetAsDown.isEmpty())
+				np.setLinksAndNodesFailureState(linksToSetAsDown , null , nodesToSetAsDown , null);
+		}
+		return container;
+	}
+}
@@ -19,13 +19,13 @@ import cern.colt.matrix.tdouble.algo.DenseDoubleAlgebra;
 import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleEigenvalueDecomposition;
 import cern.jet.math.tdouble.DoubleFunctions;
 import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
 import com.net2plan.interfaces.networkDesign.Node;
 import com.net2plan.libraries.GraphUtils.JGraphTUtils;
 import com.net2plan.libraries.GraphUtils.JUNGUtils;
 import com.net2plan.utils.CollectionUtils;
 import com.net2plan.utils.Constants;
 import com.net2plan.utils.DoubleUtils;
-import edu.uci.ics.jung.algorithms.scoring.BetweennessCentrality;
 import edu.uci.ics.jung.graph.DirectedGraph;
 import edu.uci.ics.jung.graph.Graph;
 import org.apache.commons.collections15.Transformer;
@@ -34,6 +34,10 @@ import org.jgrapht.alg.flow.EdmondsKarpMFImpl;
 import org.jgrapht.graph.DefaultDirectedGraph;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 //import org.jgrapht.DirectedGraph;
 //import org.jgrapht.alg.EdmondsKarpMaximumFlow;
@@ -42,7 +46,9 @@ import java.util.*;
 /**
  * <p>Class to deal with graph-theory metrics computation.</p>
  *
- * <p><b>Important</b>: Internal computations (like shortest-paths) are cached in order to improve efficiency.</p>
+ * <p><b>Important</b>: Internal computations (like shortest-paths) are cached in order to improve efficiency. The shortest path
+ * metrics (diameter, average shortest path distance, heterogeneity and betweeness centralities) are computed together the first time
+ * any of them is requested, running one Dijkstra per origin node, in parallel using the available processors.</p>
  *
  * @author Pablo Pavon-Marino, Jose-Luis Izquierdo-Zaragoza
  */
@@ -96,100 +102,272 @@ public class GraphTheoryMetrics
 		configureLinkCostMap(linkCostMap);
 	}
 
-	private void computeBetweenessCentrality()
+	/* Diameter, average shortest path, heterogeneity and betweeness centralities are computed in one pass: a Dijkstra from each
+	 * origin node (Brandes' algorithm), over a primitive adjacency structure. The origin nodes are split among several threads */
+	private void computeShortestPathMetrics()
 	{
-		Graph<Node, Link> aux_graph = getGraph_JUNG();
-		BetweennessCentrality bc = new BetweennessCentrality(aux_graph, getCostTransformer());			
-
-		nodeBetweenessCentrality = DoubleFactory1D.dense.make (N);
-		for (Node node : this.nodes) nodeBetweenessCentrality.set(node.getIndex () , bc.getVertexScore(node));
-
-		linkBetweenessCentrality = DoubleFactory1D.dense.make (E);
-		for (Link link : linkMap) linkBetweenessCentrality.set(link.getIndex (), bc.getEdgeScore(link));
-	}
-	
-	private void computeSPDistanceMetrics()
-	{
-		diameter = 0;
-		averageSPLength = 0;
-		heterogeneity = 0;
-		
-		Graph<Node, Link> aux_graph = getGraph_JUNG();
-		Transformer<Link, Double> aux_nev = getCostTransformer();
-
-		/* Compute network diameter using naïve Floyd-Warshall algorithm */
-		double[][] costMatrix = new double[N][N];
-		for(int n = 0; n < N; n++)
+		final Map<Node, Integer> nodePosition = new HashMap<Node, Integer>();
+		for (int n = 0; n < N; n++) nodePosition.put(nodes.get(n), n);
+
+		final Transformer<Link, Double> aux_nev = getCostTransformer();
+		final int[] linkOrigin = new int[E];
+		final int[] linkDestination = new int[E];
+		final double[] linkCost = new double[E];
+		final int[] outLinksStart = new int[N + 1];
+		for (int e = 0; e < E; e++)
 		{
-			Arrays.fill(costMatrix[n], Double.MAX_VALUE);
-			costMatrix[n][n] = 0;
+			final Link link = linkMap.get(e);
+			final Integer a_e = nodePosition.get(link.getOriginNode());
+			final Integer b_e = nodePosition.get(link.getDestinationNode());
+			if (a_e == null || b_e == null) throw new Net2PlanException("Link " + link + " is not between the given nodes");
+			linkOrigin[e] = a_e;
+			linkDestination[e] = b_e;
+			linkCost[e] = aux_nev.transform(link);
+			outLinksStart[a_e + 1]++;
 		}
-		
-		for(Link edge : aux_graph.getEdges())
+		for (int n = 0; n < N; n++) outLinksStart[n + 1] += outLinksStart[n];
+		final int[] outLinks = new int[E];
+		final int[] nextFreePosition = Arrays.copyOf(outLinksStart, N);
+		for (int e = 0; e < E; e++) outLinks[nextFreePosition[linkOrigin[e]]++] = e;
+
+		final int numWorkers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), N));
+		final List<ShortestPathWorker> workers = new ArrayList<ShortestPathWorker>(numWorkers);
+		for (int worker = 0; worker < numWorkers; worker++)
+			workers.add(new ShortestPathWorker(worker, numWorkers, outLinksStart, outLinks, linkOrigin, linkDestination, linkCost));
+		if (numWorkers == 1)
 		{
-			int a_e = edge.getOriginNode().getIndex ();
-			int b_e = edge.getDestinationNode().getIndex ();
-			double newCost = aux_nev.transform(edge);
-			if (newCost < costMatrix[a_e][b_e]) costMatrix[a_e][b_e] = newCost;
+			workers.get(0).run();
 		}
-		
-		for(int k = 0; k < N; k++)
+		else
 		{
-			for(int i = 0; i < N; i++)
+			final ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+			try
 			{
-				if (i == k) continue;
-				
-				for(int j = 0; j < N; j++)
+				final List<Future<?>> futures = new ArrayList<Future<?>>(numWorkers);
+				for (ShortestPathWorker worker : workers) futures.add(pool.submit(worker));
+				for (Future<?> future : futures)
 				{
-					if (j == k || j == i) continue;
-					
-					double newValue = costMatrix[i][k] + costMatrix[k][j];
-					if (newValue < costMatrix[i][j]) costMatrix[i][j] = newValue;
+					try { future.get(); }
+					catch (InterruptedException e) { Thread.currentThread().interrupt(); throw new Net2PlanException("The computation of the shortest path metrics was interrupted"); }
+					catch (ExecutionException e)
+					{
+						final Throwable cause = e.getCause();
+						if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+						if (cause instanceof Error) throw (Error) cause;
+						throw new Net2PlanException("Error computing the shortest path metrics: " + cause);
+					}
 				}
 			}
+			finally
+			{
+				pool.shutdownNow();
+			}
 		}
-		
-		int numPaths = 0;
-		double sum = 0;
-		double M = 0.0;
-		double S = 0.0;
 
-		for(int i = 0; i < N; i++)
+		/* Combine the per-worker results, always in the same order */
+		final ShortestPathWorker res = workers.get(0);
+		for (int worker = 1; worker < numWorkers; worker++) res.add(workers.get(worker));
+
+		nodeBetweenessCentrality = DoubleFactory1D.dense.make(N);
+		for (int n = 0; n < N; n++) nodeBetweenessCentrality.set(nodes.get(n).getIndex(), res.nodeScore[n]);
+
+		linkBetweenessCentrality = DoubleFactory1D.dense.make(E);
+		for (int e = 0; e < E; e++) linkBetweenessCentrality.set(linkMap.get(e).getIndex(), res.linkScore[e]);
+
+		diameter = res.numPaths == 0 ? 0 : res.diameter;
+		averageSPLength = res.numPaths == 0 ? 0 : res.sum / res.numPaths;
+		heterogeneity = averageSPLength == 0 ? 0 : Math.sqrt(res.m2 / res.numPaths) / averageSPLength;
+	}
+
+	/* Runs the Dijkstra-Brandes iterations of the origin nodes firstOrigin, firstOrigin + originStep..., accumulating the
+	 * betweeness centralities, and the number, sum, mean and sum of squared deviations (Welford) of the shortest path distances */
+	private static final class ShortestPathWorker implements Runnable
+	{
+		private final int firstOrigin, originStep;
+		private final int[] outLinksStart, outLinks, linkOrigin, linkDestination;
+		private final double[] linkCost;
+
+		private final double[] nodeScore, linkScore;
+		private long numPaths;
+		private double sum, mean, m2, diameter;
+
+		private final double[] dist, numSPs, dependency;
+		private final int[] predecessorLinksHead, predecessorLinksNext;
+		private final int[] settledNodes;
+		private final boolean[] isSettled;
+		private final int[] heap, heapPosition;
+		private int heapSize;
+
+		private ShortestPathWorker(int firstOrigin, int originStep, int[] outLinksStart, int[] outLinks, int[] linkOrigin, int[] linkDestination, double[] linkCost)
+		{
+			final int N = outLinksStart.length - 1;
+			final int E = linkCost.length;
+			this.firstOrigin = firstOrigin;
+			this.originStep = originStep;
+			this.outLinksStart = outLinksStart;
+			this.outLinks = outLinks;
+			this.linkOrigin = linkOrigin;
+			this.linkDestination = linkDestination;
+			this.linkCost = linkCost;
+			this.nodeScore = new double[N];
+			this.linkScore = new double[E];
+			this.dist = new double[N];
+			this.numSPs = new double[N];
+			this.dependency = new double[N];
+			this.predecessorLinksHead = new int[N];
+			this.predecessorLinksNext = new int[E];
+			this.settledNodes = new int[N];
+			this.isSettled = new boolean[N];
+			this.heap = new int[N];
+			this.heapPosition = new int[N];
+		}
+
+		@Override
+		public void run()
 		{
-			for(int j = i + 1; j < N; j++)
+			final int N = dist.length;
+			for (int s = firstOrigin; s < N; s += originStep)
 			{
-				double dist_ij = costMatrix[i][j];
-				if (dist_ij < Double.MAX_VALUE)
+				if (Thread.currentThread().isInterrupted()) throw new Net2PlanException("The computation of the shortest path metrics was interrupted");
+
+				Arrays.fill(dist, Double.POSITIVE_INFINITY);
+				Arrays.fill(numSPs, 0);
+				Arrays.fill(dependency, 0);
+				Arrays.fill(predecessorLinksHead, -1);
+				Arrays.fill(isSettled, false);
+				int numSettledNodes = 0;
+
+				/* Dijkstra, keeping the number of shortest paths to each node, and the last link of each one */
+				dist[s] = 0;
+				numSPs[s] = 1;
+				heapSize = 0;
+				heapInsert(s);
+				while (heapSize > 0)
 				{
-					sum += dist_ij;
-					numPaths++;
-
-					double tmpM = M;
-					M += (dist_ij - tmpM) / numPaths;
-					S += (dist_ij - tmpM) * (dist_ij - M);
-
-					if (dist_ij > diameter) diameter = dist_ij;
+					final int w = heapPoll();
+					isSettled[w] = true;
+					settledNodes[numSettledNodes++] = w;
+					for (int k = outLinksStart[w]; k < outLinksStart[w + 1]; k++)
+					{
+						final int e = outLinks[k];
+						final int x = linkDestination[e];
+						if (x == w || isSettled[x]) continue;
+						final double x_potentialDist = dist[w] + linkCost[e];
+						if (x_potentialDist < dist[x])
+						{
+							final boolean inHeap = dist[x] != Double.POSITIVE_INFINITY;
+							dist[x] = x_potentialDist;
+							numSPs[x] = 0;
+							predecessorLinksHead[x] = -1;
+							if (inHeap) heapSiftUp(heapPosition[x]); else heapInsert(x);
+						}
+						if (x_potentialDist == dist[x])
+						{
+							numSPs[x] += numSPs[w];
+							predecessorLinksNext[e] = predecessorLinksHead[x];
+							predecessorLinksHead[x] = e;
+						}
+					}
 				}
-				
-				double dist_ji = costMatrix[j][i];
-				if (dist_ji < Double.MAX_VALUE)
+
+				/* Accumulate the dependencies, from the farthest node to the origin */
+				for (int i = numSettledNodes - 1; i >= 0; i--)
 				{
-					sum += dist_ji;
-					numPaths++;
-
-					double tmpM = M;
-					M += (dist_ji - tmpM) / numPaths;
-					S += (dist_ji - tmpM) * (dist_ji - M);
-					
-					if (dist_ji > diameter) diameter = dist_ji;
+					final int x = settledNodes[i];
+					for (int e = predecessorLinksHead[x]; e != -1; e = predecessorLinksNext[e])
+					{
+						final int w = linkOrigin[e];
+						final double partialDependency = numSPs[w] / numSPs[x] * (1.0 + dependency[x]);
+						dependency[w] += partialDependency;
+						linkScore[e] += partialDependency;
+					}
+					if (x == s) continue;
+
+					nodeScore[x] += dependency[x];
+					final double dist_sx = dist[x];
+					if (dist_sx < Double.MAX_VALUE)
+					{
+						sum += dist_sx;
+						numPaths++;
+						final double tmpMean = mean;
+						mean += (dist_sx - tmpMean) / numPaths;
+						m2 += (dist_sx - tmpMean) * (dist_sx - mean);
+						if (dist_sx > diameter) diameter = dist_sx;
+					}
 				}
 			}
 		}
-		
-		if (numPaths == 0) return;
-		
-		averageSPLength = numPaths == 0 ? 0 : sum / numPaths;
-		heterogeneity = averageSPLength == 0 ? 0 : Math.sqrt(S / numPaths) / averageSPLength;
+
+		private void add(ShortestPathWorker other)
+		{
+			for (int n = 0; n < nodeScore.length; n++) nodeScore[n] += other.nodeScore[n];
+			for (int e = 0; e < linkScore.length; e++) linkScore[e] += other.linkScore[e];
+			if (other.numPaths == 0) return;
+
+			final long totalNumPaths = numPaths + other.numPaths;
+			final double meanDifference = other.mean - mean;
+			m2 += other.m2 + meanDifference * meanDifference * ((double) numPaths * other.numPaths / totalNumPaths);
+			mean += meanDifference * other.numPaths / totalNumPaths;
+			sum += other.sum;
+			numPaths = totalNumPaths;
+			diameter = Math.max(diameter, other.diameter);
+		}
+
+		/* Binary heap of nodes, keyed by the current distance */
+		private void heapInsert(int n)
+		{
+			heap[heapSize] = n;
+			heapPosition[n] = heapSize;
+			heapSize++;
+			heapSiftUp(heapSize - 1);
+		}
+
+		private int heapPoll()
+		{
+			final int res = heap[0];
+			heapSize--;
+			if (heapSize > 0)
+			{
+				heap[0] = heap[heapSize];
+				heapPosition[heap[0]] = 0;
+				heapSiftDown(0);
+			}
+			return res;
+		}
+
+		private void heapSiftUp(int position)
+		{
+			final int n = heap[position];
+			while (position > 0)
+			{
+				final int parentPosition = (position - 1) / 2;
+				final int parent = heap[parentPosition];
+				if (dist[parent] <= dist[n]) break;
+				heap[position] = parent;
+				heapPosition[parent] = position;
+				position = parentPosition;
+			}
+			heap[position] = n;
+			heapPosition[n] = position;
+		}
+
+		private void heapSiftDown(int position)
+		{
+			final int n = heap[position];
+			while (true)
+			{
+				int childPosition = 2 * position + 1;
+				if (childPosition >= heapSize) break;
+				if (childPosition + 1 < heapSize && dist[heap[childPosition + 1]] < dist[heap[childPosition]]) childPosition++;
+				final int child = heap[childPosition];
+				if (dist[n] <= dist[child]) break;
+				heap[position] = child;
+				heapPosition[child] = position;
+				position = childPosition;
+			}
+			heap[position] = n;
+			heapPosition[n] = position;
+		}
 	}
 
 	/**
@@ -205,6 +383,8 @@ public class GraphTheoryMetrics
 		averageSPLength = -1;
 		diameter = -1;
 		heterogeneity = -1;
+		linkBetweenessCentrality = null;
+		nodeBetweenessCentrality = null;
 		nev = null;
 	}
 
@@ -359,7 +539,7 @@ public class GraphTheoryMetrics
 	 */
 	public double getAverageShortestPathDistance()
 	{
-		if (averageSPLength == -1) computeSPDistanceMetrics();
+		if (averageSPLength == -1) computeShortestPathMetrics();
 		return averageSPLength;
 	}
 
@@ -465,7 +645,7 @@ public class GraphTheoryMetrics
 	 */
 	public double getDiameter()
 	{
-		if (diameter == -1) computeSPDistanceMetrics();
+		if (diameter == -1) computeShortestPathMetrics();
 		return diameter;
 	}
 
@@ -491,7 +671,7 @@ public class GraphTheoryMetrics
 	 */
 	public double getHeterogeneity()
 	{
-		if (heterogeneity == -1) computeSPDistanceMetrics();
+		if (heterogeneity == -1) computeShortestPathMetrics();
 		return heterogeneity;
 	}
 
@@ -571,7 +751,7 @@ public class GraphTheoryMetrics
 	 */
 	public DoubleMatrix1D getLinkBetweenessCentrality()
 	{
-		if (linkBetweenessCentrality == null) computeBetweenessCentrality();
+		if (linkBetweenessCentrality == null) computeShortestPathMetrics();
 
 		return linkBetweenessCentrality;
 	}
@@ -631,7 +811,7 @@ public class GraphTheoryMetrics
 	 */
 	public DoubleMatrix1D getNodeBetweenessCentrality()
 	{
-		if (nodeBetweenessCentrality == null) computeBetweenessCentrality();
+		if (nodeBetweenessCentrality == null) computeShortestPathMetrics();
 
 		return nodeBetweenessCentrality;
 	}
@@ -812,21 +812,9 @@ public class GraphUtils
 	 * @return All loopless shortest paths */
 	public static List<List<Link>> getAllLooplessShortestPaths(List<Node> nodes, List<Link> links, Node originNode, Node destinationNode, SortedMap<Link, Double> linkCostMap)
 	{
-		final List<Link> filteredLinks = linkCostMap == null? links : links.stream().filter(e->linkCostMap.get(e) != Double.MAX_VALUE).collect(Collectors.toList());
-		Graph<Node, Link> g = JUNGUtils.getGraphFromLinkMap(nodes, filteredLinks);
-		Transformer<Link, Double> nev = JUNGUtils.getEdgeWeightTransformer(linkCostMap);
-
-		YenAlgorithm<Node, Link> paths = new YenAlgorithm<Node, Link>(g, nev)
-		{
-			@Override
-			public boolean compareCandidateToShortestPath(GraphPath<Link> candidate, GraphPath<Link> shortestPath)
-			{
-				return Math.abs(candidate.getPathWeight() - shortestPath.getPathWeight()) < 1E-10;
-			}
-		};
-
-		List<List<Link>> pathList = paths.getPaths(originNode, destinationNode, Integer.MAX_VALUE);
-		return pathList;
+		final CompiledGraph graph = getCompiledGraph(nodes, links);
+		final double [] w_e = graph.getLinkCostVector(linkCostMap, false);
+		return graph.getKLooplessShortestPaths(originNode, destinationNode, w_e, Integer.MAX_VALUE, Double.MAX_VALUE, Integer.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, 1E-10);
 	}
 
 	/** @param nodes List of nodes
@@ -845,14 +833,10 @@ public class GraphUtils
 			for (Link e : links)
 				linkSpareCapacityMap.put(e, Math.max(0, e.getCapacity() - e.getOccupiedCapacity()));
 		}
-		final SortedMap<Link,Double> auxMapLinkCost = linkSpareCapacityMap;
-		final List<Link> validLinks = linkCostMap == null? links.stream().filter(e->auxMapLinkCost.get(e) >= capacityGoal).collect(Collectors.toList()) : 
-			links.stream().filter(e->auxMapLinkCost.get(e) >= capacityGoal && linkCostMap.get(e) != Double.MAX_VALUE).collect(Collectors.toList());
-		final Graph<Node, Link> graph = JUNGUtils.getGraphFromLinkMap(nodes, validLinks);
-		if (!graph.containsVertex(originNode)) return new LinkedList<Link>();
-		if (!graph.containsVertex(destinationNode)) return new LinkedList<Link>();
-		Transformer<Link, Double> nev = JUNGUtils.getEdgeWeightTransformer(linkCostMap);
-		return JUNGUtils.getShortestPath(graph, nev, originNode, destinationNode);
+		final CompiledGraph graph = getCompiledGraph(nodes, links);
+		final double [] w_e = graph.getLinkCostVector(linkCostMap, false);
+		for (int e = 0; e < w_e.length ; e ++) if (linkSpareCapacityMap.get(graph.getLink(e)) < capacityGoal) w_e [e] = Double.MAX_VALUE;
+		return graph.getShortestPath(originNode, destinationNode, w_e);
 	}
 
 	
@@ -871,6 +855,27 @@ public class GraphUtils
 	 * @param maxRouteCostRespectToShortestPath Maximum route cost respect to the shortest path. If non-positive, no maximum limit is assumed
 	 * @return K-shortest paths */
 	public static List<List<Link>> getKLooplessShortestPaths(List<Node> nodes, List<Link> links, Node originNode, Node destinationNode, Map<Link, Double> linkCostMap, int K, double maxLengthInKm, int maxNumHops, double maxPropDelayInMs, double maxRouteCost, double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath)
+	{
+		final CompiledGraph graph = getCompiledGraph(nodes, links);
+		final double [] w_e = graph.getLinkCostVector(linkCostMap, false);
+		return getKLooplessShortestPaths(graph, w_e, originNode, destinationNode, K, maxLengthInKm, maxNumHops, maxPropDelayInMs, maxRouteCost, maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath);
+	}
+
+	/** Returns the K-loopless shortest paths between two nodes, satisfying some user-defined constraints, in a compiled graph. If only <i>n</i> shortest path are found (n&lt;K), those are returned.
+	 * The compiled graph and the cost vector can be shared by any number of calls, also from different threads.
+	 * @param graph the compiled graph (e.g. the one cached in the layer, see {@link NetworkLayer#getCompiledGraph()})
+	 * @param w_e Cost per link, indexed by link position in the compiled graph (see {@link CompiledGraph#getLinkCostVector(Map, boolean)}). A value of Double.MAX_VALUE means that the link cannot be used
+	 * @param originNode Origin node
+	 * @param destinationNode Destination node
+	 * @param K Desired nummber of paths (a lower number of paths may be returned if there are less than {@code K} loop-less paths admissible)
+	 * @param maxLengthInKm Maximum length of the path. If non-positive, no maximum limit is assumed
+	 * @param maxNumHops Maximum number of hops. If non-positive, no maximum limit is assumed
+	 * @param maxPropDelayInMs Maximum propagation delay of the path. If non-positive, no maximum limit is assumed
+	 * @param maxRouteCost Maximum route cost. If non-positive, no maximum limit is assumed
+	 * @param maxRouteCostFactorRespectToShortestPath Maximum route cost factor respect to the shortest path. If non-positive, no maximum limit is assumed
+	 * @param maxRouteCostRespectToShortestPath Maximum route cost respect to the shortest path. If non-positive, no maximum limit is assumed
+	 * @return K-shortest paths */
+	public static List<List<Link>> getKLooplessShortestPaths(CompiledGraph graph, double [] w_e, Node originNode, Node destinationNode, int K, double maxLengthInKm, int maxNumHops, double maxPropDelayInMs, double maxRouteCost, double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath)
 	{
 		if (maxLengthInKm <= 0) maxLengthInKm = Double.MAX_VALUE;
 		if (maxNumHops <= 0) maxNumHops = Integer.MAX_VALUE;
@@ -878,43 +883,31 @@ public class GraphUtils
 		if (maxRouteCost <= 0) maxRouteCost = Double.MAX_VALUE;
 		if (maxRouteCostFactorRespectToShortestPath <= 0) maxRouteCostFactorRespectToShortestPath = Double.MAX_VALUE;
 		if (maxRouteCostRespectToShortestPath <= 0) maxRouteCostRespectToShortestPath = Double.MAX_VALUE;
+		return graph.getKLooplessShortestPaths(originNode, destinationNode, w_e, K, maxLengthInKm, maxNumHops, maxPropDelayInMs, maxRouteCost, maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath);
+	}
 
-		final List<Link> filteredListLinks = linkCostMap == null? links : links.stream().filter(e->linkCostMap.get(e) != Double.MAX_VALUE).collect(Collectors.toList());
-		final Graph<Node, Link> g = JUNGUtils.getGraphFromLinkMap(nodes, filteredListLinks);
-		YenAlgorithm<Node, Link> paths = new YenAlgorithm<Node, Link>(g, 
-				JUNGUtils.getEdgeWeightTransformer(linkCostMap), 
-				K, maxNumHops, maxLengthInKm, maxPropDelayInMs, maxRouteCost, 
-				maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath)
-		{
-			@Override
-			public boolean acceptPath(GraphPath<Link> candidate)
-			{
-				if (maxNumHops != Integer.MAX_VALUE && candidate.getPathLength() > maxNumHops) return false;
-
-				if (maxLengthInKm == Double.MAX_VALUE && maxPropDelayInMs == Double.MAX_VALUE) return true;
-
-				double pathLengthInKm = 0;
-				double pathPropDelayInMs = 0;
-				for (Link link : candidate.getPath())
-				{
-					pathLengthInKm += link.getLengthInKm();
-					pathPropDelayInMs += link.getPropagationDelayInMs();
-				}
-
-				return pathLengthInKm <= maxLengthInKm && pathPropDelayInMs <= maxPropDelayInMs;
-			}
-
-			@Override
-			public boolean compareCandidateToShortestPath(GraphPath<Link> candidate, GraphPath<Link> shortestPath)
-			{
-				if (maxRouteCost != Double.MAX_VALUE && candidate.getPathWeight() > maxRouteCost) { return false; }
-
-				if (maxRouteCostFactorRespectToShortestPath != Double.MAX_VALUE && candidate.getPathWeight() > shortestPath.getPathWeight() * maxRouteCostFactorRespectToShortestPath) { return false; }
-
-				return !(maxRouteCostRespectToShortestPath != Double.MAX_VALUE && candidate.getPathWeight() > shortestPath.getPathWeight() + maxRouteCostRespectToShortestPath);
-			}
-		};
-		return paths.getPaths(originNode, destinationNode, K);
+	/** Returns the K-loopless shortest paths from one origin node to each of the given destination nodes, satisfying some user-defined constraints.
+	 * The shortest path trees computed are kept in the engine, so the same engine should be used for all the origin nodes (also from different threads).
+	 * @param engine the engine, created for the compiled graph and the link costs (e.g. the graph cached in the layer, see {@link NetworkLayer#getCompiledGraph()})
+	 * @param originNode Origin node
+	 * @param destinationNodes Destination nodes
+	 * @param K Desired nummber of paths (a lower number of paths may be returned if there are less than {@code K} loop-less paths admissible)
+	 * @param maxLengthInKm Maximum length of the path. If non-positive, no maximum limit is assumed
+	 * @param maxNumHops Maximum number of hops. If non-positive, no maximum limit is assumed
+	 * @param maxPropDelayInMs Maximum propagation delay of the path. If non-positive, no maximum limit is assumed
+	 * @param maxRouteCost Maximum route cost. If non-positive, no maximum limit is assumed
+	 * @param maxRouteCostFactorRespectToShortestPath Maximum route cost factor respect to the shortest path. If non-positive, no maximum limit is assumed
+	 * @param maxRouteCostRespectToShortestPath Maximum route cost respect to the shortest path. If non-positive, no maximum limit is assumed
+	 * @return K-shortest paths per destination node (an empty list if the destination is not reachable) */
+	public static SortedMap<Node,List<List<Link>>> getKLooplessShortestPaths(KLooplessShortestPathsEngine engine, Node originNode, Collection<Node> destinationNodes, int K, double maxLengthInKm, int maxNumHops, double maxPropDelayInMs, double maxRouteCost, double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath)
+	{
+		if (maxLengthInKm <= 0) maxLengthInKm = Double.MAX_VALUE;
+		if (maxNumHops <= 0) maxNumHops = Integer.MAX_VALUE;
+		if (maxPropDelayInMs <= 0) maxPropDelayInMs = Double.MAX_VALUE;
+		if (maxRouteCost <= 0) maxRouteCost = Double.MAX_VALUE;
+		if (maxRouteCostFactorRespectToShortestPath <= 0) maxRouteCostFactorRespectToShortestPath = Double.MAX_VALUE;
+		if (maxRouteCostRespectToShortestPath <= 0) maxRouteCostRespectToShortestPath = Double.MAX_VALUE;
+		return engine.getKLooplessShortestPaths(originNode, destinationNodes, K, maxLengthInKm, maxNumHops, maxPropDelayInMs, maxRouteCost, maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath);
 	}
 
 	/** Returns the K minimum cost service chains between two nodes (summing costs of links and resources traversed), traversing a given set of resource types, satisfying some user-defined constraints.
@@ -935,7 +928,7 @@ public class GraphUtils
 	 * @param cacheSubpathLists A map which associated to node pairs, the k-shortest paths (only considering links) already computed to be used. 
 	 * The algorithm will add new entries here for those pairs of nodes for which no per-computed values exist, and that are needed in the algorithm 
 	 * (e.g. for origin node to all nodes of the first resource type, nodes of the first resource type to the second...). If null, then no entries are 
-	 * precomputed AND also no new entries are returned.   
+	 * precomputed AND also no new entries are returned. Calls running in parallel can share the cache if it is a concurrent map.
 	 * @return the (at most) K minimum cost service chains.
 	 */
 	public static List<Pair<List<NetworkElement>,Double>> getKMinimumCostServiceChains(List<Link> links ,  
@@ -958,6 +951,8 @@ public class GraphUtils
 		/* initialize the link cost map */
 		SortedMap<Link,Double> linkCostMap = new TreeMap<Link,Double> (); 
 		for (int cont = 0; cont < E ; cont ++) linkCostMap.put(links.get(cont), linkCost.get(cont));
+		final CompiledGraph graph = getCompiledGraph(netPlan.getNodes(), links);
+		final double [] w_e = graph.getLinkCostVector(linkCostMap, false);
 	
 		/* initialize the nodes per phase. One element per resource type to traverse, plus one for the last node  */
 		List<SortedSet<Node>> nodesPerPhase = new ArrayList<SortedSet<Node>> ();
@@ -984,7 +979,7 @@ public class GraphUtils
 					if (!cacheSubpathLists.containsKey(Pair.of(nIn, nOut)))
 						if (nIn != nOut)
 						{
-							List<List<Link>> kPaths = getKLooplessShortestPaths(netPlan.getNodes(), links , nIn, nOut, linkCostMap, K, maxLengthInKmPerSubpath, maxNumHopsPerSubpath, maxPropDelayInMsPerSubpath, -1, -1, -1);
+							List<List<Link>> kPaths = getKLooplessShortestPaths(graph, w_e, nIn, nOut, K, maxLengthInKmPerSubpath, maxNumHopsPerSubpath, maxPropDelayInMsPerSubpath, -1, -1, -1);
 							List<Pair<List<Link> , Double>> pathsInfo = new ArrayList<Pair<List<Link> , Double>> ();
 							double previousCost = 0;
 							for (List<Link> path : kPaths)
@@ -1108,11 +1103,9 @@ public class GraphUtils
 	 * @return Shortest pair of link-disjoint paths */
 	public static List<List<Link>> getTwoLinkDisjointPaths(Collection<Node> nodes, Collection<Link> links, Node originNode, Node destinationNode, Map<Link, Double> linkCostMap)
 	{
-		final Collection<Link> linksToUse = linkCostMap == null? links : links.stream().filter(e->linkCostMap.get(e) != Double.MAX_VALUE).collect(Collectors.toList());
-		final Graph<Node, Link> graph = JUNGUtils.getGraphFromLinkMap(nodes, linksToUse);
-		final Transformer<Link, Double> nev = JUNGUtils.getEdgeWeightTransformer(linkCostMap);
-		final List<List<Link>> linkDisjointSPs = JUNGUtils.getTwoLinkDisjointPaths(graph, nev, originNode, destinationNode);
-		return linkDisjointSPs;
+		final CompiledGraph graph = getCompiledGraph(nodes, links);
+		final double [] w_e = graph.getLinkCostVector(linkCostMap, false);
+		return graph.getTwoLinkDisjointPaths(originNode, destinationNode, w_e);
 	}
 
 	/** Returns the shortest pair of node-disjoint paths, where each item represents a path. 
@@ -1390,8 +1383,15 @@ public class GraphUtils
 	 * @param ingressNode the ingress node
 	 * @param egressNode the egress node
 	 * @return See description above
+	 * @see HopByHopRoutingPropagationEngine
 	 */
 	public static Quintuple<DoubleMatrix1D, RoutingCycleType,  Double , Double , Double> computeRoutingFundamentalVector(SortedMap<Link,Double> frs , SortedMap<Node,SortedSet<Link>> outFrs , Node ingressNode , Node egressNode)
+	{
+		return new HopByHopRoutingPropagationEngine().computeRoutingFundamentalVector(frs, outFrs, ingressNode, egressNode);
+	}
+
+	/* Solves the sparse linear system (I-Q) M = e_ingress, giving the row of the fundamental matrix for the ingress node. Returns null if the system is singular (closed cycles) */
+	static DoubleMatrix1D solveRoutingFundamentalVector(SortedMap<Link,Double> frs , Node ingressNode)
 	{
 		final int N = ingressNode.getNetPlan ().getNumberOfNodes();
 		DoubleMatrix2D eyeMinusQ_nn = new SparseCCDoubleMatrix2D (N,N);
@@ -1402,20 +1402,13 @@ public class GraphUtils
 			final double splitFactor = frInfo.getValue();
 			eyeMinusQ_nn.setQuick(n2, n1 , eyeMinusQ_nn.getQuick(n2,n1) - splitFactor);
 		}
-		final double s_n = egressNode == null? -1 : 1 + eyeMinusQ_nn.viewColumn(egressNode.getIndex ()).zSum();
 		for (int n = 0; n < N ; n ++) eyeMinusQ_nn.setQuick(n, n, 1+eyeMinusQ_nn.getQuick(n,n));
-		DoubleMatrix1D Mv;
 		try 
 		{
 			DoubleMatrix1D e_k = DoubleFactory1D.sparse.make(N); e_k.set(ingressNode.getIndex (), 1.0);
-			Mv = new SparseDoubleAlgebra().solve(eyeMinusQ_nn, e_k);
+			return new SparseDoubleAlgebra().solve(eyeMinusQ_nn, e_k);
 		}
-		catch(IllegalArgumentException e) { return Quintuple.of (null , RoutingCycleType.CLOSED_CYCLES , s_n , Double.MAX_VALUE , Double.MAX_VALUE) ; }
-		
-		final double wcProp = computeWorstCasePropagationDelayAndLengthInKmMsForLoopLess(0, frs, outFrs, ingressNode, egressNode);
-		final double wcLength = computeWorstCasePropagationDelayAndLengthInKmMsForLoopLess(1, frs, outFrs, ingressNode, egressNode);
-		final RoutingCycleType routingCycleType = wcProp == Double.MAX_VALUE? RoutingCycleType.OPEN_CYCLES : RoutingCycleType.LOOPLESS;
-		return Quintuple.of(Mv, routingCycleType , s_n , wcProp , wcLength);
+		catch(IllegalArgumentException e) { return null; }
 	}
 
 	
@@ -1487,14 +1480,26 @@ public class GraphUtils
 	 * @return Sequence of links in the shortest path (empty, if destination not reachable from origin) */
 	public static List<Link> getShortestPath(Collection<Node> nodes, Collection<Link> links, Node originNode, Node destinationNode, Map<Link, Double> linkCostMap)
 	{
-		final Collection<Link> linksToUse = linkCostMap == null? links : links.stream().filter(e->linkCostMap.get(e) != Double.MAX_VALUE).collect(Collectors.toList());
-		final Graph<Node, Link> graph = JUNGUtils.getGraphFromLinkMap(nodes, linksToUse);
-		if (!graph.containsVertex(originNode)) return new LinkedList<>();
-		if (!graph.containsVertex(destinationNode)) return new LinkedList<>();
-		final Transformer<Link, Double> nev = JUNGUtils.getEdgeWeightTransformer(linkCostMap);
-		final DijkstraShortestPath<Node, Link> dsp = new DijkstraShortestPath<Node, Link>(graph, nev);
-		final List<Link> path = dsp.getPath(originNode, destinationNode);
-		return path;
+		final CompiledGraph graph = getCompiledGraph(nodes, links);
+		final double [] w_e = graph.getLinkCostVector(linkCostMap, false);
+		return graph.getShortestPath(originNode, destinationNode, w_e);
+	}
+
+	/* The snapshot cached in the layer is used when the links are all the links of a layer (in index order), and the nodes are all the nodes in the design 
+	 * (in index order). Otherwise, a new snapshot is compiled for the given nodes and links */
+	private static CompiledGraph getCompiledGraph (Collection<Node> nodes, Collection<Link> links)
+	{
+		if (links.isEmpty() || nodes.isEmpty()) return CompiledGraph.of(nodes, links);
+		final Link firstLink = links.iterator().next();
+		final NetPlan np = firstLink.getNetPlan();
+		if (np == null) return CompiledGraph.of(nodes, links);
+		final NetworkLayer layer = firstLink.getLayer();
+		if ((nodes.size() != np.getNumberOfNodes()) || (links.size() != np.getNumberOfLinks(layer))) return CompiledGraph.of(nodes, links);
+		int index = 0;
+		for (Node n : nodes) if ((n.getNetPlan() != np) || (n.getIndex() != index ++)) return CompiledGraph.of(nodes, links);
+		index = 0;
+		for (Link e : links) if ((e.getNetPlan() != np) || (e.getLayer() != layer) || (e.getIndex() != index ++)) return CompiledGraph.of(nodes, links);
+		return layer.getCompiledGraph();
 	}
 
 	
@@ -1844,93 +1849,6 @@ public class GraphUtils
 		return res;
 	}
 
-	/** <p>Class to represent a path in a Graph. Note that a path is defined in terms of edges (rather than vertices) so that multiple edges between the same pair of vertices can be discriminated.</p>
-	 * 
-	 * <p>It implements the {@code {@link java.lang.Comparable Comparable}} interface to impose order between different paths. First, try to order using the path weight, and if equals, using the number of hops.</p>
-	 * 
-	 * @param <E> Edge type
-	 * @author Pablo Pavon-Marino, Jose-Luis Izquierdo-Zaragoza */
-	private static class GraphPath<E> implements Comparable<GraphPath>
-	{
-		private final List<E> path;
-		private final double pathWeight;
-
-		/** Default constructor.
-		 * 
-		 * @param path Sequence of links
-		 * @param pathWeight Path weight */
-		public GraphPath(List<E> path, double pathWeight)
-		{
-			this.path = path;
-			this.pathWeight = pathWeight;
-		}
-
-		/** Returns the edges making up the path.
-		 * 
-		 * @return An unmodifiable list with the sequence of edges followed by the path */
-		public List<E> getPath()
-		{
-			return Collections.unmodifiableList(path);
-		}
-
-		/** Returns the path length measured in number of hops or edges. It is equivalent to {@code {@link #getPath getPath()}.size()}.
-		 * 
-		 * @return The path length */
-		public int getPathLength()
-		{
-			return getPath().size();
-		}
-
-		/** Returns the weight assigned to the path.
-		 * 
-		 * @return The weight assigned to the path */
-		public double getPathWeight()
-		{
-			return pathWeight;
-		}
-
-		/** Indicates whether some other object is "equal to" this one.
-		 * 
-		 * @param o Reference object with which to compare
-		 * @return {@code true} if this object is the same as the {@code o} argument; {@code false} otherwise */
-		@Override
-		public boolean equals(Object o)
-		{
-			if (o == null) return false;
-			if (o == this) return true;
-			if (!(o instanceof GraphPath)) return false;
-
-			GraphPath p = (GraphPath) o;
-			return getPath().equals(p.getPath()) && Math.abs(getPathWeight() - p.getPathWeight()) < 1e-10;
-		}
-
-		/** Returns a hash code value for the object. This method is supported for the benefit of hash tables such as those provided by {@code TreeMap}.
-		 * 
-		 * @return Hash code value for this object
-		 * @since 0.2.0 */
-		@Override
-		public int hashCode()
-		{
-			int hash = 7;
-			hash = 37 * hash + (this.path != null ? this.path.hashCode() : 0);
-			hash = 37 * hash + (int) (Double.doubleToLongBits(this.pathWeight) ^ (Double.doubleToLongBits(this.pathWeight) >>> 32));
-			return hash;
-		}
-
-		/** Compares this object with the specified object for order.
-		 * 
-		 * @param o The object to be compared
-		 * @return A negative integer, zero, or a positive integer as this object is less than, equal to, or greater than the specified object */
-		@Override
-		public int compareTo(GraphPath o)
-		{
-			if (pathWeight < o.pathWeight) return -1;
-			if (pathWeight > o.pathWeight) return 1;
-
-			return path.size() == o.path.size() ? 0 : (path.size() > o.path.size() ? -1 : 1);
-		}
-	}
-
 	/** <p>Auxiliary class to work with the graph library <a href='GraphUtils.html#jgrapht'>JGraphT</a>.</p>
 	 * 
 	 * @author Pablo Pavon-Marino, Jose-Luis Izquierdo-Zaragoza
@@ -3109,190 +3027,6 @@ public class GraphUtils
 		}
 	}
 
-	/** <p>Class to calculate the (loopless) <i>k</i>-shortest paths between a node pair using Yen's algorithm.</p>
-	 * 
-	 * <p>Reference: {@code J.Y. Yen, "Finding the K Shortest Loopless Paths in a Network," <i>Management Science</i>, vol. 17, no. 11, pp. 712-716, Jul. 1971}</p>
-	 * 
-	 * @param <V> Vertex type
-	 * @param <E> Edge type */
-	static class YenAlgorithm<V, E>
-	{
-		private final Graph<V, E> graph;
-		private final Transformer<E, Double> nev;
-		private final DijkstraShortestPath<V, E> dijkstra;
-
-		protected int K;
-		protected double maxLengthInKm;
-		protected int maxNumHops;
-		protected double maxPropDelayInMs;
-		protected double maxRouteCost;
-		protected double maxRouteCostFactorRespectToShortestPath;
-		protected double maxRouteCostRespectToShortestPath;
-
-		/** Default constructor. Links with cost {@code Double.MAX_VALUE} are not considered.
-		 * 
-		 * @param graph Graph on which shortest paths are searched
-		 * @param nev The class responsible for returning weights for edges */
-		private YenAlgorithm(Graph<V, E> graph, Transformer<E, Double> nev, int K, int maxNumHops, double maxLengthInKm, double maxPropDelayInMs, double maxRouteCost, double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath)
-		{
-			this.K = K;
-			this.maxLengthInKm = maxLengthInKm;
-			this.maxNumHops = maxNumHops;
-			this.maxPropDelayInMs = maxPropDelayInMs;
-			this.maxRouteCost = maxRouteCost;
-			this.maxRouteCostFactorRespectToShortestPath = maxRouteCostFactorRespectToShortestPath;
-			this.maxRouteCostRespectToShortestPath = maxRouteCostRespectToShortestPath;
-			this.graph = graph;
-			this.nev = nev;
-			dijkstra = new DijkstraShortestPath<V, E>(graph, nev);
-		}
-
-		/** Default constructor. Links with cost {@code Double.MAX_VALUE} are not considered.
-		 * 
-		 * @param graph Graph on which shortest paths are searched
-		 * @param nev The class responsible for returning weights for edges */
-		YenAlgorithm(Graph<V, E> graph, Transformer<E, Double> nev)
-		{
-			this.K = -1;
-			this.maxLengthInKm = -1;
-			this.maxNumHops = -1;
-			this.maxPropDelayInMs = -1;
-			this.maxRouteCost = -1;
-			this.maxRouteCostFactorRespectToShortestPath = -1;
-			this.maxRouteCostRespectToShortestPath = -1;
-			this.graph = graph;
-			this.nev = nev;
-			dijkstra = new DijkstraShortestPath<V, E>(graph, nev);
-		}
-
-		/** <p>Returns the (loopless) <i>k</i>-shortest simple paths in increasing order of weight.</p> <p><b>Important</b>: If only <i>n</i> < <i>k</i> paths can be found, only such <i>n</i> paths will be returned.</p>
-		 * 
-		 * @param startVertex Start vertex of the calculated paths
-		 * @param endVertex Target vertex of the calculated paths
-		 * @param k Number of paths to be computed
-		 * @return List of paths in increasing order of weight */
-		private List<List<E>> getPaths(V startVertex, V endVertex, int k)
-		{
-
-			LinkedList<List<E>> paths = new LinkedList<List<E>>();
-
-			if (!graph.containsVertex(startVertex) || !graph.containsVertex(endVertex) || startVertex.equals(endVertex)) return paths;
-			if (dijkstra.getDistance(startVertex, endVertex) == null) return paths;
-
-			PriorityQueue<GraphPath> priorityQueue = new PriorityQueue<GraphPath>();
-			List<E> aux = dijkstra.getPath(startVertex, endVertex);
-			double cost = GraphUtils.JUNGUtils.getPathWeight(aux, nev);
-			GraphPath<E> shortestPath = new GraphPath<E>(aux, cost);
-
-			if (!acceptPath(shortestPath)) return paths;
-			paths.add(aux);
-
-			DijkstraShortestPath<V, E> blockedDijkstra;
-
-			while (paths.size() < k)
-			{
-				List<E> curShortestPath = paths.getLast();
-
-				int currentPathLength = curShortestPath.size();
-
-				/* Split path into Head and NextEdge */
-				for (int deviationId = 0; deviationId < currentPathLength; deviationId++)
-				{
-					List<E> head = curShortestPath.subList(0, deviationId);
-					V deviationVertex = head.isEmpty() ? startVertex : graph.getDest(head.get(deviationId - 1));
-
-					/* 1. Block edges */
-					Graph<V, E> blocked = blockFilter(head, deviationVertex, paths);
-
-					/* 2. Get shortest path in graph with blocked edges */
-					blockedDijkstra = new DijkstraShortestPath<V, E>(blocked, nev);
-
-					Number dist = blockedDijkstra.getDistance(deviationVertex, endVertex);
-					if (dist == null) continue;
-
-					List<E> tail = blockedDijkstra.getPath(deviationVertex, endVertex);
-
-					/* 3. Combine head and tail into new path */
-					List<E> candidatePath = new ArrayList<E>(deviationId + tail.size());
-					candidatePath.addAll(head);
-					candidatePath.addAll(tail);
-
-					GraphPath<E> candidate = new GraphPath<E>(candidatePath, JUNGUtils.getPathWeight(candidatePath, nev));
-
-					/* Check if we already found this solution */
-					if (priorityQueue.contains(candidate)) continue;
-
-					if (!acceptPath(candidate) || !compareCandidateToShortestPath(candidate, shortestPath)) continue;
-
-					priorityQueue.add(candidate);
-				}
-
-				if (priorityQueue.isEmpty()) break; /* No more candidate paths */
-				paths.add(priorityQueue.poll().getPath());
-			}
-
-			return paths;
-		}
-
-		/** Blocks all incident edges of the vertices in head as well as the edge connecting head to the next node by creating a new filtered graph.
-		 * 
-		 * @param head The current head, from source to deviation node
-		 * @param deviation The edge to the next node
-		 * @param foundPaths The solutions already found and to check against
-		 * @return The filtered graph without the blocked edges
-		 * @since 0.3.0 */
-		private Graph<V, E> blockFilter(List<E> head, V deviation, List<List<E>> foundPaths)
-		{
-			final SortedSet<E> blocked = new TreeSet<E>();
-
-			/* Block incident edges to make all vertices in head unreachable. */
-			for (E e : head)
-			{
-				for (E e2 : graph.getIncidentEdges(graph.getSource(e)))
-				{
-					blocked.add(e2);
-				}
-			}
-
-			/* Block all outgoing edges that have been used at deviation vertex */
-			for (List<E> path : foundPaths)
-			{
-				if (path.size() > head.size() && ListUtils.isEqualList(path.subList(0, head.size()), head))
-				{
-					for (E e : path)
-					{
-						if (graph.isSource(deviation, e))
-						{
-							blocked.add(e);
-							break; /* Continue with next path */
-						}
-					}
-				}
-			}
-
-			return JUNGUtils.filterGraph(graph, null, null, null, blocked);
-		}
-
-		/** Indicates whether a path is valid. It can be override to implement checks like maximum path length. In contrast, {@link #compareCandidateToShortestPath(GraphUtils.GraphPath, GraphUtils.GraphPath) compareCandidateToShortestPath()} method. method can be used to compare current candidate path with the shortest path.
-		 * 
-		 * @param candidate Candidate path
-		 * @return {@code true} must be accepted. Otherwise, {@code false} */
-		public boolean acceptPath(GraphPath<E> candidate)
-		{
-			return true;
-		}
-
-		/** Indicates whether a path is valid when compared to the shortest path. It can be override to implement checks like maximum distance from the shortest path.
-		 * 
-		 * @param candidate Candidate path
-		 * @param shortestPath
-		 * @return {@code true} must be accepted. Otherwise, {@code false} */
-		public boolean compareCandidateToShortestPath(GraphPath<E> candidate, GraphPath<E> shortestPath)
-		{
-			return true;
-		}
-	}
-
 	/** Exception thrown when hop-by-hop routing includes closed cycles.
 	 * 
 	 * @author Pablo Pavon-Marino, Jose-Luis Izquierdo-Zaragoza */
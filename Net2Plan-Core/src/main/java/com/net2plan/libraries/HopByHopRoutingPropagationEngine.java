@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.libraries;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.utils.Constants.RoutingCycleType;
+import com.net2plan.utils.Quintuple;
+
+import cern.colt.matrix.tdouble.DoubleFactory1D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+
+/**
+ * <p>Engine to propagate the traffic of hop-by-hop routed demands through their forwarding rules.</p>
+ * <p>When the forwarding rules are loopless, the row of the fundamental matrix of the ingress node is obtained
+ * propagating the traffic link by link, in the topological order of the links origin nodes, together with the worst case
+ * propagation delay and length. Only if a cycle is detected, the sparse linear system (I-Q) M = e is solved, as in previous versions.
+ * Then, the worst case propagation delay and length are Double.MAX_VALUE if the cycle is reachable from the ingress node.</p>
+ * <p>The topological order computed for a set of forwarding rules is kept in the engine, and reused by any later call with
+ * an equal set of forwarding rules (e.g. the demands ending in the same egress node in an ECMP routing). Then, one engine
+ * object should be used along a batch of forwarding rule updates. Engine objects are not thread-safe.</p>
+ *
+ * @author Pablo Pavon-Marino
+ */
+public class HopByHopRoutingPropagationEngine
+{
+	private final Map<SortedMap<Link,Double>,CompiledForwardingRules> cache_compiledFrs = new HashMap<> ();
+
+	/**
+	 * <p>Computes the row of the fundamental matrix of the absorbing Markov chain in the current hop-by-hop routing, for the
+	 * given ingress node. The output is the same as in {@link GraphUtils#computeRoutingFundamentalVector(SortedMap, SortedMap, Node, Node)}</p>
+	 * @param frs the forwarding rules applicable
+	 * @param outFrs output forwarding rule
+	 * @param ingressNode the ingress node
+	 * @param egressNode the egress node
+	 * @return See description above
+	 */
+	public Quintuple<DoubleMatrix1D, RoutingCycleType,  Double , Double , Double> computeRoutingFundamentalVector (SortedMap<Link,Double> frs , SortedMap<Node,SortedSet<Link>> outFrs , Node ingressNode , Node egressNode)
+	{
+		final int N = ingressNode.getNetPlan ().getNumberOfNodes();
+		CompiledForwardingRules compiled = cache_compiledFrs.get(frs);
+		if (compiled == null || compiled.N != N)
+		{
+			compiled = new CompiledForwardingRules(frs , N);
+			cache_compiledFrs.put(new TreeMap<> (frs), compiled);
+		}
+		final int ingress = ingressNode.getIndex();
+		final int egress = egressNode == null? -1 : egressNode.getIndex();
+		final double s_n = egressNode == null? -1 : 1 - compiled.sumOutSplit_n [egress];
+
+		final DoubleMatrix1D M;
+		final double [] wcPropAndLength;
+		if (compiled.isLoopless)
+		{
+			final double [] M_n = new double [N];
+			M_n [ingress] = 1;
+			for (int pos = 0 ; pos < compiled.topologicalOrder.length ; pos ++)
+			{
+				final int cont = compiled.topologicalOrder [pos];
+				M_n [compiled.destinationNode [cont]] += compiled.splitFactor [cont] * M_n [compiled.originNode [cont]];
+			}
+			M = DoubleFactory1D.dense.make(M_n);
+			wcPropAndLength = computeWorstCasePropagationDelayAndLengthLoopless(compiled, ingress, egress);
+		}
+		else
+		{
+			M = GraphUtils.solveRoutingFundamentalVector(frs, ingressNode);
+			if (M == null) return Quintuple.of (null , RoutingCycleType.CLOSED_CYCLES , s_n , Double.MAX_VALUE , Double.MAX_VALUE);
+			wcPropAndLength = computeWorstCasePropagationDelayAndLengthWithCycles(compiled, ingress, egress);
+		}
+		final RoutingCycleType routingCycleType = wcPropAndLength [0] == Double.MAX_VALUE? RoutingCycleType.OPEN_CYCLES : RoutingCycleType.LOOPLESS;
+		return Quintuple.of(M, routingCycleType , s_n , wcPropAndLength [0] , wcPropAndLength [1]);
+	}
+
+	/* Longest path (in propagation delay and in km) from the ingress to the egress node, in the links with non-zero split factor. 
+	 * Paths do not continue after the egress node. If the egress node is not reached, or it forwards traffic, returns Double.MAX_VALUE */
+	private static double [] computeWorstCasePropagationDelayAndLengthLoopless (CompiledForwardingRules compiled , int ingress , int egress)
+	{
+		final double [] wcProp = new double [compiled.N];
+		final double [] wcLength = new double [compiled.N];
+		final boolean [] isReached = new boolean [compiled.N];
+		isReached [ingress] = true;
+		for (int pos = 0 ; pos < compiled.topologicalOrder.length ; pos ++)
+		{
+			final int cont = compiled.topologicalOrder [pos];
+			final int a_e = compiled.originNode [cont];
+			if (!isReached [a_e] || a_e == egress) continue;
+			relax (compiled , cont , wcProp , wcLength , isReached);
+		}
+		return worstCaseAtEgress (compiled , egress , wcProp , wcLength , isReached);
+	}
+
+	/* Same as before, when the forwarding rules have cycles. If a cycle is reachable from the ingress node, returns Double.MAX_VALUE */
+	private static double [] computeWorstCasePropagationDelayAndLengthWithCycles (CompiledForwardingRules compiled , int ingress , int egress)
+	{
+		final int N = compiled.N;
+		final boolean [] isReached = new boolean [N];
+		final int [] inDegreeReachable_n = new int [N];
+		final int [] nodeStack = new int [N];
+		int stackSize = 0; int numReached = 1;
+		isReached [ingress] = true; nodeStack [stackSize ++] = ingress;
+		while (stackSize > 0)
+		{
+			final int n = nodeStack [-- stackSize];
+			if (n == egress) continue;
+			for (int pos = compiled.firstOut_n [n] ; pos < compiled.firstOut_n [n+1] ; pos ++)
+			{
+				final int b_e = compiled.destinationNode [compiled.outLinks [pos]];
+				inDegreeReachable_n [b_e] ++;
+				if (!isReached [b_e]) { isReached [b_e] = true; numReached ++; nodeStack [stackSize ++] = b_e; }
+			}
+		}
+		if (inDegreeReachable_n [ingress] > 0) return new double [] { Double.MAX_VALUE , Double.MAX_VALUE };
+
+		final double [] wcProp = new double [N];
+		final double [] wcLength = new double [N];
+		final boolean [] isRelaxed = new boolean [N];
+		isRelaxed [ingress] = true;
+		int numProcessed = 0;
+		stackSize = 0; nodeStack [stackSize ++] = ingress;
+		while (stackSize > 0)
+		{
+			final int n = nodeStack [-- stackSize];
+			numProcessed ++;
+			if (n == egress) continue;
+			for (int pos = compiled.firstOut_n [n] ; pos < compiled.firstOut_n [n+1] ; pos ++)
+			{
+				final int cont = compiled.outLinks [pos];
+				relax (compiled , cont , wcProp , wcLength , isRelaxed);
+				if (-- inDegreeReachable_n [compiled.destinationNode [cont]] == 0) nodeStack [stackSize ++] = compiled.destinationNode [cont];
+			}
+		}
+		if (numProcessed < numReached) return new double [] { Double.MAX_VALUE , Double.MAX_VALUE };
+		return worstCaseAtEgress (compiled , egress , wcProp , wcLength , isRelaxed);
+	}
+
+	private static void relax (CompiledForwardingRules compiled , int cont , double [] wcProp , double [] wcLength , boolean [] isReached)
+	{
+		final int a_e = compiled.originNode [cont];
+		final int b_e = compiled.destinationNode [cont];
+		final Link e = compiled.link [cont];
+		final double thisPathProp = wcProp [a_e] + e.getPropagationDelayInMs();
+		final double thisPathLength = wcLength [a_e] + e.getLengthInKm();
+		if (!isReached [b_e]) { isReached [b_e] = true; wcProp [b_e] = thisPathProp; wcLength [b_e] = thisPathLength; }
+		else { wcProp [b_e] = Math.max(wcProp [b_e], thisPathProp); wcLength [b_e] = Math.max(wcLength [b_e], thisPathLength); }
+	}
+
+	private static double [] worstCaseAtEgress (CompiledForwardingRules compiled , int egress , double [] wcProp , double [] wcLength , boolean [] isReached)
+	{
+		/* If the egress node is not reached, or it forwards the traffic, we have open cycles */
+		if ((egress == -1) || !isReached [egress] || (compiled.sumOutSplit_n [egress] > 0)) return new double [] { Double.MAX_VALUE , Double.MAX_VALUE };
+		return new double [] { wcProp [egress] , wcLength [egress] };
+	}
+
+	/* The forwarding rules with non-zero splitting factor, with the outgoing links per node in compressed form, and the links sorted in the topological order of their origin nodes (if loopless) */
+	private static class CompiledForwardingRules
+	{
+		final int N;
+		final boolean isLoopless;
+		final double [] sumOutSplit_n;
+		final Link [] link;
+		final int [] originNode;
+		final int [] destinationNode;
+		final double [] splitFactor;
+		final int [] firstOut_n;
+		final int [] outLinks;
+		final int [] topologicalOrder;
+
+		CompiledForwardingRules (SortedMap<Link,Double> frs , int N)
+		{
+			this.N = N;
+			this.sumOutSplit_n = new double [N];
+			int E = 0;
+			for (double split : frs.values()) if (split != 0) E ++;
+			this.link = new Link [E];
+			this.originNode = new int [E];
+			this.destinationNode = new int [E];
+			this.splitFactor = new double [E];
+			final int [] inDegree_n = new int [N];
+			final int [] outDegree_n = new int [N];
+			int cont = 0;
+			for (Entry<Link,Double> fr : frs.entrySet())
+			{
+				final double split = fr.getValue();
+				if (split == 0) continue;
+				final Link e = fr.getKey();
+				link [cont] = e; 
+				originNode [cont] = e.getOriginNode().getIndex();
+				destinationNode [cont] = e.getDestinationNode().getIndex();
+				splitFactor [cont] = split; 
+				sumOutSplit_n [originNode [cont]] += split;
+				inDegree_n [destinationNode [cont]] ++;
+				outDegree_n [originNode [cont]] ++;
+				cont ++;
+			}
+
+			/* Outgoing links per node, in compressed form */
+			this.firstOut_n = new int [N + 1];
+			for (int n = 0; n < N ; n ++) firstOut_n [n+1] = firstOut_n [n] + outDegree_n [n];
+			this.outLinks = new int [E];
+			final int [] nextFree_n = Arrays.copyOf(firstOut_n, N);
+			for (cont = 0; cont < E ; cont ++) outLinks [nextFree_n [originNode [cont]] ++] = cont;
+
+			/* Kahn's algorithm */
+			final int [] nodeQueue = new int [N];
+			final int [] sortedLinks = new int [E];
+			int queueHead = 0; int queueTail = 0;
+			for (int n = 0; n < N ; n ++) if (inDegree_n [n] == 0) nodeQueue [queueTail ++] = n;
+			int numLinksSorted = 0;
+			while (queueHead < queueTail)
+			{
+				final int n = nodeQueue [queueHead ++];
+				for (int pos = firstOut_n [n] ; pos < firstOut_n [n+1] ; pos ++)
+				{
+					cont = outLinks [pos];
+					sortedLinks [numLinksSorted ++] = cont;
+					if (-- inDegree_n [destinationNode [cont]] == 0) nodeQueue [queueTail ++] = destinationNode [cont];
+				}
+			}
+			this.isLoopless = numLinksSorted == E;
+			this.topologicalOrder = isLoopless? sortedLinks : null;
+		}
+	}
+}
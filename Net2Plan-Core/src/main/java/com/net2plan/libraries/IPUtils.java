@@ -12,27 +12,24 @@
 package com.net2plan.libraries;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
-
-import org.apache.commons.collections15.Transformer;
+import java.util.concurrent.ForkJoinPool;
 
+import com.net2plan.interfaces.networkDesign.Configuration;
 import com.net2plan.interfaces.networkDesign.Demand;
 import com.net2plan.interfaces.networkDesign.Link;
 import com.net2plan.interfaces.networkDesign.Net2PlanException;
 import com.net2plan.interfaces.networkDesign.NetPlan;
 import com.net2plan.interfaces.networkDesign.NetworkLayer;
 import com.net2plan.interfaces.networkDesign.Node;
-import com.net2plan.libraries.GraphUtils.JUNGUtils;
-import com.net2plan.utils.CollectionUtils;
-import com.net2plan.utils.Constants;
 import com.net2plan.utils.Pair;
+import com.net2plan.utils.ParallelUtils;
 import com.net2plan.utils.Quadruple;
 import com.net2plan.utils.Triple;
 
@@ -40,8 +37,6 @@ import cern.colt.matrix.tdouble.DoubleFactory1D;
 import cern.colt.matrix.tdouble.DoubleFactory2D;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
-import edu.uci.ics.jung.algorithms.shortestpath.DijkstraDistance;
-import edu.uci.ics.jung.graph.Graph;
 
 /**
  * Class for destination-based routing (IP-like).
@@ -133,6 +128,22 @@ public class IPUtils
 	 * @return A {@link com.net2plan.utils.Quadruple Quadruple} composed of {@code f_de} (splitting rules), {@code x_de} (carried traffic for demand 'd' through link 'e'), {@code r_d} (end-to-end carried traffic for demand 'd'), and {@code y_e} (carried traffic by link 'e')
 	 */
 	public static Quadruple<DoubleMatrix2D, DoubleMatrix2D, DoubleMatrix1D, DoubleMatrix1D> computeCarriedTrafficFromIGPWeights(NetPlan netPlan, DoubleMatrix1D linkWeightVector , NetworkLayer ... optionalLayer)
+	{
+		return computeCarriedTrafficFromIGPWeights(netPlan, linkWeightVector, null, optionalLayer);
+	}
+
+	/**
+	 * Computes the resulting carried traffic according to a link weight setting 
+	 * and OSPF/ECMP routing. The shortest path DAG towards each egress node is computed once, and shared by all 
+	 * the demands ending in it. If a pool is given, the egress nodes are processed in parallel in it.
+	 * 
+	 * @param netPlan Network design
+	 * @param linkWeightVector Cost per link
+	 * @param pool the fork-join pool where the computations are made in parallel. If {@code null}, the computations are sequential
+	 * @param optionalLayer Network layer (optional)
+	 * @return A {@link com.net2plan.utils.Quadruple Quadruple} composed of {@code f_de} (splitting rules), {@code x_de} (carried traffic for demand 'd' through link 'e'), {@code r_d} (end-to-end carried traffic for demand 'd'), and {@code y_e} (carried traffic by link 'e')
+	 */
+	public static Quadruple<DoubleMatrix2D, DoubleMatrix2D, DoubleMatrix1D, DoubleMatrix1D> computeCarriedTrafficFromIGPWeights(NetPlan netPlan, DoubleMatrix1D linkWeightVector , ForkJoinPool pool , NetworkLayer ... optionalLayer)
 	{
 		final NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter (optionalLayer);
 		if (linkWeightVector == null) linkWeightVector = IPUtils.getLinkWeightVector (netPlan, layer);
@@ -141,14 +152,44 @@ public class IPUtils
 		final List<Node> nodes = netPlan.getNodes();
 		final List<Link> links = netPlan.getLinks(layer);
 		final List<Demand> demands = netPlan.getDemands(layer);
-		final DoubleMatrix1D h_d = netPlan.getVectorDemandOfferedTraffic(layer);
-		final DoubleMatrix2D f_te = IPUtils.computeECMPRoutingTableMatrix_fte (nodes, links , linkWeightVector);
-		final DoubleMatrix2D f_de = GraphUtils.convert_fte2fde(demands.size() , new TreeSet<> (demands), f_te);
-		final Quadruple<DoubleMatrix2D , DoubleMatrix1D, DoubleMatrix1D, List<Constants.RoutingCycleType>> q_noFailure = 
-				GraphUtils.convert_fde2xde(nodes.size(), links, new TreeSet<> (demands), h_d, f_de);
-		final DoubleMatrix2D x_de = q_noFailure.getFirst();
-		final DoubleMatrix1D r_d = q_noFailure.getSecond();
-		final DoubleMatrix1D y_e = q_noFailure.getThird();
+		final int D = demands.size();
+		final int E = links.size();
+		final EcmpTopology topology = new EcmpTopology(nodes, links, linkWeightVector);
+		final EcmpDestinationDag [] dags = computeEcmpDestinationDags(topology, topology.getEgressNodes(demands), pool);
+		final double precisionFactor = Configuration.precisionFactor;
+
+		/* Traffic of each demand, propagated along the DAG of its egress node */
+		final double [][] xValues_d = new double [D][];
+		final int [][] xLinks_d = new int [D][];
+		ParallelUtils.runInPool (pool , D , d -> 
+		{
+			final Demand demand = demands.get(d);
+			final EcmpDestinationDag dag = dags [demand.getEgressNode().getIndex()];
+			final Pair<int [] , double []> x_e = dag.propagateTraffic(demand.getIngressNode().getIndex(), demand.getOfferedTraffic());
+			xLinks_d [d] = x_e.getFirst();
+			xValues_d [d] = x_e.getSecond();
+		});
+
+		final DoubleMatrix2D f_de = DoubleFactory2D.sparse.make(D, E);
+		final DoubleMatrix2D x_de = DoubleFactory2D.sparse.make(D, E);
+		final DoubleMatrix1D r_d = DoubleFactory1D.dense.make(D);
+		final DoubleMatrix1D y_e = DoubleFactory1D.dense.make(E);
+		for (Demand demand : demands)
+		{
+			final int d = demand.getIndex();
+			final EcmpDestinationDag dag = dags [demand.getEgressNode().getIndex()];
+			setSplitFactorsRow (f_de , d , topology , dag);
+			for (int cont = 0; cont < xLinks_d [d].length ; cont ++)
+			{
+				final double x = xValues_d [d][cont];
+				if (x < precisionFactor) continue;
+				final int e = topology.links.get(xLinks_d [d][cont]).getIndex();
+				x_de.setQuick(d, e, x);
+				y_e.setQuick(e, y_e.getQuick(e) + x);
+			}
+			final boolean egressIsReachable = dag.distanceToEgress_n [demand.getIngressNode().getIndex()] < Double.MAX_VALUE;
+			if (egressIsReachable && demand.getOfferedTraffic() >= precisionFactor) r_d.setQuick(d, demand.getOfferedTraffic());
+		}
 		return Quadruple.of(f_de, x_de, r_d, y_e);
 	}
 
@@ -271,64 +312,29 @@ public class IPUtils
 	 */
 	public static DoubleMatrix2D computeECMPRoutingTableMatrix_fte (List<Node> nodes, List<Link> links, DoubleMatrix1D linkWeightVector)
 	{
-		final int N = nodes.size();
-		final int E = links.size();
-
-		final SortedMap<Link,Double> linkWeightMap = CollectionUtils.toMap(links, linkWeightVector);
-		final Transformer<Link, Double> nev = JUNGUtils.getEdgeWeightTransformer(linkWeightMap);
-		final List<Link> linksToConsider = links.stream().filter(e->linkWeightMap.get(e) != Double.MAX_VALUE).collect(Collectors.toList());
-		final Graph<Node, Link> graph = JUNGUtils.getGraphFromLinkMap(nodes, linksToConsider);
-		final DijkstraDistance<Node,Link> shortestDistanceMatrix = new DijkstraDistance<Node,Link> (graph, nev); 
-		
-		final DoubleMatrix2D f_te = DoubleFactory2D.sparse.make(N,E);
-		
-		final SortedMap<Pair<Node, Node>, Pair<SortedSet<Link>,Double>> linksPerNodeSameMinimumCost = new TreeMap<>();
-		for(Link link : linksToConsider)
-		{
-			final double newLinkCost = linkWeightMap.get(link);
-			final Pair<Node,Node> nodePair_thisLink = Pair.of(link.getOriginNode() , link.getDestinationNode());
-			final Pair<SortedSet<Link>,Double> links_thisNodePair = linksPerNodeSameMinimumCost.get(nodePair_thisLink);
-			if (links_thisNodePair == null)
-			{
-				final SortedSet<Link> setForLinkThisNodePair = new TreeSet<Link>();
-				setForLinkThisNodePair.add(link);
-				linksPerNodeSameMinimumCost.put(nodePair_thisLink, Pair.of(setForLinkThisNodePair , newLinkCost));
-			}
-			else
-			{
-				final double previousLinksCost = links_thisNodePair.getSecond();
-				if (newLinkCost < previousLinksCost) { links_thisNodePair.getFirst().clear(); links_thisNodePair.getFirst().add(link); links_thisNodePair.setSecond(newLinkCost); }
-				else if (newLinkCost == previousLinksCost) { links_thisNodePair.getFirst().add(link); }
-				else if (newLinkCost > previousLinksCost) { continue; }
-			}
-		}
+		return computeECMPRoutingTableMatrix_fte(nodes, links, linkWeightVector, null);
+	}
 
+	/**
+	 * Same as {@link #computeECMPRoutingTableMatrix_fte(List, List, DoubleMatrix1D)}, computing the shortest path DAG towards each 
+	 * egress node in parallel, in the given pool.
+	 * @param nodes List of nodes
+	 * @param links List of links
+	 * @param linkWeightVector Cost per link vector
+	 * @param pool the fork-join pool where the computations are made in parallel. If {@code null}, the computations are sequential
+	 * @return Destination-based routing in the form <i>f<sub>te</sub></i> (fractions of traffic in a node, that is forwarded through each of its output links to node {@code t})
+	 */
+	public static DoubleMatrix2D computeECMPRoutingTableMatrix_fte (List<Node> nodes, List<Link> links, DoubleMatrix1D linkWeightVector , ForkJoinPool pool)
+	{
+		final EcmpTopology topology = new EcmpTopology(nodes, links, linkWeightVector);
+		final SortedSet<Integer> egressNodes = new TreeSet<> ();
+		for (Node n : nodes) egressNodes.add(n.getIndex());
+		final EcmpDestinationDag [] dags = computeEcmpDestinationDags(topology, egressNodes, pool);
+		final DoubleMatrix2D f_te = DoubleFactory2D.sparse.make(nodes.size(),links.size());
 		for (Node egressNode : nodes)
 		{
 			final int t = egressNode.getIndex();
-			for (Node sourceNode : nodes)
-			{
-				final int n = sourceNode.getIndex ();
-				if (n == t) continue;
-				final Number shortestPathDistance_ij = shortestDistanceMatrix.getDistance(sourceNode, egressNode);
-				if (shortestPathDistance_ij == null) continue; // egress not reachable
-				final SortedSet<Link> minCostLinks = new TreeSet<> (); 
-				for (Node intermediateNode : graph.getNeighbors(sourceNode))
-				{
-					final Pair<SortedSet<Link>,Double> nodePairLinks = linksPerNodeSameMinimumCost.get(Pair.of(sourceNode, intermediateNode));
-					if (nodePairLinks == null) continue;
-					if (nodePairLinks.getFirst().isEmpty()) continue;
-					final Number costFromIntermediateToEnd = shortestDistanceMatrix.getDistance(intermediateNode, egressNode);
-					if (costFromIntermediateToEnd == null) continue;
-					final double costThroghThisIntermediate = nodePairLinks.getSecond() + costFromIntermediateToEnd.doubleValue();
-					if (Math.abs(shortestPathDistance_ij.doubleValue() - costThroghThisIntermediate) < 1E-10)
-						minCostLinks.addAll(nodePairLinks.getFirst());
-				}
-				final int outdegree = minCostLinks.size();
-				if (outdegree > 0)
-					for (Link link : minCostLinks)
-						f_te.set (t , link.getIndex () , 1.0 / outdegree);
-			}
+			setSplitFactorsRow (f_te , t , topology , dags [t]);
 		}
 		return f_te;
 	}
@@ -344,60 +350,22 @@ public class IPUtils
 	 */
 	public static Triple<List<Demand>,List<Link>,List<Double>> computeECMPForwardinRules (List<Node> nodes, List<Link> links, List<Demand> demands , DoubleMatrix1D linkWeightVector)
 	{
-		final SortedMap<Link,Double> linkWeightMap = CollectionUtils.toMap(links, linkWeightVector);
-		final Transformer<Link, Double> nev = JUNGUtils.getEdgeWeightTransformer(linkWeightMap);
-		final List<Link> linksToConsider = links.stream().filter(e->linkWeightMap.get(e) != Double.MAX_VALUE).collect(Collectors.toList());
-		final Graph<Node, Link> graph = JUNGUtils.getGraphFromLinkMap(nodes, linksToConsider);
-		final DijkstraDistance<Node,Link> shortestDistanceMatrix = new DijkstraDistance<Node,Link> (graph, nev); 
+		final EcmpTopology topology = new EcmpTopology(nodes, links, linkWeightVector);
+		final EcmpDestinationDag [] dags = computeEcmpDestinationDags(topology, topology.getEgressNodes(demands), null);
 		final List<Demand> frDemands = new ArrayList<> ();
 		final List<Link> frLinks = new ArrayList<> ();
 		final List<Double> frSplits = new ArrayList<> ();
-		
-		final SortedMap<Pair<Node, Node>, Pair<SortedSet<Link>,Double>> linksPerNodeSameMinimumCost = new TreeMap<>();
-		for(Link link : linksToConsider)
-		{
-			final double newLinkCost = linkWeightMap.get(link);
-			final Pair<Node,Node> nodePair_thisLink = Pair.of(link.getOriginNode() , link.getDestinationNode());
-			final Pair<SortedSet<Link>,Double> links_thisNodePair = linksPerNodeSameMinimumCost.get(nodePair_thisLink);
-			if (links_thisNodePair == null)
-			{
-				final SortedSet<Link> setForLinkThisNodePair = new TreeSet<Link>();
-				setForLinkThisNodePair.add(link);
-				linksPerNodeSameMinimumCost.put(nodePair_thisLink, Pair.of(setForLinkThisNodePair , newLinkCost));
-			}
-			else
-			{
-				final double previousLinksCost = links_thisNodePair.getSecond();
-				if (newLinkCost < previousLinksCost) { links_thisNodePair.getFirst().clear(); links_thisNodePair.getFirst().add(link); links_thisNodePair.setSecond(newLinkCost); }
-				else if (newLinkCost == previousLinksCost) { links_thisNodePair.getFirst().add(link); }
-				else if (newLinkCost > previousLinksCost) { continue; }
-			}
-		}
-
 		for (Demand demand : demands)
 		{
-			final Node egressNode = demand.getEgressNode();
+			final EcmpDestinationDag dag = dags [demand.getEgressNode().getIndex()];
 			for (Node sourceNode : nodes)
 			{
-				if (egressNode == sourceNode) continue;
-				final Number shortestPathDistance_ij = shortestDistanceMatrix.getDistance(sourceNode, egressNode);
-				if (shortestPathDistance_ij == null) continue; // egress not reachable
-				final SortedSet<Link> minCostLinks = new TreeSet<> (); 
-				for (Node intermediateNode : graph.getNeighbors(sourceNode))
-				{
-					final Pair<SortedSet<Link>,Double> nodePairLinks = linksPerNodeSameMinimumCost.get(Pair.of(sourceNode, intermediateNode));
-					if (nodePairLinks == null) continue;
-					if (nodePairLinks.getFirst().isEmpty()) continue;
-					final double costThroghThisIntermediate = nodePairLinks.getSecond() + shortestDistanceMatrix.getDistance(intermediateNode, egressNode).doubleValue();
-					if (Math.abs(shortestPathDistance_ij.doubleValue() - costThroghThisIntermediate) < 1E-10)
-						minCostLinks.addAll(nodePairLinks.getFirst());
-				}
-				final int outdegree = minCostLinks.size();
-				for (Link link : minCostLinks)
+				final int n = sourceNode.getIndex();
+				for (int pos = dag.firstDagLink_n [n] ; pos < dag.firstDagLink_n [n+1] ; pos ++)
 				{
 					frDemands.add(demand);
-					frLinks.add(link);
-					frSplits.add(1.0 / outdegree);
+					frLinks.add(topology.links.get(dag.dagLinks [pos]));
+					frSplits.add(dag.splitFactor_n [n]);
 				}
 			}
 		}
@@ -653,10 +621,7 @@ public class IPUtils
 	public static void setECMPForwardingRulesFromLinkWeights(NetPlan netPlan, DoubleMatrix1D linkWeightMap , NetworkLayer ... optionalLayer)
 	{
 		final NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayer);
-		final Quadruple<DoubleMatrix2D, DoubleMatrix2D, DoubleMatrix1D, DoubleMatrix1D> q = 
-				computeCarriedTrafficFromIGPWeights(netPlan, linkWeightMap , layer);
-		final DoubleMatrix2D f_de = q.getFirst ();
-		netPlan.setForwardingRules(f_de , new HashSet<> (netPlan.getDemandsHopByHopRouted(layer)) , layer);
+		setECMPForwardingRulesFromLinkWeights(netPlan, linkWeightMap, new HashSet<> (netPlan.getDemandsHopByHopRouted(layer)), layer);
 	}
 	
 	/**
@@ -673,9 +638,14 @@ public class IPUtils
 	public static void setECMPForwardingRulesFromLinkWeights(NetPlan netPlan, DoubleMatrix1D linkWeightMap , Set<Demand> demandsToUpdate , NetworkLayer ... optionalLayer)
 	{
 		final NetworkLayer layer = netPlan.checkInThisNetPlanOptionalLayerParameter(optionalLayer);
-		final Quadruple<DoubleMatrix2D, DoubleMatrix2D, DoubleMatrix1D, DoubleMatrix1D> q = 
-				computeCarriedTrafficFromIGPWeights(netPlan, linkWeightMap , layer);
-		final DoubleMatrix2D f_de = q.getFirst ();
+		if (linkWeightMap == null) linkWeightMap = IPUtils.getLinkWeightVector (netPlan, layer);
+		for (int cont = 0; cont < linkWeightMap.size() ; cont ++) if (linkWeightMap.get(cont) <= 0) throw new Net2PlanException ("Link weights must be strictly possitive");
+		final List<Demand> demands = netPlan.getDemands(layer);
+		final EcmpTopology topology = new EcmpTopology(netPlan.getNodes(), netPlan.getLinks(layer), linkWeightMap);
+		final EcmpDestinationDag [] dags = computeEcmpDestinationDags(topology, topology.getEgressNodes(demands), null);
+		final DoubleMatrix2D f_de = DoubleFactory2D.sparse.make(demands.size(), topology.links.size());
+		for (Demand demand : demands)
+			setSplitFactorsRow (f_de , demand.getIndex() , topology , dags [demand.getEgressNode().getIndex()]);
 		netPlan.setForwardingRules(f_de , demandsToUpdate , layer);
 	}
 
@@ -726,4 +696,227 @@ public class IPUtils
 			link.setAttribute (IP_WEIGHT_ATTRIBUTE_NAME, Double.toString(linkWeightVector.get (cont)));
 		}
 	}
+
+	/* Computes the shortest path DAG towards each of the given egress nodes. The array is indexed by node index, with null in the nodes not given */
+	private static EcmpDestinationDag [] computeEcmpDestinationDags (EcmpTopology topology , SortedSet<Integer> egressNodes , ForkJoinPool pool)
+	{
+		final EcmpDestinationDag [] res = new EcmpDestinationDag [topology.N];
+		final int [] egressNodesArray = egressNodes.stream().mapToInt(n->n).toArray();
+		ParallelUtils.runInPool (pool , egressNodesArray.length , cont -> res [egressNodesArray [cont]] = new EcmpDestinationDag(topology, egressNodesArray [cont]));
+		return res;
+	}
+
+	/* Sets in the given row of the matrix the fraction of the traffic that each DAG link carries from its origin node (the columns are the link indexes) */
+	private static void setSplitFactorsRow (DoubleMatrix2D f , int row , EcmpTopology topology , EcmpDestinationDag dag)
+	{
+		for (int cont = 0; cont < dag.dagLinks.length ; cont ++)
+			f.setQuick(row, topology.links.get(dag.dagLinks [cont]).getIndex(), dag.splitFactor_n [topology.originNode [dag.dagLinks [cont]]]);
+	}
+
+	/* The topology of the links in primitive arrays, indexed by the position of the link in the given list. Links with a weight of Double.MAX_VALUE
+	 * are not considered. Among parallel links (same origin and destination), only the ones with minimum weight can carry ECMP traffic */
+	private static class EcmpTopology
+	{
+		final int N;
+		final List<Link> links;
+		final int [] originNode;
+		final int [] destinationNode;
+		final double [] weight;
+		final int [] firstInLink_n; 
+		final int [] inLinks; 
+		final int [] firstOutCandidateLink_n; 
+		final int [] outCandidateLinks; // sorted by link identifier, as in a SortedSet<Link> 
+
+		EcmpTopology (List<Node> nodes , List<Link> links , DoubleMatrix1D linkWeightVector)
+		{
+			if (linkWeightVector.size () != links.size ()) throw new Net2PlanException ("Bad number of elements");
+			final int E = links.size();
+			int maxNodeIndex = -1;
+			for (Node n : nodes) maxNodeIndex = Math.max(maxNodeIndex, n.getIndex());
+			for (Link e : links) maxNodeIndex = Math.max(maxNodeIndex, Math.max(e.getOriginNode().getIndex(), e.getDestinationNode().getIndex()));
+			this.N = maxNodeIndex + 1;
+			this.links = links;
+			this.originNode = new int [E];
+			this.destinationNode = new int [E];
+			this.weight = new double [E];
+			final int [] inDegree_n = new int [N];
+			final int [] outDegree_n = new int [N];
+			for (int cont = 0; cont < E ; cont ++)
+			{
+				final Link e = links.get(cont);
+				originNode [cont] = e.getOriginNode().getIndex();
+				destinationNode [cont] = e.getDestinationNode().getIndex();
+				weight [cont] = linkWeightVector.get(cont);
+				if (weight [cont] == Double.MAX_VALUE) continue;
+				inDegree_n [destinationNode [cont]] ++;
+				outDegree_n [originNode [cont]] ++;
+			}
+			this.firstInLink_n = new int [N+1];
+			final int [] firstOutLink_n = new int [N+1];
+			for (int n = 0; n < N ; n ++) { firstInLink_n [n+1] = firstInLink_n [n] + inDegree_n [n]; firstOutLink_n [n+1] = firstOutLink_n [n] + outDegree_n [n]; }
+			this.inLinks = new int [firstInLink_n [N]];
+			final int [] outLinks = new int [firstOutLink_n [N]];
+			final int [] nextFreeIn_n = Arrays.copyOf(firstInLink_n, N);
+			final int [] nextFreeOut_n = Arrays.copyOf(firstOutLink_n, N);
+			for (int cont = 0; cont < E ; cont ++)
+			{
+				if (weight [cont] == Double.MAX_VALUE) continue;
+				inLinks [nextFreeIn_n [destinationNode [cont]] ++] = cont;
+				outLinks [nextFreeOut_n [originNode [cont]] ++] = cont;
+			}
+
+			/* Keep the minimum weight links among the parallel ones */
+			final double [] minWeightToNode = new double [N];
+			Arrays.fill(minWeightToNode, Double.MAX_VALUE);
+			this.firstOutCandidateLink_n = new int [N+1];
+			final List<Integer> candidateLinks = new ArrayList<> ();
+			for (int n = 0; n < N ; n ++)
+			{
+				for (int pos = firstOutLink_n [n] ; pos < firstOutLink_n [n+1] ; pos ++)
+					minWeightToNode [destinationNode [outLinks [pos]]] = Math.min(minWeightToNode [destinationNode [outLinks [pos]]], weight [outLinks [pos]]);
+				final List<Integer> candidatesThisNode = new ArrayList<> ();
+				for (int pos = firstOutLink_n [n] ; pos < firstOutLink_n [n+1] ; pos ++)
+					if (weight [outLinks [pos]] == minWeightToNode [destinationNode [outLinks [pos]]]) candidatesThisNode.add(outLinks [pos]);
+				for (int pos = firstOutLink_n [n] ; pos < firstOutLink_n [n+1] ; pos ++)
+					minWeightToNode [destinationNode [outLinks [pos]]] = Double.MAX_VALUE;
+				candidatesThisNode.sort((e1,e2)->links.get(e1).compareTo(links.get(e2)));
+				candidateLinks.addAll(candidatesThisNode);
+				firstOutCandidateLink_n [n+1] = candidateLinks.size();
+			}
+			this.outCandidateLinks = candidateLinks.stream().mapToInt(e->e).toArray();
+		}
+
+		SortedSet<Integer> getEgressNodes (Collection<Demand> demands)
+		{
+			final SortedSet<Integer> res = new TreeSet<> ();
+			for (Demand d : demands) res.add(d.getEgressNode().getIndex());
+			return res;
+		}
+	}
+
+	/* The ECMP shortest path DAG towards one egress node, computed with a Dijkstra algorithm in the reversed links. For each node, 
+	 * the traffic is equally split among its DAG links. Nodes are settled in increasing distance to the egress node, so the reverse 
+	 * settling order is a topological order of the DAG */
+	private static class EcmpDestinationDag
+	{
+		final double [] distanceToEgress_n;
+		final int [] settledNodes;
+		final int [] settlingPosition_n;
+		final int [] firstDagLink_n;
+		final int [] dagLinks;
+		final int [] dagLinkDestinationNode;
+		final double [] splitFactor_n;
+
+		EcmpDestinationDag (EcmpTopology topology , int egressNode)
+		{
+			final int N = topology.N;
+			this.distanceToEgress_n = new double [N];
+			Arrays.fill(distanceToEgress_n, Double.MAX_VALUE);
+			this.settlingPosition_n = new int [N];
+			Arrays.fill(settlingPosition_n, -1);
+			final int [] settledNodesAux = new int [N];
+			int numSettled = 0;
+
+			/* Dijkstra with a binary heap of (distance, node) entries, with lazy deletion */
+			final double [] heapDistance = new double [topology.inLinks.length + 1];
+			final int [] heapNode = new int [topology.inLinks.length + 1];
+			int heapSize = 0;
+			distanceToEgress_n [egressNode] = 0;
+			heapDistance [0] = 0; heapNode [0] = egressNode; heapSize = 1;
+			while (heapSize > 0)
+			{
+				final double dist = heapDistance [0];
+				final int n = heapNode [0];
+				heapSize --;
+				if (heapSize > 0) siftDown(heapDistance, heapNode, heapSize, heapDistance [heapSize], heapNode [heapSize]);
+				if (settlingPosition_n [n] != -1 || dist > distanceToEgress_n [n]) continue;
+				settlingPosition_n [n] = numSettled;
+				settledNodesAux [numSettled ++] = n;
+				for (int pos = topology.firstInLink_n [n] ; pos < topology.firstInLink_n [n+1] ; pos ++)
+				{
+					final int e = topology.inLinks [pos];
+					final int a_e = topology.originNode [e];
+					final double newDist = dist + topology.weight [e];
+					if (newDist >= distanceToEgress_n [a_e]) continue;
+					distanceToEgress_n [a_e] = newDist;
+					siftUp(heapDistance, heapNode, heapSize ++, newDist, a_e);
+				}
+			}
+			this.settledNodes = Arrays.copyOf(settledNodesAux, numSettled);
+
+			/* The links in the shortest paths */
+			this.firstDagLink_n = new int [N+1];
+			this.splitFactor_n = new double [N];
+			final int [] dagLinksAux = new int [topology.outCandidateLinks.length];
+			int numDagLinks = 0;
+			for (int n = 0; n < N ; n ++)
+			{
+				firstDagLink_n [n] = numDagLinks;
+				if (n == egressNode || distanceToEgress_n [n] == Double.MAX_VALUE) continue;
+				for (int pos = topology.firstOutCandidateLink_n [n] ; pos < topology.firstOutCandidateLink_n [n+1] ; pos ++)
+				{
+					final int e = topology.outCandidateLinks [pos];
+					final double distB_e = distanceToEgress_n [topology.destinationNode [e]];
+					if (distB_e == Double.MAX_VALUE) continue;
+					if (Math.abs(distanceToEgress_n [n] - (topology.weight [e] + distB_e)) < 1E-10) dagLinksAux [numDagLinks ++] = e;
+				}
+				if (numDagLinks > firstDagLink_n [n]) splitFactor_n [n] = 1.0 / (numDagLinks - firstDagLink_n [n]);
+			}
+			firstDagLink_n [N] = numDagLinks;
+			this.dagLinks = Arrays.copyOf(dagLinksAux, numDagLinks);
+			this.dagLinkDestinationNode = new int [numDagLinks];
+			for (int pos = 0; pos < numDagLinks ; pos ++) dagLinkDestinationNode [pos] = topology.destinationNode [dagLinks [pos]];
+		}
+
+		/* Returns the DAG links carrying the traffic from the ingress node, and the amount of traffic carried */
+		Pair<int [] , double []> propagateTraffic (int ingressNode , double offeredTraffic)
+		{
+			if (settlingPosition_n [ingressNode] == -1) return Pair.of(new int [0], new double [0]);
+			final double [] traffic_n = new double [distanceToEgress_n.length];
+			traffic_n [ingressNode] = offeredTraffic;
+			final int [] links = new int [dagLinks.length];
+			final double [] traffic = new double [dagLinks.length];
+			int numLinks = 0;
+			for (int settlingPos = settlingPosition_n [ingressNode] ; settlingPos > 0 ; settlingPos --)
+			{
+				final int n = settledNodes [settlingPos];
+				if (traffic_n [n] == 0) continue;
+				final double trafficPerLink = traffic_n [n] * splitFactor_n [n];
+				for (int pos = firstDagLink_n [n] ; pos < firstDagLink_n [n+1] ; pos ++)
+				{
+					links [numLinks] = dagLinks [pos];
+					traffic [numLinks ++] = trafficPerLink;
+					traffic_n [dagLinkDestinationNode [pos]] += trafficPerLink;
+				}
+			}
+			return Pair.of(Arrays.copyOf(links, numLinks), Arrays.copyOf(traffic, numLinks));
+		}
+	}
+
+	private static void siftUp (double [] heapDistance , int [] heapNode , int pos , double dist , int node)
+	{
+		while (pos > 0)
+		{
+			final int parent = (pos - 1) / 2;
+			if (heapDistance [parent] <= dist) break;
+			heapDistance [pos] = heapDistance [parent]; heapNode [pos] = heapNode [parent];
+			pos = parent;
+		}
+		heapDistance [pos] = dist; heapNode [pos] = node;
+	}
+
+	private static void siftDown (double [] heapDistance , int [] heapNode , int heapSize , double dist , int node)
+	{
+		int pos = 0;
+		while (true)
+		{
+			int child = 2 * pos + 1;
+			if (child >= heapSize) break;
+			if (child + 1 < heapSize && heapDistance [child + 1] < heapDistance [child]) child ++;
+			if (dist <= heapDistance [child]) break;
+			heapDistance [pos] = heapDistance [child]; heapNode [pos] = heapNode [child];
+			pos = child;
+		}
+		heapDistance [pos] = dist; heapNode [pos] = node;
+	}
 }
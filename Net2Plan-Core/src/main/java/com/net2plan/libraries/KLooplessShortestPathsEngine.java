@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.libraries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.Node;
+
+/**
+ * <p>Engine to compute the K-loopless shortest paths (Yen's algorithm) of many node pairs in a compiled graph, with the same link costs.</p>
+ * <p>The shortest path tree towards each destination node (the distance of every node to it) is computed only once, when first needed, and kept in the engine.
+ * Then, in each iteration of Yen's algorithm, the spur path from the deviation node is directly the path in the tree if it does not traverse the blocked
+ * nodes and links. Otherwise, it is computed with an A* search, using the distances in the tree as the heuristic. In its turn, the shortest paths from an
+ * origin node to all the destinations are obtained from a single shortest path tree rooted at the origin
+ * (see {@link #getKLooplessShortestPaths(Node, Collection, int, double, int, double, double, double, double)}).</p>
+ * <p>The engine can be shared by any number of threads.</p>
+ * <p>Reference: {@code J.Y. Yen, "Finding the K Shortest Loopless Paths in a Network," <i>Management Science</i>, vol. 17, no. 11, pp. 712-716, Jul. 1971}</p>
+ *
+ * @author Pablo Pavon-Marino
+ */
+public class KLooplessShortestPathsEngine
+{
+	private final CompiledGraph graph;
+	private final double [] w_e;
+	private final AtomicReferenceArray<CompiledGraph.DijkstraTree> cache_treeTowardsDestination_n;
+
+	/**
+	 * Creates the engine for the given graph and link costs
+	 * @param graph the compiled graph
+	 * @param w_e the cost of each link, indexed by link position in the graph. Links with cost Double.MAX_VALUE are not considered
+	 */
+	public KLooplessShortestPathsEngine (CompiledGraph graph , double [] w_e)
+	{
+		if (w_e.length != graph.getNumberOfLinks()) throw new Net2PlanException("The array of costs must have the same length as the number of links in the graph");
+		this.graph = graph;
+		this.w_e = Arrays.copyOf(w_e, w_e.length);
+		this.cache_treeTowardsDestination_n = new AtomicReferenceArray<> (graph.getNumberOfNodes());
+	}
+
+	/**
+	 * Returns the graph of the engine
+	 * @return see above
+	 */
+	public CompiledGraph getGraph () { return graph; }
+
+	/**
+	 * <p>Returns the K-loopless shortest paths between two nodes, satisfying some user-defined constraints. If only <i>n</i> shortest path are found (n&lt;K), those are returned.
+	 * The constraints are the same as in {@link CompiledGraph#getKLooplessShortestPaths(Node, Node, double[], int, double, int, double, double, double, double)}:
+	 * a value of {@code Double.MAX_VALUE} (or {@code Integer.MAX_VALUE}) means that no limit is assumed.</p>
+	 * @param originNode Origin node
+	 * @param destinationNode Destination node
+	 * @param K Desired number of paths
+	 * @param maxLengthInKm Maximum length of the path
+	 * @param maxNumHops Maximum number of hops
+	 * @param maxPropDelayInMs Maximum propagation delay of the path
+	 * @param maxRouteCost Maximum route cost
+	 * @param maxRouteCostFactorRespectToShortestPath Maximum route cost factor respect to the shortest path
+	 * @param maxRouteCostRespectToShortestPath Maximum route cost respect to the shortest path
+	 * @return K-shortest paths, in increasing order of cost
+	 */
+	public List<List<Link>> getKLooplessShortestPaths (Node originNode , Node destinationNode , int K , double maxLengthInKm, int maxNumHops, double maxPropDelayInMs, double maxRouteCost, double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath)
+	{
+		final int origin = graph.getNodePosition(originNode);
+		final int destination = graph.getNodePosition(destinationNode);
+		if ((origin == -1) || (destination == -1) || (origin == destination) || (K <= 0)) return new ArrayList<> ();
+
+		/* With one path, the tree towards the destination is not needed */
+		final int [] shortestPath = K == 1? graph.new DijkstraTree(origin, destination, w_e, null, null, null).getPath(destination) : getTreeTowardsDestination(destination).getPath(origin);
+		return computeKPaths(origin, destination, shortestPath, K, maxLengthInKm, maxNumHops, maxPropDelayInMs, maxRouteCost, maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath);
+	}
+
+	/**
+	 * <p>Returns the K-loopless shortest paths from one origin node to each of the given destination nodes, satisfying the same constraints as in
+	 * {@link #getKLooplessShortestPaths(Node, Node, int, double, int, double, double, double, double)}. The shortest paths to all the destinations
+	 * are obtained from one shortest path tree rooted at the origin node, and the unreachable destinations are discarded with no further computation.</p>
+	 * @param originNode Origin node
+	 * @param destinationNodes Destination nodes
+	 * @param K Desired number of paths
+	 * @param maxLengthInKm Maximum length of the path
+	 * @param maxNumHops Maximum number of hops
+	 * @param maxPropDelayInMs Maximum propagation delay of the path
+	 * @param maxRouteCost Maximum route cost
+	 * @param maxRouteCostFactorRespectToShortestPath Maximum route cost factor respect to the shortest path
+	 * @param maxRouteCostRespectToShortestPath Maximum route cost respect to the shortest path
+	 * @return the K-shortest paths (in increasing order of cost) to each destination node. The list is empty for the destinations not reachable,
+	 * not in the graph, or equal to the origin node
+	 */
+	public SortedMap<Node,List<List<Link>>> getKLooplessShortestPaths (Node originNode , Collection<Node> destinationNodes , int K , double maxLengthInKm, int maxNumHops, double maxPropDelayInMs, double maxRouteCost, double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath)
+	{
+		final SortedMap<Node,List<List<Link>>> res = new TreeMap<> ();
+		for (Node destinationNode : destinationNodes) res.put(destinationNode, new ArrayList<> ());
+		final int origin = graph.getNodePosition(originNode);
+		if ((origin == -1) || (K <= 0)) return res;
+		final CompiledGraph.DijkstraTree treeFromOrigin = graph.new DijkstraTree(origin, -1, w_e, null, null, null);
+		for (Node destinationNode : res.keySet())
+		{
+			final int destination = graph.getNodePosition(destinationNode);
+			if ((destination == -1) || (destination == origin) || !treeFromOrigin.isReached(destination)) continue;
+			res.put(destinationNode, computeKPaths(origin, destination, treeFromOrigin.getPath(destination), K, maxLengthInKm, maxNumHops, maxPropDelayInMs, maxRouteCost, maxRouteCostFactorRespectToShortestPath, maxRouteCostRespectToShortestPath));
+		}
+		return res;
+	}
+
+	/* The shortest path tree towards the given destination. If two threads ask for it at the same time, both compute it and one of them is kept */
+	private CompiledGraph.DijkstraTree getTreeTowardsDestination (int destination)
+	{
+		final CompiledGraph.DijkstraTree cached = cache_treeTowardsDestination_n.get(destination);
+		if (cached != null) return cached;
+		final CompiledGraph.DijkstraTree tree = graph.new DijkstraTree(destination, -1, w_e, null, null, null, true, null);
+		return cache_treeTowardsDestination_n.compareAndSet(destination, null, tree)? tree : cache_treeTowardsDestination_n.get(destination);
+	}
+
+	/* Yen's algorithm, given the shortest path (null if the destination is not reachable) */
+	private List<List<Link>> computeKPaths (int origin , int destination , int [] shortestPath , int K , double maxLengthInKm, int maxNumHops, double maxPropDelayInMs, double maxRouteCost, double maxRouteCostFactorRespectToShortestPath, double maxRouteCostRespectToShortestPath)
+	{
+		final List<List<Link>> res = new ArrayList<> ();
+		if (shortestPath == null) return res;
+		final double shortestPathCost = CompiledGraph.getPathCost(shortestPath, w_e);
+		if (!acceptPath(shortestPath, maxLengthInKm, maxNumHops, maxPropDelayInMs)) return res;
+
+		final List<int []> paths = new ArrayList<> ();
+		paths.add(shortestPath);
+		if (K > 1)
+		{
+			final CompiledGraph.DijkstraTree treeTowardsDestination = getTreeTowardsDestination(destination);
+			final PriorityQueue<CandidatePath> candidates = new PriorityQueue<> ();
+			final Set<CandidatePath> candidatesInQueue = new HashSet<> ();
+			final boolean [] isBlockedNode = new boolean [graph.getNumberOfNodes()];
+			final boolean [] isBlockedLink = new boolean [graph.getNumberOfLinks()];
+			long numCandidatesCreated = 0;
+			while (paths.size() < K)
+			{
+				final int [] lastPath = paths.get(paths.size() - 1);
+				for (int deviationId = 0; deviationId < lastPath.length ; deviationId ++)
+				{
+					final int deviationNode = deviationId == 0? origin : graph.getDestinationNodePosition(lastPath [deviationId - 1]);
+
+					/* Block the nodes in the head, and the links leaving the deviation node used by the paths already found with the same head */
+					if (deviationId > 0) isBlockedNode [graph.getOriginNodePosition(lastPath [deviationId - 1])] = true;
+					for (int [] path : paths)
+						if ((path.length > deviationId) && isSameHead(path, lastPath, deviationId))
+							isBlockedLink [path [deviationId]] = true;
+
+					final int [] tail = computeSpurPath(deviationNode, destination, treeTowardsDestination, isBlockedLink, isBlockedNode);
+					for (int [] path : paths)
+						if (path.length > deviationId) isBlockedLink [path [deviationId]] = false;
+					if (tail == null) continue;
+					final int [] candidatePath = new int [deviationId + tail.length];
+					System.arraycopy(lastPath, 0, candidatePath, 0, deviationId);
+					System.arraycopy(tail, 0, candidatePath, deviationId, tail.length);
+					final CandidatePath candidate = new CandidatePath(candidatePath, CompiledGraph.getPathCost(candidatePath, w_e), numCandidatesCreated ++);
+
+					/* Check if we already found this solution */
+					if (candidatesInQueue.contains(candidate)) continue;
+					if (!acceptPath(candidatePath, maxLengthInKm, maxNumHops, maxPropDelayInMs)) continue;
+					if (maxRouteCost != Double.MAX_VALUE && candidate.cost > maxRouteCost) continue;
+					if (maxRouteCostFactorRespectToShortestPath != Double.MAX_VALUE && candidate.cost > shortestPathCost * maxRouteCostFactorRespectToShortestPath) continue;
+					if (maxRouteCostRespectToShortestPath != Double.MAX_VALUE && candidate.cost > shortestPathCost + maxRouteCostRespectToShortestPath) continue;
+					candidates.add(candidate);
+					candidatesInQueue.add(candidate);
+				}
+				for (int cont = 0; cont < lastPath.length ; cont ++) isBlockedNode [graph.getOriginNodePosition(lastPath [cont])] = false;
+
+				if (candidates.isEmpty()) break; /* No more candidate paths */
+				final CandidatePath nextPath = candidates.poll();
+				candidatesInQueue.remove(nextPath);
+				paths.add(nextPath.path);
+			}
+		}
+		for (int [] path : paths) res.add(graph.toLinkList(path));
+		return res;
+	}
+
+	/* The shortest path from the deviation node to the destination, not traversing the blocked nodes and links, or null if none exists. The blocked
+	 * links all leave the deviation node, so the path in the tree is valid if its first link and its nodes are not blocked. Then, it is also the shortest */
+	private int [] computeSpurPath (int deviationNode , int destination , CompiledGraph.DijkstraTree treeTowardsDestination , boolean [] isBlockedLink , boolean [] isBlockedNode)
+	{
+		if (!treeTowardsDestination.isReached(deviationNode)) return null;
+		boolean isTreePathValid = !isBlockedLink [treeTowardsDestination.predecessorLink_n [deviationNode]];
+		for (int n = treeTowardsDestination.previousNode(deviationNode) ; isTreePathValid && (n != destination) ; n = treeTowardsDestination.previousNode(n))
+			if (isBlockedNode [n]) isTreePathValid = false;
+		if (isTreePathValid) return treeTowardsDestination.getPath(deviationNode);
+		return graph.new DijkstraTree(deviationNode, destination, w_e, isBlockedLink, isBlockedNode, null, false, treeTowardsDestination.distance_n).getPath(destination);
+	}
+
+	private boolean acceptPath (int [] path , double maxLengthInKm, int maxNumHops, double maxPropDelayInMs)
+	{
+		if (maxNumHops != Integer.MAX_VALUE && path.length > maxNumHops) return false;
+		if (maxLengthInKm == Double.MAX_VALUE && maxPropDelayInMs == Double.MAX_VALUE) return true;
+		double pathLengthInKm = 0;
+		double pathPropDelayInMs = 0;
+		for (int e : path)
+		{
+			pathLengthInKm += graph.getLink(e).getLengthInKm();
+			pathPropDelayInMs += graph.getLink(e).getPropagationDelayInMs();
+		}
+		return pathLengthInKm <= maxLengthInKm && pathPropDelayInMs <= maxPropDelayInMs;
+	}
+
+	private static boolean isSameHead (int [] path1 , int [] path2 , int headLength)
+	{
+		for (int cont = 0; cont < headLength ; cont ++) if (path1 [cont] != path2 [cont]) return false;
+		return true;
+	}
+
+	/* Candidate path in Yen's algorithm. Candidates with the same cost are polled first the one with more hops, and then in creation order */
+	private static class CandidatePath implements Comparable<CandidatePath>
+	{
+		final int [] path;
+		final double cost;
+		final long creationOrder;
+
+		CandidatePath (int [] path , double cost , long creationOrder) { this.path = path; this.cost = cost; this.creationOrder = creationOrder; }
+
+		@Override
+		public int compareTo (CandidatePath o)
+		{
+			final int compareCost = Double.compare(cost, o.cost);
+			if (compareCost != 0) return compareCost;
+			if (path.length != o.path.length) return path.length > o.path.length? -1 : 1;
+			return Long.compare(creationOrder, o.creationOrder);
+		}
+
+		@Override
+		public boolean equals (Object o)
+		{
+			if (o == this) return true;
+			if (!(o instanceof CandidatePath)) return false;
+			return Arrays.equals(path, ((CandidatePath) o).path);
+		}
+
+		@Override
+		public int hashCode () { return Arrays.hashCode(path); }
+	}
+}
@@ -1,6 +1,8 @@
 package com.net2plan.libraries;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -12,6 +14,10 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import com.jom.OptimizationProblem;
@@ -257,12 +263,18 @@ public class TrafficMatrixForecastUtils
     	return layer.getNetPlan().getMulticastDemands(layer).stream().map(e->e.getMonitoredOrForecastedOfferedTraffic().getDatesWithValue()).flatMap(e->e.stream()).collect(Collectors.toCollection(TreeSet::new));
     }
     public static boolean isGravityModelApplicableWithLinkMonitoringInfo (NetworkLayer layer , Date date)
+    {
+    	if (layer.getNetPlan().hasMulticastDemands(layer)) return false; 
+    	return isGravityModelApplicableToUnicastDemandsWithLinkMonitoringInfo(layer, date);
+    }
+
+    /* Same as before, but the multicast demands are not considered (the gravity model gives no estimation for them) */
+    private static boolean isGravityModelApplicableToUnicastDemandsWithLinkMonitoringInfo (NetworkLayer layer , Date date)
     {
     	final NetPlan np = layer.getNetPlan();
     	final List<Link> links = np.getLinks(layer);
     	final List<Demand> demands = np.getDemands(layer);
     	if (links.isEmpty()) return false; 
-    	if (np.hasMulticastDemands(layer)) return false; 
     	final SortedSet<Node> demandEndNodes = demands.stream().map(d->d.getEndNodes()).flatMap(d->d.stream()).collect(Collectors.toCollection(TreeSet::new));
     	final SortedSet<Link> linksWeNeedToHaveFullInOutInfo = new TreeSet<> ();
     	if (demands.stream().map(d->d.getIngressNode()).anyMatch(n->n.getOutgoingLinks(layer).isEmpty())) return false; 
@@ -370,4 +382,351 @@ public class TrafficMatrixForecastUtils
     }
     
     
+
+    /** The information on the demands traffic that is used, besides the link monitoring information, in the batch traffic matrix estimation 
+     * ({@link TrafficMatrixForecastUtils#estimateTmAndStoreAsDemandMonitoring_minErrorSquares(NetworkLayer, SortedSet, TMESTIMATIONDEMANDINFOTYPE, double, int)})
+     */
+    public enum TMESTIMATIONDEMANDINFOTYPE 
+    { 
+    	/** No demand information is used */
+    	NONE , 
+    	/** The gravity model estimation from the link monitoring information of the same date (as in {@link TrafficMatrixForecastUtils#getGravityModelEstimationFromMonitorTraffic(NetworkLayer, Date)}), 
+    	 * for the unicast demands. No information is used for the multicast demands */
+    	GRAVITYMODEL , 
+    	/** The demands and multicast demands monitored offered traffic, for the demands with a sample in the same date */
+    	MONITORED , 
+    	/** All the demands and multicast demands have zero traffic */
+    	ZERO 
+    }
+
+    /**
+     * <p>Estimates the offered traffic of the demands and multicast demands of the layer in each of the given dates, and stores it as a sample 
+     * of the demands monitored offered traffic in that date. The estimation in each date minimizes the same weighted sum of square errors as 
+     * {@link #getTmEstimation_minErrorSquares(NetworkLayer, Map, Map, Map, double)}, taking the link monitored carried traffic samples of that date, and the 
+     * demand information of the given type.</p>
+     * <p>The routing matrix is assembled once, and the estimation of each date is solved directly over it, with projected coordinate descent plus conjugate gradient steps, starting from 
+     * the solution of the previous date. The dates are processed in chunks by several threads, and the results of each chunk are appended to the demands 
+     * monitoring series. When the optimum is not unique (e.g. less monitored links than demands, and no demand information), any of the optimal 
+     * solutions can be returned, and then it may be different to the one of the single-date method. If the estimation of a date does not converge, 
+     * a {@link Net2PlanException} is thrown, and only the dates of the chunks before it remain stored.</p>
+     * @param layer the layer
+     * @param dates the dates to estimate
+     * @param demandInfoType the demand information to use 
+     * @param coeff_preferFitRouting0PreferFitDemand1 the weight of the demand information square errors, and one minus the weight of the link ones, in [0,1]
+     * @param numThreads the number of threads to use
+     * @return the number of dates estimated
+     */
+    public static int estimateTmAndStoreAsDemandMonitoring_minErrorSquares (NetworkLayer layer , SortedSet<Date> dates , 
+    		TMESTIMATIONDEMANDINFOTYPE demandInfoType , double coeff_preferFitRouting0PreferFitDemand1 , int numThreads)
+    {
+    	if (coeff_preferFitRouting0PreferFitDemand1 < 0 || coeff_preferFitRouting0PreferFitDemand1 > 1) throw new Net2PlanException ("Wrong parameter. Coefficient must be in [0 , 1]");
+    	if (demandInfoType == null || numThreads < 1) throw new Net2PlanException ("Wrong input parameters");
+    	final NetPlan np = layer.getNetPlan();
+    	final List<Demand> demands = np.getDemands(layer);
+    	final List<MulticastDemand> mdemands = np.getMulticastDemands(layer);
+    	if (dates.isEmpty() || (demands.isEmpty() && mdemands.isEmpty())) return 0;
+    	if (demandInfoType == TMESTIMATIONDEMANDINFOTYPE.GRAVITYMODEL)
+    		for (Date date : dates)
+    			if (!isGravityModelApplicableToUnicastDemandsWithLinkMonitoringInfo(layer, date)) throw new Net2PlanException ("Gravity model not applicable in date " + date);
+
+    	final BatchTmEstimationInput input = new BatchTmEstimationInput (layer , demandInfoType , coeff_preferFitRouting0PreferFitDemand1);
+    	final long [] times = new long [dates.size()];
+    	int cont = 0; for (Date date : dates) times [cont ++] = date.getTime();
+    	for (long t : times) input.checkEnoughInformation(t);
+
+    	/* Chunks of consecutive dates are solved in parallel, and their results appended in order, keeping a bounded number of chunks in memory */
+    	final int chunkSize = 128;
+    	final int numChunks = (times.length + chunkSize - 1) / chunkSize;
+    	final ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads , numChunks));
+    	try
+    	{
+    		final ArrayDeque<Future<double []>> pendingChunks = new ArrayDeque<> ();
+    		int nextChunkToSubmit = 0;
+    		for (int chunk = 0 ; chunk < numChunks ; chunk ++)
+    		{
+    			while (nextChunkToSubmit < numChunks && pendingChunks.size() < 2 * numThreads)
+    			{
+    				final int firstDate = nextChunkToSubmit * chunkSize;
+    				final int endDate = Math.min(times.length , firstDate + chunkSize);
+    				pendingChunks.add(pool.submit(() -> input.solve(times , firstDate , endDate)));
+    				nextChunkToSubmit ++;
+    			}
+    			final double [] h_tj;
+    			try { h_tj = pendingChunks.poll().get(); }
+    			catch (InterruptedException e) { Thread.currentThread().interrupt(); throw new Net2PlanException ("The traffic matrix estimation was interrupted"); }
+    			catch (ExecutionException e)
+    			{
+    				final Throwable cause = e.getCause();
+    				if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+    				if (cause instanceof Error) throw (Error) cause;
+    				throw new Net2PlanException ("Error in the traffic matrix estimation: " + cause);
+    			}
+    			final int firstDate = chunk * chunkSize;
+    			final int numDates = Math.min(times.length , firstDate + chunkSize) - firstDate;
+    			final long [] chunkTimes = Arrays.copyOfRange(times, firstDate, firstDate + numDates);
+    			for (int j = 0 ; j < input.numVariables ; j ++)
+    			{
+    				final double [] h_t = new double [numDates];
+    				for (int t = 0 ; t < numDates ; t ++) h_t [t] = h_tj [t * input.numVariables + j];
+    				if (j < demands.size()) demands.get(j).getMonitoredOrForecastedOfferedTraffic().addValues(chunkTimes, h_t);
+    				else mdemands.get(j - demands.size()).getMonitoredOrForecastedOfferedTraffic().addValues(chunkTimes, h_t);
+    			}
+    		}
+    	}
+    	finally
+    	{
+    		pool.shutdownNow();
+    	}
+    	return times.length;
+    }
+    
+    /* The information of the layer needed for the batch estimation, in primitive arrays, so the solving threads do not access the design. 
+     * Variables 0..D-1 are the demands, and D..D+MD-1 the multicast demands (in index order) */
+    private static final class BatchTmEstimationInput
+    {
+    	private final int E, D, numVariables;
+    	private final double a;
+    	private final TMESTIMATIONDEMANDINFOTYPE demandInfoType;
+    	private final int [] routingStart_j; private final int [] routingLink; private final double [] routingFraction;
+    	private final long [][] monitTimes_e; private final double [][] monitValues_e;
+    	private final long [][] monitTimes_j; private final double [][] monitValues_j;
+    	private final int [][] linksInPerNode , linksOutPerNode;
+    	private final int [] ingressNode_j , egressNode_j , numNodePairDemands_j;
+
+    	private BatchTmEstimationInput (NetworkLayer layer , TMESTIMATIONDEMANDINFOTYPE demandInfoType , double a)
+    	{
+    		final NetPlan np = layer.getNetPlan();
+    		final List<Link> links = np.getLinks(layer);
+    		final List<Demand> demands = np.getDemands(layer);
+    		final List<MulticastDemand> mdemands = np.getMulticastDemands(layer);
+    		this.D = demands.size();
+    		this.E = links.size();
+    		this.numVariables = D + mdemands.size();
+    		this.a = a;
+    		this.demandInfoType = demandInfoType;
+
+    		/* Fraction of the offered traffic of each demand carried by each link */
+    		final List<SortedMap<Link,Double>> routing_j = new ArrayList<> (numVariables);
+    		for (Demand d : demands) routing_j.add(d.getTraversedLinksAndCarriedTraffic(true));
+    		for (MulticastDemand d : mdemands) routing_j.add(d.getTraversedLinksAndCarriedTraffic(true));
+    		this.routingStart_j = new int [numVariables + 1];
+    		for (int j = 0 ; j < numVariables ; j ++) routingStart_j [j + 1] = routingStart_j [j] + routing_j.get(j).size();
+    		this.routingLink = new int [routingStart_j [numVariables]];
+    		this.routingFraction = new double [routingStart_j [numVariables]];
+    		for (int j = 0 ; j < numVariables ; j ++)
+    		{
+    			int k = routingStart_j [j];
+    			for (Entry<Link,Double> fr : routing_j.get(j).entrySet()) { routingLink [k] = fr.getKey().getIndex(); routingFraction [k ++] = fr.getValue(); }
+    		}
+
+    		this.monitTimes_e = new long [E][]; this.monitValues_e = new double [E][];
+    		for (Link e : links) 
+    		{ 
+    			monitTimes_e [e.getIndex()] = e.getMonitoredOrForecastedCarriedTraffic().getTimesInMsAsArray(); 
+    			monitValues_e [e.getIndex()] = e.getMonitoredOrForecastedCarriedTraffic().getValuesAsArray(); 
+    		}
+    		this.monitTimes_j = new long [numVariables][]; this.monitValues_j = new double [numVariables][];
+    		if (demandInfoType == TMESTIMATIONDEMANDINFOTYPE.MONITORED)
+    		{
+    			for (int j = 0 ; j < numVariables ; j ++)
+    			{
+    				final TrafficSeries ts = j < D? demands.get(j).getMonitoredOrForecastedOfferedTraffic() : mdemands.get(j - D).getMonitoredOrForecastedOfferedTraffic();
+    				monitTimes_j [j] = ts.getTimesInMsAsArray();
+    				monitValues_j [j] = ts.getValuesAsArray();
+    			}
+    		}
+
+    		final int N = np.getNumberOfNodes();
+    		this.linksInPerNode = new int [N][]; this.linksOutPerNode = new int [N][];
+    		this.ingressNode_j = new int [D]; this.egressNode_j = new int [D]; this.numNodePairDemands_j = new int [D];
+    		if (demandInfoType == TMESTIMATIONDEMANDINFOTYPE.GRAVITYMODEL)
+    		{
+    			for (Node n : np.getNodes())
+    			{
+    				linksInPerNode [n.getIndex()] = n.getIncomingLinks(layer).stream().mapToInt(e->e.getIndex()).toArray();
+    				linksOutPerNode [n.getIndex()] = n.getOutgoingLinks(layer).stream().mapToInt(e->e.getIndex()).toArray();
+    			}
+    			for (Demand d : demands)
+    			{
+    				ingressNode_j [d.getIndex()] = d.getIngressNode().getIndex();
+    				egressNode_j [d.getIndex()] = d.getEgressNode().getIndex();
+    				numNodePairDemands_j [d.getIndex()] = np.getNodePairDemands(d.getIngressNode(), d.getEgressNode(), false, layer).size();
+    			}
+    		}
+    	}
+
+    	private void checkEnoughInformation (long t)
+    	{
+    		boolean someLinkInfo = false;
+    		for (int e = 0 ; e < E && !someLinkInfo ; e ++) someLinkInfo = Arrays.binarySearch(monitTimes_e [e], t) >= 0;
+    		boolean someDemandInfo = (demandInfoType == TMESTIMATIONDEMANDINFOTYPE.GRAVITYMODEL && D > 0) || demandInfoType == TMESTIMATIONDEMANDINFOTYPE.ZERO;
+    		if (demandInfoType == TMESTIMATIONDEMANDINFOTYPE.MONITORED)
+    			for (int j = 0 ; j < numVariables && !someDemandInfo ; j ++) someDemandInfo = Arrays.binarySearch(monitTimes_j [j], t) >= 0;
+    		if (!(someLinkInfo && a != 1) && !(someDemandInfo && a != 0)) throw new Net2PlanException ("No input monitoring information exists for estimating the matrix in date " + new Date (t));
+    	}
+
+    	/* Returns the estimated traffic of variable j in the date t of the chunk, in position (t-firstDate) * numVariables + j */
+    	private double [] solve (long [] times , int firstDate , int endDate)
+    	{
+    		final double [] res = new double [(endDate - firstDate) * numVariables];
+    		final double [] weight_e = new double [E], est_e = new double [E], residual_e = new double [E];
+    		final double [] weight_j = new double [numVariables], est_j = new double [numVariables], hessian_j = new double [numVariables];
+    		final double [] h_j = new double [numVariables];
+    		final double [] cg_direction_j = new double [numVariables], cg_remainder_j = new double [numVariables], cg_hessianTimesDirection_j = new double [numVariables];
+    		final double [] cg_directionCarried_e = new double [E];
+    		final double [] ingressTrafficPerNode = new double [linksInPerNode.length];
+    		final double [] egressTrafficPerNode = new double [linksOutPerNode.length];
+    		for (int date = firstDate ; date < endDate ; date ++)
+    		{
+    			if (Thread.currentThread().isInterrupted()) throw new Net2PlanException ("The traffic matrix estimation was interrupted");
+    			final long t = times [date];
+
+    			/* The square errors of the links with a sample in the date are weighted by 1-a, and of the demands with information by a */
+    			double scale = 0;
+    			for (int e = 0 ; e < E ; e ++)
+    			{
+    				final int index = Arrays.binarySearch(monitTimes_e [e], t);
+    				weight_e [e] = index >= 0? 1 - a : 0;
+    				est_e [e] = index >= 0? monitValues_e [e][index] : 0;
+    				scale = Math.max(scale, Math.abs(est_e [e]));
+    			}
+    			if (demandInfoType == TMESTIMATIONDEMANDINFOTYPE.NONE) Arrays.fill(weight_j, 0);
+    			else if (demandInfoType == TMESTIMATIONDEMANDINFOTYPE.ZERO) { Arrays.fill(weight_j, a); Arrays.fill(est_j, 0); }
+    			else if (demandInfoType == TMESTIMATIONDEMANDINFOTYPE.MONITORED)
+    			{
+    				for (int j = 0 ; j < numVariables ; j ++)
+    				{
+    					final int index = Arrays.binarySearch(monitTimes_j [j], t);
+    					weight_j [j] = index >= 0? a : 0;
+    					est_j [j] = index >= 0? monitValues_j [j][index] : 0;
+    				}
+    			}
+    			else if (demandInfoType == TMESTIMATIONDEMANDINFOTYPE.GRAVITYMODEL)
+    			{
+    				/* Same computation as the gravity model from monitored traffic. The links without a sample (not adjacent to demand end nodes) are taken as carrying no traffic */
+    				double totalEgressTraffic = 0;
+    				for (int n = 0 ; n < ingressTrafficPerNode.length ; n ++)
+    				{
+    					ingressTrafficPerNode [n] = 0; egressTrafficPerNode [n] = 0;
+    					for (int e : linksInPerNode [n]) ingressTrafficPerNode [n] += getMonitValueOrZero (e , t);
+    					for (int e : linksOutPerNode [n]) egressTrafficPerNode [n] += getMonitValueOrZero (e , t);
+    					totalEgressTraffic += egressTrafficPerNode [n];
+    				}
+    				for (int j = 0 ; j < D ; j ++)
+    				{
+    					weight_j [j] = a;
+    					est_j [j] = totalEgressTraffic == 0? 0 : ingressTrafficPerNode [ingressNode_j [j]] * egressTrafficPerNode [egressNode_j [j]] / totalEgressTraffic / numNodePairDemands_j [j];
+    				}
+    				/* the gravity model gives no estimation for the multicast demands */
+    				for (int j = D ; j < numVariables ; j ++) { weight_j [j] = 0; est_j [j] = 0; }
+    			}
+    			for (int j = 0 ; j < numVariables ; j ++) if (weight_j [j] > 0) scale = Math.max(scale, Math.abs(est_j [j]));
+
+    			/* Starting point: the solution of the previous date, or the demand information in the first date of the chunk */
+    			if (date == firstDate)
+    				for (int j = 0 ; j < numVariables ; j ++) h_j [j] = weight_j [j] > 0? Math.max(0, est_j [j]) : 0;
+    			for (int j = 0 ; j < numVariables ; j ++)
+    			{
+    				double hessian = weight_j [j];
+    				for (int k = routingStart_j [j] ; k < routingStart_j [j + 1] ; k ++)
+    					hessian += weight_e [routingLink [k]] * routingFraction [k] * routingFraction [k];
+    				hessian_j [j] = hessian;
+    			}
+
+    			/* Each iteration makes a sweep of projected coordinate descent (which also measures the optimality conditions violation), 
+    			 * and then a conjugate gradient minimization in the variables that are not zero, until they are all optimal or one becomes zero */
+    			final double tolerance = 1e-9 * Math.max(scale , 1e-12);
+    			boolean converged = false;
+    			for (int iteration = 0 ; iteration < MAXITERATIONS_BATCHTMESTIMATION ; iteration ++)
+    			{
+    				for (int e = 0 ; e < E ; e ++) residual_e [e] = -est_e [e];
+    				for (int j = 0 ; j < numVariables ; j ++)
+    					for (int k = routingStart_j [j] ; k < routingStart_j [j + 1] ; k ++)
+    						residual_e [routingLink [k]] += routingFraction [k] * h_j [j];
+    				double maxViolation = 0;
+    				for (int j = 0 ; j < numVariables ; j ++)
+    				{
+    					if (hessian_j [j] == 0) continue;
+    					final double gradient = getGradient (j , h_j , weight_e , residual_e , weight_j , est_j);
+    					maxViolation = Math.max(maxViolation, h_j [j] > 0? Math.abs(gradient) : Math.max(0, -gradient));
+    					final double newH = Math.max(0, h_j [j] - gradient / hessian_j [j]);
+    					final double delta = newH - h_j [j];
+    					if (delta == 0) continue;
+    					h_j [j] = newH;
+    					for (int k = routingStart_j [j] ; k < routingStart_j [j + 1] ; k ++)
+    						residual_e [routingLink [k]] += routingFraction [k] * delta;
+    				}
+    				if (maxViolation <= tolerance) { converged = true; break; }
+    				conjugateGradientInNonZeroVariables (tolerance , h_j , weight_e , residual_e , weight_j , est_j , hessian_j , cg_direction_j , cg_remainder_j , cg_hessianTimesDirection_j , cg_directionCarried_e);
+    			}
+    			if (!converged) throw new Net2PlanException ("The traffic matrix estimation did not converge in date " + new Date (t) + " after " + MAXITERATIONS_BATCHTMESTIMATION + " iterations");
+    			System.arraycopy(h_j, 0, res, (date - firstDate) * numVariables, numVariables);
+    		}
+    		return res;
+    	}
+
+    	/* Derivative of the objective function (divided by two) respect to variable j */
+    	private double getGradient (int j , double [] h_j , double [] weight_e , double [] residual_e , double [] weight_j , double [] est_j)
+    	{
+    		double gradient = weight_j [j] * (h_j [j] - est_j [j]);
+    		for (int k = routingStart_j [j] ; k < routingStart_j [j + 1] ; k ++)
+    			gradient += weight_e [routingLink [k]] * routingFraction [k] * residual_e [routingLink [k]];
+    		return gradient;
+    	}
+
+    	private void conjugateGradientInNonZeroVariables (double tolerance , double [] h_j , double [] weight_e , double [] residual_e , double [] weight_j , double [] est_j , double [] hessian_j ,
+    			double [] direction_j , double [] remainder_j , double [] hessianTimesDirection_j , double [] directionCarried_e)
+    	{
+    		double remainderSquareNorm = 0;
+    		int numFreeVariables = 0;
+    		for (int j = 0 ; j < numVariables ; j ++)
+    		{
+    			remainder_j [j] = h_j [j] > 0 && hessian_j [j] > 0? -getGradient (j , h_j , weight_e , residual_e , weight_j , est_j) : 0;
+    			direction_j [j] = remainder_j [j];
+    			remainderSquareNorm += remainder_j [j] * remainder_j [j];
+    			if (h_j [j] > 0 && hessian_j [j] > 0) numFreeVariables ++;
+    		}
+    		for (int cgIteration = 0 ; cgIteration < numFreeVariables ; cgIteration ++)
+    		{
+    			if (Math.sqrt(remainderSquareNorm) <= tolerance) return;
+    			Arrays.fill(directionCarried_e, 0);
+    			for (int j = 0 ; j < numVariables ; j ++)
+    				if (direction_j [j] != 0)
+    					for (int k = routingStart_j [j] ; k < routingStart_j [j + 1] ; k ++)
+    						directionCarried_e [routingLink [k]] += routingFraction [k] * direction_j [j];
+    			double directionHessianDirection = 0;
+    			double maxFeasibleStep = Double.MAX_VALUE;
+    			for (int j = 0 ; j < numVariables ; j ++)
+    			{
+    				if (direction_j [j] == 0) { hessianTimesDirection_j [j] = 0; continue; }
+    				double hd = weight_j [j] * direction_j [j];
+    				for (int k = routingStart_j [j] ; k < routingStart_j [j + 1] ; k ++)
+    					hd += weight_e [routingLink [k]] * routingFraction [k] * directionCarried_e [routingLink [k]];
+    				hessianTimesDirection_j [j] = hd;
+    				directionHessianDirection += direction_j [j] * hd;
+    				if (direction_j [j] < 0) maxFeasibleStep = Math.min(maxFeasibleStep, h_j [j] / -direction_j [j]);
+    			}
+    			if (directionHessianDirection <= 0) return;
+    			final double step = remainderSquareNorm / directionHessianDirection;
+    			final boolean hitsBound = step >= maxFeasibleStep;
+    			final double appliedStep = hitsBound? maxFeasibleStep : step;
+    			for (int j = 0 ; j < numVariables ; j ++)
+    				if (direction_j [j] != 0) h_j [j] = Math.max(0, h_j [j] + appliedStep * direction_j [j]);
+    			for (int e = 0 ; e < E ; e ++) residual_e [e] += appliedStep * directionCarried_e [e];
+    			if (hitsBound) return;
+    			double newRemainderSquareNorm = 0;
+    			for (int j = 0 ; j < numVariables ; j ++) { remainder_j [j] -= step * hessianTimesDirection_j [j]; newRemainderSquareNorm += remainder_j [j] * remainder_j [j]; }
+    			for (int j = 0 ; j < numVariables ; j ++) direction_j [j] = remainder_j [j] + (newRemainderSquareNorm / remainderSquareNorm) * direction_j [j];
+    			remainderSquareNorm = newRemainderSquareNorm;
+    		}
+    	}
+
+    	private double getMonitValueOrZero (int e , long t)
+    	{
+    		final int index = Arrays.binarySearch(monitTimes_e [e], t);
+    		return index >= 0? monitValues_e [e][index] : 0;
+    	}
+    }
+    
+    private static final int MAXITERATIONS_BATCHTMESTIMATION = 10000;
 }
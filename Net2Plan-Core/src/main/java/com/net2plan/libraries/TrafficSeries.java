@@ -1,23 +1,22 @@
 package com.net2plan.libraries;
 
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Random;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
 
 import org.apache.commons.math3.distribution.TDistribution;
 import org.apache.commons.math3.stat.regression.SimpleRegression;
@@ -36,38 +35,96 @@ public class TrafficSeries
 		public boolean isLinear () { return this == LINEAR; }
 		public boolean isExponential () { return this == EXPONENTIAL; }
 	}
-	private SortedMap<Date , Double> monitValues = new TreeMap<> ();
+	/* The samples are kept as two arrays sorted by time (no two samples at the same time), of which the first numSamples positions are used */
+	private long [] timesInMs = new long [0];
+	private double [] values = new double [0];
+	private int numSamples = 0;
+	private SortedMap<Date , Double> valuesViewOrNull = null;
+
 	public TrafficSeries () { }
-	public TrafficSeries (SortedMap<Date , Double> monitValues) { this.monitValues.putAll (monitValues);  }
+	public TrafficSeries (SortedMap<Date , Double> monitValues) { addValues (monitValues);  }
 	
 	public TrafficSeries addValues (Collection<Date> dates , Collection<Double> values) 
 	{ 
 		if (dates.size() != values.size()) throw new Net2PlanException ("Wrong format");
+		final long [] newTimes = new long [dates.size()];
+		final double [] newValues = new double [dates.size()];
 		final Iterator<Date> itdate = dates.iterator();
 		final Iterator<Double> itvals = values.iterator();
+		int cont = 0;
 		while (itdate.hasNext())
 		{
 			final Date d = itdate.next();
 			final Double val = itvals.next();
-			this.monitValues.put(d, val);
+			if (val == null) throw new Net2PlanException ("Null values are not accepted");
+			newTimes [cont] = d.getTime(); newValues [cont ++] = val;
 		}
-		return this;
+		return addValues (newTimes , newValues);
 	}
 	public TrafficSeries addValues (Collection<Pair<Date,Double>> pairs) 
 	{ 
-		pairs.forEach(p->monitValues.put(p.getFirst(), p.getSecond()));
-		return this;
+		final List<Date> dates = new ArrayList<> (pairs.size());
+		final List<Double> vals = new ArrayList<> (pairs.size());
+		for (Pair<Date,Double> p : pairs) { dates.add(p.getFirst()); vals.add(p.getSecond()); }
+		return addValues (dates , vals);
 	}
 	public TrafficSeries addValues (SortedMap<Date,Double> values) 
 	{ 
-		this.monitValues.putAll(values);
+		return addValues (values.keySet() , values.values());
+	}
+	/** Adds the given samples (times in milliseconds since the epoch, as in {@link Date#getTime()}). If several samples have the same time, the last one is kept. 
+	 * Samples at times that already had a value replace it. Appending samples later than the last one, in time order, does not need sorting nor copying the previous samples 
+	 * @param newTimesInMs the times of the samples
+	 * @param newValues the values of the samples
+	 * @return this object
+	 */
+	public TrafficSeries addValues (long [] newTimesInMs , double [] newValues) 
+	{ 
+		if (newTimesInMs.length != newValues.length) throw new Net2PlanException ("Wrong format");
+		final int m = newTimesInMs.length;
+		if (m == 0) return this;
+		boolean sortedStrictly = true;
+		for (int cont = 1 ; cont < m && sortedStrictly ; cont ++) if (newTimesInMs [cont] <= newTimesInMs [cont - 1]) sortedStrictly = false;
+
+		/* Fast path: appending at the end */
+		if (sortedStrictly && (numSamples == 0 || newTimesInMs [0] > timesInMs [numSamples - 1]))
+		{
+			ensureCapacity (numSamples + m);
+			System.arraycopy(newTimesInMs, 0, timesInMs, numSamples, m);
+			System.arraycopy(newValues, 0, values, numSamples, m);
+			numSamples += m;
+			modified ();
+			return this;
+		}
+
+		/* Sort the new samples by time (stable, so the last one of the same time is the one kept), and merge them with the current ones */
+		final int [] order = new int [m];
+		for (int cont = 0 ; cont < m ; cont ++) order [cont] = cont;
+		if (!sortedStrictly) stableSortByTime (order , newTimesInMs);
+		final long [] mergedTimes = new long [numSamples + m];
+		final double [] mergedValues = new double [numSamples + m];
+		int numMerged = 0;
+		int indexCurrent = 0;
+		for (int cont = 0 ; cont < m ; cont ++)
+		{
+			final long t = newTimesInMs [order [cont]];
+			if (cont < m - 1 && newTimesInMs [order [cont + 1]] == t) continue;
+			while (indexCurrent < numSamples && timesInMs [indexCurrent] < t) { mergedTimes [numMerged] = timesInMs [indexCurrent]; mergedValues [numMerged ++] = values [indexCurrent ++]; }
+			if (indexCurrent < numSamples && timesInMs [indexCurrent] == t) indexCurrent ++;
+			mergedTimes [numMerged] = t; mergedValues [numMerged ++] = newValues [order [cont]];
+		}
+		while (indexCurrent < numSamples) { mergedTimes [numMerged] = timesInMs [indexCurrent]; mergedValues [numMerged ++] = values [indexCurrent ++]; }
+		this.timesInMs = mergedTimes;
+		this.values = mergedValues;
+		this.numSamples = numMerged;
+		modified ();
 		return this;
 	}
 
 	public void applyPercentileFiltering (Date initDate , Date endDate , String intervalTimeType , double percentile)
 	{
 		if (percentile <= 0 || percentile > 1) throw new Net2PlanException("Percentil info must be between 0 (non-inclusive) and one (inclusive)");
-		final SortedMap<Date , Double> newMonitValues = new TreeMap<> ();
+		final TrafficSeries newMonitValues = new TrafficSeries ();
 		LocalDateTime currentDateLt = null;
 		final LocalDateTime initDateLt = dateToLocalDateTime(initDate);
 		final LocalDateTime endDateLt = dateToLocalDateTime(endDate);
@@ -93,89 +150,120 @@ public class TrafficSeries
 		while (!currentDateLt.isAfter(endDateLt))
 		{
 			final LocalDateTime endTimeThisIntervalLt = currentDateLt.plus(1, unitToAdd);
-			final Instant endTimeThisInterval = localDateTimeToDate(endTimeThisIntervalLt).toInstant();
-			final Date currentDate = localDateTimeToDate(currentDateLt);
-			final List<Entry<Date,Double>> vals = monitValues.tailMap(currentDate).entrySet ().stream().
-					filter(e->e.getKey().toInstant().isBefore(endTimeThisInterval)).
-					sorted((e1,e2)->Double.compare(e1.getValue (), e2.getValue())).
-					collect (Collectors.toCollection(ArrayList::new));
+			final int firstIndex = getIndexFirstSampleAtOrAfter(localDateTimeToDate(currentDateLt).getTime());
+			final int endIndex = Math.max(firstIndex , getIndexFirstSampleAtOrAfter(localDateTimeToDate(endTimeThisIntervalLt).getTime()));
 			currentDateLt = endTimeThisIntervalLt;
 			
-			if (vals.isEmpty()) continue;
-			final double positionOfSample = vals.size() * percentile;
+			if (firstIndex == endIndex) continue;
+			final double [] sortedVals = Arrays.copyOfRange(values, firstIndex, endIndex);
+			Arrays.sort(sortedVals);
+			final double positionOfSample = sortedVals.length * percentile;
 			final double remainder = positionOfSample - Math.floor(positionOfSample);
 			final int prevIndex = (int) Math.max(0, Math.floor(positionOfSample) - 1);
-			final int nextIndex = (int) Math.min(Math.ceil(positionOfSample) - 1 , vals.size() - 1);
+			final int nextIndex = (int) Math.min(Math.ceil(positionOfSample) - 1 , sortedVals.length - 1);
+			final int prevSample = getIndexOfSampleInValueOrder (firstIndex , endIndex , sortedVals , prevIndex);
 			if (prevIndex == nextIndex) 
 			{
-				newMonitValues.put(vals.get(prevIndex).getKey(), vals.get(prevIndex).getValue());
+				newMonitValues.addValue(timesInMs [prevSample], values [prevSample]);
 			} else
 			{
-				final Date d1 = vals.get(prevIndex).getKey();
-				final Date d2 = vals.get(nextIndex).getKey();
-				final double v1 = vals.get(prevIndex).getValue();
-				final double v2 = vals.get(nextIndex).getValue();
-				final Date midDate = new Date ((long) ((1-remainder)*d1.getTime() + remainder * d2.getTime()));
+				final int nextSample = getIndexOfSampleInValueOrder (firstIndex , endIndex , sortedVals , nextIndex);
+				final long d1 = timesInMs [prevSample];
+				final long d2 = timesInMs [nextSample];
+				final double v1 = values [prevSample];
+				final double v2 = values [nextSample];
+				final long midDate = (long) ((1-remainder)*d1 + remainder * d2);
 				final double midVal = (1-remainder) * v1 + remainder * v2;
-				newMonitValues.put(midDate, midVal);
+				newMonitValues.addValue(midDate, midVal);
 			}
 		}
-		this.monitValues = newMonitValues;
+		this.timesInMs = newMonitValues.timesInMs;
+		this.values = newMonitValues.values;
+		this.numSamples = newMonitValues.numSamples;
+		modified ();
 	}
 	
-	public SortedSet<Date> getDatesWithValue () { return new TreeSet<>(monitValues.keySet()); }
-	public SortedMap<Date , Double> getValues () { return Collections.unmodifiableSortedMap(monitValues); }
-	public int getSize () { return monitValues.size(); }
-	public Double getValueOrNull (Date d) { return monitValues.get(d); }
-	public boolean hasValue (Date d) { return monitValues.containsKey(d); }
-	public Date getFirstDate () { return monitValues.isEmpty()? null : monitValues.firstKey(); }
-	public Date getLastDate () { return monitValues.isEmpty()? null : monitValues.lastKey(); }
-	public TrafficSeries addValue (Date date , Double val) { if (val == null) throw new Net2PlanException ("Null values are not accepted");  this.monitValues.put(date, val); return this; }
-	public TrafficSeries removeValue (Date date) { this.monitValues.remove(date); return this; }
-	public TrafficSeries removeAllValues () { this.monitValues.clear(); return this; }
+	public SortedSet<Date> getDatesWithValue () 
+	{ 
+		final SortedSet<Date> res = new TreeSet<> ();
+		for (int cont = 0 ; cont < numSamples ; cont ++) res.add(new Date (timesInMs [cont]));
+		return res;
+	}
+	public SortedMap<Date , Double> getValues () 
+	{ 
+		if (valuesViewOrNull == null)
+		{
+			final SortedMap<Date , Double> res = new TreeMap<> ();
+			for (int cont = 0 ; cont < numSamples ; cont ++) res.put(new Date (timesInMs [cont]) , values [cont]);
+			valuesViewOrNull = Collections.unmodifiableSortedMap(res);
+		}
+		return valuesViewOrNull; 
+	}
+	/** Returns a copy of the times of the samples, in milliseconds since the epoch, in ascending order
+	 * @return see above
+	 */
+	public long [] getTimesInMsAsArray () { return Arrays.copyOf(timesInMs, numSamples); }
+	/** Returns a copy of the values of the samples, in the order of {@link #getTimesInMsAsArray()}
+	 * @return see above
+	 */
+	public double [] getValuesAsArray () { return Arrays.copyOf(values, numSamples); }
+	public int getSize () { return numSamples; }
+	public Double getValueOrNull (Date d) { final int index = getIndex (d.getTime()); return index < 0? null : values [index]; }
+	public boolean hasValue (Date d) { return getIndex (d.getTime()) >= 0; }
+	public Date getFirstDate () { return numSamples == 0? null : new Date (timesInMs [0]); }
+	public Date getLastDate () { return numSamples == 0? null : new Date (timesInMs [numSamples - 1]); }
+	public TrafficSeries addValue (Date date , Double val) { if (val == null) throw new Net2PlanException ("Null values are not accepted");  return addValue (date.getTime() , val); }
+	public TrafficSeries removeValue (Date date) 
+	{ 
+		final int index = getIndex (date.getTime());
+		if (index < 0) return this;
+		System.arraycopy(timesInMs, index + 1, timesInMs, index, numSamples - index - 1);
+		System.arraycopy(values, index + 1, values, index, numSamples - index - 1);
+		numSamples --;
+		modified ();
+		return this; 
+	}
+	public TrafficSeries removeAllValues () { this.timesInMs = new long [0]; this.values = new double [0]; this.numSamples = 0; modified (); return this; }
 	public TrafficSeries removeAllValuesBeforeOrEqual (Date d) 
 	{ 
-		this.monitValues.remove(d);
-		for (Date beforeDate : new ArrayList<> (monitValues.headMap(d).keySet()))
-			monitValues.remove(beforeDate);
+		final int firstIndexToKeep = getIndexFirstSampleAtOrAfter(d.getTime() + 1);
+		if (firstIndexToKeep == 0) return this;
+		this.timesInMs = Arrays.copyOfRange(timesInMs, firstIndexToKeep, Math.max(firstIndexToKeep , numSamples));
+		this.values = Arrays.copyOfRange(values, firstIndexToKeep, Math.max(firstIndexToKeep , numSamples));
+		this.numSamples = this.timesInMs.length;
+		modified ();
 		return this;
 	}
 	public TrafficSeries removeAllValuesAfterOrEqual (Date d) 
 	{ 
-		for (Date beforeDate : new ArrayList<> (monitValues.tailMap(d).keySet()))
-			monitValues.remove(beforeDate);
+		final int firstIndexToRemove = getIndexFirstSampleAtOrAfter(d.getTime());
+		if (firstIndexToRemove == numSamples) return this;
+		this.numSamples = firstIndexToRemove;
+		modified ();
 		return this;
 	}
-	public TrafficSeries getCopy () { return new TrafficSeries (this.monitValues); }
+	public TrafficSeries getCopy () 
+	{ 
+		final TrafficSeries res = new TrafficSeries ();
+		res.timesInMs = Arrays.copyOf(timesInMs, numSamples);
+		res.values = Arrays.copyOf(values, numSamples);
+		res.numSamples = numSamples;
+		return res; 
+	}
 	public Double getValueOrInterpolation (Date d) 
 	{
 		if (this.getSize() < 2) return null;
-		final Double valExact = this.getValueOrNull(d); if (valExact != null) return valExact;
-		Date firstDate = null; double firstVal = 0;
-		Date secondDate = null; double secondVal = 0;
-		if (d.getTime() < getFirstDate().getTime())
-		{
-			for (Entry<Date,Double> entry : this.monitValues.entrySet())
-			{
-				if (firstDate == null) { firstDate = entry.getKey(); firstVal = entry.getValue(); }
-				else if (secondDate == null) {  secondDate = entry.getKey(); secondVal = entry.getValue(); break; }
-			}
-		}
-		else if (d.getTime() > getLastDate().getTime())
-		{
-			secondDate = this.monitValues.lastKey(); secondVal = this.getValueOrNull(secondDate);
-			firstDate = this.monitValues.headMap(d).lastKey(); firstVal = this.getValueOrNull(firstDate);
-		}
-		else
-		{
-			firstDate = this.monitValues.headMap(d).lastKey(); firstVal = this.getValueOrNull(firstDate);
-			secondDate = this.monitValues.tailMap(d).lastKey(); firstVal = this.getValueOrNull(firstDate);
-		}
-		assert !firstDate.equals(secondDate); assert firstDate.getTime() < secondDate.getTime();
-		final double deltaY = secondVal - firstVal;
-		final double deltaX = secondDate.getTime() - firstDate.getTime();
+		final long t = d.getTime();
+		final int index = getIndex (t); 
+		if (index >= 0) return values [index];
+		/* Interpolate (or extrapolate) with the closest samples before and after, or the first two or last two samples if d is outside the series */
+		final int insertionPoint = -index - 1;
+		final int firstIndex = insertionPoint == 0? 0 : (insertionPoint == numSamples? numSamples - 2 : insertionPoint - 1);
+		final int secondIndex = firstIndex + 1;
+		final double deltaY = values [secondIndex] - values [firstIndex];
+		final double deltaX = timesInMs [secondIndex] - timesInMs [firstIndex];
 		final double slope = deltaY / deltaX;
-		return firstVal + slope * (d.getTime() - firstDate.getTime());
+		return values [firstIndex] + slope * (t - timesInMs [firstIndex]);
 	}
 
 	public static void main (String [] args)
@@ -199,45 +287,283 @@ public class TrafficSeries
 	
 	public List<String> toStringList () 
 	{
-		final List<String> res = new ArrayList<> (monitValues.size());
-		for (Entry<Date , Double> entry : monitValues.entrySet())
-			res.add(entry.getKey().getTime() + " " + entry.getValue());
+		final List<String> res = new ArrayList<> (numSamples);
+		for (int cont = 0 ; cont < numSamples ; cont ++)
+			res.add(timesInMs [cont] + " " + values [cont]);
 		return res;
 	}
+	/** Returns the samples in a compressed form, as a list with one string, that can be read by {@link #createFromStringList(List)}. 
+	 * The times are encoded as the delta of their deltas, and each value as its XOR with the previous one (as in the Gorilla time-series compression). 
+	 * Then, periodic samples take around one bit per time, and repeated or similar values a few bits each 
+	 * @return see above
+	 */
+	public List<String> toStringListCompressed () 
+	{
+		if (numSamples == 0) return new ArrayList<> ();
+		final BitWriter out = new BitWriter ();
+		out.write(numSamples, 32);
+		out.write(timesInMs [0], 64);
+		out.write(Double.doubleToRawLongBits(values [0]), 64);
+		long prevDelta = 0;
+		long prevValueBits = Double.doubleToRawLongBits(values [0]);
+		int prevLeadingZeros = -1, prevTrailingZeros = -1;
+		for (int cont = 1 ; cont < numSamples ; cont ++)
+		{
+			/* Time: delta of delta, zigzag encoded, in buckets of 0, 7, 9, 12 or 64 bits */
+			final long delta = timesInMs [cont] - timesInMs [cont - 1];
+			final long deltaOfDelta = delta - prevDelta;
+			final long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+			if (zigzag == 0) out.write(0 , 1);
+			else if ((zigzag >>> 7) == 0) { out.write(0b10 , 2); out.write(zigzag , 7); }
+			else if ((zigzag >>> 9) == 0) { out.write(0b110 , 3); out.write(zigzag , 9); }
+			else if ((zigzag >>> 12) == 0) { out.write(0b1110 , 4); out.write(zigzag , 12); }
+			else { out.write(0b1111 , 4); out.write(zigzag , 64); }
+			prevDelta = delta;
+
+			/* Value: XOR with the previous one, storing only its meaningful bits */
+			final long valueBits = Double.doubleToRawLongBits(values [cont]);
+			final long xor = valueBits ^ prevValueBits;
+			prevValueBits = valueBits;
+			if (xor == 0) { out.write(0 , 1); continue; }
+			final int leadingZeros = Math.min(31 , Long.numberOfLeadingZeros(xor));
+			final int trailingZeros = Long.numberOfTrailingZeros(xor);
+			if (prevLeadingZeros >= 0 && leadingZeros >= prevLeadingZeros && trailingZeros >= prevTrailingZeros)
+			{
+				out.write(0b10 , 2);
+				out.write(xor >>> prevTrailingZeros , 64 - prevLeadingZeros - prevTrailingZeros);
+			}
+			else
+			{
+				final int meaningfulBits = 64 - leadingZeros - trailingZeros;
+				out.write(0b11 , 2);
+				out.write(leadingZeros , 5);
+				out.write(meaningfulBits - 1 , 6);
+				out.write(xor >>> trailingZeros , meaningfulBits);
+				prevLeadingZeros = leadingZeros;
+				prevTrailingZeros = trailingZeros;
+			}
+		}
+		return new ArrayList<> (Arrays.asList(COMPRESSEDFORMAT_PREFIX + Base64.getEncoder().encodeToString(out.toByteArray())));
+	}
 	public static TrafficSeries createFromStringList (List<String> stringList) 
 	{
-		final TrafficSeries res = new TrafficSeries ();
+		if (stringList.size() == 1 && stringList.get(0).startsWith(COMPRESSEDFORMAT_PREFIX))
+			return createFromCompressedString(stringList.get(0).substring(COMPRESSEDFORMAT_PREFIX.length()));
+		final long [] times = new long [stringList.size()];
+		final double [] vals = new double [stringList.size()];
+		int numRead = 0;
 		for (String st : stringList)
 		{
 			try 
 			{ 			
-				final String [] vals = st.split(" ");
-				res.addValue(new Date (Long.parseLong(vals [0])), Double.parseDouble(vals [1]));
+				final String [] fields = st.split(" ");
+				final long t = Long.parseLong(fields [0]);
+				vals [numRead] = Double.parseDouble(fields [1]);
+				times [numRead ++] = t;
 			} catch (Exception e) { }
 		}
-		return res;
+		return new TrafficSeries ().addValues(Arrays.copyOf(times, numRead), Arrays.copyOf(vals, numRead));
 	}
 	public static TrafficSeries createFromValuesAndInterval (Date initialTime , long intervalInMiliseconds , double [] values) 
 	{
+		final long [] times = new long [values.length];
+		for (int cont = 0 ; cont < values.length ; cont ++)
+			times [cont] = initialTime.getTime() + (intervalInMiliseconds * cont);
+		return new TrafficSeries ().addValues(times, Arrays.copyOf(values, values.length));
+	}
+
+	/* Corrupt or truncated data throws a Net2PlanException, instead of returning an empty or partial series */
+	private static TrafficSeries createFromCompressedString (String base64)
+	{
+		final byte [] bytes;
+		try { bytes = Base64.getDecoder().decode(base64); }
+		catch (IllegalArgumentException e) { throw new Net2PlanException ("Wrong format of the compressed traffic series: " + e.getMessage()); }
 		final TrafficSeries res = new TrafficSeries ();
-		int cont = 0;
-		for (double val : values)
+		try
 		{
-			final Date d = new Date (initialTime.getTime() + (intervalInMiliseconds * (cont++) ));
-			res.addValue(d, val);
+			final BitReader in = new BitReader (bytes);
+			final int n = (int) in.read(32);
+			/* Each sample after the first one takes at least two bits */
+			if (n <= 0 || n - 1 > Math.max(0 , 8L * bytes.length - 160) / 2) throw new Net2PlanException ("Wrong number of samples: " + n);
+			final long [] times = new long [n];
+			final double [] vals = new double [n];
+			times [0] = in.read(64);
+			long prevValueBits = in.read(64);
+			vals [0] = Double.longBitsToDouble(prevValueBits);
+			long prevDelta = 0;
+			int prevLeadingZeros = -1, prevTrailingZeros = -1;
+			for (int cont = 1 ; cont < n ; cont ++)
+			{
+				final long zigzag;
+				if (in.read(1) == 0) zigzag = 0;
+				else if (in.read(1) == 0) zigzag = in.read(7);
+				else if (in.read(1) == 0) zigzag = in.read(9);
+				else if (in.read(1) == 0) zigzag = in.read(12);
+				else zigzag = in.read(64);
+				final long deltaOfDelta = (zigzag >>> 1) ^ -(zigzag & 1);
+				prevDelta += deltaOfDelta;
+				times [cont] = times [cont - 1] + prevDelta;
+
+				if (in.read(1) == 1)
+				{
+					final long xor;
+					if (in.read(1) == 0)
+					{
+						if (prevLeadingZeros < 0) throw new Net2PlanException ("Value " + cont + " refers to a missing previous value");
+						xor = in.read(64 - prevLeadingZeros - prevTrailingZeros) << prevTrailingZeros;
+					}
+					else
+					{
+						final int leadingZeros = (int) in.read(5);
+						final int meaningfulBits = (int) in.read(6) + 1;
+						final int trailingZeros = 64 - leadingZeros - meaningfulBits;
+						if (trailingZeros < 0) throw new Net2PlanException ("Wrong number of meaningful bits in value " + cont);
+						xor = in.read(meaningfulBits) << trailingZeros;
+						prevLeadingZeros = leadingZeros;
+						prevTrailingZeros = trailingZeros;
+					}
+					prevValueBits ^= xor;
+				}
+				vals [cont] = Double.longBitsToDouble(prevValueBits);
+			}
+			res.addValues(times, vals);
+		} catch (Net2PlanException e) 
+		{ 
+			throw new Net2PlanException ("Wrong format of the compressed traffic series: " + e.getMessage()); 
 		}
 		return res;
 	}
-
 	
+	private static final String COMPRESSEDFORMAT_PREFIX = "gorilla1:";
+
+	private static final class BitWriter
+	{
+		private byte [] bytes = new byte [64];
+		private long numBits = 0;
+		void write (long value , int numBitsToWrite)
+		{
+			int remaining = numBitsToWrite;
+			while (remaining > 0)
+			{
+				final int byteIndex = (int) (numBits >>> 3);
+				if (byteIndex >= bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				final int freeBitsInByte = 8 - (int) (numBits & 7);
+				final int n = Math.min(freeBitsInByte , remaining);
+				final int chunk = (int) ((value >>> (remaining - n)) & ((1 << n) - 1));
+				bytes [byteIndex] |= chunk << (freeBitsInByte - n);
+				numBits += n;
+				remaining -= n;
+			}
+		}
+		byte [] toByteArray () { return Arrays.copyOf(bytes, (int) ((numBits + 7) >>> 3)); }
+	}
 	
+	private static final class BitReader
+	{
+		private final byte [] bytes;
+		private long bitPosition = 0;
+		BitReader (byte [] bytes) { this.bytes = bytes; }
+		long read (int numBitsToRead)
+		{
+			long res = 0;
+			int remaining = numBitsToRead;
+			while (remaining > 0)
+			{
+				final int byteIndex = (int) (bitPosition >>> 3);
+				if (byteIndex >= bytes.length) throw new Net2PlanException ("The data is truncated");
+				final int availableBitsInByte = 8 - (int) (bitPosition & 7);
+				final int n = Math.min(availableBitsInByte , remaining);
+				final int chunk = ((bytes [byteIndex] & 0xFF) >>> (availableBitsInByte - n)) & ((1 << n) - 1);
+				res = (res << n) | chunk;
+				bitPosition += n;
+				remaining -= n;
+			}
+			return res;
+		}
+	}
+
+	private TrafficSeries addValue (long timeInMs , double val)
+	{
+		final int index = getIndex (timeInMs);
+		if (index >= 0) { values [index] = val; modified (); return this; }
+		final int insertionPoint = -index - 1;
+		ensureCapacity (numSamples + 1);
+		System.arraycopy(timesInMs, insertionPoint, timesInMs, insertionPoint + 1, numSamples - insertionPoint);
+		System.arraycopy(values, insertionPoint, values, insertionPoint + 1, numSamples - insertionPoint);
+		timesInMs [insertionPoint] = timeInMs;
+		values [insertionPoint] = val;
+		numSamples ++;
+		modified ();
+		return this;
+	}
+
+	/* The index of the sample at the given time, or (-(insertion point) - 1) if there is none, as Arrays.binarySearch */
+	private int getIndex (long timeInMs) 
+	{
+		if (numSamples > 0 && timeInMs > timesInMs [numSamples - 1]) return -numSamples - 1;
+		return Arrays.binarySearch(timesInMs, 0, numSamples, timeInMs); 
+	}
+
+	private int getIndexFirstSampleAtOrAfter (long timeInMs) 
+	{ 
+		final int index = getIndex (timeInMs);
+		return index >= 0? index : -index - 1;
+	}
+
+	/* The index of the sample of the range with the k-th value in ascending order. Samples with the same value are ordered by time */
+	private int getIndexOfSampleInValueOrder (int firstIndex , int endIndex , double [] sortedValuesOfRange , int k)
+	{
+		final double val = sortedValuesOfRange [k];
+		int numSameValueBefore = 0;
+		while (k - numSameValueBefore - 1 >= 0 && Double.compare(sortedValuesOfRange [k - numSameValueBefore - 1] , val) == 0) numSameValueBefore ++;
+		for (int index = firstIndex ; index < endIndex ; index ++)
+			if (Double.compare(values [index] , val) == 0)
+				if (numSameValueBefore -- == 0) return index;
+		throw new RuntimeException ();
+	}
+
+	private void ensureCapacity (int capacity)
+	{
+		if (timesInMs.length >= capacity) return;
+		final int newCapacity = Math.max(capacity , 2 * timesInMs.length + 8);
+		timesInMs = Arrays.copyOf(timesInMs, newCapacity);
+		values = Arrays.copyOf(values, newCapacity);
+	}
+
+	private void modified () { this.valuesViewOrNull = null; }
+
+	private static void stableSortByTime (int [] order , long [] times)
+	{
+		/* Merge sort of the indexes */
+		int [] src = order; int [] dst = new int [order.length];
+		for (int width = 1 ; width < order.length ; width *= 2)
+		{
+			for (int lo = 0 ; lo < order.length ; lo += 2 * width)
+			{
+				final int mid = Math.min(lo + width , order.length);
+				final int hi = Math.min(lo + 2 * width , order.length);
+				int i = lo, j = mid, k = lo;
+				while (i < mid && j < hi) dst [k ++] = times [src [j]] < times [src [i]]? src [j ++] : src [i ++];
+				while (i < mid) dst [k ++] = src [i ++];
+				while (j < hi) dst [k ++] = src [j ++];
+			}
+			final int [] aux = src; src = dst; dst = aux;
+		}
+		if (src != order) System.arraycopy(src, 0, order, 0, order.length);
+	}
 	
 	@Override
 	public int hashCode() {
+		/* Same as the one of the equivalent SortedMap<Date,Double> */
+		int result = 0;
+		for (int cont = 0 ; cont < numSamples ; cont ++)
+		{
+			final long t = timesInMs [cont];
+			final long bits = Double.doubleToLongBits(values [cont]);
+			result += ((int) (t ^ (t >>> 32))) ^ ((int) (bits ^ (bits >>> 32)));
+		}
 		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((monitValues == null) ? 0 : monitValues.hashCode());
-		return result;
+		return prime + result;
 	}
 	@Override
 	public boolean equals(Object obj) {
@@ -248,11 +574,12 @@ public class TrafficSeries
 		if (getClass() != obj.getClass())
 			return false;
 		TrafficSeries other = (TrafficSeries) obj;
-		if (monitValues == null) {
-			if (other.monitValues != null)
-				return false;
-		} else if (!monitValues.equals(other.monitValues))
-			return false;
+		if (numSamples != other.numSamples) return false;
+		for (int cont = 0 ; cont < numSamples ; cont ++)
+		{
+			if (timesInMs [cont] != other.timesInMs [cont]) return false;
+			if (Double.doubleToLongBits(values [cont]) != Double.doubleToLongBits(other.values [cont])) return false;
+		}
 		return true;
 	}
 
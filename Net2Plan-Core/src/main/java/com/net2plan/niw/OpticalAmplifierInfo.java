@@ -92,6 +92,13 @@ public class OpticalAmplifierInfo
 		this.minOutputPower_dBm = minInputPower_dBm;
 		this.maxOutputPower_dBm = maxInputPower_dBm;
 	}
+	/** Returns a copy of this object
+	 * @return see above
+	 */
+	public OpticalAmplifierInfo getCopy ()
+	{
+		return new OpticalAmplifierInfo(positionInFiber_km_minus2IsBooster_minus1Preamplif, gainDb, noiseFigureDb, cdCompensationPsPerNm, pmdPs, minAcceptableGainDb, maxAcceptableGainDb, minOutputPower_dBm, maxOutputPower_dBm);
+	}
 	public static OpticalAmplifierInfo getDefaultBooster ()
 	{
 		return new OpticalAmplifierInfo(-2.0, 
@@ -8,11 +8,15 @@ package com.net2plan.niw;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.IntStream;
 
 import com.net2plan.interfaces.networkDesign.Net2PlanException;
@@ -96,6 +100,9 @@ public class OpticalSimulationModule
 	final private SortedMap<WFiber,SortedMap<WLightpath,SortedMap<Integer , Pair<LpSignalState,LpSignalState>>>> perFiberPerLpPerOla_valInputOutputOla = new TreeMap<> ();
 	final private SortedMap<WFiber,SortedMap<WLightpath,Optional<LpSignalState>>> perFiberPerLp_valInputBooster = new TreeMap<> ();
 	final private SortedMap<WFiber,SortedMap<WLightpath,Optional<LpSignalState>>> perFiberPerLp_valOutputPreamplifier = new TreeMap<> ();
+	/* hash-based, since removed lightpaths cannot be compared with the existing ones */
+	final private Map<WLightpath,List<WFiber>> perLp_seqFibersAccountedFor = new HashMap<> ();
+	private boolean checkIncrementalUpdatesAgainstFullRecomputation = false;
 	
 	public OpticalSimulationModule (WNet wNet) 
 	{
@@ -131,49 +138,162 @@ public class OpticalSimulationModule
     public OpticalSimulationModule updateAllPerformanceInfo ()
     {
     	System.out.println("Update all performance info");
+   	 perLpPerMetric_valAtDropTransponderEnd.clear();
+   	 perFiberPerLp_valStartAfterBoosterEndBeforePreampl.clear();
+   	 perFiberTotalPower_valStartEndAndAtEachOlaInputOutput.clear();
+   	 perFiberPerLpPerOla_valInputOutputOla.clear();
+   	 perFiberPerLp_valInputBooster.clear();
+   	 perFiberPerLp_valOutputPreamplifier.clear();
+   	 perLp_seqFibersAccountedFor.clear();
    	 for (WFiber e : wNet.getFibers())
    	 {
    		 perFiberPerLp_valStartAfterBoosterEndBeforePreampl.put(e, new TreeMap<> ());
    		 perFiberPerLpPerOla_valInputOutputOla.put(e, new TreeMap <> ());
    		perFiberPerLp_valInputBooster.put(e , new TreeMap<> ());
    		perFiberPerLp_valOutputPreamplifier.put(e , new TreeMap<> ());
-   		 for (WLightpath lp : e.getTraversingLps())
-   			perFiberPerLpPerOla_valInputOutputOla.get(e).put(lp, new TreeMap<> ());
    	 }
    	 for (WLightpath lp : wNet.getLightpaths())
-   	 {
-   		 final int numOpticalSlots = lp.getOpticalSlotIds().size();
-   		 final double centralFrequency_hz = 1e12 * lp.getCentralFrequencyThz();
-   		 Optional<Pair<LpSignalState,LpSignalState>> previousFiberInfo = Optional.empty();
-   		 final List<WFiber> lpSeqFibers = lp.getSeqFibers();
-   		 for (int contFiber = 0; contFiber < lpSeqFibers.size() ; contFiber ++)
-   		 {
-   			 final WFiber fiber = lpSeqFibers.get(contFiber);
-   	   		 final boolean firstFiber = contFiber == 0;
-   			 final Pair<LpSignalState,LpSignalState> infoToAdd = Pair.of(new LpSignalState(), new LpSignalState());
-   			 final SortedMap<Integer , Pair<LpSignalState,LpSignalState>> infoToAddPerOla = new TreeMap<> ();
-   			 perFiberPerLp_valStartAfterBoosterEndBeforePreampl.get(fiber).put(lp, infoToAdd);
-   			 perFiberPerLpPerOla_valInputOutputOla.get(fiber).put(lp, infoToAddPerOla);
-   			
-   			 final IOadmArchitecture oadm_a = fiber.getA().getOpticalSwitchingArchitecture();
-   			 final LpSignalState state_startFiberBeforeBooster;
-   			 final WFiber previousFiber = contFiber == 0? null : lpSeqFibers.get(contFiber-1);
-   			 if (firstFiber)
-   				state_startFiberBeforeBooster = oadm_a.getOutLpStateForAddedLp(new LpSignalState(lp.getAddTransponderInjectionPower_dBm() , 0.0, 0.0, Double.MAX_VALUE), lp.getDirectionlessAddModuleIndexInOrigin(), lp.getSeqFibers().get(0) , numOpticalSlots);
-   			 else
-   			 {
-   				 final LpSignalState beforePreviousFiberEndPreampl = previousFiberInfo.get().getSecond();
-   				 final LpSignalState afterPreviousFiberEndPreampl = previousFiber.getDestinationPreAmplifierInfo().isPresent()? 
-   						getStateAfterOpticalAmplifier (centralFrequency_hz , beforePreviousFiberEndPreampl , previousFiber.getDestinationPreAmplifierInfo().get()) : 
-   							beforePreviousFiberEndPreampl.getCopy();
+   		 updateLightpathInfo(lp);
+   	 
+   	 assert perFiberPerLpPerOla_valInputOutputOla.keySet().containsAll(wNet.getFibers());
+   	 assert wNet.getFibers().stream().allMatch(e->e.getTraversingLps().equals(perFiberPerLpPerOla_valInputOutputOla.get(e).keySet()));
+   	 assert wNet.getFibers().stream().allMatch(e->e.getTraversingLps().stream().allMatch(lp->perFiberPerLpPerOla_valInputOutputOla.get(e).get(lp).size() == e.getNumberOfOpticalLineAmplifiersTraversed()));
+   	 
+   	 /* Update the total power per fiber */
+   	 for (WFiber fiber : wNet.getFibers())
+   		 updateFiberTotalPowerInfo(fiber);
+   	 
+   	 return this;
+    }
+
+    /** Updates the performance information affected by the given lightpaths, which may have been added, removed or rerouted since the last update. 
+     * Only the signal states of these lightpaths, and the total power of the fibers they traverse (or traversed before the change), are recomputed. 
+     * The result is the same as calling {@link #updateAllPerformanceInfo()}, as long as every lightpath added, removed or rerouted since the last update is 
+     * included in the collection, and no other change was made (e.g. in the fibers, their amplifiers or the OADMs). If not, a full update is needed 
+     * @param lps the lightpaths added, removed or rerouted
+     * @return this object
+     */
+    public OpticalSimulationModule updatePerformanceInfoOfLightpaths (Collection<WLightpath> lps)
+    {
+    	final SortedSet<WFiber> fibersToUpdate = new TreeSet<> ();
+    	/* First remove the old information: removed lightpaths cannot be compared anymore, so they are not looked up in the maps */
+    	for (WLightpath lp : lps)
+    	{
+    		final List<WFiber> previousSeqFibers = perLp_seqFibersAccountedFor.remove(lp);
+    		if (previousSeqFibers == null) continue;
+    		for (WFiber fiber : previousSeqFibers)
+    		{
+    			if (fiber.wasRemoved()) continue;
+    			removeLightpathEntry(perFiberPerLp_valStartAfterBoosterEndBeforePreampl.get(fiber) , lp);
+    			removeLightpathEntry(perFiberPerLpPerOla_valInputOutputOla.get(fiber) , lp);
+    			removeLightpathEntry(perFiberPerLp_valInputBooster.get(fiber) , lp);
+    			removeLightpathEntry(perFiberPerLp_valOutputPreamplifier.get(fiber) , lp);
+    			fibersToUpdate.add(fiber);
+    		}
+    		removeLightpathEntry(perLpPerMetric_valAtDropTransponderEnd , lp);
+    	}
+    	for (WLightpath lp : lps)
+    	{
+    		if (lp.wasRemoved()) continue;
+    		updateLightpathInfo(lp);
+    		fibersToUpdate.addAll(perLp_seqFibersAccountedFor.get(lp));
+    	}
+    	for (WFiber fiber : fibersToUpdate)
+    		updateFiberTotalPowerInfo(fiber);
+    	
+    	if (checkIncrementalUpdatesAgainstFullRecomputation && !isConsistentWithFullRecomputation())
+    		throw new Net2PlanException ("The incremental update of the optical performance information differs from the full recomputation");
+    	return this;
+    }
+
+    /** Same as {@link #updatePerformanceInfoOfLightpaths(Collection)}, for one lightpath 
+     * @param lp the lightpath added, removed or rerouted
+     * @return this object
+     */
+    public OpticalSimulationModule updatePerformanceInfoOfLightpath (WLightpath lp)
+    {
+    	return updatePerformanceInfoOfLightpaths(Arrays.asList(lp));
+    }
+
+    /** Enables or disables the check of each incremental update against a full recomputation of the performance information. This is 
+     * slow, and intended for testing. When enabled, an exception is raised if the results differ
+     * @param enable see above
+     */
+    public void setCheckIncrementalUpdatesAgainstFullRecomputation (boolean enable)
+    {
+    	this.checkIncrementalUpdatesAgainstFullRecomputation = enable;
+    }
+
+    /** Indicates if the current performance information is identical to the one obtained recomputing everything from scratch
+     * @return see above
+     */
+    public boolean isConsistentWithFullRecomputation ()
+    {
+    	final OpticalSimulationModule full = new OpticalSimulationModule(wNet);
+    	if (!full.perLp_seqFibersAccountedFor.equals(this.perLp_seqFibersAccountedFor)) return false;
+    	if (!full.perFiberTotalPower_valStartEndAndAtEachOlaInputOutput.equals(this.perFiberTotalPower_valStartEndAndAtEachOlaInputOutput)) return false;
+    	for (WLightpath lp : wNet.getLightpaths())
+    	{
+    		if (!isSameState(full.perLpPerMetric_valAtDropTransponderEnd.get(lp) , this.perLpPerMetric_valAtDropTransponderEnd.get(lp))) return false;
+    		for (WFiber fiber : lp.getSeqFibers())
+    		{
+    			final Pair<LpSignalState,LpSignalState> fullEnds = full.perFiberPerLp_valStartAfterBoosterEndBeforePreampl.get(fiber).get(lp);
+    			final Pair<LpSignalState,LpSignalState> thisEnds = this.perFiberPerLp_valStartAfterBoosterEndBeforePreampl.get(fiber).get(lp);
+    			if (thisEnds == null || !isSameState(fullEnds.getFirst(), thisEnds.getFirst()) || !isSameState(fullEnds.getSecond(), thisEnds.getSecond())) return false;
+    			final SortedMap<Integer , Pair<LpSignalState,LpSignalState>> fullOlas = full.perFiberPerLpPerOla_valInputOutputOla.get(fiber).get(lp);
+    			final SortedMap<Integer , Pair<LpSignalState,LpSignalState>> thisOlas = this.perFiberPerLpPerOla_valInputOutputOla.get(fiber).get(lp);
+    			if (thisOlas == null || !fullOlas.keySet().equals(thisOlas.keySet())) return false;
+    			for (int olaIndex : fullOlas.keySet())
+    				if (!isSameState(fullOlas.get(olaIndex).getFirst(), thisOlas.get(olaIndex).getFirst()) || !isSameState(fullOlas.get(olaIndex).getSecond(), thisOlas.get(olaIndex).getSecond())) return false;
+    			if (!isSameState(full.perFiberPerLp_valInputBooster.get(fiber).get(lp) , this.perFiberPerLp_valInputBooster.get(fiber).get(lp))) return false;
+    			if (!isSameState(full.perFiberPerLp_valOutputPreamplifier.get(fiber).get(lp) , this.perFiberPerLp_valOutputPreamplifier.get(fiber).get(lp))) return false;
+    		}
+    	}
+    	for (WFiber fiber : wNet.getFibers())
+    	{
+    		if (!full.perFiberPerLp_valStartAfterBoosterEndBeforePreampl.get(fiber).keySet().equals(this.perFiberPerLp_valStartAfterBoosterEndBeforePreampl.getOrDefault(fiber, new TreeMap<> ()).keySet())) return false;
+    		if (!full.perFiberPerLpPerOla_valInputOutputOla.get(fiber).keySet().equals(this.perFiberPerLpPerOla_valInputOutputOla.getOrDefault(fiber, new TreeMap<> ()).keySet())) return false;
+    		if (!full.perFiberPerLp_valInputBooster.get(fiber).keySet().equals(this.perFiberPerLp_valInputBooster.getOrDefault(fiber, new TreeMap<> ()).keySet())) return false;
+    		if (!full.perFiberPerLp_valOutputPreamplifier.get(fiber).keySet().equals(this.perFiberPerLp_valOutputPreamplifier.getOrDefault(fiber, new TreeMap<> ()).keySet())) return false;
+    	}
+    	return full.perLpPerMetric_valAtDropTransponderEnd.keySet().equals(this.perLpPerMetric_valAtDropTransponderEnd.keySet());
+    }
+
+    private void updateLightpathInfo (WLightpath lp)
+    {
+		 final int numOpticalSlots = lp.getOpticalSlotIds().size();
+		 final double centralFrequency_hz = 1e12 * lp.getCentralFrequencyThz();
+		 Optional<Pair<LpSignalState,LpSignalState>> previousFiberInfo = Optional.empty();
+		 final List<WFiber> lpSeqFibers = lp.getSeqFibers();
+		 perLp_seqFibersAccountedFor.put(lp, lpSeqFibers);
+		 for (int contFiber = 0; contFiber < lpSeqFibers.size() ; contFiber ++)
+		 {
+			 final WFiber fiber = lpSeqFibers.get(contFiber);
+	   		 final boolean firstFiber = contFiber == 0;
+			 final Pair<LpSignalState,LpSignalState> infoToAdd = Pair.of(new LpSignalState(), new LpSignalState());
+			 final SortedMap<Integer , Pair<LpSignalState,LpSignalState>> infoToAddPerOla = new TreeMap<> ();
+			 perFiberPerLp_valStartAfterBoosterEndBeforePreampl.computeIfAbsent(fiber, f->new TreeMap<> ()).put(lp, infoToAdd);
+			 perFiberPerLpPerOla_valInputOutputOla.computeIfAbsent(fiber, f->new TreeMap<> ()).put(lp, infoToAddPerOla);
+			
+			 final IOadmArchitecture oadm_a = fiber.getA().getOpticalSwitchingArchitecture();
+			 final LpSignalState state_startFiberBeforeBooster;
+			 final WFiber previousFiber = contFiber == 0? null : lpSeqFibers.get(contFiber-1);
+			 if (firstFiber)
+				state_startFiberBeforeBooster = oadm_a.getOutLpStateForAddedLp(new LpSignalState(lp.getAddTransponderInjectionPower_dBm() , 0.0, 0.0, Double.MAX_VALUE), lp.getDirectionlessAddModuleIndexInOrigin(), lpSeqFibers.get(0) , numOpticalSlots);
+			 else
+			 {
+				 final LpSignalState beforePreviousFiberEndPreampl = previousFiberInfo.get().getSecond();
+				 final LpSignalState afterPreviousFiberEndPreampl = previousFiber.getDestinationPreAmplifierInfo().isPresent()? 
+						getStateAfterOpticalAmplifier (centralFrequency_hz , beforePreviousFiberEndPreampl , previousFiber.getDestinationPreAmplifierInfo().get()) : 
+							beforePreviousFiberEndPreampl.getCopy();
 				state_startFiberBeforeBooster = oadm_a.getOutLpStateForExpressLp(afterPreviousFiberEndPreampl, previousFiber, fiber , numOpticalSlots);
-   			 }
-   			 final Optional<OpticalAmplifierInfo> boosterAmplifierInfo = fiber.getOriginBoosterAmplifierInfo();
-   			 perFiberPerLp_valInputBooster.get(fiber).put(lp, boosterAmplifierInfo.isPresent()? Optional.of(state_startFiberBeforeBooster) : Optional.empty());
-   			 final LpSignalState state_startFiberAfterBooster = boosterAmplifierInfo.isPresent()? 
-	   						getStateAfterOpticalAmplifier (centralFrequency_hz , state_startFiberBeforeBooster , boosterAmplifierInfo.get()) : 
-	   							state_startFiberBeforeBooster.getCopy();
-	   		infoToAdd.setFirst(state_startFiberAfterBooster);
+			 }
+			 final Optional<OpticalAmplifierInfo> boosterAmplifierInfo = fiber.getOriginBoosterAmplifierInfo();
+			 perFiberPerLp_valInputBooster.computeIfAbsent(fiber, f->new TreeMap<> ()).put(lp, boosterAmplifierInfo.isPresent()? Optional.of(state_startFiberBeforeBooster) : Optional.empty());
+			 final LpSignalState state_startFiberAfterBooster = boosterAmplifierInfo.isPresent()? 
+   						getStateAfterOpticalAmplifier (centralFrequency_hz , state_startFiberBeforeBooster , boosterAmplifierInfo.get()) : 
+   							state_startFiberBeforeBooster.getCopy();
+   		infoToAdd.setFirst(state_startFiberAfterBooster);
 			 LpSignalState stateOutputLastOlaOrInitialOadmAfterBooster = state_startFiberAfterBooster;
 			 final List<OpticalAmplifierInfo> olasTraversed = fiber.getOpticalLineAmplifiersInfo();
 			 final int numOlas = olasTraversed.size();
@@ -190,46 +310,37 @@ public class OpticalSimulationModule
 			 }
 			 final double distFromLastOlaOrInitialOadm_km = fiber.getLengthInKm() - (numOlas == 0? 0 : olasTraversed.get(numOlas-1).getOlaPositionInKm().get());
 			 final LpSignalState stateAtTheEndOfFiberBeforePreamplifier = getStateAfterFiberKm (stateOutputLastOlaOrInitialOadmAfterBooster , fiber , distFromLastOlaOrInitialOadm_km);
-   			 infoToAdd.setSecond(stateAtTheEndOfFiberBeforePreamplifier);
-   			 final Optional<OpticalAmplifierInfo> preamlInfo = fiber.getDestinationPreAmplifierInfo();
-   			 final LpSignalState state_afterPreampl = preamlInfo.isPresent()? 
-						getStateAfterOpticalAmplifier (centralFrequency_hz , stateAtTheEndOfFiberBeforePreamplifier , fiber.getDestinationPreAmplifierInfo().get()) : 
-							stateAtTheEndOfFiberBeforePreamplifier.getCopy();
-   			 this.perFiberPerLp_valOutputPreamplifier.get(fiber).put(lp, preamlInfo.isPresent()? Optional.of(state_afterPreampl) : Optional.empty());
-   			 previousFiberInfo = Optional.of(infoToAdd);
-   		 }
-   	 }
-   	 
-   	 assert perFiberPerLpPerOla_valInputOutputOla.keySet().containsAll(wNet.getFibers());
-   	 assert wNet.getFibers().stream().allMatch(e->e.getTraversingLps().equals(perFiberPerLpPerOla_valInputOutputOla.get(e).keySet()));
-   	 assert wNet.getFibers().stream().allMatch(e->e.getTraversingLps().stream().allMatch(lp->perFiberPerLpPerOla_valInputOutputOla.get(e).get(lp).size() == e.getNumberOfOpticalLineAmplifiersTraversed()));
-   	 
-   	 /* Update the per lp information at add and end */
-   	 for (WLightpath lp : wNet.getLightpaths())
-   	 {
-   		 final double centralFrequency_hz = 1e12 * lp.getCentralFrequencyThz();
-   		 final WFiber lastFiber = lp.getSeqFibers().get(lp.getSeqFibers().size()-1);
-   		 final WNode lastOadm = lastFiber.getB();
-   		 final LpSignalState state_beforePreamplLastFiber = perFiberPerLp_valStartAfterBoosterEndBeforePreampl.get(lastFiber).get(lp).getSecond();
+			 infoToAdd.setSecond(stateAtTheEndOfFiberBeforePreamplifier);
+			 final Optional<OpticalAmplifierInfo> preamlInfo = fiber.getDestinationPreAmplifierInfo();
+			 final LpSignalState state_afterPreampl = preamlInfo.isPresent()? 
+					getStateAfterOpticalAmplifier (centralFrequency_hz , stateAtTheEndOfFiberBeforePreamplifier , fiber.getDestinationPreAmplifierInfo().get()) : 
+						stateAtTheEndOfFiberBeforePreamplifier.getCopy();
+			 this.perFiberPerLp_valOutputPreamplifier.computeIfAbsent(fiber, f->new TreeMap<> ()).put(lp, preamlInfo.isPresent()? Optional.of(state_afterPreampl) : Optional.empty());
+			 previousFiberInfo = Optional.of(infoToAdd);
+		 }
+
+		 /* Update the per lp information at the drop end */
+		 final WFiber lastFiber = lpSeqFibers.get(lpSeqFibers.size()-1);
+		 final WNode lastOadm = lastFiber.getB();
+		 final LpSignalState state_beforePreamplLastFiber = perFiberPerLp_valStartAfterBoosterEndBeforePreampl.get(lastFiber).get(lp).getSecond();
 		 final LpSignalState state_afterPreamplLastFiber = lastFiber.getDestinationPreAmplifierInfo().isPresent()? 
-						getStateAfterOpticalAmplifier (centralFrequency_hz , state_beforePreamplLastFiber , lastFiber.getDestinationPreAmplifierInfo().get()) : 
-							state_beforePreamplLastFiber.getCopy();
-		final LpSignalState state_afterOadm = lastOadm.getOpticalSwitchingArchitecture().getOutLpStateForDroppedLp(state_afterPreamplLastFiber, lastFiber, lp.getDirectionlessDropModuleIndexInDestination());
-   		 perLpPerMetric_valAtDropTransponderEnd.put(lp, state_afterOadm);
-   	 }
-   	 
-   	 
-   	 /* Update the total power per fiber */
-   	 for (WFiber fiber : wNet.getFibers())
-   	 {
-   		 final double powerAtStart_dBm = linear2dB(fiber.getTraversingLps().stream().map(lp->perFiberPerLp_valStartAfterBoosterEndBeforePreampl.get(fiber).get(lp).getFirst().getPower_dbm()).
-   				 mapToDouble (v->dB2linear(v)).sum ());
-   		 final double powerAtEnd_dBm = linear2dB(fiber.getTraversingLps().stream().map(lp->perFiberPerLp_valStartAfterBoosterEndBeforePreampl.get(fiber).get(lp).getSecond().getPower_dbm()).
-   				 mapToDouble (v->dB2linear(v)).sum ());
-   		 
-   		 final List<Double> powerInputOla_dBm = new ArrayList<> ();
-   		 final List<Double> powerOutputOla_dBm = new ArrayList<> ();
-   		 final List<OpticalAmplifierInfo> olas = fiber.getOpticalLineAmplifiersInfo();
+				getStateAfterOpticalAmplifier (centralFrequency_hz , state_beforePreamplLastFiber , lastFiber.getDestinationPreAmplifierInfo().get()) : 
+					state_beforePreamplLastFiber.getCopy();
+		 final LpSignalState state_afterOadm = lastOadm.getOpticalSwitchingArchitecture().getOutLpStateForDroppedLp(state_afterPreamplLastFiber, lastFiber, lp.getDirectionlessDropModuleIndexInDestination());
+		 perLpPerMetric_valAtDropTransponderEnd.put(lp, state_afterOadm);
+    }
+
+    private void updateFiberTotalPowerInfo (WFiber fiber)
+    {
+		 final SortedMap<WLightpath,Pair<LpSignalState,LpSignalState>> infoThisFiber = perFiberPerLp_valStartAfterBoosterEndBeforePreampl.computeIfAbsent(fiber, f->new TreeMap<> ());
+		 final double powerAtStart_dBm = linear2dB(fiber.getTraversingLps().stream().map(lp->infoThisFiber.get(lp).getFirst().getPower_dbm()).
+				 mapToDouble (v->dB2linear(v)).sum ());
+		 final double powerAtEnd_dBm = linear2dB(fiber.getTraversingLps().stream().map(lp->infoThisFiber.get(lp).getSecond().getPower_dbm()).
+				 mapToDouble (v->dB2linear(v)).sum ());
+		 
+		 final List<Double> powerInputOla_dBm = new ArrayList<> ();
+		 final List<Double> powerOutputOla_dBm = new ArrayList<> ();
+		 final List<OpticalAmplifierInfo> olas = fiber.getOpticalLineAmplifiersInfo();
 		 for (int contOla = 0; contOla < olas.size() ; contOla ++)
 		 {
 			 final double kmFromStartFiber = olas.get(contOla).getOlaPositionInKm().get();
@@ -239,10 +350,27 @@ public class OpticalSimulationModule
 			 powerInputOla_dBm.add(powerAtInputThisOla_dBm);
 			 powerOutputOla_dBm.add(powerAtOutputThisOla_dBm);
 		 }
-   		 perFiberTotalPower_valStartEndAndAtEachOlaInputOutput.put(fiber, Quadruple.of(powerAtStart_dBm, powerAtEnd_dBm , powerInputOla_dBm , powerOutputOla_dBm));
-   	 }
-   	 
-   	 return this;
+		 perFiberTotalPower_valStartEndAndAtEachOlaInputOutput.put(fiber, Quadruple.of(powerAtStart_dBm, powerAtEnd_dBm , powerInputOla_dBm , powerOutputOla_dBm));
+    }
+
+    private static void removeLightpathEntry (SortedMap<WLightpath,?> map , WLightpath lp)
+    {
+    	if (map == null) return;
+    	/* a removed lightpath cannot be compared with the ones in the map, so its entry is searched sequentially */
+    	if (lp.wasRemoved()) map.keySet().removeIf(e->e.equals(lp)); else map.remove(lp);
+    }
+
+    private static boolean isSameState (Optional<LpSignalState> s1 , Optional<LpSignalState> s2)
+    {
+    	if (s1 == null || s2 == null) return s1 == s2;
+    	if (s1.isPresent() != s2.isPresent()) return false;
+    	return !s1.isPresent() || isSameState(s1.get(), s2.get());
+    }
+    private static boolean isSameState (LpSignalState s1 , LpSignalState s2)
+    {
+    	if (s1 == null || s2 == null) return s1 == s2;
+    	return Double.compare(s1.getPower_dbm(), s2.getPower_dbm()) == 0 && Double.compare(s1.getCd_psPerNm(), s2.getCd_psPerNm()) == 0 && 
+    			Double.compare(s1.getPmdSquared_ps2(), s2.getPmdSquared_ps2()) == 0 && Double.compare(s1.getOsnrAt12_5GhzRefBw(), s2.getOsnrAt12_5GhzRefBw()) == 0;
     }
         
 	public Optional<Double> getMaxtoMinPerPowerDensityRatioAmongTraversingLightpathsAtFiberInput_dB (WFiber fiber)
@@ -13,7 +13,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -50,11 +49,142 @@ public class OpticalSpectrumManager
 {
 	public enum OpticalSignalOccupationType { LEGITIMATESIGNAL , WASTESIGNAL; public boolean isWaste() { return this == OpticalSignalOccupationType.WASTESIGNAL;} public boolean isLegitimate () { return this == OpticalSignalOccupationType.LEGITIMATESIGNAL;  }  }
 	
+	/* Set of optical slot ids stored as a bitmap of 64-bit words, so that the spectrum of several fibers and modules is intersected 
+	 * a word at a time. Slot ids can be negative: word w covers the slots 64*w to 64*w+63 */
+	static final class SlotBitmap
+	{
+		static final int NO_SLOT = Integer.MAX_VALUE;
+		static final SlotBitmap EMPTY = new SlotBitmap (); // shared, never modified
+		private long [] words = new long [0];
+		private int firstWordIndex = 0;
+
+		static SlotBitmap ofRanges (List<Pair<Integer,Integer>> ranges)
+		{
+			final SlotBitmap res = new SlotBitmap ();
+			for (Pair<Integer,Integer> range : ranges) res.setRange(range.getFirst(), range.getSecond());
+			return res;
+		}
+		SlotBitmap copy ()
+		{
+			final SlotBitmap res = new SlotBitmap ();
+			res.words = Arrays.copyOf(words, words.length);
+			res.firstWordIndex = firstWordIndex;
+			return res;
+		}
+		private static int wordIndex (int slotId) { return Math.floorDiv(slotId, 64); }
+		private long getWord (int wordIndex)
+		{
+			final int i = wordIndex - firstWordIndex;
+			return i < 0 || i >= words.length? 0 : words [i];
+		}
+		private void ensureWord (int wordIndex)
+		{
+			if (words.length == 0) { words = new long [1]; firstWordIndex = wordIndex; return; }
+			if (wordIndex < firstWordIndex)
+			{
+				final long [] newWords = new long [words.length + firstWordIndex - wordIndex];
+				System.arraycopy(words, 0, newWords, firstWordIndex - wordIndex, words.length);
+				words = newWords;
+				firstWordIndex = wordIndex;
+			}
+			else if (wordIndex >= firstWordIndex + words.length)
+				words = Arrays.copyOf(words, wordIndex - firstWordIndex + 1);
+		}
+		boolean get (int slotId) { return (getWord(wordIndex(slotId)) & (1L << slotId)) != 0; }
+		void set (int slotId)
+		{
+			final int w = wordIndex(slotId);
+			ensureWord(w);
+			words [w - firstWordIndex] |= 1L << slotId;
+		}
+		void clear (int slotId)
+		{
+			final int i = wordIndex(slotId) - firstWordIndex;
+			if (i >= 0 && i < words.length) words [i] &= ~(1L << slotId);
+		}
+		void setRange (int fromSlotId , int toSlotIdIncluded)
+		{
+			if (toSlotIdIncluded < fromSlotId) return;
+			final int firstW = wordIndex(fromSlotId);
+			final int lastW = wordIndex(toSlotIdIncluded);
+			ensureWord(firstW);
+			ensureWord(lastW);
+			for (int w = firstW; w <= lastW ; w ++)
+			{
+				long mask = -1L;
+				if (w == firstW) mask &= -1L << fromSlotId;
+				if (w == lastW) mask &= -1L >>> (63 - (toSlotIdIncluded & 63));
+				words [w - firstWordIndex] |= mask;
+			}
+		}
+		/* Removes all the slots with id lower than the given one */
+		void clearBelow (int slotId)
+		{
+			final int w = wordIndex(slotId);
+			for (int i = 0; i < words.length && firstWordIndex + i <= w ; i ++)
+				words [i] &= firstWordIndex + i == w? -1L << slotId : 0;
+		}
+		void and (SlotBitmap other) { for (int i = 0; i < words.length ; i ++) words [i] &= other.getWord(firstWordIndex + i); }
+		void andNot (SlotBitmap other) { for (int i = 0; i < words.length ; i ++) words [i] &= ~other.getWord(firstWordIndex + i); }
+		/* The lowest slot id in the bitmap which is equal or higher than the given one, or NO_SLOT if none */
+		int nextSetBit (int fromSlotId)
+		{
+			int w = Math.max(wordIndex(fromSlotId), firstWordIndex);
+			if (w - firstWordIndex >= words.length) return NO_SLOT;
+			long word = getWord(w);
+			if (w == wordIndex(fromSlotId)) word &= -1L << fromSlotId;
+			while (true)
+			{
+				if (word != 0) return 64 * w + Long.numberOfTrailingZeros(word);
+				if (++ w - firstWordIndex >= words.length) return NO_SLOT;
+				word = words [w - firstWordIndex];
+			}
+		}
+		/* The lowest slot id not in the bitmap which is equal or higher than the given one */
+		int nextClearBit (int fromSlotId)
+		{
+			int w = wordIndex(fromSlotId);
+			long word = ~getWord(w) & (-1L << fromSlotId);
+			while (word == 0)
+				word = ~getWord(++ w);
+			return 64 * w + Long.numberOfTrailingZeros(word);
+		}
+		/* The initial slot of the lowest-id range of the given number of contiguous slots in the bitmap, or NO_SLOT if none */
+		int getFirstSlotOfContiguousRange (int numContiguousSlots)
+		{
+			int firstSlot = nextSetBit(64 * firstWordIndex);
+			while (firstSlot != NO_SLOT)
+			{
+				final int endSlot = nextClearBit(firstSlot);
+				if (endSlot - firstSlot >= numContiguousSlots) return firstSlot;
+				firstSlot = nextSetBit(endSlot);
+			}
+			return NO_SLOT;
+		}
+		SortedSet<Integer> toSortedSet ()
+		{
+			final SortedSet<Integer> res = new TreeSet<> ();
+			for (int i = 0; i < words.length ; i ++)
+			{
+				long word = words [i];
+				while (word != 0)
+				{
+					res.add(64 * (firstWordIndex + i) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return res;
+		}
+	}
+	
 	private class SlotOccupationManager <T>
 	{
 		final private Map<T,SortedMap<Integer,SortedSet<WLightpath>>> occupation_element_s_ll = new HashMap<> ();
+		/* same occupation, without the lightpath detail, as a bitmap per element */
+		final private Map<T,SlotBitmap> occupiedSlots_element = new HashMap<> ();
 		public SlotOccupationManager() {}
-		public void clear () { occupation_element_s_ll.clear();  }
+		public void clear () { occupation_element_s_ll.clear(); occupiedSlots_element.clear(); }
+		SlotBitmap getOccupiedSlotsBitmap (T element) { return occupiedSlots_element.getOrDefault(element, SlotBitmap.EMPTY); }
 		public Map<T,SortedMap<Integer,SortedSet<WLightpath>>> getFullPerElementOccupationMap () { return Collections.unmodifiableMap(occupation_element_s_ll); }
 		public SortedMap<Integer,SortedSet<WLightpath>> getOccupiedSlotIds (T element) 
 		{ 
@@ -81,8 +211,10 @@ public class OpticalSpectrumManager
 	    	boolean clashesWithPreviousAllocations = false;
     		SortedMap<Integer,SortedSet<WLightpath>> thisElementInfo = this.occupation_element_s_ll.get(element);
     		if (thisElementInfo == null) { thisElementInfo = new TreeMap<> (); this.occupation_element_s_ll.put(element, thisElementInfo); }
+    		final SlotBitmap thisElementBitmap = this.occupiedSlots_element.computeIfAbsent(element, e->new SlotBitmap ());
     		for (int slotId : slotIds)
     		{
+    			thisElementBitmap.set(slotId);
     			SortedSet<WLightpath> currentCollidingLps = thisElementInfo.get(slotId);
     			if (currentCollidingLps == null) { currentCollidingLps = new TreeSet<> (); thisElementInfo.put(slotId, currentCollidingLps); }
     			if (!currentCollidingLps.isEmpty()) clashesWithPreviousAllocations = true;
@@ -106,7 +238,8 @@ public class OpticalSpectrumManager
 	    			if (thisLpAndOthers.isEmpty()) 
 	    			{
 	    				thisFiberInfo.remove(slotId);
-	    				if (thisFiberInfo.isEmpty()) this.occupation_element_s_ll.remove(element);
+	    				this.occupiedSlots_element.get(element).clear(slotId);
+	    				if (thisFiberInfo.isEmpty()) { this.occupation_element_s_ll.remove(element); this.occupiedSlots_element.remove(element); }
 	    			}
 	    		}
 	    	}
@@ -178,18 +311,7 @@ public class OpticalSpectrumManager
      */
     public SortedSet<Integer> getAvailableSlotIds (Collection<WFiber> wdmLinks , Optional<Pair<WNode,Integer>> addNodeDirectionlessBank , Optional<Pair<WNode,Integer>> dropNodeDirectionlessBank) 
     {
-    	checkSameWNet(wdmLinks);
-        if (wdmLinks.isEmpty()) throw new Net2PlanException ("No WDM links");
-        final Iterator<WFiber> itLink = wdmLinks.iterator();
-        final WFiber firstLink = itLink.next();
-        final SortedSet<Integer> validSlotIds = this.getIdleOpticalSlotIds(firstLink);
-        while (itLink.hasNext())
-            validSlotIds.retainAll(this.getIdleOpticalSlotIds(itLink.next()));
-        if (addNodeDirectionlessBank.isPresent())
-            validSlotIds.removeAll(this.getOccupiedOpticalSlotIdsInDirectionlessAddModule(addNodeDirectionlessBank.get().getFirst() , addNodeDirectionlessBank.get().getSecond()));
-        if (dropNodeDirectionlessBank.isPresent())
-            validSlotIds.removeAll(this.getOccupiedOpticalSlotIdsInDirectionlessDropModule(dropNodeDirectionlessBank.get().getFirst() , dropNodeDirectionlessBank.get().getSecond()));
-        return validSlotIds;
+    	return getAvailableSlotsBitmap(wdmLinks, addNodeDirectionlessBank, dropNodeDirectionlessBank).toSortedSet();
     }
 
 	/** FA: Returns the set of the optical slots ids that are idle in ALL the fibers provided and also, if given, in the add and drop directionless modules, so they are not occupied by legitimate or waste signals
@@ -199,22 +321,83 @@ public class OpticalSpectrumManager
      * @return see above
      */
     public SortedSet<Integer> getAvailableSlotIdsEmptyOrWithWaste (Collection<WFiber> wdmLinks , Optional<Pair<WNode,Integer>> addNodeDirectionlessBank , Optional<Pair<WNode,Integer>> dropNodeDirectionlessBank) 
+    {
+    	return getAvailableSlotsEmptyOrWithWasteBitmap(wdmLinks, addNodeDirectionlessBank, dropNodeDirectionlessBank).toSortedSet();
+    }
+
+    private SlotBitmap getAvailableSlotsBitmap (Collection<WFiber> wdmLinks , Optional<Pair<WNode,Integer>> addNodeDirectionlessBank , Optional<Pair<WNode,Integer>> dropNodeDirectionlessBank) 
     {
     	checkSameWNet(wdmLinks);
         if (wdmLinks.isEmpty()) throw new Net2PlanException ("No WDM links");
         final Iterator<WFiber> itLink = wdmLinks.iterator();
-        final WFiber firstLink = itLink.next();
+        final SlotBitmap validSlotIds = this.getIdleSlotsBitmap(itLink.next());
+        while (itLink.hasNext())
+            validSlotIds.and(this.getIdleSlotsBitmap(itLink.next()));
+        if (addNodeDirectionlessBank.isPresent())
+        {
+        	validSlotIds.andNot(legitimateSignal_directionlessAddOccupation.getOccupiedSlotsBitmap(addNodeDirectionlessBank.get()));
+        	validSlotIds.andNot(wasteSignal_directionlessAddOccupation.getOccupiedSlotsBitmap(addNodeDirectionlessBank.get()));
+        }
+        if (dropNodeDirectionlessBank.isPresent())
+        {
+        	validSlotIds.andNot(legitimateSignal_directionlessDropOccupation.getOccupiedSlotsBitmap(dropNodeDirectionlessBank.get()));
+        	validSlotIds.andNot(wasteSignal_directionlessDropOccupation.getOccupiedSlotsBitmap(dropNodeDirectionlessBank.get()));
+        }
+        return validSlotIds;
+    }
 
-        final SortedSet<Integer> validSlotIds = this.getOpticalSlotIdsEmptyOrWithWaste(firstLink);
+    private SlotBitmap getAvailableSlotsEmptyOrWithWasteBitmap (Collection<WFiber> wdmLinks , Optional<Pair<WNode,Integer>> addNodeDirectionlessBank , Optional<Pair<WNode,Integer>> dropNodeDirectionlessBank) 
+    {
+    	checkSameWNet(wdmLinks);
+        if (wdmLinks.isEmpty()) throw new Net2PlanException ("No WDM links");
+        final Iterator<WFiber> itLink = wdmLinks.iterator();
+        final SlotBitmap validSlotIds = this.getEmptyOrWithWasteSlotsBitmap(itLink.next());
         while (itLink.hasNext())
-            validSlotIds.retainAll(this.getOpticalSlotIdsEmptyOrWithWaste(itLink.next()));
+            validSlotIds.and(this.getEmptyOrWithWasteSlotsBitmap(itLink.next()));
         if (addNodeDirectionlessBank.isPresent())
-            validSlotIds.removeAll(this.getOccupiedWithLegitimateSignalOpticalSlotIdsInDirectionlessAddModule(addNodeDirectionlessBank.get().getFirst() , addNodeDirectionlessBank.get().getSecond()));
+        	validSlotIds.andNot(legitimateSignal_directionlessAddOccupation.getOccupiedSlotsBitmap(addNodeDirectionlessBank.get()));
         if (dropNodeDirectionlessBank.isPresent())
-            validSlotIds.removeAll(this.getOccupiedWithLegitimateSignalOpticalSlotIdsInDirectionlessDropModule(dropNodeDirectionlessBank.get().getFirst() , dropNodeDirectionlessBank.get().getSecond()));
+        	validSlotIds.andNot(legitimateSignal_directionlessDropOccupation.getOccupiedSlotsBitmap(dropNodeDirectionlessBank.get()));
         return validSlotIds;
     }
 
+    private SlotBitmap getIdleSlotsBitmap (WFiber wdmLink)
+    {
+    	final SlotBitmap res = SlotBitmap.ofRanges(wdmLink.getValidOpticalSlotRanges());
+    	res.andNot(legitimateSignal_perFiberOccupation.getOccupiedSlotsBitmap(wdmLink));
+    	res.andNot(wasteSignal_perFiberOccupation.getOccupiedSlotsBitmap(wdmLink));
+    	return res;
+    }
+
+    private SlotBitmap getEmptyOrWithWasteSlotsBitmap (WFiber wdmLink)
+    {
+    	final SlotBitmap res = SlotBitmap.ofRanges(wdmLink.getValidOpticalSlotRanges());
+    	res.andNot(legitimateSignal_perFiberOccupation.getOccupiedSlotsBitmap(wdmLink));
+    	return res;
+    }
+
+    /* Slots usable by the given lightpath occupation: the ones fulfilling the conditions in isAllocatable, equal or above the minimum slot id, and not forbidden */
+    private SlotBitmap getUsableSlotsBitmap (OsmLightpathOccupationInfo lpOccupation , Optional<Integer> minimumInitialSlotId , SortedSet<Integer> forbidenSlotIds)
+    {
+        /* Empty slots for legitimate fibers, and add/drop dirless modules  */
+        final SlotBitmap res = getAvailableSlotsBitmap(lpOccupation.getSeqFibersLegitimateSignal() , lpOccupation.getDirectionlessAddModule() , lpOccupation.getDirectionlessDropModule());
+        /* Retain slots without legitimate signal in wasted fibers */
+        if (!lpOccupation.getFibersWithWasteSignal().isEmpty())
+        	res.and(getAvailableSlotsEmptyOrWithWasteBitmap(lpOccupation.getFibersWithWasteSignal() , Optional.empty() , Optional.empty()));
+        /* Remove slots with legitimate signal in any of the wasted add dirless ports */
+        for (Pair<WNode,Integer> module : lpOccupation.getAddDirectionlessModulesWithWasteSignal())
+        	res.andNot(legitimateSignal_directionlessAddOccupation.getOccupiedSlotsBitmap(module));
+        /* Remove slots with legitimate signal in any of the wasted drop dirless ports */
+        for (Pair<WNode,Integer> module : lpOccupation.getDropDirectionlessModulesWithWasteSignal())
+        	res.andNot(legitimateSignal_directionlessDropOccupation.getOccupiedSlotsBitmap(module));
+        /* Remove invalid slots below the mandated threshold */
+        if (minimumInitialSlotId.isPresent())
+        	res.clearBelow(minimumInitialSlotId.get());
+        /* Remove forbiden slot ids */
+        for (int slotId : forbidenSlotIds) res.clear(slotId);
+        return res;
+    }
+
     
     /** FA: Given a fiber, returns a map with the occupied optical slot ids, both caused by legitimate signals, mapped to the set of lightpaths that occupy it. 
      * Note that if more than one lightpath occupies a given slot, means that spectrum clashing occurs in that slot   
@@ -307,22 +490,25 @@ public class OpticalSpectrumManager
         		return false;
         /* Fibers with waste spectrum are not occupied by legitimate signals */
         for (WFiber e : occupationInformation.getFibersWithWasteSignal())
-        	for (int slotWithLegitimateSignalOtherLps : this.legitimateSignal_perFiberOccupation.getOccupiedOpticalSlotIds(e))
-        		if (slotIds.contains(slotWithLegitimateSignalOtherLps))
-        			return false;
+        	if (isAnySlotIn(this.legitimateSignal_perFiberOccupation.getOccupiedSlotsBitmap(e) , slotIds))
+        		return false;
         /* Dirless add modules with waste spectrum are not occupied by legitimate signals */
         for (Pair<WNode,Integer> e : occupationInformation.getAddDirectionlessModulesWithWasteSignal())
-        	for (int slotWithLegitimateSignalOtherLps : this.legitimateSignal_directionlessAddOccupation.getOccupiedOpticalSlotIds(e))
-        		if (slotIds.contains(slotWithLegitimateSignalOtherLps))
-        			return false;
+        	if (isAnySlotIn(this.legitimateSignal_directionlessAddOccupation.getOccupiedSlotsBitmap(e) , slotIds))
+        		return false;
         /* Dirless drop modules with waste spectrum are not occupied by legitimate signals */
         for (Pair<WNode,Integer> e : occupationInformation.getDropDirectionlessModulesWithWasteSignal())
-        	for (int slotWithLegitimateSignalOtherLps : this.legitimateSignal_directionlessDropOccupation.getOccupiedOpticalSlotIds(e))
-        		if (slotIds.contains(slotWithLegitimateSignalOtherLps))
-        			return false;
+        	if (isAnySlotIn(this.legitimateSignal_directionlessDropOccupation.getOccupiedSlotsBitmap(e) , slotIds))
+        		return false;
         return true;
     }
 
+    private static boolean isAnySlotIn (SlotBitmap bitmap , Collection<Integer> slotIds)
+    {
+    	for (int slotId : slotIds) if (bitmap.get(slotId)) return true;
+    	return false;
+    }
+
     /** Indicates if this lightpath has already been accounted for
      * @param lp see above
      * @return see above
@@ -577,34 +763,12 @@ public class OpticalSpectrumManager
         /* If a fiber is traversed more than once, there is no possible assignment */
         if (lpOccupation.isWithSelfClashing()) return Optional.empty();
 
-        /* Empty slots for legitimate fibers, and add/drop dirless modules  */
-        SortedSet<Integer> intersectionValidSlots = getAvailableSlotIds(lpOccupation.getSeqFibersLegitimateSignal() , lpOccupation.getDirectionlessAddModule() , lpOccupation.getDirectionlessDropModule());
-        /* Retain slots without legitimate signal in wasted fibers */
-        if (!lpOccupation.getFibersWithWasteSignal().isEmpty())
-        	intersectionValidSlots.retainAll(getAvailableSlotIdsEmptyOrWithWaste(lpOccupation.getFibersWithWasteSignal() , Optional.empty() , Optional.empty()));
-        /* Remove slots with legitimate signal in any of the wasted add dirless ports */
-        for (Pair<WNode,Integer> module : lpOccupation.getAddDirectionlessModulesWithWasteSignal())
-        	intersectionValidSlots.removeAll(this.getOccupiedWithLegitimateSignalOpticalSlotIdsInDirectionlessAddModule(module.getFirst(), module.getSecond()));
-        /* Remove slots with legitimate signal in any of the wasted drop dirless ports */
-        for (Pair<WNode,Integer> module : lpOccupation.getDropDirectionlessModulesWithWasteSignal())
-        	intersectionValidSlots.removeAll(this.getOccupiedWithLegitimateSignalOpticalSlotIdsInDirectionlessDropModule(module.getFirst(), module.getSecond()));
-        /* Remove invalid slots below the mandated threshold */
-        if (minimumInitialSlotId.isPresent())
-        	intersectionValidSlots = intersectionValidSlots.tailSet(minimumInitialSlotId.get());
-        /* Remove forbiden slot ids */
-        intersectionValidSlots.removeAll(forbidenSlotIds);
-        if (intersectionValidSlots.size() < numContiguousSlotsRequired) return Optional.empty();
-
-        final LinkedList<Integer> lastXValidSlots = new LinkedList<> ();
-        for (int slotId : intersectionValidSlots)
-        {
-        	if (lastXValidSlots.size() >= numContiguousSlotsRequired) lastXValidSlots.remove(0);
-        	lastXValidSlots.add(slotId);
-        	if (lastXValidSlots.size() != numContiguousSlotsRequired) continue;
-        	if (lastXValidSlots.getLast() - lastXValidSlots.getFirst() == numContiguousSlotsRequired-1) 
-        		return Optional.of(new TreeSet<>(lastXValidSlots));
-        }
-        return Optional.empty();
+        final SlotBitmap usableSlots = getUsableSlotsBitmap(lpOccupation, minimumInitialSlotId, forbidenSlotIds);
+        final int firstSlotId = usableSlots.getFirstSlotOfContiguousRange(numContiguousSlotsRequired);
+        if (firstSlotId == SlotBitmap.NO_SLOT) return Optional.empty();
+        final SortedSet<Integer> res = new TreeSet<> ();
+        for (int cont = 0; cont < numContiguousSlotsRequired ; cont ++) res.add(firstSlotId + cont);
+        return Optional.of(res);
     }
 
     
@@ -626,35 +790,15 @@ public class OpticalSpectrumManager
         /* If a fiber is traversed more than once, there is no possible assignment */
         if (lpOccupation.isWithSelfClashing()) return new TreeSet<> ();
 
-        /* Empty slots for legitimate fibers, and add/drop dirless modules  */
-        SortedSet<Integer> intersectionValidSlots = getAvailableSlotIds(lpOccupation.getSeqFibersLegitimateSignal() , lpOccupation.getDirectionlessAddModule() , lpOccupation.getDirectionlessDropModule());
-        /* Retain slots without legitimate signal in wasted fibers */
-        if (!lpOccupation.getFibersWithWasteSignal().isEmpty())
-        	intersectionValidSlots.retainAll(getAvailableSlotIdsEmptyOrWithWaste(lpOccupation.getFibersWithWasteSignal() , Optional.empty() , Optional.empty()));
-        /* Remove slots with legitimate signal in any of the wasted add dirless ports */
-        for (Pair<WNode,Integer> module : lpOccupation.getAddDirectionlessModulesWithWasteSignal())
-        	intersectionValidSlots.removeAll(this.getOccupiedWithLegitimateSignalOpticalSlotIdsInDirectionlessAddModule(module.getFirst(), module.getSecond()));
-        /* Remove slots with legitimate signal in any of the wasted drop dirless ports */
-        for (Pair<WNode,Integer> module : lpOccupation.getDropDirectionlessModulesWithWasteSignal())
-        	intersectionValidSlots.removeAll(this.getOccupiedWithLegitimateSignalOpticalSlotIdsInDirectionlessDropModule(module.getFirst(), module.getSecond()));
-        /* Remove invalid slots below the mandated threshold */
-        if (minimumInitialSlotId.isPresent())
-        	intersectionValidSlots = intersectionValidSlots.tailSet(minimumInitialSlotId.get());
-        /* Remove the forbidden slots if any */
-        intersectionValidSlots.removeAll(forbidenSlotIds);
-        
-        if (intersectionValidSlots.size() < numContiguousSlotsRequired) return new TreeSet<> ();
-
+        final SlotBitmap usableSlots = getUsableSlotsBitmap(lpOccupation, minimumInitialSlotId, forbidenSlotIds);
         final SortedSet<Integer> validFirstSlotsOfContiguousRanges = new TreeSet<> ();
-        
-        final LinkedList<Integer> lastXValidSlots = new LinkedList<> ();
-        for (int slotId : intersectionValidSlots)
+        int firstSlotId = usableSlots.nextSetBit(Integer.MIN_VALUE);
+        while (firstSlotId != SlotBitmap.NO_SLOT)
         {
-        	if (lastXValidSlots.size() >= numContiguousSlotsRequired) lastXValidSlots.remove(0);
-        	lastXValidSlots.add(slotId);
-        	if (lastXValidSlots.size() != numContiguousSlotsRequired) continue;
-        	if (lastXValidSlots.getLast() - lastXValidSlots.getFirst() == numContiguousSlotsRequired-1) 
-        		validFirstSlotsOfContiguousRanges.add(lastXValidSlots.getFirst());
+        	final int endSlotId = usableSlots.nextClearBit(firstSlotId);
+        	for (int slotId = firstSlotId; slotId <= endSlotId - numContiguousSlotsRequired ; slotId ++)
+        		validFirstSlotsOfContiguousRanges.add(slotId);
+        	firstSlotId = usableSlots.nextSetBit(endSlotId);
         }
         return validFirstSlotsOfContiguousRanges;
     }
@@ -1000,9 +1144,7 @@ public class OpticalSpectrumManager
 	public SortedSet<Integer> getIdleOpticalSlotIds (WFiber wdmLink)
 	{
 		checkSameWNet(wdmLink);
-		final SortedSet<Integer> res = wdmLink.getValidOpticalSlotIds();
-		res.removeAll(getOccupiedOpticalSlotIds(wdmLink));
-		return res;
+		return getIdleSlotsBitmap(wdmLink).toSortedSet();
 	}
 
 	/** FA: Returns the optical slots that are empty, or occupied just by waste signals, but not by a legitimate signal of a lightpath, in the given fiber
@@ -1012,9 +1154,7 @@ public class OpticalSpectrumManager
 	public SortedSet<Integer> getOpticalSlotIdsEmptyOrWithWaste (WFiber wdmLink)
 	{
 		checkSameWNet(wdmLink);
-		final SortedSet<Integer> res = wdmLink.getValidOpticalSlotIds();
-		res.removeAll(getOpticalSlotIdsWithLegitimateSignal(wdmLink));
-		return res;
+		return getEmptyOrWithWasteSlotsBitmap(wdmLink).toSortedSet();
 	}
 
 	/** FA: Returns the optical slots that are occupied (by waste or legitimate signals) in the given directionless add module
@@ -1171,7 +1311,9 @@ public class OpticalSpectrumManager
 	public boolean isOpticalSlotIdsValidAndIdle (WFiber wdmLink , SortedSet<Integer> slotsIds)
 	{
 		checkSameWNet(wdmLink);
-		return getIdleOpticalSlotIds(wdmLink).containsAll(slotsIds);
+		final SlotBitmap idleSlots = getIdleSlotsBitmap(wdmLink);
+		for (int slotId : slotsIds) if (!idleSlots.get(slotId)) return false;
+		return true;
 	}
 	
 	/** FA: Indicates if the optical slots are usable (valid and idle, not occupied by waste or legitimate optical signals of any lightpath) in the given add directionless module index
@@ -1183,7 +1325,8 @@ public class OpticalSpectrumManager
 	public boolean isOpticalSlotIdsValidAndIdleInAddDirectionlessModule (WNode node , int directionlessModuleIndex , SortedSet<Integer> slotsIds)
 	{
 		checkSameWNet(node);
-		return getOccupiedOpticalSlotIdsInDirectionlessAddModule(node, directionlessModuleIndex).stream().allMatch(slot->!slotsIds.contains(slot));
+		final Pair<WNode,Integer> id = Pair.of(node, directionlessModuleIndex);
+		return !isAnySlotIn(legitimateSignal_directionlessAddOccupation.getOccupiedSlotsBitmap(id), slotsIds) && !isAnySlotIn(wasteSignal_directionlessAddOccupation.getOccupiedSlotsBitmap(id), slotsIds);
 	}
 	
 	/** FA: Indicates if the optical slots are usable (valid and idle, not occupied by waste or legitimate optical signals of any lightpath) in the given drop directionless module index
@@ -1195,7 +1338,8 @@ public class OpticalSpectrumManager
 	public boolean isOpticalSlotIdsValidAndIdleInDropDirectionlessModule (WNode node , int directionlessModuleIndex , SortedSet<Integer> slotsIds)
 	{
 		checkSameWNet(node);
-		return getOccupiedOpticalSlotIdsInDirectionlessDropModule(node, directionlessModuleIndex).stream().allMatch(slot->!slotsIds.contains(slot));
+		final Pair<WNode,Integer> id = Pair.of(node, directionlessModuleIndex);
+		return !isAnySlotIn(legitimateSignal_directionlessDropOccupation.getOccupiedSlotsBitmap(id), slotsIds) && !isAnySlotIn(wasteSignal_directionlessDropOccupation.getOccupiedSlotsBitmap(id), slotsIds);
 	}
 	
 
@@ -85,10 +85,10 @@ public class OsmOpticalSignalPropagationElement implements Comparable<OsmOptical
 		int c;
 		c = Boolean.compare(o1.isDirfulAdd(), o2.isDirfulAdd());
 		if (c != 0) return c;
-		if (o1.isDirfulAdd()) o1.getDirfulAddOutFiber().compareTo(o2.getDirfulAddOutFiber());
+		if (o1.isDirfulAdd()) return o1.getDirfulAddOutFiber().compareTo(o2.getDirfulAddOutFiber());
 		c = Boolean.compare(o1.isDirfulDrop(), o2.isDirfulDrop());
 		if (c != 0) return c;
-		if (o1.isDirfulDrop()) o1.getDirfulDropInFiber().compareTo(o2.getDirfulDropInFiber());
+		if (o1.isDirfulDrop()) return o1.getDirfulDropInFiber().compareTo(o2.getDirfulDropInFiber());
 		c = Boolean.compare(o1.isDirlessAdd(), o2.isDirlessAdd());
 		if (c != 0) return c;
 		if (o1.isDirlessAdd())
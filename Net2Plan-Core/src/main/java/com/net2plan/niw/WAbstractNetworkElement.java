@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 import com.net2plan.interfaces.networkDesign.Net2PlanException;
 import com.net2plan.interfaces.networkDesign.NetPlan;
@@ -25,6 +25,20 @@ public abstract class WAbstractNetworkElement implements Comparable<WAbstractNet
 {
 	public static final String NIWNAMEPREFIX = "$$$";
 
+	/* Parsers of the attribute values: the parsed values are kept in the attributes until they are set again */
+	private static final Function<String,Boolean> PARSER_BOOLEAN = Boolean::parseBoolean;
+	private static final Function<String,Integer> PARSER_INTEGER = Integer::parseInt;
+	private static final Function<String,SortedSet<Integer>> PARSER_SORTEDSETINTEGER = s -> 
+	{
+		final SortedSet<Integer> res = new TreeSet<> ();
+		for (String part : s.split(" ",-1))
+		{
+			if (part.equals("")) continue;
+			res.add((int) Double.parseDouble(part));
+		}
+		return res;
+	};
+
 	/**
 	 * The Net2Plan object associated to this library object
 	 */
@@ -80,15 +94,7 @@ public abstract class WAbstractNetworkElement implements Comparable<WAbstractNet
 	 */
 	public Boolean getAttributeAsBooleanOrDefault(String name, Boolean defaultValue)
 	{
-		final String s = associatedNpElement.getAttribute(name);
-		if (s == null) return defaultValue;
-		try
-		{
-			return Boolean.parseBoolean(s);
-		} catch (Exception ee)
-		{
-			return defaultValue;
-		}
+		return associatedNpElement.getAttributeAsParsedValue(name, PARSER_BOOLEAN, defaultValue);
 	}
 
 
@@ -136,15 +142,7 @@ public abstract class WAbstractNetworkElement implements Comparable<WAbstractNet
 
 	public int getAttributeAsIntegerOrDefault(String name, Integer defaultValue)
 	{
-		final String s = associatedNpElement.getAttribute(name);
-		if (s == null) return defaultValue;
-		try
-		{
-			return Integer.parseInt(s);
-		} catch (Exception ee)
-		{
-			return defaultValue;
-		}
+		return associatedNpElement.getAttributeAsParsedValue(name, PARSER_INTEGER, defaultValue);
 	}
 
 	public List<Double> getAttributeAsListDoubleOrDefault(String name, List<Double> defaultValue)
@@ -157,9 +155,8 @@ public abstract class WAbstractNetworkElement implements Comparable<WAbstractNet
 	}
 	public SortedSet<Integer> getAttributeAsSortedSetIntegerOrDefault(String name, SortedSet<Integer> defaultValue)
 	{
-		final List<Double> res = associatedNpElement.getAttributeAsDoubleList(name, null);
-		if (res == null) return defaultValue;
-		return res.stream().map(nn -> new Integer(nn.intValue())).collect(Collectors.toCollection(TreeSet::new));
+		final SortedSet<Integer> res = associatedNpElement.getAttributeAsParsedValue(name, PARSER_SORTEDSETINTEGER, null);
+		return res == null? defaultValue : new TreeSet<> (res);
 	}
 
 	Optional<NetworkLayer> getIpNpLayer()
@@ -13,12 +13,14 @@ import java.util.List;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.net2plan.interfaces.networkDesign.Link;
 import com.net2plan.interfaces.networkDesign.Net2PlanException;
 import com.net2plan.niw.WNetConstants.WTYPE;
 import com.net2plan.utils.Pair;
+import com.net2plan.utils.StringUtils;
 
 /**
  * This class represents a unidirectional WDM fiber between two OADM (Optical Add-Drop Multiplexer) network nodes
@@ -51,6 +53,15 @@ public class WFiber extends WAbstractNetworkElement
 
 	private static final String ATTNAMESUFFIX_VALIDOPTICALSLOTRANGES = "OpticalSlotRanges";
 	private static final String ATTNAMESUFFIX_ARBITRARYPARAMSTRING = "ArbitraryString";
+
+	/* The amplifier information is parsed once, and kept in the attribute until it is set again */
+	private static final Function<String,OpticalAmplifierInfo> PARSER_OPTICALAMPLIFIERINFO = s -> OpticalAmplifierInfo.createFromString(s).orElse(null);
+	private static final Function<String,List<OpticalAmplifierInfo>> PARSER_OPTICALAMPLIFIERINFOLIST = s -> 
+	{
+		final List<String> info = StringUtils.readEscapedString_asStringList(s, null);
+		if (info == null) return null;
+		return info.stream().map(ss->OpticalAmplifierInfo.createFromString(ss).orElse(null)).filter(ss->ss!=null).collect(Collectors.toList());
+	};
 	private int numberAmplifiersToTraverse = 0;
 	
 	
@@ -219,8 +230,8 @@ public class WFiber extends WAbstractNetworkElement
 	 */
 	public List<OpticalAmplifierInfo> getOpticalLineAmplifiersInfo ()
 	{
-		final List<String> info = getAttributeAsListStringOrDefault(ATTNAMECOMMONPREFIX + ATTNAMESUFFIX_OPTICALLINEAMPLIFIERSINFO, Arrays.asList());
-		return info.stream().map(s->OpticalAmplifierInfo.createFromString(s).orElse(null)).filter(s->s!=null).collect(Collectors.toList());
+		final List<OpticalAmplifierInfo> info = getNe().getAttributeAsParsedValue(ATTNAMECOMMONPREFIX + ATTNAMESUFFIX_OPTICALLINEAMPLIFIERSINFO, PARSER_OPTICALAMPLIFIERINFOLIST, Arrays.asList());
+		return info.stream().map(s->s.getCopy()).collect(Collectors.toList());
 	}
 
 	/**
@@ -474,9 +485,8 @@ public class WFiber extends WAbstractNetworkElement
 	public Optional<OpticalAmplifierInfo> getOriginBoosterAmplifierInfo ()
 	{
 		if (!isExistingBoosterAmplifierAtOriginOadm()) return Optional.empty();
-		final String s = getNe().getAttribute(ATTNAMECOMMONPREFIX + ATTNAMESUFFIX_ASIDE_BOOSTERAMPLIFIERINFO);
-		final OpticalAmplifierInfo info = OpticalAmplifierInfo.createFromString(s).orElse(OpticalAmplifierInfo.getDefaultBooster());
-		return Optional.of (info);
+		final OpticalAmplifierInfo info = getNe().getAttributeAsParsedValue(ATTNAMECOMMONPREFIX + ATTNAMESUFFIX_ASIDE_BOOSTERAMPLIFIERINFO, PARSER_OPTICALAMPLIFIERINFO, null);
+		return Optional.of (info == null? OpticalAmplifierInfo.getDefaultBooster() : info.getCopy());
 	}
 	/** Sets the information of the booster amplifier at fiber origin.
 	 * @param info see above
@@ -492,9 +502,8 @@ public class WFiber extends WAbstractNetworkElement
 	public Optional<OpticalAmplifierInfo> getDestinationPreAmplifierInfo ()
 	{
 		if (!isExistingPreamplifierAtDestinationOadm()) return Optional.empty();
-		final String s = getNe().getAttribute(ATTNAMECOMMONPREFIX + ATTNAMESUFFIX_BSIDE_PREAMPLIFIERINFO);
-		final OpticalAmplifierInfo info = OpticalAmplifierInfo.createFromString(s).orElse(OpticalAmplifierInfo.getDefaultPreamplifier());
-		return Optional.of (info);
+		final OpticalAmplifierInfo info = getNe().getAttributeAsParsedValue(ATTNAMECOMMONPREFIX + ATTNAMESUFFIX_BSIDE_PREAMPLIFIERINFO, PARSER_OPTICALAMPLIFIERINFO, null);
+		return Optional.of (info == null? OpticalAmplifierInfo.getDefaultPreamplifier() : info.getCopy());
 	}
 	/** Sets the information of the preamplifier amplifier at fiber destination.
 	 * @param info see above
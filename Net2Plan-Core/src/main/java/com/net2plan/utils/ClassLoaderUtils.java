@@ -17,18 +17,15 @@ import com.net2plan.internal.SystemUtils;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
+import java.util.stream.Collectors;
 
 /**
  * <p>Class to deal with dynamic Java class loading from .class/.jar files.</p>
@@ -120,7 +117,15 @@ public class ClassLoaderUtils
 	 */
 	public static <T> List<Class<T>> getClassesFromFile(File file, Class<T> _class , ClassLoader classLoaderToUse)
 	{
-		List<Class> allClasses = getClassesFromFile(file , classLoaderToUse);
+		List<Class> allClasses;
+		if (SystemUtils.getExtension(file).toLowerCase(Locale.getDefault()).equals("jar"))
+		{
+			/* Only the classes of the required type (according to the jar catalog) are loaded */
+			final ImplementationCatalog catalog = ImplementationCatalog.read(file);
+			if (catalog.getEntries().isEmpty()) throw new RuntimeException("Java classes not found in '" + file + "'");
+			allClasses = getClassesFromJar(file , catalog.getEntries(_class).stream().map(e -> e.getClassName()).collect(Collectors.toList()) , classLoaderToUse);
+		}
+		else allClasses = getClassesFromFile(file , classLoaderToUse);
 		List<Class<T>> classes = new LinkedList<Class<T>>();
 
 //		System.out.println (allClasses);
@@ -173,14 +178,9 @@ public class ClassLoaderUtils
 				{
 					try
 					{
-						List<Class> classesInFile = getClassesFromFile(classFile , classLoaderToUse);
-						Iterator<Class> it = classesInFile.iterator();
-						while (it.hasNext())
-						{
-							Class aux = it.next();
-							if (aux.getName().endsWith(qualifiedName))
-								return getClassFromFile(classFile, aux.getName(),classLoaderToUse);
-						}
+						for (ImplementationCatalog.Entry entry : ImplementationCatalog.read(classFile).getEntries())
+							if (entry.getClassName().endsWith(qualifiedName))
+								return getClassFromFile(classFile, entry.getClassName(),classLoaderToUse);
 
 						throw new RuntimeException(e);
 					}
@@ -229,6 +229,19 @@ public class ClassLoaderUtils
 	 * @since 0.2.0
 	 */
 	private static List<Class> getClassesFromJar(File jarFile , ClassLoader classLoaderToUse)
+	{
+		return getClassesFromJar(jarFile , ImplementationCatalog.read(jarFile).getEntries().stream().map(e -> e.getClassName()).collect(Collectors.toList()) , classLoaderToUse);
+	}
+
+	/**
+	 * Returns the Java classes with the given names from a .jar file. The classes that cannot be loaded are skipped
+	 *
+	 * @param jarFile .jar file
+	 * @param classNames Fully qualified names of the classes
+	 * @param classLoaderToUse If null, creates a new class loader. If not, loads classes from it
+	 * @return List of found Java classes
+	 */
+	private static List<Class> getClassesFromJar(File jarFile , List<String> classNames , ClassLoader classLoaderToUse)
 	{
 		try
 		{
@@ -236,32 +249,17 @@ public class ClassLoaderUtils
 			ClassLoader cl = (classLoaderToUse != null)? classLoaderToUse : new URLClassLoader(new URL[] { jarFile.toURI().toURL() }, ClassLoader.getSystemClassLoader());
 
 			List<Class> classes = new LinkedList<Class>();
-			try (JarInputStream jar = new JarInputStream(new FileInputStream(jarFile)))
+			for (String className : classNames)
 			{
-				JarEntry jarEntry;
+				Class _class;
+				try { _class = cl.loadClass(className); }
+				catch(NoClassDefFoundError e) { continue; }
 
-				while (true)
-				{
-					jarEntry = jar.getNextJarEntry();
-					if (jarEntry == null) break;
+				int modifier = _class.getModifiers();
+				if (Modifier.isAbstract(modifier) || Modifier.isInterface(modifier))
+					continue;
 
-					if (jarEntry.getName().endsWith(".class"))
-					{
-						String className = jarEntry.getName().replaceAll("/", "\\.").replaceAll(".class", "");
-						if (className.contains("$")) continue;
-						
-						Class _class;
-//						System.out.print("getClassesFromJar (" + jarFile + "): " + className);
-						try { _class = cl.loadClass(className); /*System.out.println("... OK"); */ }
-						catch(NoClassDefFoundError e) { /*System.out.println("... ERROR"); e.printStackTrace(); */ continue; }
-						
-						int modifier = _class.getModifiers();
-						if (Modifier.isAbstract(modifier) || Modifier.isInterface(modifier))
-							continue;
-
-						classes.add(_class);
-					}
-				}
+				classes.add(_class);
 			}
 
 			return classes;
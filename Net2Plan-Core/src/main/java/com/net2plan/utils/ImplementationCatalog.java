@@ -0,0 +1,466 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+
+package com.net2plan.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.internal.IExternal;
+
+/**
+ * <p>Catalog of the classes in a .jar file (or a folder with .class files) that Net2Plan can load, obtained without loading them.</p>
+ * <p>The catalog is read from an index file stored in the jar (see {@link #INDEX_RESOURCENAME}), generated at build time with the {@link #main(String[])}
+ * method. The index also keeps the description and parameters of the implementations of {@link IExternal} (algorithms, reports, event generators and
+ * processors, plugins...), so they can be shown without loading the classes. If the jar has no index, the headers of the .class files are read
+ * to know the superclass and interfaces of each class, without loading nor initializing them. In both cases, the classes are loaded
+ * only when they are actually used (e.g. in {@link ClassLoaderUtils#getInstance(File, String, Class, ClassLoader)}).</p>
+ * <p>As in {@link ClassLoaderUtils}, only the top-level classes that are not abstract nor interfaces are included in the catalog.</p>
+ *
+ * @author Pablo Pavon-Marino
+ */
+public class ImplementationCatalog
+{
+	/**
+	 * The name of the index file inside the jar
+	 */
+	public static final String INDEX_RESOURCENAME = "META-INF/net2plan/implementations.properties";
+
+	private static final String KEYSUFFIX_SUPERTYPES = ".supertypes";
+	private static final String KEYSUFFIX_DESCRIPTION = ".description";
+	private static final String KEYSUFFIX_NUMPARAMETERS = ".numParameters";
+	private static final String KEYSUFFIX_PARAMETER = ".parameter.";
+
+	/**
+	 * An entry of the catalog: a class, its supertypes, and its description and parameters, if known
+	 */
+	public static final class Entry
+	{
+		private final String className;
+		private final SortedSet<String> supertypes;
+		private final String description;
+		private final List<Triple<String,String,String>> parameters;
+
+		private Entry (String className , SortedSet<String> supertypes , String description , List<Triple<String,String,String>> parameters)
+		{
+			this.className = className;
+			this.supertypes = Collections.unmodifiableSortedSet(supertypes);
+			this.description = description;
+			this.parameters = parameters == null? null : Collections.unmodifiableList(parameters);
+		}
+
+		/**
+		 * Returns the fully qualified name of the class
+		 * @return see above
+		 */
+		public String getClassName () { return className; }
+
+		/**
+		 * Returns the fully qualified names of all the superclasses and interfaces of the class (direct or not), except {@code java.lang.Object}
+		 * @return see above (unmodifiable)
+		 */
+		public SortedSet<String> getSupertypes () { return supertypes; }
+
+		/**
+		 * Indicates if the class is the given class, or extends or implements it
+		 * @param _class the class
+		 * @return see above
+		 */
+		public boolean isSubtypeOf (Class<?> _class) { return className.equals(_class.getName()) || supertypes.contains(_class.getName()); }
+
+		/**
+		 * Returns the description of the class (as returned by {@link IExternal#getDescription()}), if it is known without loading the class
+		 * @return see above
+		 */
+		public Optional<String> getDescription () { return Optional.ofNullable(description); }
+
+		/**
+		 * Returns the parameters of the class (as returned by {@link IExternal#getParameters()}), if they are known without loading the class
+		 * @return see above
+		 */
+		public Optional<List<Triple<String,String,String>>> getParameters () { return Optional.ofNullable(parameters); }
+
+		@Override
+		public String toString () { return className; }
+	}
+
+	/* The class information read from a .class file header */
+	private static final class ClassHeader
+	{
+		private final String className;
+		private final boolean isAbstractOrInterface;
+		private final String superClassName;
+		private final List<String> interfaceNames;
+		private ClassHeader (String className , boolean isAbstractOrInterface , String superClassName , List<String> interfaceNames) { this.className = className; this.isAbstractOrInterface = isAbstractOrInterface; this.superClassName = superClassName; this.interfaceNames = interfaceNames; }
+	}
+
+	private final List<Entry> entries;
+	private final boolean isFromIndex;
+
+	private ImplementationCatalog (List<Entry> entries , boolean isFromIndex)
+	{
+		this.entries = Collections.unmodifiableList(entries);
+		this.isFromIndex = isFromIndex;
+	}
+
+	/**
+	 * Returns all the entries of the catalog, sorted by class name
+	 * @return see above (unmodifiable)
+	 */
+	public List<Entry> getEntries () { return entries; }
+
+	/**
+	 * Returns the entries of the classes that are the given class, or extend or implement it
+	 * @param _class the class
+	 * @return see above
+	 */
+	public List<Entry> getEntries (Class<?> _class)
+	{
+		return entries.stream().filter(e -> e.isSubtypeOf(_class)).collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the entry of the class with the given fully qualified name, if any
+	 * @param className the class name
+	 * @return see above
+	 */
+	public Optional<Entry> getEntry (String className)
+	{
+		return entries.stream().filter(e -> e.getClassName().equals(className)).findFirst();
+	}
+
+	/**
+	 * Indicates if the catalog was read from an index file, or built reading the class files
+	 * @return see above
+	 */
+	public boolean isFromIndex () { return isFromIndex; }
+
+	/**
+	 * Returns the catalog of a .jar file, or a folder with .class files (with the class files in the folders of their packages). If the jar or the folder
+	 * contain an index file, it is used. If not, the class file headers are read
+	 * @param file the .jar file or the folder
+	 * @return the catalog
+	 */
+	public static ImplementationCatalog read (File file)
+	{
+		if (!file.exists()) throw new Net2PlanException(file + " does not exist");
+		try
+		{
+			final Map<String,ClassHeader> headers = new HashMap<> ();
+			if (file.isDirectory())
+			{
+				final File indexFile = new File (file , INDEX_RESOURCENAME);
+				if (indexFile.isFile())
+					try (InputStream is = new FileInputStream(indexFile)) { return readIndex(is); }
+				readClassHeadersInFolder(file , headers);
+			}
+			else
+			{
+				try (JarFile jar = new JarFile(file))
+				{
+					final JarEntry indexEntry = jar.getJarEntry(INDEX_RESOURCENAME);
+					if (indexEntry != null)
+						try (InputStream is = jar.getInputStream(indexEntry)) { return readIndex(is); }
+					final Enumeration<JarEntry> it = jar.entries();
+					while (it.hasMoreElements())
+					{
+						final JarEntry jarEntry = it.nextElement();
+						if (!isClassFileToRead(jarEntry.getName())) continue;
+						try (InputStream is = jar.getInputStream(jarEntry))
+						{
+							final ClassHeader header = readClassHeader(is , jarEntry.getName());
+							headers.put(header.className, header);
+						}
+					}
+				}
+			}
+			return new ImplementationCatalog(getEntriesFromClassHeaders(headers) , false);
+		}
+		catch (IOException e)
+		{
+			throw new Net2PlanException("Error reading the classes of " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the catalog as an index file
+	 * @param os the output stream, which is not closed
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void write (OutputStream os) throws IOException
+	{
+		final Properties properties = new Properties ();
+		for (Entry e : entries)
+		{
+			properties.setProperty(e.className + KEYSUFFIX_SUPERTYPES, String.join(",", e.supertypes));
+			if (e.description != null) properties.setProperty(e.className + KEYSUFFIX_DESCRIPTION, e.description);
+			if (e.parameters == null) continue;
+			properties.setProperty(e.className + KEYSUFFIX_NUMPARAMETERS, "" + e.parameters.size());
+			for (int cont = 0 ; cont < e.parameters.size() ; cont ++)
+			{
+				final Triple<String,String,String> param = e.parameters.get(cont);
+				properties.setProperty(e.className + KEYSUFFIX_PARAMETER + cont + ".name", param.getFirst() == null? "" : param.getFirst());
+				properties.setProperty(e.className + KEYSUFFIX_PARAMETER + cont + ".defaultValue", param.getSecond() == null? "" : param.getSecond());
+				properties.setProperty(e.className + KEYSUFFIX_PARAMETER + cont + ".description", param.getThird() == null? "" : param.getThird());
+			}
+		}
+
+		/* Each property is written in one line: sort them (and remove the date comment), so the same classes produce the same file */
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream ();
+		properties.store(bos, null);
+		final List<String> lines = Arrays.stream(new String (bos.toByteArray() , StandardCharsets.ISO_8859_1).split("\\r?\\n")).filter(l -> !l.isEmpty() && !l.startsWith("#")).sorted().collect(Collectors.toList());
+		final StringBuilder st = new StringBuilder ("# Net2Plan implementations index. Generated by " + ImplementationCatalog.class.getName() + "\n");
+		for (String line : lines) st.append(line).append("\n");
+		os.write(st.toString().getBytes(StandardCharsets.ISO_8859_1));
+		os.flush();
+	}
+
+	/**
+	 * <p>Generates the index file of a folder with .class files (e.g. the output folder of the compiler, before creating the jar). The classes
+	 * implementing {@link IExternal} are loaded (this is the only moment where this happens) to store their description and parameters in the index.</p>
+	 * <p>Arguments: the folder, and optionally the index file to write (by default, {@link #INDEX_RESOURCENAME} inside the folder)</p>
+	 * @param args see above
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void main (String [] args) throws IOException
+	{
+		if (args.length < 1 || args.length > 2) throw new Net2PlanException ("Usage: " + ImplementationCatalog.class.getName() + " classesFolder [indexFile]");
+		final File folder = new File (args [0]);
+		if (!folder.isDirectory()) throw new Net2PlanException (folder + " is not a folder");
+		final File indexFile = args.length == 2? new File (args [1]) : new File (folder , INDEX_RESOURCENAME);
+		if (indexFile.isFile() && !indexFile.delete()) throw new IOException ("Cannot delete the previous index " + indexFile);
+
+		final ImplementationCatalog catalogWithoutInfo = read (folder);
+		final List<Entry> entries = new ArrayList<> ();
+		int numExternals = 0;
+		try (URLClassLoader cl = new URLClassLoader(new URL[] { folder.toURI().toURL() }, ImplementationCatalog.class.getClassLoader()))
+		{
+			for (Entry e : catalogWithoutInfo.getEntries())
+			{
+				if (!e.isSubtypeOf(IExternal.class)) { entries.add(e); continue; }
+				try
+				{
+					final IExternal instance = (IExternal) Class.forName(e.className, true, cl).newInstance();
+					final List<Triple<String,String,String>> parameters = instance.getParameters() == null? new ArrayList<> () : instance.getParameters();
+					entries.add(new Entry (e.className , new TreeSet<> (e.supertypes) , instance.getDescription() == null? "No description" : instance.getDescription() , new ArrayList<> (parameters)));
+					numExternals ++;
+				}
+				catch (Throwable ex)
+				{
+					System.err.println("Warning: description and parameters of " + e.className + " not indexed (" + ex + ")");
+					entries.add(e);
+				}
+			}
+		}
+
+		indexFile.getAbsoluteFile().getParentFile().mkdirs();
+		try (OutputStream os = new FileOutputStream(indexFile)) { new ImplementationCatalog(entries , true).write(os); }
+		System.out.println("Index " + indexFile + " written: " + entries.size() + " classes, " + numExternals + " with description and parameters");
+	}
+
+	private static ImplementationCatalog readIndex (InputStream is) throws IOException
+	{
+		final Properties properties = new Properties ();
+		properties.load(is);
+		final List<Entry> entries = new ArrayList<> ();
+		for (String key : new TreeSet<> (properties.stringPropertyNames()))
+		{
+			if (!key.endsWith(KEYSUFFIX_SUPERTYPES)) continue;
+			final String className = key.substring(0, key.length() - KEYSUFFIX_SUPERTYPES.length());
+			final String supertypesString = properties.getProperty(key);
+			final SortedSet<String> supertypes = supertypesString.isEmpty()? new TreeSet<> () : new TreeSet<> (Arrays.asList(supertypesString.split(",")));
+			final String description = properties.getProperty(className + KEYSUFFIX_DESCRIPTION);
+			final String numParametersString = properties.getProperty(className + KEYSUFFIX_NUMPARAMETERS);
+			List<Triple<String,String,String>> parameters = null;
+			if (numParametersString != null)
+			{
+				final int numParameters = Integer.parseInt(numParametersString);
+				parameters = new ArrayList<> (numParameters);
+				for (int cont = 0 ; cont < numParameters ; cont ++)
+					parameters.add(Triple.of(
+							properties.getProperty(className + KEYSUFFIX_PARAMETER + cont + ".name"),
+							properties.getProperty(className + KEYSUFFIX_PARAMETER + cont + ".defaultValue"),
+							properties.getProperty(className + KEYSUFFIX_PARAMETER + cont + ".description")));
+			}
+			entries.add(new Entry (className , supertypes , description , parameters));
+		}
+		return new ImplementationCatalog(entries , true);
+	}
+
+	private static boolean isClassFileToRead (String path)
+	{
+		return path.endsWith(".class") && !path.startsWith("META-INF/") && !path.endsWith("module-info.class");
+	}
+
+	private static void readClassHeadersInFolder (File rootFolder , Map<String,ClassHeader> headers) throws IOException
+	{
+		final List<File> foldersToRead = new ArrayList<> (Arrays.asList(rootFolder));
+		while (!foldersToRead.isEmpty())
+		{
+			final File folder = foldersToRead.remove(foldersToRead.size() - 1);
+			final File [] files = folder.listFiles();
+			if (files == null) continue;
+			for (File f : files)
+			{
+				if (f.isDirectory()) { if (!f.getName().equals("META-INF")) foldersToRead.add(f); continue; }
+				if (!isClassFileToRead(f.getName())) continue;
+				try (InputStream is = new FileInputStream(f))
+				{
+					final ClassHeader header = readClassHeader(is , f.getPath());
+					headers.put(header.className, header);
+				}
+			}
+		}
+	}
+
+	/* Reads the class name, access flags, superclass and interfaces from a class file (JVM specification, chapter 4), skipping the constant pool entries not needed.
+	 * Files that are not class files, are truncated, or refer to constant pool entries that are not classes, throw an IOException naming the file */
+	private static ClassHeader readClassHeader (InputStream is , String fileName) throws IOException
+	{
+		try
+		{
+			return readClassHeader(new DataInputStream(new BufferedInputStream(is)) , fileName);
+		}
+		catch (EOFException e)
+		{
+			throw new IOException (fileName + " is truncated");
+		}
+	}
+
+	private static ClassHeader readClassHeader (DataInputStream in , String fileName) throws IOException
+	{
+		if (in.readInt() != 0xCAFEBABE) throw new IOException (fileName + " is not a class file");
+		in.readUnsignedShort(); // minor version
+		in.readUnsignedShort(); // major version
+		final int constantPoolCount = in.readUnsignedShort();
+		final String [] utf8_i = new String [constantPoolCount];
+		final int [] classNameIndex_i = new int [constantPoolCount];
+		final byte [] skipped = new byte [8];
+		for (int i = 1 ; i < constantPoolCount ; i ++)
+		{
+			final int tag = in.readUnsignedByte();
+			switch (tag)
+			{
+				case 1: utf8_i [i] = in.readUTF(); break; // Utf8
+				case 7: classNameIndex_i [i] = in.readUnsignedShort(); break; // Class
+				case 8: case 16: case 19: case 20: in.readFully(skipped, 0, 2); break; // String, MethodType, Module, Package
+				case 15: in.readFully(skipped, 0, 3); break; // MethodHandle
+				case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18: in.readFully(skipped, 0, 4); break; // Integer, Float, refs, NameAndType, Dynamic, InvokeDynamic
+				case 5: case 6: in.readFully(skipped, 0, 8); i ++; break; // Long, Double: take two entries
+				default: throw new IOException (fileName + ": unknown constant pool tag " + tag);
+			}
+		}
+		final int accessFlags = in.readUnsignedShort();
+		final String className = getClassName(in.readUnsignedShort() , utf8_i , classNameIndex_i , fileName);
+		final int superClassIndex = in.readUnsignedShort();
+		final String superClassName = superClassIndex == 0? null : getClassName(superClassIndex , utf8_i , classNameIndex_i , fileName);
+		final int numInterfaces = in.readUnsignedShort();
+		final List<String> interfaceNames = new ArrayList<> (numInterfaces);
+		for (int cont = 0 ; cont < numInterfaces ; cont ++)
+			interfaceNames.add(getClassName(in.readUnsignedShort() , utf8_i , classNameIndex_i , fileName));
+		final boolean isAbstractOrInterface = (accessFlags & (0x0400 | 0x0200)) != 0; // ACC_ABSTRACT, ACC_INTERFACE
+		return new ClassHeader(className, isAbstractOrInterface, superClassName, interfaceNames);
+	}
+
+	/* The name of the class in the given constant pool entry, which must be a Class entry pointing to a Utf8 entry */
+	private static String getClassName (int constantPoolIndex , String [] utf8_i , int [] classNameIndex_i , String fileName) throws IOException
+	{
+		final int nameIndex = constantPoolIndex > 0 && constantPoolIndex < classNameIndex_i.length? classNameIndex_i [constantPoolIndex] : 0;
+		if (nameIndex <= 0 || nameIndex >= utf8_i.length || utf8_i [nameIndex] == null) throw new IOException (fileName + ": constant pool entry " + constantPoolIndex + " is not a class");
+		return utf8_i [nameIndex].replace('/', '.');
+	}
+
+	private static List<Entry> getEntriesFromClassHeaders (Map<String,ClassHeader> headers)
+	{
+		final Map<String,SortedSet<String>> cache_supertypes = new HashMap<> ();
+		final Map<String,Entry> entries = new TreeMap<> ();
+		for (ClassHeader header : headers.values())
+		{
+			if (header.isAbstractOrInterface || header.className.contains("$")) continue;
+			entries.put(header.className , new Entry (header.className , getSupertypes(header.className, headers, cache_supertypes) , null , null));
+		}
+		return new ArrayList<> (entries.values());
+	}
+
+	/* The supertypes of classes in the jar are obtained from their headers. For the rest (e.g. Net2Plan interfaces), the class is looked up without initializing it */
+	private static SortedSet<String> getSupertypes (String className , Map<String,ClassHeader> headers , Map<String,SortedSet<String>> cache_supertypes)
+	{
+		final SortedSet<String> cached = cache_supertypes.get(className);
+		if (cached != null) return cached;
+		cache_supertypes.put(className, new TreeSet<> ()); // avoids infinite loops in malformed hierarchies
+		final SortedSet<String> res = new TreeSet<> ();
+		final ClassHeader header = headers.get(className);
+		if (header != null)
+		{
+			final List<String> directSupertypes = new ArrayList<> (header.interfaceNames);
+			if (header.superClassName != null) directSupertypes.add(header.superClassName);
+			for (String supertype : directSupertypes)
+			{
+				res.add(supertype);
+				res.addAll(getSupertypes(supertype, headers, cache_supertypes));
+			}
+		}
+		else
+		{
+			final Class<?> _class = findClassWithoutInitializing(className);
+			if (_class != null)
+			{
+				final List<Class<?>> directSupertypes = new ArrayList<> (Arrays.asList(_class.getInterfaces()));
+				if (_class.getSuperclass() != null) directSupertypes.add(_class.getSuperclass());
+				for (Class<?> supertype : directSupertypes)
+				{
+					res.add(supertype.getName());
+					res.addAll(getSupertypes(supertype.getName(), headers, cache_supertypes));
+				}
+			}
+		}
+		res.remove(Object.class.getName());
+		cache_supertypes.put(className, res);
+		return res;
+	}
+
+	private static Class<?> findClassWithoutInitializing (String className)
+	{
+		for (ClassLoader cl : new ClassLoader [] { ClassLoader.getSystemClassLoader() , ImplementationCatalog.class.getClassLoader() })
+		{
+			try { return Class.forName(className, false, cl); }
+			catch (ClassNotFoundException | LinkageError e) { }
+		}
+		return null;
+	}
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+
+package com.net2plan.utils;
+
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Index from primitive {@code long} identifiers to objects, in an open-addressing hash table with linear probing. Unlike a {@code Map<Long,E>},
+ * the identifiers are not boxed, and the lookups take constant expected time. Removals shift back the following entries of the probe sequence,
+ * so no deleted markers are left in the table.</p>
+ * <p>The {@code null} value is not allowed. Objects of this class are not thread-safe.</p>
+ *
+ * @param <E> Class type of the indexed objects
+ * @author Pablo Pavon-Marino
+ */
+public class LongIdIndex<E>
+{
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long [] keys;
+	private Object [] values;
+	private int size;
+	private int mask;
+
+	/**
+	 * Default constructor, for an empty index
+	 */
+	public LongIdIndex ()
+	{
+		this.keys = new long [INITIAL_CAPACITY];
+		this.values = new Object [INITIAL_CAPACITY];
+		this.mask = INITIAL_CAPACITY - 1;
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the number of identifiers in the index
+	 * @return see above
+	 */
+	public int size () { return size; }
+
+	/**
+	 * Returns true if the index is empty
+	 * @return see above
+	 */
+	public boolean isEmpty () { return size == 0; }
+
+	/**
+	 * Returns the object associated to the given identifier, or {@code null} if none
+	 * @param id the identifier
+	 * @return see above
+	 */
+	@SuppressWarnings("unchecked")
+	public E get (long id)
+	{
+		for (int pos = slot(id) ; values [pos] != null ; pos = (pos + 1) & mask)
+			if (keys [pos] == id) return (E) values [pos];
+		return null;
+	}
+
+	/**
+	 * Returns true if the identifier is in the index
+	 * @param id the identifier
+	 * @return see above
+	 */
+	public boolean containsKey (long id) { return get(id) != null; }
+
+	/**
+	 * Associates the object to the given identifier, replacing the previous one if any
+	 * @param id the identifier
+	 * @param value the object (not {@code null})
+	 * @return the object previously associated to the identifier, or {@code null} if none
+	 */
+	@SuppressWarnings("unchecked")
+	public E put (long id , E value)
+	{
+		if (value == null) throw new NullPointerException("Null values are not allowed");
+		int pos = slot(id);
+		for ( ; values [pos] != null ; pos = (pos + 1) & mask)
+		{
+			if (keys [pos] != id) continue;
+			final E previous = (E) values [pos];
+			values [pos] = value;
+			return previous;
+		}
+		keys [pos] = id;
+		values [pos] = value;
+		if (++ size > (keys.length >> 1)) resize(keys.length << 1);
+		return null;
+	}
+
+	/**
+	 * Removes the identifier from the index
+	 * @param id the identifier
+	 * @return the object associated to the identifier, or {@code null} if none
+	 */
+	@SuppressWarnings("unchecked")
+	public E remove (long id)
+	{
+		int pos = slot(id);
+		while (true)
+		{
+			if (values [pos] == null) return null;
+			if (keys [pos] == id) break;
+			pos = (pos + 1) & mask;
+		}
+		final E previous = (E) values [pos];
+
+		/* Shift back the entries after the hole which probe sequence includes it */
+		int hole = pos;
+		for (int next = (hole + 1) & mask ; values [next] != null ; next = (next + 1) & mask)
+		{
+			final int ideal = slot(keys [next]);
+			final boolean canMove = hole <= next? (ideal <= hole) || (ideal > next) : (ideal <= hole) && (ideal > next);
+			if (!canMove) continue;
+			keys [hole] = keys [next];
+			values [hole] = values [next];
+			hole = next;
+		}
+		values [hole] = null;
+		size --;
+		return previous;
+	}
+
+	/**
+	 * Removes all the identifiers from the index
+	 */
+	public void clear ()
+	{
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Returns a map with the same content as this index, sorted by identifier
+	 * @return see above
+	 */
+	@SuppressWarnings("unchecked")
+	public SortedMap<Long,E> toSortedMap ()
+	{
+		final SortedMap<Long,E> res = new TreeMap<> ();
+		for (int pos = 0; pos < values.length ; pos ++) if (values [pos] != null) res.put(keys [pos], (E) values [pos]);
+		return res;
+	}
+
+	@Override
+	public String toString () { return toSortedMap().toString(); }
+
+	private int slot (long id)
+	{
+		final long h = id * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void resize (int newCapacity)
+	{
+		final long [] oldKeys = keys;
+		final Object [] oldValues = values;
+		this.keys = new long [newCapacity];
+		this.values = new Object [newCapacity];
+		this.mask = newCapacity - 1;
+		for (int oldPos = 0; oldPos < oldValues.length ; oldPos ++)
+		{
+			if (oldValues [oldPos] == null) continue;
+			int pos = slot(oldKeys [oldPos]);
+			while (values [pos] != null) pos = (pos + 1) & mask;
+			keys [pos] = oldKeys [oldPos];
+			values [pos] = oldValues [oldPos];
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+
+package com.net2plan.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Provides functionality to run independent tasks in a user-provided {@code ForkJoinPool}. The methods in the libraries accepting a pool
+ * run sequentially when the pool is {@code null}, and the tasks write their results in positions of pre-allocated arrays, so that the output
+ * does not depend on the order in which the tasks are executed.</p>
+ * 
+ * @author Pablo Pavon-Marino
+ */
+public class ParallelUtils
+{
+	private ParallelUtils() { }
+
+	/**
+	 * Runs the task for the indexes 0...count-1, in parallel in the given pool, or sequentially (in increasing index order) if the pool is {@code null}.
+	 * The method returns when all the tasks are completed. An exception in any task is thrown by this method.
+	 *
+	 * @param pool the pool (or {@code null})
+	 * @param count the number of tasks
+	 * @param task the task, receiving the index
+	 */
+	public static void runInPool (ForkJoinPool pool , int count , IntConsumer task)
+	{
+		if (pool == null) { for (int cont = 0; cont < count ; cont ++) task.accept(cont); return; }
+		pool.submit(() -> IntStream.range(0, count).parallel().forEach(task)).join();
+	}
+}
@@ -482,4 +482,31 @@ public class DemandTest
 		assertEquals(d12.getRoutes().iterator().next().getSeqLinks() , Collections.singletonList(link12));
 	}
 
+	@Test
+	public void testHopByHopTrafficPropagation() 
+	{
+		d13.setRoutingType(RoutingType.HOP_BY_HOP_ROUTING);
+		d13.removeAllForwardingRules();
+
+		/* Loopless forwarding rules: propagated in topological order */
+		np.setForwardingRules(Arrays.asList(d13 , d13 , d13) , Arrays.asList(link12 , link13 , link23) , Arrays.asList(0.5 , 0.5 , 1.0) , false);
+		assertEquals (d13.getRoutingCycleType() , RoutingCycleType.LOOPLESS);
+		assertEquals (d13.getCarriedTraffic() , 3 , 1e-8);
+		assertEquals (d13.getOccupiedCapacity(link12) , 1.5 , 1e-8);
+		assertEquals (d13.getOccupiedCapacity(link23) , 1.5 , 1e-8);
+		assertEquals (d13.getOccupiedCapacity(link13) , 1.5 , 1e-8);
+		assertEquals (d13.getWorstCasePropagationTimeInMs() , link12.getPropagationDelayInMs() + link23.getPropagationDelayInMs() , 1e-8);
+		assertEquals (d13.getWorstCaseLengthInKm() , link12.getLengthInKm() + link23.getLengthInKm() , 1e-8);
+
+		/* Forwarding rules with a cycle: solved as a linear system */
+		final Link link21 = np.addLink(n2,n1,100,100,1,null,lowerLayer);
+		np.setForwardingRules(Arrays.asList(d13 , d13 , d13) , Arrays.asList(link12 , link21 , link23) , Arrays.asList(1.0 , 0.5 , 0.5) , true);
+		assertEquals (d13.getRoutingCycleType() , RoutingCycleType.OPEN_CYCLES);
+		assertEquals (d13.getCarriedTraffic() , 3 , 1e-8);
+		assertEquals (d13.getOccupiedCapacity(link12) , 6 , 1e-8);
+		assertEquals (d13.getOccupiedCapacity(link21) , 3 , 1e-8);
+		assertEquals (d13.getOccupiedCapacity(link23) , 3 , 1e-8);
+		assertEquals (d13.getOccupiedCapacity(link13) , 0 , 1e-8);
+	}
+
 }
@@ -177,4 +177,26 @@ public class InterLayerPropagationGraphTest
 		assertEquals(g_link13_L0_up.getMulticastDemandFlowsInGraph() , new TreeSet<> (Arrays.asList(Pair.of(mDemand123_L2,n3) , Pair.of(mDemand123_L1_CL2,n3))));
 	}
 
+	@Test
+	public void testSeveralInitialVertices()
+	{
+		final InterLayerPropagationGraph g = new InterLayerPropagationGraph(null , new TreeSet<> (Arrays.asList(link12_L0 , link13_L0)) , null , true);
+		assertEquals(g.getInitialIPGVertices().size() , 2);
+		assertEquals(g.getLinksInGraph() , Sets.union(g_link12_L0_up.getLinksInGraph() , g_link13_L0_up.getLinksInGraph()));
+		assertEquals(g.getDemandsInGraph() , Sets.union(g_link12_L0_up.getDemandsInGraph() , g_link13_L0_up.getDemandsInGraph()));
+	}
+
+	@Test
+	public void testNetworkLayerInTopologicalOrder()
+	{
+		assertEquals(np.getNetworkLayerInTopologicalOrder() , Arrays.asList(layer0 , layer1 , layer2));
+
+		/* the order is computed again when the coupling between layers changes */
+		for (Demand d : Arrays.asList(demand12_L0_CL1 , demand13_L0_CL1 , demand23_L0_CL2)) d.decouple();
+		np.setLinkCapacityUnitsName("Mbps" , layer0);
+		final Link link12_L0_cL2 = np.addLink(n1,n2,100,100,1,null,layer0);
+		np.addDemand(n1 , n2 , 0  , RoutingType.SOURCE_ROUTING, null,layer2).coupleToUpperOrSameLayerLink(link12_L0_cL2);
+		assertEquals(np.getNetworkLayerInTopologicalOrder() , Arrays.asList(layer1 , layer2 , layer0));
+	}
+
 }
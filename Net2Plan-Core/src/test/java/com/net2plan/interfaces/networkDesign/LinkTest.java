@@ -32,6 +32,8 @@ import org.junit.Test;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
+import com.net2plan.libraries.CompiledGraph;
+import com.net2plan.libraries.GraphUtils;
 import com.net2plan.utils.Constants.RoutingType;
 import com.net2plan.utils.Pair;
 import com.net2plan.utils.Triple;
@@ -114,6 +116,29 @@ public class LinkTest
 		np.checkCachesConsistency();
 	}
 
+	@Test
+	public void testCompiledGraphCache ()
+	{
+		final CompiledGraph graph = lowerLayer.getCompiledGraph();
+		assertTrue (graph == lowerLayer.getCompiledGraph());
+		assertEquals (graph.getNumberOfLinks() , 3);
+		assertEquals (GraphUtils.getShortestPath(np.getNodes(), np.getLinks(lowerLayer), n1, n3, null) , Arrays.asList(link13));
+		assertEquals (GraphUtils.getTwoLinkDisjointPaths(np.getNodes(), np.getLinks(lowerLayer), n1, n3, null) , Arrays.asList(Arrays.asList(link13) , Arrays.asList(link12 , link23)));
+		assertTrue (graph == lowerLayer.getCompiledGraph());
+
+		link13.setFailureState(false);
+		assertTrue (graph != lowerLayer.getCompiledGraph());
+		assertTrue (!lowerLayer.getCompiledGraph().isLinkUp(link13.getIndex()));
+		link13.setFailureState(true);
+		link13.remove();
+		assertEquals (lowerLayer.getCompiledGraph().getNumberOfLinks() , 2);
+		assertEquals (GraphUtils.getShortestPath(np.getNodes(), np.getLinks(lowerLayer), n1, n3, null) , Arrays.asList(link12 , link23));
+		assertEquals (GraphUtils.getKLooplessShortestPaths(np.getNodes(), np.getLinks(lowerLayer), n1, n3, null, 2, -1, -1, -1, -1, -1, -1) , Arrays.asList(Arrays.asList(link12 , link23)));
+		final Node n4 = np.addNode(0 , 0 , "node4" , null);
+		assertEquals (lowerLayer.getCompiledGraph().getNumberOfNodes() , 4);
+		assertEquals (lowerLayer.getCompiledGraph().getNodePosition(n4) , n4.getIndex());
+	}
+
 	@Test
 	public void testBidirectional ()
 	{
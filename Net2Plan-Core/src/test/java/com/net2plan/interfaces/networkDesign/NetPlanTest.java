@@ -15,17 +15,26 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.junit.After;
@@ -43,6 +52,7 @@ import com.net2plan.utils.Constants.RoutingType;
 import com.net2plan.utils.Pair;
 
 import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 
 public class NetPlanTest
@@ -721,6 +731,73 @@ public class NetPlanTest
 				Arrays.asList(netTriangle_e12 , netTriangle_r2 , netTriangle_e23 , netTriangle_e31 , netTriangle_r1 , netTriangle_e12)));
 	}
 
+	@Test
+	public void testComputeCandidateListsInParallel()
+	{
+		/* A 4 x 3 grid with bidirectional links of a few different lengths (then, with ties in the path costs), an SRG per 
+		 * bidirectional link, and resources of two types in some nodes */
+		final NetPlan grid = new NetPlan ();
+		final Random rng = new Random (1L);
+		final Node [][] n = new Node [4][3];
+		for (int x = 0; x < 4 ; x ++) for (int y = 0; y < 3 ; y ++) n [x][y] = grid.addNode(x , y , "n" + x + y , null);
+		for (int x = 0; x < 4 ; x ++) 
+			for (int y = 0; y < 3 ; y ++)
+			{
+				if (x < 3) addBidirectionalLinkWithSrg(grid , n [x][y] , n [x+1][y] , 1 + rng.nextInt(3));
+				if (y < 2) addBidirectionalLinkWithSrg(grid , n [x][y] , n [x][y+1] , 1 + rng.nextInt(3));
+			}
+		addBidirectionalLinkWithSrg(grid , n [0][0] , n [3][2] , 4);
+		for (int cont = 0; cont < 4 ; cont ++) 
+		{
+			grid.addResource("A" , "a" + cont , Optional.of(n [cont][cont % 3]) , 100 , "units" , null , 1 , null);
+			grid.addResource("B" , "b" + cont , Optional.of(n [3 - cont][(cont + 1) % 3]) , 100 , "units" , null , 1 , null);
+		}
+		for (Node a : grid.getNodes())
+			for (Node b : grid.getNodes())
+				if (a != b && rng.nextDouble() < 0.3) 
+				{
+					final Demand d = grid.addDemand(a , b , 1 , RoutingType.SOURCE_ROUTING , null);
+					if (rng.nextBoolean()) d.setServiceChainSequenceOfTraversedResourceTypes(rng.nextBoolean()? Arrays.asList("A" , "B") : Arrays.asList("B"));
+				}
+		final DoubleMatrix1D linkCosts = grid.getVectorLinkLengthInKm();
+		final SortedSet<Pair<Node,Node>> somePairs = new TreeSet<> (Arrays.asList(Pair.of(n [0][0] , n [3][2]) , Pair.of(n [1][1] , n [2][0]) , Pair.of(n [3][0] , n [0][2])));
+
+		final ForkJoinPool pool = new ForkJoinPool (4);
+		try
+		{
+			for (int K : new int [] { 1 , 3 , 8 })
+			{
+				final SortedMap<Pair<Node,Node>,List<List<Link>>> cpl = grid.computeUnicastCandidatePathList(linkCosts , K , -1 , -1 , -1 , -1 , -1 , -1 , null);
+				assertEquals(cpl , grid.computeUnicastCandidatePathList(linkCosts , K , -1 , -1 , -1 , -1 , -1 , -1 , null , pool));
+				assertEquals(grid.computeUnicastCandidatePathList(null , K , -1 , 4 , -1 , -1 , 1.5 , -1 , somePairs) , 
+						grid.computeUnicastCandidatePathList(null , K , -1 , 4 , -1 , -1 , 1.5 , -1 , somePairs , pool));
+				assertEquals(cpl.size() , 12 * 11);
+				for (int disjointType : new int [] { 0 , 1 , 2 })
+				{
+					final SortedMap<Pair<Node,Node>,List<Pair<List<Link>,List<Link>>>> cpl11 = NetPlan.computeUnicastCandidate11PathList(cpl , disjointType);
+					assertEquals(cpl11 , NetPlan.computeUnicastCandidate11PathList(cpl , disjointType , pool));
+					if (K > 1) assertTrue(cpl11.values().stream().anyMatch(l -> !l.isEmpty()));
+				}
+				final SortedMap<Demand,List<List<NetworkElement>>> scl = grid.computeUnicastCandidateServiceChainList(linkCosts , null , K , -1 , -1 , -1 , -1);
+				assertEquals(scl , grid.computeUnicastCandidateServiceChainList(linkCosts , null , K , -1 , -1 , -1 , -1 , pool));
+				assertTrue(scl.values().stream().flatMap(l -> l.stream()).anyMatch(sc -> sc.stream().anyMatch(e -> e instanceof Resource)));
+				assertEquals(grid.computeUnicastCandidateServiceChainList(null , null , K , 10 , -1 , 3 , -1) , 
+						grid.computeUnicastCandidateServiceChainList(null , null , K , 10 , -1 , 3 , -1 , pool));
+			}
+		} finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private static void addBidirectionalLinkWithSrg (NetPlan netPlan , Node a , Node b , double lengthInKm)
+	{
+		final Pair<Link,Link> links = netPlan.addLinkBidirectional(a , b , 100 , lengthInKm , 200000 , null);
+		final SharedRiskGroup srg = netPlan.addSRG(1 , 1 , null);
+		srg.addLink(links.getFirst());
+		srg.addLink(links.getSecond());
+	}
+
 	@Test
 	public void testComputeMulticastCandidatePathList()
 	{
@@ -820,6 +897,139 @@ public class NetPlanTest
 		assertTrue (np2.isDeepCopy(np));
 	}
 
+	@Test
+	public void testSaveToBinaryOutputStream()
+	{
+		final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		np.saveToBinaryOutputStream(binary);
+		final NetPlan readNp = new NetPlan (new ByteArrayInputStream(binary.toByteArray()));
+		readNp.checkCachesConsistency();
+		assertTrue (readNp.isDeepCopy(np));
+		assertTrue (np.isDeepCopy(readNp));
+
+		/* The design read from the binary format is saved in XML as the original one */
+		final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		final ByteArrayOutputStream xmlReadNp = new ByteArrayOutputStream();
+		np.saveToOutputStream(xml);
+		readNp.saveToOutputStream(xmlReadNp);
+		assertTrue (Arrays.equals(xml.toByteArray(), xmlReadNp.toByteArray()));
+		assertTrue (binary.size() < xml.size());
+	}
+
+	@Test
+	public void testSnapshots()
+	{
+		final NetPlan npBefore = np.copy();
+		final NetPlanSnapshot before = NetPlanSnapshot.of(np);
+		final NetPlan restored = before.restore();
+		restored.checkCachesConsistency();
+		assertTrue (restored.isDeepCopy(np));
+		assertTrue (np.isDeepCopy(restored));
+
+		/* The snapshot taken after some changes only has new records for the elements changed */
+		link13.setCapacity(33);
+		d13.setOfferedTraffic(7);
+		n3.setName("changed");
+		final NetPlanSnapshot after = NetPlanSnapshot.of(np , before);
+		assertEquals (before.records.length , after.records.length);
+		assertEquals (getNumberOfRecordsNotIn(after , before) , 3);
+		assertTrue (before.restore().isDeepCopy(npBefore));
+		assertTrue (after.restore().isDeepCopy(np));
+
+		/* The designs restored are independent of the snapshot */
+		after.restore().removeAllLinks();
+		assertTrue (after.restore().isDeepCopy(np));
+
+		/* Adding a node also changes the next element id, in the record of the network */
+		r123b.remove();
+		np.addNode(1 , 1 , "node5" , null);
+		final NetPlanSnapshot third = NetPlanSnapshot.of(np , after);
+		assertEquals (getNumberOfRecordsNotIn(third , after) , 2);
+		assertTrue (third.restore().isDeepCopy(np));
+		assertTrue (after.restore().isDeepCopy(npBefore) == false);
+	}
+
+	private static long getNumberOfRecordsNotIn (NetPlanSnapshot snapshot , NetPlanSnapshot previous)
+	{
+		final Set<NetPlanSnapshot.Record> previousRecords = Collections.newSetFromMap(new IdentityHashMap<> ());
+		previousRecords.addAll(Arrays.asList(previous.records));
+		return Arrays.stream(snapshot.records).filter(r -> !previousRecords.contains(r)).count();
+	}
+
+	@Test
+	public void testReadCorruptBinaryDocument()
+	{
+		final int [] header = new int [] { 'N' , '2' , 'P' , 'B' , DocumentWriterNetPlanBinary.FORMAT_VERSION , DocumentWriterNetPlanBinary.TOKEN_START_ELEMENT , DocumentWriterNetPlanBinary.STRING_NEW_NOT_IN_DICTIONARY , 7 , 'n' , 'e' , 't' , 'w' , 'o' , 'r' , 'k' };
+
+		/* Unknown attribute type: the message gives the tag and the offset */
+		String message = getMessageReadingBinaryDocument(header , 1 , DocumentWriterNetPlanBinary.STRING_NEW_NOT_IN_DICTIONARY , 1 , 'a' , 9);
+		assertTrue (message.contains("type 9") && message.contains("offset 19"));
+
+		/* Negative and oversize lengths of attribute lists, arrays and strings */
+		assertTrue (getMessageReadingBinaryDocument(header , 0xFF , 0xFF , 0xFF , 0xFF , 0xFF , 0xFF , 0xFF , 0xFF , 0xFF , 0x01).contains("wrong length"));
+		assertTrue (getMessageReadingBinaryDocument(header , 1 , DocumentWriterNetPlanBinary.STRING_NEW_NOT_IN_DICTIONARY , 1 , 'a' , DocumentWriterNetPlanBinary.TYPE_DOUBLE_ARRAY , 0xFF , 0xFF , 0xFF , 0xFF , 0x0F).contains("wrong length"));
+		assertTrue (getMessageReadingBinaryDocument(header , 1 , DocumentWriterNetPlanBinary.STRING_NEW_NOT_IN_DICTIONARY , 0x80 , 0x80 , 0x80 , 0x80 , 0x10).contains("wrong length"));
+		assertTrue (getMessageReadingBinaryDocument(header , 1 , 7 , 'a').contains("Wrong string reference"));
+
+		/* A length that fits in an array, in a truncated document, is not allocated in advance */
+		assertTrue (getMessageReadingBinaryDocument(header , 1 , DocumentWriterNetPlanBinary.STRING_NEW_NOT_IN_DICTIONARY , 1 , 'a' , DocumentWriterNetPlanBinary.TYPE_LONG_ARRAY , 0xFF , 0xFF , 0xFF , 0x3F , 0).contains("Unexpected end"));
+		assertTrue (getMessageReadingBinaryDocument(header , 1 , DocumentWriterNetPlanBinary.STRING_NEW_NOT_IN_DICTIONARY , 0xFF , 0xFF , 0xFF , 0x3F , 'a').contains("Unexpected end"));
+
+		/* Wrong root element */
+		final int [] wrongRoot = Arrays.copyOf(header, header.length);
+		wrongRoot [wrongRoot.length - 1] = 'x';
+		assertTrue (getMessageReadingBinaryDocument(wrongRoot , 0).contains("Root element"));
+	}
+
+	private static String getMessageReadingBinaryDocument (int [] header , int... bytes)
+	{
+		final byte [] document = new byte [header.length + bytes.length];
+		for (int cont = 0; cont < header.length ; cont ++) document [cont] = (byte) header [cont];
+		for (int cont = 0; cont < bytes.length ; cont ++) document [header.length + cont] = (byte) bytes [cont];
+		try
+		{
+			new NetPlan (new ByteArrayInputStream(document));
+		} catch (Net2PlanException e)
+		{
+			return e.getMessage();
+		}
+		fail ("The document must be rejected");
+		return null;
+	}
+
+	@Test
+	public void testSaveCompressedTrafficSeriesOnlyOnRequest() throws Exception
+	{
+		link12.setMonitoredOrForecastedCarriedTraffic(new TrafficSeries ().addValue(new Date(10L), 10.0).addValue(new Date(20L), 12.5).addValue(new Date(30L), 11.0));
+
+		/* By default, the series are stored as "time value" rows, readable by any version 6 reader */
+		final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		np.saveToOutputStream(plain);
+		final String plainXml = new String (plain.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue (plainXml.contains("monitoredOrForecastedTraffics"));
+		assertTrue (!plainXml.contains("gorilla1:"));
+		final NetPlan readPlain = new NetPlan (new ByteArrayInputStream(plain.toByteArray()));
+		assertTrue (readPlain.isDeepCopy(np));
+
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		np.saveToOutputStream(compressed, true);
+		final String compressedXml = new String (compressed.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue (compressedXml.contains("gorilla1:"));
+		final NetPlan readCompressed = new NetPlan (new ByteArrayInputStream(compressed.toByteArray()));
+		assertTrue (readCompressed.isDeepCopy(np));
+		assertEquals (link12.getMonitoredOrForecastedCarriedTraffic(), readCompressed.getLinkFromId(link12.getId()).getMonitoredOrForecastedCarriedTraffic());
+
+		/* A corrupt compressed series is reported, naming the attribute and the element */
+		try
+		{
+			new NetPlan (new ByteArrayInputStream(compressedXml.replaceFirst("gorilla1:", "gorilla1:@").getBytes(StandardCharsets.UTF_8)));
+			fail ("Corrupt traffic series accepted");
+		} catch (Net2PlanException e)
+		{
+			assertTrue (e.getMessage(), e.getMessage().contains("monitoredOrForecastedTraffics"));
+		}
+	}
+
 	@Test
 	public void testGetAttributesCollectionOfQextendsNetworkElementString()
 	{
@@ -1021,6 +1231,201 @@ public class NetPlanTest
 		assertEquals(np.getNumberOfLinks () , 3);
 	}
 
+	@Test
+	public void testRemoveAll()
+	{
+		/* Elements removed as a consequence of others (the routes of d13 and link23) are skipped */
+		np.removeAll(Arrays.asList(r123a , d13 , link23 , r123b , r12 , upperLayer));
+		assertTrue (d13.wasRemoved() && r123a.wasRemoved() && r123b.wasRemoved() && segm13.wasRemoved() && r12.wasRemoved() && sc123.wasRemoved());
+		assertEquals(np.getNumberOfLayers() , 1);
+		assertEquals(np.getRoutes(lowerLayer) , Collections.emptyList());
+		for (int index = 0 ; index < np.getNumberOfLinks(lowerLayer) ; index ++) assertEquals(np.getLink(index , lowerLayer).getIndex() , index);
+		for (int index = 0 ; index < np.getNumberOfDemands(lowerLayer) ; index ++) assertEquals(np.getDemand(index , lowerLayer).getIndex() , index);
+
+		/* Remove every other route of many */
+		final Demand d = netTriangle.addDemand(netTriangle_n1, netTriangle_n2, 1 , RoutingType.SOURCE_ROUTING, null);
+		final List<Route> toRemove = new ArrayList<> ();
+		final List<Route> toKeep = new ArrayList<> ();
+		for (int cont = 0 ; cont < 20000 ; cont ++)
+			(cont % 2 == 0? toRemove : toKeep).add(netTriangle.addRoute(d , 0.001 , 0.001 , Arrays.asList(netTriangle_e12) , null));
+		netTriangle.removeAll(toRemove);
+		assertEquals(netTriangle.getRoutes() , toKeep);
+		for (Route r : toKeep) assertEquals(netTriangle.getRoute(r.getIndex()) , r);
+		assertEquals(netTriangle_e12.getCarriedTraffic() , 10.0 , 1e-6);
+		netTriangle.checkCachesConsistency();
+	}
+
+	@Test
+	public void testBeginBatchAndCommit()
+	{
+		final Consumer<NetPlan> changes = n ->
+		{
+			((Route) n.getNetworkElement(r12.getId())).setCarriedTraffic(2 , 2);
+			/* the copy shares the element id counter with the original, so the new route is given an explicit id, the same in both */
+			n.addServiceChain(1000L , (Demand) n.getNetworkElement(d12.getId()) , 0.5 , Arrays.asList(0.5) , Arrays.asList((Link) n.getNetworkElement(link12.getId())) , null);
+			((Route) n.getNetworkElement(r123a.getId())).remove();
+			((Route) n.getNetworkElement(sc123.getId())).setCarriedTraffic(10 , Arrays.asList(1.0 , 2.0 , 3.0));
+			((Demand) n.getNetworkElement(d24.getId())).setOfferedTraffic(3);
+			((MulticastTree) n.getNetworkElement(t123.getId())).setCarriedTraffic(5 , 5);
+			n.setLinksAndNodesFailureState(null , Arrays.asList((Link) n.getNetworkElement(link13.getId())) , null , null);
+		};
+		final NetPlan sequential = np.copy();
+		changes.accept(sequential);
+
+		np.beginBatch();
+		changes.accept(np);
+		np.commit();
+		np.checkCachesConsistency();
+		assertEquals(link12.getCarriedTraffic() , 2 + 0.5 + 1 + 10 + 5 , 1e-6); // tStar is down
+		assertTrue(np.isDeepCopy(sequential));
+	}
+
+	@Test
+	public void testBatchWithForwardingRules()
+	{
+		final Consumer<NetPlan> changes = n ->
+		{
+			final Demand nd24 = (Demand) n.getNetworkElement(d24.getId());
+			final Demand nd24empty = (Demand) n.getNetworkElement(d24empty.getId());
+			final Link nLink23 = (Link) n.getNetworkElement(link23.getId());
+			final Link nLink34 = (Link) n.getNetworkElement(link34.getId());
+			n.setForwardingRule(nd24empty , nLink23 , 1);
+			n.setForwardingRule(nd24empty , nLink34 , 0.5);
+			n.setForwardingRules(Arrays.asList(nd24) , Arrays.asList(nLink34) , Arrays.asList(0.25) , false);
+			final DoubleMatrix2D f_de = DoubleFactory2D.sparse.make(n.getNumberOfDemands(nd24.getLayer()) , n.getNumberOfLinks(nd24.getLayer()));
+			f_de.set(nd24.getIndex() , nLink23.getIndex() , 0.5);
+			f_de.set(nd24.getIndex() , nLink34.getIndex() , 1);
+			n.setForwardingRules(f_de , new TreeSet<> (Arrays.asList(nd24)) , nd24.getLayer());
+			nd24.setOfferedTraffic(2);
+		};
+		final double otherTraffic23 = link23.getCarriedTraffic() - d24.getCarriedTraffic();
+		final double otherTraffic34 = link34.getCarriedTraffic() - d24.getCarriedTraffic();
+		final NetPlan sequential = np.copy();
+		changes.accept(sequential);
+
+		np.beginBatch();
+		changes.accept(np);
+		/* The rules are set immediately, the traffic is propagated in the commit */
+		assertEquals(d24empty.getForwardingRules().get(Pair.of(d24empty , link34)) , 0.5 , 0);
+		assertEquals(d24.getForwardingRules().get(Pair.of(d24 , link23)) , 0.5 , 0);
+		np.commit();
+		np.checkCachesConsistency();
+		assertEquals(link23.getCarriedTraffic() , otherTraffic23 + 1 + 1.5 , 1e-6);
+		assertEquals(link34.getCarriedTraffic() , otherTraffic34 + 1 + 0.75 , 1e-6);
+		assertEquals(d24.getCarriedTraffic() , 1 , 1e-6);
+		assertTrue(np.isDeepCopy(sequential));
+
+		/* Removing the rules of a link within a batch leaves no traffic in it */
+		np.beginBatch();
+		np.setForwardingRule(d24empty , link34 , 0);
+		d24empty.setOfferedTraffic(4);
+		np.commit();
+		np.checkCachesConsistency();
+		assertEquals(link34.getCarriedTraffic() , otherTraffic34 + 1 , 1e-6);
+		assertEquals(link23.getCarriedTraffic() , otherTraffic23 + 1 + 4 , 1e-6);
+	}
+
+	@Test
+	public void testCachedTopologyMatrices()
+	{
+		/* The getters return copies of the cached matrices, that the caller can modify */
+		final DoubleMatrix2D A_ne = netTriangle.getMatrixNodeLinkIncidence();
+		A_ne.assign(0);
+		assertEquals(netTriangle.getMatrixNodeLinkIncidence().get(netTriangle_n1.getIndex() , netTriangle_e12.getIndex()) , 1 , 0);
+		assertEquals(netTriangle.getMatrixNodeLinkIncidence().get(netTriangle_n2.getIndex() , netTriangle_e12.getIndex()) , -1 , 0);
+
+		/* The cached matrices are rebuilt when the links or the routes change */
+		final Demand d = netTriangle.addDemand(netTriangle_n1, netTriangle_n3, 1 , RoutingType.SOURCE_ROUTING, null);
+		final Route r = netTriangle.addRoute(d , 1 , 1 , Arrays.asList(netTriangle_e13) , null);
+		assertEquals(netTriangle.getMatrixLink2RouteAssignment().zSum() , 1 , 0);
+		r.setPath(1 , Arrays.asList(netTriangle_e12 , netTriangle_e23) , Arrays.asList(1.0 , 1.0));
+		assertEquals(netTriangle.getMatrixLink2RouteAssignment().get(netTriangle_e13.getIndex() , r.getIndex()) , 0 , 0);
+		assertEquals(netTriangle.getMatrixLink2RouteAssignment().get(netTriangle_e23.getIndex() , r.getIndex()) , 1 , 0);
+		assertEquals(netTriangle.getMatrixNodeLinkOutgoingIncidence().zSum() , 6 , 0);
+		netTriangle_e12.remove();
+		assertTrue (r.wasRemoved());
+		assertEquals(netTriangle.getMatrixLink2RouteAssignment().columns() , 0);
+		assertEquals(netTriangle.getMatrixNodeLinkOutgoingIncidence().zSum() , 5 , 0);
+		assertEquals(netTriangle.getMatrixNodeLinkAdjacency().get(netTriangle_n1.getIndex() , netTriangle_n2.getIndex()) , 0 , 0);
+		netTriangle.addNode(0 , 0 , "node4" , null);
+		assertEquals(netTriangle.getMatrixNodeLinkIncomingIncidence().rows() , 4);
+		netTriangle.addRoute(d , 1 , 1 , Arrays.asList(netTriangle_e13) , null);
+		assertEquals(netTriangle.getMatrixLink2RouteAssignment().columns() , 1);
+		netTriangle.removeAllRoutes();
+		assertEquals(netTriangle.getMatrixLink2RouteAssignment().columns() , 0);
+		netTriangle.checkCachesConsistency();
+	}
+
+	@Test
+	public void testCachedTrafficVectors()
+	{
+		/* The vectors are kept while the layer does not change */
+		final DoubleMatrix1D y_e = np.getVectorLinkCarriedTrafficView(lowerLayer);
+		assertTrue(lowerLayer.cache_vectorLinkCarriedTraffic.get() == lowerLayer.cache_vectorLinkCarriedTraffic.get());
+		final long count = lowerLayer.modificationCounter;
+		d13.setOfferedTraffic(4);
+		assertTrue(lowerLayer.modificationCounter > count);
+		checkCachedTrafficVectors(lowerLayer);
+
+		/* The getters return copies that the caller can modify */
+		final DoubleMatrix1D h_d = np.getVectorDemandOfferedTraffic(lowerLayer);
+		h_d.assign(0);
+		assertEquals(np.getVectorDemandOfferedTraffic(lowerLayer).get(d13.getIndex()) , 4 , 0);
+
+		/* The views cannot be modified, and keep the values at the time they were obtained */
+		final double trafficLink12 = link12.getCarriedTraffic();
+		r12.setCarriedTraffic(2 , 2);
+		assertEquals(y_e.get(link12.getIndex()) , trafficLink12 , 0);
+		assertEquals(np.getVectorLinkCarriedTrafficView(lowerLayer).get(link12.getIndex()) , trafficLink12 + 1 , 1e-6);
+		checkCachedTrafficVectors(lowerLayer);
+		checkCachedTrafficVectors(upperLayer);
+		for (Consumer<DoubleMatrix1D> change : Arrays.<Consumer<DoubleMatrix1D>> asList(v -> v.set(0 , 1) , v -> v.assign(0) , v -> v.viewPart(1 , 2).set(0 , 1) , v -> v.viewFlip().set(0 , 1)))
+		{
+			try { change.accept(np.getVectorLinkCarriedTrafficView(lowerLayer)); fail (); } catch (UnsupportedOperationException e) {}
+		}
+		final DoubleMatrix1D y_eView = np.getVectorLinkCarriedTrafficView(lowerLayer);
+		assertEquals(y_eView.viewPart(1 , 2).get(0) , link23.getCarriedTraffic() , 0);
+		assertEquals(y_eView.viewFlip().get(0) , link34.getCarriedTraffic() , 0);
+		assertEquals(y_eView.zSum() , np.getVectorLinkCarriedTraffic(lowerLayer).zSum() , 1e-6);
+		final DoubleMatrix1D y_eCopy = y_eView.copy();
+		y_eCopy.set(0 , -1);
+		assertEquals(y_eView.get(0) , link12.getCarriedTraffic() , 0);
+
+		/* Failures, forwarding rules, batches and removals change the vectors */
+		np.setLinksAndNodesFailureState(null , Arrays.asList(link23) , null , null);
+		assertEquals(np.getVectorDemandCarriedTrafficView(lowerLayer).get(d24.getIndex()) , 0 , 0);
+		checkCachedTrafficVectors(lowerLayer);
+		np.setLinksAndNodesFailureState(Arrays.asList(link23) , null , null , null);
+		checkCachedTrafficVectors(lowerLayer);
+		np.beginBatch();
+		d24.setOfferedTraffic(5);
+		r123a.setCarriedTraffic(3 , 3);
+		np.setForwardingRule(d24empty , link23 , 1);
+		np.commit();
+		assertEquals(np.getVectorDemandCarriedTraffic(lowerLayer).get(d24.getIndex()) , 5 , 1e-6);
+		checkCachedTrafficVectors(lowerLayer);
+		r123b.remove();
+		d12.remove();
+		checkCachedTrafficVectors(lowerLayer);
+		checkCachedTrafficVectors(upperLayer);
+		d13.setRoutingType(RoutingType.HOP_BY_HOP_ROUTING);
+		checkCachedTrafficVectors(lowerLayer);
+		np.checkCachesConsistency();
+	}
+
+	/* The values returned by the getters must be the ones computed now from the elements */
+	private static void checkCachedTrafficVectors (NetworkLayer layer)
+	{
+		final NetPlan np = layer.getNetPlan();
+		assertEquals(np.getVectorLinkCarriedTraffic(layer) , layer.computeVectorLinks(Link::getCarriedTraffic));
+		assertEquals(np.getVectorLinkOccupiedCapacity(layer) , layer.computeVectorLinks(Link::getOccupiedCapacity));
+		assertEquals(np.getVectorDemandOfferedTraffic(layer) , layer.computeVectorDemands(Demand::getOfferedTraffic));
+		assertEquals(np.getVectorDemandCarriedTraffic(layer) , layer.computeVectorDemands(Demand::getCarriedTraffic));
+		assertEquals(np.getVectorRouteCarriedTraffic(layer) , layer.computeVectorRoutes(Route::getCarriedTraffic));
+		assertEquals(np.getVectorRouteOccupiedCapacity(layer) , layer.computeVectorRoutes(Route::getOccupiedCapacity));
+		assertEquals(np.getMatrixDemand2LinkTrafficCarried(null , layer) , layer.computeMatrixDemand2LinkTrafficCarried(layer.demands));
+	}
+
 	@Test
 	public void testRemoveAllUnicastRoutingInformation()
 	{
@@ -353,6 +353,25 @@ public class NodeTest
 		assertEquals(n3.getOutgoingLinks(upperLayer) , new TreeSet<Link> (Arrays.asList()));
 	}
 
+	@Test
+	public void testLinksPerLayerAreUnmodifiableViews()
+	{
+		final SortedSet<Link> outLinks = n1.getOutgoingLinks(lowerLayer);
+		try { outLinks.clear(); fail (); } catch (UnsupportedOperationException e) {}
+		final Node n4 = np.addNode(0 , 0 , "node4" , null);
+		final Link link14 = np.addLink(n1 , n4 , 100 , 100 , 1 , null , lowerLayer);
+		assertEquals(outLinks , new TreeSet<Link> (Arrays.asList(link12 , link13 , link14)));
+		link12.remove();
+		assertEquals(outLinks , new TreeSet<Link> (Arrays.asList(link13 , link14)));
+		assertEquals(n4.getIncomingLinks(lowerLayer) , new TreeSet<Link> (Arrays.asList(link14)));
+		final NetPlan npCopy = np.copy();
+		final Node n1Copy = npCopy.getNodeFromId(n1.getId());
+		assertEquals(n1Copy.getOutgoingLinks(npCopy.getNetworkLayerFromId(lowerLayer.getId())).size() , 2);
+		assertEquals(n1Copy.getAssociatedRoutes(npCopy.getNetworkLayerFromId(upperLayer.getId())).size() , n1.getAssociatedRoutes(upperLayer).size());
+		np.removeNetworkLayer(upperLayer);
+		np.checkCachesConsistency();
+	}
+
 	@Test
 	public void testGetOutgoingLinksAllLayers() 
 	{
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+
+public class AttributeMapTest
+{
+	@Test
+	public void testParsedValuesAreKeptUntilSetAgain()
+	{
+		final AtomicInteger numParses = new AtomicInteger();
+		final Function<String,Double> parser = s -> { numParses.incrementAndGet(); return Double.parseDouble(s); };
+		final AttributeMap map = new AttributeMap();
+		Assert.assertNull(map.getParsedValue("a", parser));
+		map.put("a", "1.5");
+		Assert.assertEquals(1.5, map.getParsedValue("a", parser), 0);
+		Assert.assertEquals(1.5, map.getParsedValue("a", parser), 0);
+		Assert.assertEquals(1, numParses.get());
+		map.put("a", "2.5");
+		Assert.assertEquals(2.5, map.getParsedValue("a", parser), 0);
+		Assert.assertEquals(2, numParses.get());
+		map.put("a", "x");
+		Assert.assertNull(map.getParsedValue("a", parser));
+		Assert.assertNull(map.getParsedValue("a", parser));
+		Assert.assertEquals(3, numParses.get());
+		map.remove("a");
+		Assert.assertNull(map.getParsedValue("a", parser));
+		map.putAll(Collections.singletonMap("a", "3"));
+		Assert.assertEquals(3.0, map.getParsedValue("a", parser), 0);
+		map.clear();
+		Assert.assertNull(map.getParsedValue("a", parser));
+	}
+
+	@Test
+	public void testNetworkElementTypedGetters()
+	{
+		final NetPlan np = new NetPlan();
+		final Node n = np.addNode(0, 0, "n", null);
+		n.setAttribute("d", 3.0);
+		Assert.assertEquals(3.0, n.getAttributeAsDouble("d", null), 0);
+		n.setAttribute("d", "wrong");
+		Assert.assertEquals(-1.0, n.getAttributeAsDouble("d", -1.0), 0);
+		n.setAttributeAsNumberList("l", Arrays.asList(1.0, 2.0));
+		final List<Double> l = n.getAttributeAsDoubleList("l", null);
+		l.add(5.0);
+		Assert.assertEquals(Arrays.asList(1.0, 2.0), n.getAttributeAsDoubleList("l", null));
+		n.setAttributeAsNumberList("l", Arrays.asList(4.0));
+		Assert.assertEquals(Arrays.asList(4.0), n.getAttributeAsDoubleList("l", null));
+		n.setAttributeMap(Collections.singletonMap("l", "7 8"));
+		Assert.assertEquals(Arrays.asList(7.0, 8.0), n.getAttributeAsDoubleList("l", null));
+		Assert.assertEquals(-1.0, n.getAttributeAsDouble("d", -1.0), 0);
+		final NetPlan copy = np.copy();
+		Assert.assertEquals(Arrays.asList(7.0, 8.0), copy.getNode(0).getAttributeAsDoubleList("l", null));
+	}
+}
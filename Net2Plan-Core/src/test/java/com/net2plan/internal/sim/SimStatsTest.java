@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.internal.sim;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.utils.Constants.RoutingType;
+
+public class SimStatsTest
+{
+	private NetPlan np;
+	private Node a, b, c;
+	private Link ab;
+	private Demand d1, d2;
+	private SimStats stats;
+
+	@Before
+	public void setUp()
+	{
+		/* Nodes A, B and C. Link A-B, demand d1 from A to B fully carried (4 of 4), and demand d2 from A to B half carried (1 of 2) */
+		np = new NetPlan ();
+		a = np.addNode(0, 0, "A", null);
+		b = np.addNode(1, 0, "B", null);
+		c = np.addNode(0, 1, "C", null);
+		ab = np.addLink(a, b, 10, 100, 200000, null);
+		d1 = np.addDemand(a, b, 4, RoutingType.SOURCE_ROUTING, null);
+		d2 = np.addDemand(a, b, 2, RoutingType.SOURCE_ROUTING, null);
+		np.addRoute(d1, 4, 4, Collections.singletonList(ab), null);
+		np.addRoute(d2, 1, 1, Collections.singletonList(ab), null);
+		final Map<String, String> net2planParameters = new HashMap<String, String> ();
+		net2planParameters.put("precisionFactor", "0.001");
+		stats = new SimStats(np, new HashMap<String, String> (), net2planParameters);
+	}
+
+	@Test
+	public void testAddRemoveAndFailureEvents() throws Exception
+	{
+		/* t = 10: link A-C added, and in another event at the same time, d2 removed (it was available 0 (classic) and 0.5 (weighted) during 10 s) */
+		final Link ac = np.addLink(a, c, 5, 100, 200000, null);
+		stats.computeNextState(10);
+		d2.remove();
+		stats.computeNextState(10);
+
+		/* t = 20: link A-B fails, and d1 is not carried */
+		ab.setFailureState(false);
+		stats.computeNextState(20);
+
+		/* t = 30: link A-C removed, link A-B repaired, and node D added. These values have no time to count */
+		ac.remove();
+		ab.setFailureState(true);
+		final Node d = np.addNode(1, 1, "D", null);
+		stats.computeNextState(30);
+
+		/* The layer values in the periods [0,10), [10,20) and [20,30) are: 1, 2, 2 links; 2, 1, 1 demands; offered traffic 6, 4, 4; carried
+		 * traffic 5, 4, 0; capacity 10, 15, 15; congestion 0.5, 0.4, 0; blocked traffic 1, 0, 4 */
+		final Map<String, Double> summary = stats.getSummary(30);
+		final String prefix = getPrefix(np);
+		Assert.assertEquals(1, summary.get("Network: avgNumLayers"), 1e-9);
+		Assert.assertEquals(3, summary.get("Network: avgNumNodes"), 1e-9);
+		Assert.assertEquals(50.0 / 30, summary.get(prefix + "avgNumLinks"), 1e-9);
+		Assert.assertEquals(40.0 / 30, summary.get(prefix + "avgNumDemands"), 1e-9);
+		Assert.assertEquals(140.0 / 30, summary.get(prefix + "avgOfferedTraffic"), 1e-9);
+		Assert.assertEquals(90.0 / 30, summary.get(prefix + "avgCarriedTraffic"), 1e-9);
+		Assert.assertEquals(400.0 / 30, summary.get(prefix + "avgTotalCapacity"), 1e-9);
+		Assert.assertEquals(9.0 / 30, summary.get(prefix + "avgCongestion"), 1e-9);
+		Assert.assertEquals(10.0 / 30, summary.get(prefix + "availabilityClassic"), 1e-9);
+		Assert.assertEquals((10 * 5.0 / 6 + 10) / 30, summary.get(prefix + "availabilityWeighted"), 1e-9);
+
+		/* The worst demand is d2, removed in an event at the same time as the previous one. Without it, it would be d1 (available 2/3 of the time) */
+		Assert.assertEquals(0, summary.get(prefix + "worstDemandAvailabilityClassic"), 1e-9);
+		Assert.assertEquals(0.5, summary.get(prefix + "worstDemandAvailabilityWeighted"), 1e-9);
+
+		final org.w3c.dom.Document results = parse(stats.getResultsXML(30));
+		final Element layer = getElement(results, "layer", np.getNetworkLayerDefault().getId());
+		Assert.assertEquals("1", layer.getAttribute("minNumLinks"));
+		Assert.assertEquals("2", layer.getAttribute("maxNumLinks"));
+		Assert.assertEquals("0.000", layer.getAttribute("minCarriedTraffic"));
+		Assert.assertEquals("5.000", layer.getAttribute("maxCarriedTraffic"));
+		Assert.assertEquals("0.000000", layer.getAttribute("worstDemandAvailabilityClassic"));
+		Assert.assertEquals("0.500000", layer.getAttribute("worstDemandAvailabilityWeighted"));
+
+		/* Node A: out-degree 1, 2, 2 and in-degree 0, 0, 0 */
+		final Element nodeA = getElement(layer, "node", a.getId());
+		Assert.assertEquals("1.667", nodeA.getAttribute("avgOutDegree"));
+		Assert.assertEquals("1", nodeA.getAttribute("minOutDegree"));
+		Assert.assertEquals("2", nodeA.getAttribute("maxOutDegree"));
+		Assert.assertEquals("0", nodeA.getAttribute("minInDegree"));
+		Assert.assertEquals("0", nodeA.getAttribute("maxInDegree"));
+		Assert.assertEquals("3.000", nodeA.getAttribute("avgIngressTraffic"));
+		Assert.assertEquals("0.000", nodeA.getAttribute("minIngressTraffic"));
+		Assert.assertEquals("5.000", nodeA.getAttribute("maxIngressTraffic"));
+		Assert.assertEquals("0.000", nodeA.getAttribute("maxEgressTraffic"));
+
+		/* Node B: in-degree 1, egress traffic 5, 4, 0 */
+		final Element nodeB = getElement(layer, "node", b.getId());
+		Assert.assertEquals("1", nodeB.getAttribute("minInDegree"));
+		Assert.assertEquals("1", nodeB.getAttribute("maxInDegree"));
+		Assert.assertEquals("0", nodeB.getAttribute("maxOutDegree"));
+		Assert.assertEquals("3.000", nodeB.getAttribute("avgEgressTraffic"));
+		Assert.assertEquals("0.000", nodeB.getAttribute("minEgressTraffic"));
+		Assert.assertEquals("5.000", nodeB.getAttribute("maxEgressTraffic"));
+
+		/* Node C: in-degree 0, 1, 1 */
+		final Element nodeC = getElement(layer, "node", c.getId());
+		Assert.assertEquals("0.667", nodeC.getAttribute("avgInDegree"));
+		Assert.assertEquals("0", nodeC.getAttribute("minInDegree"));
+		Assert.assertEquals("1", nodeC.getAttribute("maxInDegree"));
+
+		/* Node D was added in the last event, so it has no time: the minimum values are zero */
+		final Element nodeD = getElement(layer, "node", d.getId());
+		Assert.assertEquals("0.000", nodeD.getAttribute("avgIngressTraffic"));
+		Assert.assertEquals("0.000", nodeD.getAttribute("minIngressTraffic"));
+		Assert.assertEquals("0.000", nodeD.getAttribute("minEgressTraffic"));
+		Assert.assertEquals("0", nodeD.getAttribute("minInDegree"));
+		Assert.assertEquals("0", nodeD.getAttribute("minOutDegree"));
+
+		/* Link A-B: occupied capacity 5, 4, 0, up 2/3 of the time. The link A-C and the demand d2 were removed */
+		final Element linkAB = getElement(layer, "link", ab.getId());
+		Assert.assertEquals("3.000", linkAB.getAttribute("avgOccupiedCapacity"));
+		Assert.assertEquals("0.000", linkAB.getAttribute("minOccupiedCapacity"));
+		Assert.assertEquals("5.000", linkAB.getAttribute("maxOccupiedCapacity"));
+		Assert.assertEquals("0.300", linkAB.getAttribute("avgUtilization"));
+		Assert.assertEquals("66.667", linkAB.getAttribute("upTimePercentage"));
+		Assert.assertEquals(1, layer.getElementsByTagName("link").getLength());
+
+		/* Demand d1: carried 4, 4, 0 */
+		final Element demandD1 = getElement(layer, "demand", d1.getId());
+		Assert.assertEquals("4.000", demandD1.getAttribute("avgOfferedTraffic"));
+		Assert.assertEquals("2.667", demandD1.getAttribute("avgCarriedTraffic"));
+		Assert.assertEquals("1.333", demandD1.getAttribute("avgBlockedTraffic"));
+		Assert.assertEquals("4.000", demandD1.getAttribute("maxBlockedTraffic"));
+		Assert.assertEquals("0.666667", demandD1.getAttribute("availabilityClassic"));
+		Assert.assertEquals(1, layer.getElementsByTagName("demand").getLength());
+	}
+
+	@Test
+	public void testReset() throws Exception
+	{
+		/* After the reset at t = 10, only the values from then on are considered: d2 (never available) is forgotten, and d1 is carried only until t = 15 */
+		d2.remove();
+		stats.computeNextState(5);
+		stats.reset(10);
+		ab.setFailureState(false);
+		stats.computeNextState(15);
+		stats.computeNextState(20);
+
+		final Map<String, Double> summary = stats.getSummary(20);
+		final String prefix = getPrefix(np);
+		Assert.assertEquals(1, summary.get(prefix + "avgNumLinks"), 1e-9);
+		Assert.assertEquals(1, summary.get(prefix + "avgNumDemands"), 1e-9);
+		Assert.assertEquals(4, summary.get(prefix + "avgOfferedTraffic"), 1e-9);
+		Assert.assertEquals(2, summary.get(prefix + "avgCarriedTraffic"), 1e-9);
+		Assert.assertEquals(0.5, summary.get(prefix + "availabilityClassic"), 1e-9);
+		Assert.assertEquals(0.5, summary.get(prefix + "worstDemandAvailabilityClassic"), 1e-9);
+		Assert.assertEquals(0.5, summary.get(prefix + "worstDemandAvailabilityWeighted"), 1e-9);
+
+		final Element nodeA = getElement(getElement(parse(stats.getResultsXML(20)), "layer", np.getNetworkLayerDefault().getId()), "node", a.getId());
+		Assert.assertEquals("2.000", nodeA.getAttribute("avgIngressTraffic"));
+		Assert.assertEquals("0.000", nodeA.getAttribute("minIngressTraffic"));
+		Assert.assertEquals("4.000", nodeA.getAttribute("maxIngressTraffic"));
+	}
+
+	@Test
+	public void testNoResultsWithoutEvents()
+	{
+		Assert.assertEquals("<p>No event was processed</p>", stats.getResults(0));
+		Assert.assertTrue(stats.getSummary(0).isEmpty());
+		stats.computeNextState(10);
+		Assert.assertFalse(stats.getResults(10).isEmpty());
+		Assert.assertEquals("<p>Simulation time equal to zero. No results</p>", stats.getResults(0));
+	}
+
+	/* The prefix of the layer results in the summary */
+	private static String getPrefix (NetPlan np)
+	{
+		return String.format("Layer %d (%s): ", np.getNetworkLayerDefault().getId(), np.getNetworkLayerDefault().getName());
+	}
+
+	private static org.w3c.dom.Document parse (String xml) throws Exception
+	{
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static Element getElement (org.w3c.dom.Document document , String tagName , long id)
+	{
+		return getElement(document.getDocumentElement(), tagName, id);
+	}
+
+	private static Element getElement (Element parent , String tagName , long id)
+	{
+		final NodeList elements = parent.getElementsByTagName(tagName);
+		for (int cont = 0; cont < elements.getLength() ; cont ++)
+		{
+			final Element element = (Element) elements.item(cont);
+			if (element.getAttribute("id").equals(Long.toString(id))) return element;
+		}
+		throw new AssertionError("No " + tagName + " with id " + id);
+	}
+}
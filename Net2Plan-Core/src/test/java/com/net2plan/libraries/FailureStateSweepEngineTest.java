@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.libraries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.interfaces.networkDesign.SharedRiskGroup;
+import com.net2plan.libraries.FailureStateSweepEngine.ResetMode;
+import com.net2plan.utils.Constants.RoutingType;
+
+public class FailureStateSweepEngineTest
+{
+	private NetPlan np;
+	private List<SortedSet<SharedRiskGroup>> failureStates;
+
+	@Before
+	public void setUp()
+	{
+		/* A ring of five nodes, each demand routed through the two directions of the ring, one SRG per link and per node */
+		np = new NetPlan ();
+		final int N = 5;
+		final List<Node> nodes = new ArrayList<> ();
+		for (int n = 0 ; n < N ; n ++) nodes.add(np.addNode(n, 0, "n" + n, null));
+		final Link [][] links = new Link [N][N];
+		for (int n = 0 ; n < N ; n ++)
+		{
+			final Node a = nodes.get(n); final Node b = nodes.get((n + 1) % N);
+			links [n][(n + 1) % N] = np.addLink(a, b, 100, 1, 200000, null);
+			links [(n + 1) % N][n] = np.addLink(b, a, 100, 1, 200000, null);
+		}
+		for (int n = 0 ; n < N ; n ++)
+		{
+			final Demand d = np.addDemand(nodes.get(n), nodes.get((n + 2) % N), 10 + n, RoutingType.SOURCE_ROUTING, null);
+			np.addRoute(d, 6, 6, Arrays.asList(links [n][(n + 1) % N] , links [(n + 1) % N][(n + 2) % N]), null);
+			np.addRoute(d, 4 + n, 4 + n, Arrays.asList(links [n][(n + N - 1) % N] , links [(n + N - 1) % N][(n + N - 2) % N] , links [(n + N - 2) % N][(n + N - 3) % N]), null);
+		}
+		for (Link e : np.getLinks()) np.addSRG(1000, 10, null).addLink(e);
+		for (Node n : np.getNodes()) np.addSRG(1000, 10, null).addNode(n);
+		failureStates = SRGUtils.enumerateFailureStates(np.getSRGs(), true, true);
+	}
+
+	private static double carriedTrafficAfterFailure (NetPlan np , SortedSet<SharedRiskGroup> srgs)
+	{
+		final NetPlan copy = np.copy();
+		for (SharedRiskGroup srg : srgs) copy.getSRGFromId(srg.getId()).setAsDown();
+		return copy.getVectorDemandCarriedTraffic().zSum();
+	}
+
+	@Test
+	public void testSameResultsAsSequentialCopies()
+	{
+		final List<Double> expected = failureStates.stream().map(s -> carriedTrafficAfterFailure(np, s)).collect(Collectors.toList());
+		for (ResetMode mode : ResetMode.values())
+			for (int numThreads : new int [] { 1 , 3 })
+			{
+				final FailureStateSweepEngine engine = new FailureStateSweepEngine(np, numThreads, mode);
+				final double [] carried = new double [failureStates.size()];
+				final List<Integer> evaluated = engine.sweep(failureStates, (f , npFailure) -> 
+				{
+					carried [f] = npFailure.getVectorDemandCarriedTraffic().zSum();
+					return f;
+				} , Collectors.toList());
+				Assert.assertEquals(failureStates.size(), evaluated.size());
+				Assert.assertEquals(failureStates.size(), evaluated.stream().distinct().count());
+				for (int f = 0 ; f < failureStates.size() ; f ++) Assert.assertEquals(expected.get(f), carried [f], 1e-9);
+				final double total = engine.sweep(failureStates, (f , npFailure) -> npFailure.getVectorDemandCarriedTraffic().zSum() , Collectors.summingDouble(v -> v));
+				Assert.assertEquals(expected.stream().mapToDouble(v -> v).sum(), total, 1e-6);
+			}
+		Assert.assertTrue(np.getLinksDownAllLayers().isEmpty());
+		Assert.assertTrue(np.getNodesDown().isEmpty());
+	}
+
+	@Test
+	public void testFullResetUndoesEvaluatorChanges()
+	{
+		final int numDemands = np.getNumberOfDemands();
+		final FailureStateSweepEngine engine = new FailureStateSweepEngine(np, 2, ResetMode.FULL);
+		final List<Integer> numDemandsSeen = engine.sweep(failureStates, (f , npFailure) -> 
+		{
+			final int res = npFailure.getNumberOfDemands();
+			npFailure.getDemand(0).remove();
+			return res;
+		} , Collectors.toList());
+		for (int n : numDemandsSeen) Assert.assertEquals(numDemands, n);
+		Assert.assertEquals(numDemands, np.getNumberOfDemands());
+	}
+}
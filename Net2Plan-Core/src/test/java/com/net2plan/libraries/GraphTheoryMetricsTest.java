@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.libraries;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+
+public class GraphTheoryMetricsTest
+{
+	@Test
+	public void testShortestPathMetricsBidirectionalLine()
+	{
+		/* Line 0 - 1 - 2 - 3, with links in both directions */
+		final NetPlan np = new NetPlan ();
+		final Node [] n = new Node [4];
+		for (int i = 0 ; i < 4 ; i ++) n [i] = np.addNode(i, 0, "n" + i, null);
+		final Link [] forward = new Link [3];
+		final Link [] backward = new Link [3];
+		for (int i = 0 ; i < 3 ; i ++)
+		{
+			forward [i] = np.addLink(n [i], n [i + 1], 100, 1, 200000, null);
+			backward [i] = np.addLink(n [i + 1], n [i], 100, 1, 200000, null);
+		}
+
+		final GraphTheoryMetrics metrics = new GraphTheoryMetrics(np.getNodes(), np.getLinks(), null);
+		Assert.assertEquals(3, metrics.getDiameter(), 1e-9);
+		Assert.assertEquals(5.0 / 3, metrics.getAverageShortestPathDistance(), 1e-9);
+		Assert.assertEquals(Math.sqrt(5) / 5, metrics.getHeterogeneity(), 1e-9);
+		Assert.assertArrayEquals(new double [] { 0 , 4 , 4 , 0 }, metrics.getNodeBetweenessCentrality().toArray(), 1e-9);
+		for (int i = 0 ; i < 3 ; i ++)
+		{
+			Assert.assertEquals(i == 1 ? 4 : 3, metrics.getLinkBetweenessCentrality().get(forward [i].getIndex()), 1e-9);
+			Assert.assertEquals(i == 1 ? 4 : 3, metrics.getLinkBetweenessCentrality().get(backward [i].getIndex()), 1e-9);
+		}
+	}
+
+	@Test
+	public void testBetweenessCentralityWeighted()
+	{
+		/* The direct link s-b is found first, but the shortest path to b (and c) is through a */
+		final NetPlan np = new NetPlan ();
+		final Node s = np.addNode(0, 0, "s", null);
+		final Node a = np.addNode(1, 0, "a", null);
+		final Node b = np.addNode(2, 0, "b", null);
+		final Node c = np.addNode(3, 0, "c", null);
+		final Link sb = np.addLink(s, b, 100, 1, 200000, null);
+		final Link sa = np.addLink(s, a, 100, 1, 200000, null);
+		final Link ab = np.addLink(a, b, 100, 1, 200000, null);
+		final Link bc = np.addLink(b, c, 100, 1, 200000, null);
+		final SortedMap<Link, Double> cost = new TreeMap<> ();
+		cost.put(sb, 3.0); cost.put(sa, 1.0); cost.put(ab, 1.0); cost.put(bc, 1.0);
+
+		final GraphTheoryMetrics metrics = new GraphTheoryMetrics(np.getNodes(), np.getLinks(), cost);
+		Assert.assertArrayEquals(new double [] { 0 , 2 , 2 , 0 }, metrics.getNodeBetweenessCentrality().toArray(), 1e-9);
+		Assert.assertEquals(0, metrics.getLinkBetweenessCentrality().get(sb.getIndex()), 1e-9);
+		Assert.assertEquals(3, metrics.getLinkBetweenessCentrality().get(sa.getIndex()), 1e-9);
+		Assert.assertEquals(4, metrics.getLinkBetweenessCentrality().get(ab.getIndex()), 1e-9);
+		Assert.assertEquals(3, metrics.getLinkBetweenessCentrality().get(bc.getIndex()), 1e-9);
+		Assert.assertEquals(3, metrics.getDiameter(), 1e-9);
+
+		/* Changing the costs clears the cached metrics */
+		cost.put(sb, 1.0);
+		metrics.configureLinkCostMap(cost);
+		Assert.assertEquals(2, metrics.getLinkBetweenessCentrality().get(ab.getIndex()), 1e-9);
+		Assert.assertEquals(2, metrics.getLinkBetweenessCentrality().get(sb.getIndex()), 1e-9);
+		Assert.assertEquals(2, metrics.getDiameter(), 1e-9);
+	}
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.libraries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.utils.Constants.RoutingType;
+import com.net2plan.utils.Quadruple;
+
+import cern.colt.matrix.tdouble.DoubleFactory1D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+public class IPUtilsTest
+{
+	@Test
+	public void testEcmpEqualCostPaths()
+	{
+		/* From a to d: a-b-d, a-c-d and a-e-d have cost 2, a-d has cost 3. From b, b-d (cost 1) is shorter than b-c-d */
+		final NetPlan np = new NetPlan ();
+		final Node a = np.addNode(0, 0, "a", null);
+		final Node b = np.addNode(1, 0, "b", null);
+		final Node c = np.addNode(2, 0, "c", null);
+		final Node d = np.addNode(3, 0, "d", null);
+		final Node e = np.addNode(4, 0, "e", null);
+		final Link ab = np.addLink(a, b, 100, 1, 200000, null);
+		final Link ac = np.addLink(a, c, 100, 1, 200000, null);
+		final Link ae = np.addLink(a, e, 100, 1, 200000, null);
+		final Link ad = np.addLink(a, d, 100, 1, 200000, null);
+		final Link bd = np.addLink(b, d, 100, 1, 200000, null);
+		final Link cd = np.addLink(c, d, 100, 1, 200000, null);
+		final Link ed = np.addLink(e, d, 100, 1, 200000, null);
+		final Link bc = np.addLink(b, c, 100, 1, 200000, null);
+		final Demand ad_demand = np.addDemand(a, d, 9, RoutingType.HOP_BY_HOP_ROUTING, null);
+		final Demand bd_demand = np.addDemand(b, d, 4, RoutingType.HOP_BY_HOP_ROUTING, null);
+		IPUtils.setLinkWeights(np, 1);
+		IPUtils.setLinkWeight(ad, 3);
+
+		final Quadruple<DoubleMatrix2D, DoubleMatrix2D, DoubleMatrix1D, DoubleMatrix1D> res = IPUtils.computeCarriedTrafficFromIGPWeights(np, null);
+		final DoubleMatrix2D f_de = res.getFirst();
+		final DoubleMatrix2D x_de = res.getSecond();
+		final int dA = ad_demand.getIndex();
+		final int dB = bd_demand.getIndex();
+		for (Link link : Arrays.asList(ab , ac , ae)) Assert.assertEquals(1.0 / 3, f_de.get(dA, link.getIndex()), 1e-9);
+		for (Link link : Arrays.asList(bd , cd , ed)) Assert.assertEquals(1.0, f_de.get(dA, link.getIndex()), 1e-9);
+		Assert.assertEquals(0, f_de.get(dA, ad.getIndex()), 1e-9);
+		Assert.assertEquals(0, f_de.get(dA, bc.getIndex()), 1e-9);
+		for (Link link : Arrays.asList(ab , ac , ae , bd , cd , ed)) Assert.assertEquals(3, x_de.get(dA, link.getIndex()), 1e-9);
+		Assert.assertEquals(4, x_de.get(dB, bd.getIndex()), 1e-9);
+		Assert.assertEquals(0, x_de.get(dB, bc.getIndex()), 1e-9);
+		Assert.assertEquals(9, res.getThird().get(dA), 1e-9);
+		Assert.assertEquals(4, res.getThird().get(dB), 1e-9);
+		Assert.assertEquals(7, res.getFourth().get(bd.getIndex()), 1e-9);
+		Assert.assertEquals(3, res.getFourth().get(cd.getIndex()), 1e-9);
+		Assert.assertEquals(0, res.getFourth().get(ad.getIndex()), 1e-9);
+
+		/* The destination-based table: traffic to d arriving to a is split in three, and no traffic to d leaves d */
+		final DoubleMatrix2D f_te = IPUtils.computeECMPRoutingTableMatrix_fte(np.getNodes(), np.getLinks(), IPUtils.getLinkWeightVector(np));
+		Assert.assertEquals(1.0 / 3, f_te.get(d.getIndex(), ab.getIndex()), 1e-9);
+		Assert.assertEquals(1.0, f_te.get(d.getIndex(), bd.getIndex()), 1e-9);
+		Assert.assertEquals(1.0, f_te.get(d.getIndex(), cd.getIndex()), 1e-9);
+		Assert.assertEquals(0, f_te.get(d.getIndex(), bc.getIndex()), 1e-9);
+
+		/* Applied to the design, the carried traffic is the same */
+		IPUtils.setECMPForwardingRulesFromLinkWeights(np, null);
+		Assert.assertEquals(7, bd.getCarriedTraffic(), 1e-9);
+		Assert.assertEquals(3, ed.getCarriedTraffic(), 1e-9);
+		Assert.assertEquals(9, ad_demand.getCarriedTraffic(), 1e-9);
+	}
+
+	@Test
+	public void testEcmpUnreachableEgressNode()
+	{
+		final NetPlan np = new NetPlan ();
+		final Node a = np.addNode(0, 0, "a", null);
+		final Node b = np.addNode(1, 0, "b", null);
+		final Node c = np.addNode(2, 0, "c", null);
+		np.addLink(a, b, 100, 1, 200000, null);
+		final Demand demand = np.addDemand(a, c, 5, RoutingType.HOP_BY_HOP_ROUTING, null);
+		final Quadruple<DoubleMatrix2D, DoubleMatrix2D, DoubleMatrix1D, DoubleMatrix1D> res = IPUtils.computeCarriedTrafficFromIGPWeights(np, DoubleFactory1D.dense.make(1, 1.0));
+		Assert.assertEquals(0, res.getThird().get(demand.getIndex()), 1e-9);
+		Assert.assertEquals(0, res.getFourth().zSum(), 1e-9);
+	}
+
+	@Test
+	public void testEcmpRandomTopologiesAgainstReference()
+	{
+		final Random rng = new Random (1L);
+		for (int test = 0 ; test < 20 ; test ++)
+		{
+			final NetPlan np = new NetPlan ();
+			final int N = 8;
+			for (int n = 0 ; n < N ; n ++) np.addNode(n, 0, "n" + n, null);
+			for (int n1 = 0 ; n1 < N ; n1 ++)
+				for (int n2 = 0 ; n2 < N ; n2 ++)
+					if (n1 != n2 && rng.nextDouble() < 0.35) np.addLink(np.getNode(n1), np.getNode(n2), 100, 1, 200000, null);
+			for (int n1 = 0 ; n1 < N ; n1 ++)
+				for (int n2 = 0 ; n2 < N ; n2 ++)
+					if (n1 != n2) np.addDemand(np.getNode(n1), np.getNode(n2), 1 + rng.nextInt(10), RoutingType.HOP_BY_HOP_ROUTING, null);
+			final DoubleMatrix1D w_e = DoubleFactory1D.dense.make(np.getNumberOfLinks());
+			for (int e = 0 ; e < w_e.size() ; e ++) w_e.set(e, 1 + rng.nextInt(3)); // small integer weights, to have many ties
+
+			final Quadruple<DoubleMatrix2D, DoubleMatrix2D, DoubleMatrix1D, DoubleMatrix1D> res = IPUtils.computeCarriedTrafficFromIGPWeights(np, w_e);
+			final double [] y_e = new double [np.getNumberOfLinks()];
+			for (Demand demand : np.getDemands())
+			{
+				final double [][] reference = referenceEcmp(np, w_e, demand);
+				for (Link link : np.getLinks())
+				{
+					Assert.assertEquals(reference [0][link.getIndex()], res.getFirst().get(demand.getIndex(), link.getIndex()), 1e-9);
+					Assert.assertEquals(reference [1][link.getIndex()], res.getSecond().get(demand.getIndex(), link.getIndex()), 1e-9);
+					y_e [link.getIndex()] += reference [1][link.getIndex()];
+				}
+			}
+			Assert.assertArrayEquals(y_e, res.getFourth().toArray(), 1e-9);
+		}
+	}
+
+	/* Straightforward ECMP: Bellman-Ford distances to the egress node, equal split among the outgoing links in a shortest path,
+	 * and the traffic propagated from the farthest nodes to the closest (a topological order of the shortest path DAG). Returns the splitting factors and the carried traffic per link */
+	private static double [][] referenceEcmp (NetPlan np , DoubleMatrix1D w_e , Demand demand)
+	{
+		final int N = np.getNumberOfNodes();
+		final int E = np.getNumberOfLinks();
+		final double [] dist = new double [N];
+		Arrays.fill(dist, Double.MAX_VALUE);
+		dist [demand.getEgressNode().getIndex()] = 0;
+		for (int iter = 0 ; iter < N ; iter ++)
+			for (Link e : np.getLinks())
+				if (dist [e.getDestinationNode().getIndex()] < Double.MAX_VALUE)
+					dist [e.getOriginNode().getIndex()] = Math.min(dist [e.getOriginNode().getIndex()], w_e.get(e.getIndex()) + dist [e.getDestinationNode().getIndex()]);
+		final double [] f_e = new double [E];
+		final double [] x_e = new double [E];
+		final double [] traffic_n = new double [N];
+		final List<Node> nodesFarthestFirst = new ArrayList<> (np.getNodes());
+		nodesFarthestFirst.sort((n1 , n2) -> Double.compare(dist [n2.getIndex()], dist [n1.getIndex()]));
+		for (Node n : np.getNodes())
+		{
+			if (n == demand.getEgressNode() || dist [n.getIndex()] == Double.MAX_VALUE) continue;
+			final List<Link> dagLinks = new ArrayList<> ();
+			for (Link e : n.getOutgoingLinks())
+				if (Math.abs(w_e.get(e.getIndex()) + dist [e.getDestinationNode().getIndex()] - dist [n.getIndex()]) < 1e-9) dagLinks.add(e);
+			for (Link e : dagLinks) f_e [e.getIndex()] = 1.0 / dagLinks.size();
+		}
+		/* The forwarding rules are defined even if the ingress node cannot reach the egress node, but no traffic is carried */
+		if (dist [demand.getIngressNode().getIndex()] == Double.MAX_VALUE) return new double [][] { f_e , x_e };
+		traffic_n [demand.getIngressNode().getIndex()] = demand.getOfferedTraffic();
+		for (Node n : nodesFarthestFirst)
+		{
+			if (n == demand.getEgressNode() || traffic_n [n.getIndex()] == 0) continue;
+			for (Link e : n.getOutgoingLinks())
+			{
+				if (f_e [e.getIndex()] == 0) continue;
+				x_e [e.getIndex()] += traffic_n [n.getIndex()] * f_e [e.getIndex()];
+				traffic_n [e.getDestinationNode().getIndex()] += traffic_n [n.getIndex()] * f_e [e.getIndex()];
+			}
+		}
+		return new double [][] { f_e , x_e };
+	}
+}
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.libraries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+
+public class KLooplessShortestPathsEngineTest
+{
+	private static final double NOLIMIT = Double.MAX_VALUE;
+
+	@Test
+	public void testSamePathsAsPlainYenWithoutTies()
+	{
+		/* With random costs there are no ties, so the engine must return exactly the same paths as the plain Yen's algorithm */
+		final Random rng = new Random(1L);
+		final NetPlan np = new NetPlan ();
+		for (int i = 0 ; i < 12 ; i ++) np.addNode(i, 0, "n" + i, null);
+		final List<Node> n = np.getNodes();
+		for (int i = 0 ; i < 12 ; i ++)
+		{
+			np.addLink(n.get(i), n.get((i + 1) % 12), 100, 10 + 90 * rng.nextDouble(), 200000, null);
+			np.addLink(n.get((i + 1) % 12), n.get(i), 100, 10 + 90 * rng.nextDouble(), 200000, null);
+		}
+		for (int cont = 0 ; cont < 20 ; cont ++)
+		{
+			final int a = rng.nextInt(12), b = rng.nextInt(12);
+			if (a != b) np.addLink(n.get(a), n.get(b), 100, 10 + 90 * rng.nextDouble(), 200000, null);
+		}
+		final Map<Link,Double> costMap = new HashMap<> ();
+		for (Link e : np.getLinks()) costMap.put(e, 1 + rng.nextDouble());
+
+		final CompiledGraph graph = CompiledGraph.of(np.getNodes(), np.getLinks());
+		final KLooplessShortestPathsEngine engine = new KLooplessShortestPathsEngine(graph, graph.getLinkCostVector(costMap, false));
+		for (int K : new int [] { 1 , 2 , 5 , 20 })
+			for (Node o : n)
+			{
+				final SortedMap<Node,List<List<Link>>> perOrigin = engine.getKLooplessShortestPaths(o, n, K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT);
+				for (Node d : n)
+				{
+					final List<List<Link>> expected = getPathsPlainYen(np, costMap, o, d, K, Integer.MAX_VALUE, NOLIMIT, NOLIMIT);
+					Assert.assertEquals(expected, engine.getKLooplessShortestPaths(o, d, K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+					Assert.assertEquals(expected, perOrigin.get(d));
+					Assert.assertEquals(expected, GraphUtils.getKLooplessShortestPaths(np.getNodes(), np.getLinks(), o, d, costMap, K, -1, -1, -1, -1, -1, -1));
+					checkCosts(getAllPathCostsSorted(np, costMap, o, d), expected, costMap, K);
+
+					/* The same with the constraints on the number of hops and the cost */
+					Assert.assertEquals(getPathsPlainYen(np, costMap, o, d, K, 4, NOLIMIT, NOLIMIT), engine.getKLooplessShortestPaths(o, d, K, NOLIMIT, 4, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+					Assert.assertEquals(getPathsPlainYen(np, costMap, o, d, K, Integer.MAX_VALUE, 6, NOLIMIT), engine.getKLooplessShortestPaths(o, d, K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, 6, NOLIMIT, NOLIMIT));
+					Assert.assertEquals(getPathsPlainYen(np, costMap, o, d, K, Integer.MAX_VALUE, NOLIMIT, 1.5), engine.getKLooplessShortestPaths(o, d, K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, 1.5, NOLIMIT));
+				}
+			}
+	}
+
+	@Test
+	public void testTiesInGrid()
+	{
+		/* Grid of 4 x 4 nodes with unit costs: many paths have the same cost, and the order among them may differ from the plain Yen's algorithm,
+		 * but the costs must be the same, and all the paths strictly shorter than the last one must be included */
+		final NetPlan np = new NetPlan ();
+		final Node [][] n = new Node [4][4];
+		for (int i = 0 ; i < 4 ; i ++) for (int j = 0 ; j < 4 ; j ++) n [i][j] = np.addNode(i, j, "n" + i + "_" + j, null);
+		for (int i = 0 ; i < 4 ; i ++)
+			for (int j = 0 ; j < 4 ; j ++)
+			{
+				if (i < 3) { np.addLink(n [i][j], n [i + 1][j], 100, 1, 200000, null); np.addLink(n [i + 1][j], n [i][j], 100, 1, 200000, null); }
+				if (j < 3) { np.addLink(n [i][j], n [i][j + 1], 100, 1, 200000, null); np.addLink(n [i][j + 1], n [i][j], 100, 1, 200000, null); }
+			}
+		final Map<Link,Double> costMap = new HashMap<> ();
+		for (Link e : np.getLinks()) costMap.put(e, 1.0);
+
+		final CompiledGraph graph = CompiledGraph.of(np.getNodes(), np.getLinks());
+		final KLooplessShortestPathsEngine engine = new KLooplessShortestPathsEngine(graph, graph.getLinkCostVector(null, false));
+		for (int K : new int [] { 1 , 3 , 8 , 30 })
+			for (Node o : np.getNodes())
+			{
+				final SortedMap<Node,List<List<Link>>> perOrigin = engine.getKLooplessShortestPaths(o, np.getNodes(), K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT);
+				for (Node d : np.getNodes())
+				{
+					if (o == d) { Assert.assertTrue(perOrigin.get(d).isEmpty()); continue; }
+					final List<Double> allCosts = getAllPathCostsSorted(np, costMap, o, d);
+					final List<List<Link>> paths = engine.getKLooplessShortestPaths(o, d, K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT);
+					Assert.assertEquals(getPathCosts(getPathsPlainYen(np, costMap, o, d, K, Integer.MAX_VALUE, NOLIMIT, NOLIMIT), costMap), getPathCosts(paths, costMap));
+					checkCosts(allCosts, paths, costMap, K);
+					checkValidPaths(paths, o, d);
+					checkCosts(allCosts, perOrigin.get(d), costMap, K);
+					checkValidPaths(perOrigin.get(d), o, d);
+					final double maxCost = paths.isEmpty()? 0 : getPathCost(paths.get(paths.size() - 1), costMap);
+					final long numPathsCheaper = allCosts.stream().filter(c -> c < maxCost - 1e-9).count();
+					Assert.assertEquals(numPathsCheaper, paths.stream().filter(p -> getPathCost(p, costMap) < maxCost - 1e-9).count());
+				}
+			}
+	}
+
+	@Test
+	public void testUnreachableAndLessPathsThanK()
+	{
+		/* 0 -> 1 -> 2 with two parallel links 0 -> 1, a link 2 -> 3 that cannot be used, and node 4 isolated */
+		final NetPlan np = new NetPlan ();
+		final Node [] n = new Node [5];
+		for (int i = 0 ; i < 5 ; i ++) n [i] = np.addNode(i, 0, "n" + i, null);
+		final Link e01a = np.addLink(n [0], n [1], 100, 1, 200000, null);
+		final Link e01b = np.addLink(n [0], n [1], 100, 1, 200000, null);
+		final Link e12 = np.addLink(n [1], n [2], 100, 1, 200000, null);
+		final Link e23 = np.addLink(n [2], n [3], 100, 1, 200000, null);
+		final Map<Link,Double> costMap = new HashMap<> ();
+		costMap.put(e01a, 1.0);
+		costMap.put(e01b, 2.0);
+		costMap.put(e12, 1.0);
+		costMap.put(e23, Double.MAX_VALUE);
+
+		final CompiledGraph graph = CompiledGraph.of(np.getNodes(), np.getLinks());
+		final KLooplessShortestPathsEngine engine = new KLooplessShortestPathsEngine(graph, graph.getLinkCostVector(costMap, false));
+
+		/* Only two paths exist, whatever K is */
+		for (int K : new int [] { 2 , 3 , 100 })
+		{
+			Assert.assertEquals(Arrays.asList(Arrays.asList(e01a, e12), Arrays.asList(e01b, e12)), engine.getKLooplessShortestPaths(n [0], n [2], K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+			Assert.assertEquals(Arrays.asList(Arrays.asList(e01a), Arrays.asList(e01b)), engine.getKLooplessShortestPaths(n [0], n [1], K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+		}
+		Assert.assertEquals(Arrays.asList(Arrays.asList(e01a, e12)), engine.getKLooplessShortestPaths(n [0], n [2], 1, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+		Assert.assertEquals(Arrays.asList(Arrays.asList(e01a, e12)), engine.getKLooplessShortestPaths(n [0], n [2], 5, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, 2.5, NOLIMIT, NOLIMIT));
+		Assert.assertEquals(Arrays.asList(), engine.getKLooplessShortestPaths(n [0], n [2], 5, NOLIMIT, 1, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+
+		/* Unreachable pairs: against the direction of the links, through the link that cannot be used, to the isolated node, and to the origin itself */
+		for (int K : new int [] { 1 , 10 })
+		{
+			Assert.assertEquals(Arrays.asList(), engine.getKLooplessShortestPaths(n [2], n [0], K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+			Assert.assertEquals(Arrays.asList(), engine.getKLooplessShortestPaths(n [0], n [3], K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+			Assert.assertEquals(Arrays.asList(), engine.getKLooplessShortestPaths(n [0], n [4], K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+			Assert.assertEquals(Arrays.asList(), engine.getKLooplessShortestPaths(n [0], n [0], K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+			final SortedMap<Node,List<List<Link>>> perOrigin = engine.getKLooplessShortestPaths(n [0], np.getNodes(), K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT);
+			Assert.assertEquals(5, perOrigin.size());
+			for (Node d : new Node [] { n [0] , n [3] , n [4] }) Assert.assertEquals(Arrays.asList(), perOrigin.get(d));
+			Assert.assertEquals(K == 1? 1 : 2, perOrigin.get(n [2]).size());
+			for (Node d : np.getNodes()) Assert.assertEquals(Arrays.asList(), engine.getKLooplessShortestPaths(n [4], Arrays.asList(d), K, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT).get(d));
+		}
+
+		/* The links down are not used if the cost vector excludes them */
+		e01a.setFailureState(false);
+		final CompiledGraph graphWithFailure = CompiledGraph.of(np.getNodes(), np.getLinks());
+		final KLooplessShortestPathsEngine engineWithFailure = new KLooplessShortestPathsEngine(graphWithFailure, graphWithFailure.getLinkCostVector(costMap, true));
+		Assert.assertEquals(Arrays.asList(Arrays.asList(e01b, e12)), engineWithFailure.getKLooplessShortestPaths(n [0], n [2], 10, NOLIMIT, Integer.MAX_VALUE, NOLIMIT, NOLIMIT, NOLIMIT, NOLIMIT));
+	}
+
+	/* Yen's algorithm as it was before the engine: a new Dijkstra computation from the deviation node for each spur path, with no shortest path trees kept */
+	private static List<List<Link>> getPathsPlainYen (NetPlan np , Map<Link,Double> costMap , Node originNode , Node destinationNode , int K , int maxNumHops , double maxRouteCost , double maxRouteCostFactorRespectToShortestPath)
+	{
+		final List<List<Link>> paths = new ArrayList<> ();
+		if (originNode == destinationNode) return paths;
+		final List<Link> shortestPath = getShortestPath(np, costMap, originNode, destinationNode, new HashSet<> (), new HashSet<> ());
+		if (shortestPath == null || shortestPath.size() > maxNumHops) return paths;
+		final double shortestPathCost = getPathCost(shortestPath, costMap);
+		paths.add(shortestPath);
+		final List<List<Link>> candidates = new ArrayList<> ();
+		while (paths.size() < K)
+		{
+			final List<Link> lastPath = paths.get(paths.size() - 1);
+			for (int deviationId = 0 ; deviationId < lastPath.size() ; deviationId ++)
+			{
+				final List<Link> head = lastPath.subList(0, deviationId);
+				final Node deviationNode = lastPath.get(deviationId).getOriginNode();
+				final Set<Node> blockedNodes = new HashSet<> ();
+				for (Link e : head) blockedNodes.add(e.getOriginNode());
+				final Set<Link> blockedLinks = new HashSet<> ();
+				for (List<Link> path : paths)
+					if (path.size() > deviationId && path.subList(0, deviationId).equals(head)) blockedLinks.add(path.get(deviationId));
+				final List<Link> tail = getShortestPath(np, costMap, deviationNode, destinationNode, blockedLinks, blockedNodes);
+				if (tail == null) continue;
+				final List<Link> candidate = new ArrayList<> (head);
+				candidate.addAll(tail);
+				final double cost = getPathCost(candidate, costMap);
+				if (candidates.contains(candidate) || candidate.size() > maxNumHops || cost > maxRouteCost || cost > shortestPathCost * maxRouteCostFactorRespectToShortestPath) continue;
+				candidates.add(candidate);
+			}
+			if (candidates.isEmpty()) break;
+			final List<Link> best = Collections.min(candidates, Comparator.comparing(p -> getPathCost(p, costMap)));
+			candidates.remove(best);
+			paths.add(best);
+		}
+		return paths;
+	}
+
+	private static List<Link> getShortestPath (NetPlan np , Map<Link,Double> costMap , Node originNode , Node destinationNode , Set<Link> blockedLinks , Set<Node> blockedNodes)
+	{
+		final Map<Node,Double> distance = new HashMap<> ();
+		final Map<Node,Link> predecessor = new HashMap<> ();
+		final Set<Node> visited = new HashSet<> ();
+		distance.put(originNode, 0.0);
+		while (true)
+		{
+			Node best = null;
+			for (Node n : distance.keySet()) if (!visited.contains(n) && (best == null || distance.get(n) < distance.get(best))) best = n;
+			if (best == null) return null;
+			if (best == destinationNode) break;
+			visited.add(best);
+			for (Link e : best.getOutgoingLinks(np.getNetworkLayerDefault()))
+			{
+				final double cost = costMap.get(e);
+				if (cost == Double.MAX_VALUE || blockedLinks.contains(e) || blockedNodes.contains(e.getDestinationNode()) || visited.contains(e.getDestinationNode())) continue;
+				final double newDistance = distance.get(best) + cost;
+				if (!distance.containsKey(e.getDestinationNode()) || newDistance < distance.get(e.getDestinationNode())) { distance.put(e.getDestinationNode(), newDistance); predecessor.put(e.getDestinationNode(), e); }
+			}
+		}
+		final List<Link> path = new ArrayList<> ();
+		for (Node n = destinationNode ; n != originNode ; n = predecessor.get(n).getOriginNode()) path.add(0, predecessor.get(n));
+		return path;
+	}
+
+	/* The costs of all the loopless paths between the two nodes, enumerated exhaustively */
+	private static List<Double> getAllPathCostsSorted (NetPlan np , Map<Link,Double> costMap , Node originNode , Node destinationNode)
+	{
+		final List<Double> res = new ArrayList<> ();
+		if (originNode != destinationNode) enumeratePaths(np, costMap, originNode, destinationNode, new HashSet<> (Arrays.asList(originNode)), 0, res);
+		Collections.sort(res);
+		return res;
+	}
+
+	private static void enumeratePaths (NetPlan np , Map<Link,Double> costMap , Node node , Node destinationNode , Set<Node> visited , double cost , List<Double> res)
+	{
+		for (Link e : node.getOutgoingLinks(np.getNetworkLayerDefault()))
+		{
+			final Node next = e.getDestinationNode();
+			if (visited.contains(next) || costMap.get(e) == Double.MAX_VALUE) continue;
+			if (next == destinationNode) { res.add(cost + costMap.get(e)); continue; }
+			visited.add(next);
+			enumeratePaths(np, costMap, next, destinationNode, visited, cost + costMap.get(e), res);
+			visited.remove(next);
+		}
+	}
+
+	/* The costs of the paths are the K lowest costs among all the loopless paths */
+	private static void checkCosts (List<Double> allCostsSorted , List<List<Link>> paths , Map<Link,Double> costMap , int K)
+	{
+		Assert.assertEquals(Math.min(K, allCostsSorted.size()), paths.size());
+		for (int cont = 0 ; cont < paths.size() ; cont ++)
+			Assert.assertEquals(allCostsSorted.get(cont), getPathCost(paths.get(cont), costMap), 1e-9);
+	}
+
+	/* Each path goes from the origin to the destination, with no loops, and the paths are all different */
+	private static void checkValidPaths (List<List<Link>> paths , Node originNode , Node destinationNode)
+	{
+		Assert.assertEquals(paths.size(), new HashSet<> (paths).size());
+		for (List<Link> path : paths)
+		{
+			Assert.assertEquals(originNode, path.get(0).getOriginNode());
+			Assert.assertEquals(destinationNode, path.get(path.size() - 1).getDestinationNode());
+			final Set<Node> traversedNodes = new HashSet<> (Arrays.asList(originNode));
+			for (int cont = 0 ; cont < path.size() ; cont ++)
+			{
+				if (cont > 0) Assert.assertEquals(path.get(cont - 1).getDestinationNode(), path.get(cont).getOriginNode());
+				Assert.assertTrue(traversedNodes.add(path.get(cont).getDestinationNode()));
+			}
+		}
+	}
+
+	private static List<Double> getPathCosts (List<List<Link>> paths , Map<Link,Double> costMap)
+	{
+		final List<Double> res = new ArrayList<> ();
+		for (List<Link> path : paths) res.add(Math.round(getPathCost(path, costMap) * 1e6) / 1e6);
+		return res;
+	}
+
+	private static double getPathCost (List<Link> path , Map<Link,Double> costMap)
+	{
+		double cost = 0;
+		for (Link e : path) cost += costMap.get(e);
+		return cost;
+	}
+}
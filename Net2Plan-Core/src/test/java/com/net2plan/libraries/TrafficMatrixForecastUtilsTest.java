@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.libraries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.MulticastDemand;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.utils.Constants.RoutingType;
+
+public class TrafficMatrixForecastUtilsTest
+{
+	@Test
+	public void testBatchTmEstimation()
+	{
+		/* Line 0 - 1 - 2, demand 0-2 traverses both links. The link errors can be zero for any traffic of 0-2, so the optimum takes its monitored value */
+		final NetPlan np = new NetPlan ();
+		final Node [] n = new Node [3];
+		for (int i = 0 ; i < 3 ; i ++) n [i] = np.addNode(i, 0, "n" + i, null);
+		final Link e01 = np.addLink(n [0], n [1], 100, 1, 200000, null);
+		final Link e12 = np.addLink(n [1], n [2], 100, 1, 200000, null);
+		final Demand d01 = np.addDemand(n [0], n [1], 1, RoutingType.SOURCE_ROUTING, null);
+		final Demand d02 = np.addDemand(n [0], n [2], 1, RoutingType.SOURCE_ROUTING, null);
+		final Demand d12 = np.addDemand(n [1], n [2], 1, RoutingType.SOURCE_ROUTING, null);
+		np.addRoute(d01, 1, 1, Arrays.asList(e01), null);
+		np.addRoute(d02, 1, 1, Arrays.asList(e01 , e12), null);
+		np.addRoute(d12, 1, 1, Arrays.asList(e12), null);
+
+		final SortedSet<Date> dates = new TreeSet<> ();
+		for (int t = 0 ; t < 300 ; t ++)
+		{
+			final Date date = new Date (1000L * t);
+			dates.add(date);
+			e01.getMonitoredOrForecastedCarriedTraffic().addValue(date, 10.0 + t);
+			e12.getMonitoredOrForecastedCarriedTraffic().addValue(date, 20.0 + t);
+			d02.getMonitoredOrForecastedOfferedTraffic().addValue(date, 4.0 + (t % 5));
+		}
+
+		Assert.assertEquals(300, TrafficMatrixForecastUtils.estimateTmAndStoreAsDemandMonitoring_minErrorSquares(np.getNetworkLayerDefault(), dates, TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE.MONITORED, 0.5, 2));
+		for (int t = 0 ; t < 300 ; t ++)
+		{
+			final Date date = new Date (1000L * t);
+			Assert.assertEquals(4.0 + (t % 5), d02.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(date), 1e-6);
+			Assert.assertEquals(10.0 + t - 4 - (t % 5), d01.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(date), 1e-6);
+			Assert.assertEquals(20.0 + t - 4 - (t % 5), d12.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(date), 1e-6);
+		}
+
+		/* Preferring only the demand information, the estimation is the zero matrix */
+		TrafficMatrixForecastUtils.estimateTmAndStoreAsDemandMonitoring_minErrorSquares(np.getNetworkLayerDefault(), dates, TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE.ZERO, 1, 1);
+		for (Demand d : np.getDemands())
+			for (double val : d.getMonitoredOrForecastedOfferedTraffic().getValuesAsArray())
+				Assert.assertEquals(0, val, 0);
+
+		/* Dates without information are rejected before storing anything */
+		dates.add(new Date (1000L * 1000));
+		try { TrafficMatrixForecastUtils.estimateTmAndStoreAsDemandMonitoring_minErrorSquares(np.getNetworkLayerDefault(), dates, TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE.NONE, 0, 1); Assert.fail(); }
+		catch (Net2PlanException e) { Assert.assertNull(d01.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(new Date (1000L * 1000))); }
+	}
+
+	@Test
+	public void testBatchTmEstimationGravityModelWithMulticastDemands()
+	{
+		/* Line 0 - 1 - 2 with links in both directions, unicast demands and a multicast demand from 0 to 1 and 2 */
+		final NetPlan np = new NetPlan ();
+		final Node [] n = new Node [3];
+		for (int i = 0 ; i < 3 ; i ++) n [i] = np.addNode(i, 0, "n" + i, null);
+		final Link e01 = np.addLink(n [0], n [1], 100, 1, 200000, null);
+		final Link e12 = np.addLink(n [1], n [2], 100, 1, 200000, null);
+		final Link e10 = np.addLink(n [1], n [0], 100, 1, 200000, null);
+		final Link e21 = np.addLink(n [2], n [1], 100, 1, 200000, null);
+		final Demand d02 = np.addDemand(n [0], n [2], 1, RoutingType.SOURCE_ROUTING, null);
+		final Demand d10 = np.addDemand(n [1], n [0], 1, RoutingType.SOURCE_ROUTING, null);
+		final Demand d21 = np.addDemand(n [2], n [1], 1, RoutingType.SOURCE_ROUTING, null);
+		np.addRoute(d02, 1, 1, Arrays.asList(e01 , e12), null);
+		np.addRoute(d10, 1, 1, Arrays.asList(e10), null);
+		np.addRoute(d21, 1, 1, Arrays.asList(e21), null);
+		final MulticastDemand md = np.addMulticastDemand(n [0], new HashSet<> (Arrays.asList(n [1] , n [2])), 1, null);
+		np.addMulticastTree(md, 1, 1, new HashSet<> (Arrays.asList(e01 , e12)), null);
+
+		final SortedSet<Date> dates = new TreeSet<> ();
+		for (int t = 0 ; t < 50 ; t ++)
+		{
+			final Date date = new Date (1000L * t);
+			dates.add(date);
+			e01.getMonitoredOrForecastedCarriedTraffic().addValue(date, 10.0 + t);
+			e12.getMonitoredOrForecastedCarriedTraffic().addValue(date, 8.0 + t);
+			e10.getMonitoredOrForecastedCarriedTraffic().addValue(date, 3.0 + (t % 7));
+			e21.getMonitoredOrForecastedCarriedTraffic().addValue(date, 5.0);
+		}
+
+		/* Only the demand information: the unicast demands take the gravity model estimation of the design without the multicast demand, and the multicast demand no traffic */
+		final NetPlan npWithoutMulticast = np.copy();
+		new ArrayList<> (npWithoutMulticast.getMulticastDemands()).forEach(d -> d.remove());
+		Assert.assertEquals(50, TrafficMatrixForecastUtils.estimateTmAndStoreAsDemandMonitoring_minErrorSquares(np.getNetworkLayerDefault(), dates, TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE.GRAVITYMODEL, 1, 2));
+		for (Date date : dates)
+		{
+			final SortedMap<Demand,Double> gravity = TrafficMatrixForecastUtils.getGravityModelEstimationFromMonitorTraffic(npWithoutMulticast.getNetworkLayerDefault(), date);
+			for (Demand d : np.getDemands())
+				Assert.assertEquals(gravity.get(npWithoutMulticast.getDemandFromId(d.getId())), d.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(date), 1e-6);
+			Assert.assertEquals(0, md.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(date), 0);
+		}
+		Assert.assertTrue(d02.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(new Date (0L)) > 0);
+
+		/* Balancing with the link information, the multicast demand fits the link traffic not explained by the unicast demands */
+		Assert.assertEquals(50, TrafficMatrixForecastUtils.estimateTmAndStoreAsDemandMonitoring_minErrorSquares(np.getNetworkLayerDefault(), dates, TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE.GRAVITYMODEL, 0.5, 2));
+		for (Date date : dates)
+			Assert.assertTrue(md.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(date) > 0);
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.libraries;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+
+public class TrafficSeriesTest
+{
+	@Test
+	public void testAddAndRemoveValues()
+	{
+		final TrafficSeries ts = new TrafficSeries ();
+		ts.addValues(new long [] { 30 , 10 , 20 , 10 }, new double [] { 3 , 1 , 2 , 1.5 });
+		ts.addValue(new Date (40), 4.0).addValue(new Date (5), 0.5).addValue(new Date (20), 2.5);
+		Assert.assertArrayEquals(new long [] { 5 , 10 , 20 , 30 , 40 }, ts.getTimesInMsAsArray());
+		Assert.assertArrayEquals(new double [] { 0.5 , 1.5 , 2.5 , 3 , 4 }, ts.getValuesAsArray(), 0);
+		Assert.assertEquals(2.5, ts.getValues().get(new Date (20)), 0);
+		Assert.assertNull(ts.getValueOrNull(new Date (15)));
+
+		ts.removeValue(new Date (20)).removeAllValuesBeforeOrEqual(new Date (5)).removeAllValuesAfterOrEqual(new Date (35));
+		Assert.assertArrayEquals(new long [] { 10 , 30 }, ts.getTimesInMsAsArray());
+		Assert.assertEquals(new Date (10), ts.getFirstDate());
+		Assert.assertEquals(new Date (30), ts.getLastDate());
+	}
+
+	@Test
+	public void testValueOrInterpolation()
+	{
+		final TrafficSeries ts = new TrafficSeries ().addValue(new Date (10), 1.0).addValue(new Date (20), 3.0).addValue(new Date (40), 4.0);
+		Assert.assertEquals(3.0, ts.getValueOrInterpolation(new Date (20)), 1e-9);
+		Assert.assertEquals(0.0, ts.getValueOrInterpolation(new Date (5)), 1e-9);
+		Assert.assertEquals(2.0, ts.getValueOrInterpolation(new Date (15)), 1e-9);
+		Assert.assertEquals(3.5, ts.getValueOrInterpolation(new Date (30)), 1e-9);
+		Assert.assertEquals(5.0, ts.getValueOrInterpolation(new Date (60)), 1e-9);
+	}
+
+	@Test
+	public void testStringListFormats()
+	{
+		final TrafficSeries ts = new TrafficSeries ().addSyntheticMonitoringTrace(TrafficSeries.FITTINGTYPE.EXPONENTIAL, new Date (0), 300, 10000, 100, 0.3, 3, 8, 10, 0.05, new Random (1L));
+		ts.addValue(new Date (-1000), Double.NaN).addValue(new Date (-500), -0.0).addValue(new Date (-400), 0.0);
+
+		final List<String> compressed = ts.toStringListCompressed();
+		Assert.assertEquals(1, compressed.size());
+		Assert.assertEquals(ts, TrafficSeries.createFromStringList(compressed));
+		Assert.assertEquals(ts, TrafficSeries.createFromStringList(ts.toStringList()));
+		Assert.assertEquals(new TrafficSeries (), TrafficSeries.createFromStringList(new TrafficSeries ().toStringListCompressed()));
+		Assert.assertEquals(new TrafficSeries ().addValue(new Date (3), 2.0), TrafficSeries.createFromStringList(Arrays.asList("3 2.0" , "wrong")));
+	}
+
+	@Test
+	public void testCorruptCompressedString()
+	{
+		final TrafficSeries ts = new TrafficSeries ().addSyntheticMonitoringTrace(TrafficSeries.FITTINGTYPE.EXPONENTIAL, new Date (0), 300, 100, 100, 0.3, 3, 8, 10, 0.05, new Random (1L));
+		final String compressed = ts.toStringListCompressed().get(0);
+		final String prefix = compressed.substring(0, compressed.indexOf(':') + 1);
+		final byte [] bytes = Base64.getDecoder().decode(compressed.substring(prefix.length()));
+
+		/* Truncated data, at any point, is not read as an empty or partial series */
+		for (int numBytes = 0 ; numBytes < bytes.length ; numBytes += 7)
+			assertCorrupt(prefix + Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, numBytes)));
+
+		/* Not Base64 */
+		assertCorrupt(prefix + "@@@@");
+
+		/* More samples than the data can hold */
+		final byte [] wrongNumSamples = Arrays.copyOf(bytes, bytes.length);
+		wrongNumSamples [0] = 0x7F;
+		assertCorrupt(prefix + Base64.getEncoder().encodeToString(wrongNumSamples));
+		final byte [] zeroSamples = Arrays.copyOf(bytes, bytes.length);
+		zeroSamples [0] = zeroSamples [1] = zeroSamples [2] = zeroSamples [3] = 0;
+		assertCorrupt(prefix + Base64.getEncoder().encodeToString(zeroSamples));
+	}
+
+	private static void assertCorrupt (String compressed)
+	{
+		try
+		{
+			TrafficSeries.createFromStringList(Arrays.asList(compressed));
+			Assert.fail("Corrupt compressed series accepted: " + compressed);
+		} catch (Net2PlanException e) { }
+	}
+}
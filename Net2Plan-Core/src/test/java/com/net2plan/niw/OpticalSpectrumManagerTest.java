@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.niw;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.net2plan.niw.OpticalSpectrumManager.SlotBitmap;
+import com.net2plan.utils.Pair;
+
+public class OpticalSpectrumManagerTest
+{
+	@Test
+	public void testSlotBitmapWordBoundaries()
+	{
+		final int [][] ranges = { {63,63} , {63,64} , {64,65} , {63,65} , {0,127} , {-65,-63} , {-1,0} , {-64,-64} , {127,128} };
+		for (int [] range : ranges)
+		{
+			final SlotBitmap bitmap = SlotBitmap.ofRanges(Arrays.asList(Pair.of(range [0], range [1])));
+			final SortedSet<Integer> expected = rangeSet(range [0], range [1]);
+			assertEquals(expected, bitmap.toSortedSet());
+			for (int slotId = range [0] - 2 ; slotId <= range [1] + 2 ; slotId ++)
+				assertEquals(expected.contains(slotId), bitmap.get(slotId));
+			assertEquals(range [0], bitmap.nextSetBit(range [0] - 70));
+			assertEquals(range [0], bitmap.nextSetBit(range [0]));
+			assertEquals(range [1] + 1, bitmap.nextClearBit(range [0]));
+			assertEquals(SlotBitmap.NO_SLOT, bitmap.nextSetBit(range [1] + 1));
+		}
+
+		/* Single slots around the word limits, set and cleared one by one */
+		final SlotBitmap bitmap = new SlotBitmap ();
+		for (int slotId : Arrays.asList(63 , 64 , 65 , -64 , -65)) bitmap.set(slotId);
+		assertEquals(new TreeSet<> (Arrays.asList(-65 , -64 , 63 , 64 , 65)), bitmap.toSortedSet());
+		assertEquals(63, bitmap.nextSetBit(-63));
+		assertEquals(-63, bitmap.nextClearBit(-65));
+		bitmap.clear(64);
+		assertEquals(65, bitmap.nextSetBit(64));
+		assertEquals(64, bitmap.nextClearBit(63));
+		bitmap.clearBelow(64);
+		assertEquals(new TreeSet<> (Arrays.asList(65)), bitmap.toSortedSet());
+	}
+
+	@Test
+	public void testSlotBitmapFirstFit()
+	{
+		final SlotBitmap bitmap = SlotBitmap.ofRanges(Arrays.asList(Pair.of(0, 61) , Pair.of(63, 65) , Pair.of(70, 200)));
+		assertEquals(0, bitmap.getFirstSlotOfContiguousRange(1));
+		assertEquals(0, bitmap.getFirstSlotOfContiguousRange(62));
+		assertEquals(70, bitmap.getFirstSlotOfContiguousRange(63));
+		assertEquals(SlotBitmap.NO_SLOT, bitmap.getFirstSlotOfContiguousRange(132));
+		bitmap.clearBelow(62);
+		assertEquals(63, bitmap.getFirstSlotOfContiguousRange(3));
+		assertEquals(70, bitmap.getFirstSlotOfContiguousRange(4));
+
+		/* A range crossing a word limit is found as a whole */
+		final SlotBitmap crossing = SlotBitmap.ofRanges(Arrays.asList(Pair.of(60, 67)));
+		assertEquals(60, crossing.getFirstSlotOfContiguousRange(8));
+		assertEquals(SlotBitmap.NO_SLOT, crossing.getFirstSlotOfContiguousRange(9));
+		final SlotBitmap negative = SlotBitmap.ofRanges(Arrays.asList(Pair.of(-70, -60) , Pair.of(-2, 1)));
+		assertEquals(-70, negative.getFirstSlotOfContiguousRange(11));
+		assertEquals(SlotBitmap.NO_SLOT, negative.getFirstSlotOfContiguousRange(12));
+		negative.clearBelow(-61);
+		assertEquals(-2, negative.getFirstSlotOfContiguousRange(4));
+
+		/* Random bitmaps against a search on the set of slots */
+		final Random rng = new Random (1L);
+		for (int test = 0 ; test < 500 ; test ++)
+		{
+			final SortedSet<Integer> slots = new TreeSet<> ();
+			final SlotBitmap random = new SlotBitmap ();
+			for (int slotId = -140 ; slotId < 200 ; slotId ++)
+				if (rng.nextDouble() < 0.7) { slots.add(slotId); random.set(slotId); }
+			for (int numSlots = 1 ; numSlots <= 12 ; numSlots ++)
+				assertEquals(firstFitReference(slots, numSlots), random.getFirstSlotOfContiguousRange(numSlots));
+		}
+	}
+
+	@Test
+	public void testSlotBitmapOccupyReleaseRoundTrip()
+	{
+		final Random rng = new Random (2L);
+		final SortedSet<Integer> slots = new TreeSet<> ();
+		final SlotBitmap bitmap = new SlotBitmap ();
+		for (int test = 0 ; test < 2000 ; test ++)
+		{
+			final int slotId = rng.nextInt(400) - 200;
+			final int numSlots = 1 + rng.nextInt(8);
+			if (rng.nextBoolean())
+			{
+				bitmap.setRange(slotId, slotId + numSlots - 1);
+				slots.addAll(rangeSet(slotId, slotId + numSlots - 1));
+			}
+			else
+			{
+				for (int s = slotId ; s < slotId + numSlots ; s ++) bitmap.clear(s);
+				slots.removeAll(rangeSet(slotId, slotId + numSlots - 1));
+			}
+			assertEquals(slots, bitmap.toSortedSet());
+		}
+
+		/* AND and AND NOT a word at a time, as when intersecting the spectrum of several fibers */
+		final SlotBitmap other = SlotBitmap.ofRanges(Arrays.asList(Pair.of(-100, -1) , Pair.of(63, 130)));
+		final SortedSet<Integer> otherSlots = other.toSortedSet();
+		final SlotBitmap intersection = bitmap.copy();
+		intersection.and(other);
+		final SortedSet<Integer> expectedIntersection = new TreeSet<> (slots);
+		expectedIntersection.retainAll(otherSlots);
+		assertEquals(expectedIntersection, intersection.toSortedSet());
+		final SlotBitmap difference = bitmap.copy();
+		difference.andNot(other);
+		final SortedSet<Integer> expectedDifference = new TreeSet<> (slots);
+		expectedDifference.removeAll(otherSlots);
+		assertEquals(expectedDifference, difference.toSortedSet());
+		assertEquals(slots, bitmap.toSortedSet());
+
+		/* Releasing everything leaves an empty bitmap */
+		for (int slotId : new TreeSet<> (slots)) bitmap.clear(slotId);
+		assertTrue(bitmap.toSortedSet().isEmpty());
+		assertEquals(SlotBitmap.NO_SLOT, bitmap.nextSetBit(Integer.MIN_VALUE));
+		assertEquals(SlotBitmap.NO_SLOT, bitmap.getFirstSlotOfContiguousRange(1));
+	}
+
+	@Test
+	public void testClashDetectionMatchesSetBasedReference()
+	{
+		final Random rng = new Random (3L);
+		final WNet net = WNet.createEmptyDesign(true , true);
+		final List<Pair<Integer,Integer>> validRanges = Arrays.asList(Pair.of(-70, 40) , Pair.of(60, 130));
+		final WNode [] nodes = new WNode [5];
+		for (int n = 0 ; n < nodes.length ; n ++) nodes [n] = net.addNode(n, 0, "n" + n, "type1");
+		for (int n = 0 ; n < nodes.length ; n ++) net.addFiber(nodes [n], nodes [(n + 1) % nodes.length], validRanges, -1, true);
+		net.addFiber(nodes [0], nodes [2], validRanges, -1, true);
+
+		/* Lightpaths with random slots, some of them clashing */
+		for (int cont = 0 ; cont < 25 ; cont ++)
+		{
+			final WNode a = nodes [rng.nextInt(nodes.length)];
+			final WNode b = nodes [rng.nextInt(nodes.length)];
+			if (a == b) continue;
+			final List<WFiber> path = net.getKShortestWdmPath(1, a, b, Optional.empty()).get(0);
+			final int firstSlot = rng.nextInt(200) - 70;
+			net.addLightpathRequest(a, b, 10.0, false).addLightpathUnregenerated(path, rangeSet(firstSlot, firstSlot + rng.nextInt(6)), false);
+		}
+		/* Two lightpaths on the same fiber and slots, across a word limit */
+		final List<WFiber> clashingPath = net.getKShortestWdmPath(1, nodes [3], nodes [4], Optional.empty()).get(0);
+		net.addLightpathRequest(nodes [3], nodes [4], 10.0, false).addLightpathUnregenerated(clashingPath, rangeSet(62, 65), false);
+		net.addLightpathRequest(nodes [3], nodes [4], 10.0, false).addLightpathUnregenerated(clashingPath, rangeSet(64, 66), false);
+		final OpticalSpectrumManager osm = OpticalSpectrumManager.createFromRegularLps(net);
+		assertFalse(osm.isSpectrumOccupationOk());
+		assertTrue(osm.getClashingOpticalSlotIds(clashingPath.get(0)).containsAll(rangeSet(64, 65)));
+		assertFalse(osm.isAllocatable(new OsmLightpathOccupationInfo(clashingPath, Optional.empty(), Optional.empty(), Optional.of(rangeSet(66, 67)))));
+
+		for (WFiber fiber : net.getFibers())
+			assertEquals(idleReference(osm, fiber), osm.getIdleOpticalSlotIds(fiber));
+		for (int test = 0 ; test < 300 ; test ++)
+		{
+			final int indexA = rng.nextInt(nodes.length);
+			final WNode a = nodes [indexA];
+			final WNode b = nodes [(indexA + 1 + rng.nextInt(nodes.length - 1)) % nodes.length];
+			final List<List<WFiber>> paths = net.getKShortestWdmPath(2, a, b, Optional.empty());
+			final List<WFiber> path = paths.get(rng.nextInt(paths.size()));
+			final int firstSlot = rng.nextInt(220) - 80;
+			final SortedSet<Integer> slotIds = rangeSet(firstSlot, firstSlot + rng.nextInt(4));
+			final OsmLightpathOccupationInfo occupation = new OsmLightpathOccupationInfo(path, Optional.empty(), Optional.empty(), Optional.of(slotIds));
+			assertEquals(isAllocatableReference(osm, occupation), osm.isAllocatable(occupation));
+
+			final int numSlots = 1 + rng.nextInt(8);
+			final Optional<Integer> minimumInitialSlot = rng.nextBoolean()? Optional.of(rng.nextInt(200) - 70) : Optional.empty();
+			final SortedSet<Integer> forbidden = rng.nextBoolean()? rangeSet(-5, 3) : new TreeSet<> ();
+			final OsmLightpathOccupationInfo noSlots = new OsmLightpathOccupationInfo(path, Optional.empty(), Optional.empty(), Optional.empty());
+			assertEquals(firstFitReference(osm, noSlots, numSlots, minimumInitialSlot, forbidden), osm.spectrumAssignment_firstFit(noSlots, numSlots, minimumInitialSlot, forbidden));
+		}
+	}
+
+	private static SortedSet<Integer> rangeSet (int first , int lastIncluded)
+	{
+		final SortedSet<Integer> res = new TreeSet<> ();
+		for (int slotId = first ; slotId <= lastIncluded ; slotId ++) res.add(slotId);
+		return res;
+	}
+
+	private static int firstFitReference (SortedSet<Integer> slots , int numSlots)
+	{
+		for (int slotId : slots)
+			if (slots.containsAll(rangeSet(slotId, slotId + numSlots - 1))) return slotId;
+		return SlotBitmap.NO_SLOT;
+	}
+
+	/* The set-based computations the bitmaps replaced, from the per-slot occupation maps */
+	private static SortedSet<Integer> idleReference (OpticalSpectrumManager osm , WFiber fiber)
+	{
+		final SortedSet<Integer> res = fiber.getValidOpticalSlotIds();
+		res.removeAll(osm.getOccupiedOpticalSlotIds(fiber));
+		return res;
+	}
+
+	private static boolean isAllocatableReference (OpticalSpectrumManager osm , OsmLightpathOccupationInfo occupation)
+	{
+		if (occupation.isWithSelfClashing()) return false;
+		final SortedSet<Integer> slotIds = occupation.getOccupiedSlotIds().get();
+		for (WFiber fiber : occupation.getSeqFibersLegitimateSignal())
+			if (!idleReference(osm, fiber).containsAll(slotIds)) return false;
+		for (WFiber fiber : occupation.getFibersWithWasteSignal())
+			for (int slotId : osm.getOpticalSlotIdsWithLegitimateSignal(fiber))
+				if (slotIds.contains(slotId)) return false;
+		return true;
+	}
+
+	private static Optional<SortedSet<Integer>> firstFitReference (OpticalSpectrumManager osm , OsmLightpathOccupationInfo occupation , int numSlots , Optional<Integer> minimumInitialSlot , SortedSet<Integer> forbidden)
+	{
+		if (occupation.isWithSelfClashing()) return Optional.empty();
+		SortedSet<Integer> usable = null;
+		for (WFiber fiber : occupation.getSeqFibersLegitimateSignal())
+			if (usable == null) usable = idleReference(osm, fiber); else usable.retainAll(idleReference(osm, fiber));
+		for (WFiber fiber : occupation.getFibersWithWasteSignal())
+			usable.removeAll(osm.getOpticalSlotIdsWithLegitimateSignal(fiber));
+		if (minimumInitialSlot.isPresent()) usable = new TreeSet<> (usable.tailSet(minimumInitialSlot.get()));
+		usable.removeAll(forbidden);
+		final int firstSlot = firstFitReference(usable, numSlots);
+		return firstSlot == SlotBitmap.NO_SLOT? Optional.empty() : Optional.of(rangeSet(firstSlot, firstSlot + numSlots - 1));
+	}
+}
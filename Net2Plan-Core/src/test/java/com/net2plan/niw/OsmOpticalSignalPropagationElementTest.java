@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.niw;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.net2plan.utils.Pair;
+
+public class OsmOpticalSignalPropagationElementTest
+{
+	@Test
+	public void testCompareDirfulElementsDifferingOnlyInTheFiber()
+	{
+		final WNet net = WNet.createEmptyDesign(true , true);
+		final WNode a = net.addNode(0, 0, "a", "type1");
+		final WNode b = net.addNode(1, 0, "b", "type1");
+		final WNode c = net.addNode(2, 0, "c", "type1");
+		final WFiber ab = net.addFiber(a, b, Arrays.asList(Pair.of(0, 300)), -1, false).getFirst();
+		final WFiber bc = net.addFiber(b, c, Arrays.asList(Pair.of(0, 300)), -1, false).getFirst();
+		final int fiberOrder = Integer.signum(ab.compareTo(bc));
+		assertTrue(fiberOrder != 0);
+
+		/* Two add (or drop) modules of different fibers are different elements, ordered as their fibers */
+		final OsmOpticalSignalPropagationElement addAb = OsmOpticalSignalPropagationElement.asAddDirful(ab);
+		final OsmOpticalSignalPropagationElement addBc = OsmOpticalSignalPropagationElement.asAddDirful(bc);
+		assertEquals(fiberOrder, Integer.signum(addAb.compareTo(addBc)));
+		assertEquals(-fiberOrder, Integer.signum(addBc.compareTo(addAb)));
+		assertEquals(0, addAb.compareTo(OsmOpticalSignalPropagationElement.asAddDirful(ab)));
+		final OsmOpticalSignalPropagationElement dropAb = OsmOpticalSignalPropagationElement.asDropDirful(ab);
+		final OsmOpticalSignalPropagationElement dropBc = OsmOpticalSignalPropagationElement.asDropDirful(bc);
+		assertEquals(fiberOrder, Integer.signum(dropAb.compareTo(dropBc)));
+		assertEquals(-fiberOrder, Integer.signum(dropBc.compareTo(dropAb)));
+		assertEquals(0, dropBc.compareTo(OsmOpticalSignalPropagationElement.asDropDirful(bc)));
+
+		/* A sorted set keeps all the elements of a path, the add and drop modules included */
+		final List<OsmOpticalSignalPropagationElement> elements = OsmOpticalSignalPropagationElement.fromFiberPathDirfulAddDrop(Arrays.asList(ab , bc));
+		final TreeSet<OsmOpticalSignalPropagationElement> sorted = new TreeSet<> (elements);
+		sorted.addAll(Arrays.asList(addBc , dropAb));
+		assertEquals(6, sorted.size());
+		final WFiber first = fiberOrder < 0? ab : bc;
+		final WFiber second = fiberOrder < 0? bc : ab;
+		assertEquals(Arrays.asList(OsmOpticalSignalPropagationElement.asFiber(first) , OsmOpticalSignalPropagationElement.asFiber(second) , 
+				OsmOpticalSignalPropagationElement.asDropDirful(first) , OsmOpticalSignalPropagationElement.asDropDirful(second) , 
+				OsmOpticalSignalPropagationElement.asAddDirful(first) , OsmOpticalSignalPropagationElement.asAddDirful(second)) , new ArrayList<> (sorted));
+	}
+}
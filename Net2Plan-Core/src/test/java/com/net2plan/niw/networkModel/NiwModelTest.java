@@ -1,6 +1,7 @@
 package com.net2plan.niw.networkModel;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -401,6 +402,46 @@ public class NiwModelTest extends TestCase
 
 	}
 
+	@Test
+	public void opticalSignalIncrementalUpdateTests () 
+	{
+		final WNet net = WNet.createEmptyDesign(false, true);
+		final WNode a = net.addNode(0, 0, "A", "");
+		final WNode b = net.addNode(0, 0, "B", "");
+		final WNode c = net.addNode(0, 0, "C", "");
+		final WFiber ab = net.addFiber(a, b, null, 160.0, false).getFirst();
+		final WFiber bc = net.addFiber(b, c, null, 160.0, false).getFirst();
+		final WFiber ac = net.addFiber(a, c, null, 250.0, false).getFirst();
+		final OpticalAmplifierInfo ola = OpticalAmplifierInfo.getDefaultOla(80.0);
+		Arrays.asList(ab , bc , ac).forEach(e->e.setOlaTraversedInfo(Arrays.asList (ola)));
+		final OpticalSimulationModule osm = new OpticalSimulationModule (net);
+		osm.setCheckIncrementalUpdatesAgainstFullRecomputation(true);
+		final List<WLightpath> lps = new ArrayList<> ();
+		for (int cont = 0 ; cont < 6 ; cont ++)
+		{
+			final WLightpathRequest lpr = net.addLightpathRequest(a, c, 100.0, false);
+			final int s0 = cont * 4;
+			final WLightpath lp = lpr.addLightpathUnregenerated(cont % 2 == 0? Arrays.asList(ab , bc) : Arrays.asList(ac), new TreeSet<> (Arrays.asList(s0 , s0+1 , s0+2 , s0+3)), false);
+			osm.updatePerformanceInfoOfLightpath(lp);
+			lps.add(lp);
+		}
+		assertEquals (osm.getOpticalPerformanceAtTransponderReceiverEnd(lps.get(0)).getPower_dbm() , osm.getOpticalPerformanceAtTransponderReceiverEnd(lps.get(2)).getPower_dbm() , 0.0);
+
+		/* reroute one lightpath */
+		lps.get(0).setSeqFibers(Arrays.asList(ac));
+		osm.updatePerformanceInfoOfLightpath(lps.get(0));
+		assertNull (osm.getOpticalPerformanceOfLightpathAtFiberEndsAfterBoosterBeforePreamplifier(ab, lps.get(0)));
+		assertEquals (osm.getOpticalPerformanceAtTransponderReceiverEnd(lps.get(0)).getPower_dbm() , osm.getOpticalPerformanceAtTransponderReceiverEnd(lps.get(1)).getPower_dbm() , 0.0);
+
+		/* remove two lightpaths, one of them with several fibers */
+		final List<WLightpath> lpsToRemove = Arrays.asList(lps.get(1) , lps.get(2));
+		lpsToRemove.forEach(lp->lp.getLightpathRequest().remove());
+		osm.updatePerformanceInfoOfLightpaths(lpsToRemove);
+		assertTrue (osm.isConsistentWithFullRecomputation());
+		assertEquals (osm.getTotalPowerAtFiberEndsAfterBoosterBeforePreamplifier_dBm(ab).getFirst() , 
+				OpticalSimulationModule.linear2dB(ab.getTraversingLps().stream().mapToDouble(lp->dB2linear(osm.getOpticalPerformanceOfLightpathAtFiberEndsAfterBoosterBeforePreamplifier(ab , lp).getFirst().getPower_dbm())).sum ()) , 1e-6);
+	}
+
     public static double dB2linear(double dB)
     {
         return Math.pow(10, dB / 10);
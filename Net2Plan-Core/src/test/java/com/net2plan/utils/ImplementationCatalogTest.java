@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.net2plan.interfaces.networkDesign.IAlgorithm;
+import com.net2plan.interfaces.networkDesign.IMonitorizableElement;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetworkElement;
+import com.net2plan.internal.IExternal;
+import com.net2plan.niw.DefaultStatelessSimulator;
+
+public class ImplementationCatalogTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testReadCompiledClasses() throws IOException
+	{
+		final File folder = temporaryFolder.newFolder();
+		for (Class<?> _class : Arrays.asList(Link.class , NetworkElement.class , DefaultStatelessSimulator.class , IAlgorithm.class))
+			copyClassFile(_class, folder);
+		final ImplementationCatalog catalog = ImplementationCatalog.read(folder);
+		Assert.assertFalse(catalog.isFromIndex());
+
+		/* Abstract classes and interfaces are not in the catalog, but are used to resolve the supertypes */
+		Assert.assertEquals(Arrays.asList(Link.class.getName() , DefaultStatelessSimulator.class.getName()), getClassNames(catalog.getEntries()));
+		final ImplementationCatalog.Entry link = catalog.getEntry(Link.class.getName()).get();
+		Assert.assertEquals(new TreeSet<> (Arrays.asList(NetworkElement.class.getName() , IMonitorizableElement.class.getName() , Comparable.class.getName())), link.getSupertypes());
+		final ImplementationCatalog.Entry simulator = catalog.getEntry(DefaultStatelessSimulator.class.getName()).get();
+		Assert.assertEquals(new TreeSet<> (Arrays.asList(IAlgorithm.class.getName() , IExternal.class.getName())), simulator.getSupertypes());
+		Assert.assertFalse(simulator.getDescription().isPresent());
+		Assert.assertFalse(simulator.getParameters().isPresent());
+		Assert.assertEquals(Arrays.asList(simulator), catalog.getEntries(IExternal.class));
+		Assert.assertEquals(Arrays.asList(link), catalog.getEntries(NetworkElement.class));
+
+		/* The same classes in a jar */
+		final File jarFile = new File (temporaryFolder.getRoot() , "classes.jar");
+		try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile)))
+		{
+			for (Class<?> _class : Arrays.asList(Link.class , NetworkElement.class , DefaultStatelessSimulator.class , IAlgorithm.class))
+			{
+				jar.putNextEntry(new JarEntry(getClassFilePath(_class)));
+				jar.write(getClassFileBytes(_class));
+				jar.closeEntry();
+			}
+		}
+		final ImplementationCatalog jarCatalog = ImplementationCatalog.read(jarFile);
+		Assert.assertEquals(getClassNames(catalog.getEntries()), getClassNames(jarCatalog.getEntries()));
+		Assert.assertEquals(link.getSupertypes(), jarCatalog.getEntry(Link.class.getName()).get().getSupertypes());
+	}
+
+	@Test
+	public void testReadHandWrittenClassFile() throws IOException
+	{
+		final File folder = temporaryFolder.newFolder();
+		Files.write(new File (folder , "B.class").toPath(), createClassFile(0xCAFEBABE , 7 , 2));
+		final ImplementationCatalog catalog = ImplementationCatalog.read(folder);
+		Assert.assertEquals(Arrays.asList("a.B"), getClassNames(catalog.getEntries()));
+		Assert.assertTrue(catalog.getEntries().get(0).getSupertypes().isEmpty());
+	}
+
+	@Test
+	public void testRejectMalformedClassFiles() throws IOException
+	{
+		final byte [] linkClassFile = getClassFileBytes(Link.class);
+		final List<byte []> malformedFiles = Arrays.asList(
+				createClassFile(0xCAFEBABF , 7 , 2), // not a class file
+				createClassFile(0xCAFEBABE , 99 , 2), // unknown constant pool tag
+				createClassFile(0xCAFEBABE , 7 , 1), // this class is an Utf8 entry
+				createClassFile(0xCAFEBABE , 7 , 5), // this class out of the constant pool
+				Arrays.copyOf(linkClassFile, 6), // truncated in the header
+				Arrays.copyOf(linkClassFile, linkClassFile.length / 2), // truncated in the constant pool
+				new byte [0]);
+		for (byte [] malformedFile : malformedFiles)
+		{
+			final File folder = temporaryFolder.newFolder();
+			Files.write(new File (folder , "Malformed.class").toPath(), malformedFile);
+			try
+			{
+				ImplementationCatalog.read(folder);
+				Assert.fail("Malformed class file accepted");
+			}
+			catch (Net2PlanException e)
+			{
+				Assert.assertTrue(e.getMessage(), e.getMessage().contains("Malformed.class"));
+			}
+		}
+	}
+
+	@Test
+	public void testWriteAndReadIndex() throws IOException
+	{
+		final File folder = temporaryFolder.newFolder();
+		for (Class<?> _class : Arrays.asList(Link.class , NetworkElement.class , DefaultStatelessSimulator.class))
+			copyClassFile(_class, folder);
+		final ImplementationCatalog catalogFromHeaders = ImplementationCatalog.read(folder);
+		ImplementationCatalog.main(new String [] { folder.getPath() });
+		final File indexFile = new File (folder , ImplementationCatalog.INDEX_RESOURCENAME);
+		Assert.assertTrue(indexFile.isFile());
+
+		final ImplementationCatalog catalog = ImplementationCatalog.read(folder);
+		Assert.assertTrue(catalog.isFromIndex());
+		Assert.assertEquals(getClassNames(catalogFromHeaders.getEntries()), getClassNames(catalog.getEntries()));
+		for (ImplementationCatalog.Entry e : catalog.getEntries())
+			Assert.assertEquals(catalogFromHeaders.getEntry(e.getClassName()).get().getSupertypes(), e.getSupertypes());
+
+		/* The description and parameters are stored for the IExternal implementations only */
+		final DefaultStatelessSimulator simulator = new DefaultStatelessSimulator();
+		final ImplementationCatalog.Entry simulatorEntry = catalog.getEntry(DefaultStatelessSimulator.class.getName()).get();
+		Assert.assertEquals(simulator.getDescription(), simulatorEntry.getDescription().get());
+		Assert.assertEquals(simulator.getParameters(), simulatorEntry.getParameters().get());
+		Assert.assertFalse(catalog.getEntry(Link.class.getName()).get().getDescription().isPresent());
+		Assert.assertFalse(catalog.getEntry(Link.class.getName()).get().getParameters().isPresent());
+
+		/* Writing the catalog read gives the same file */
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		catalog.write(os);
+		Assert.assertArrayEquals(Files.readAllBytes(indexFile.toPath()), os.toByteArray());
+	}
+
+	/* A class file of class a.B extending nothing, with two constant pool entries: the Utf8 "a/B" (#1) and a Class entry (#2) with the given tag, pointing to #1 */
+	private static byte [] createClassFile (int magic , int classEntryTag , int thisClassIndex) throws IOException
+	{
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bos);
+		out.writeInt(magic);
+		out.writeShort(0); // minor version
+		out.writeShort(52); // major version: Java 8
+		out.writeShort(3); // constant pool count
+		out.writeByte(1); out.writeUTF("a/B");
+		out.writeByte(classEntryTag); out.writeShort(1);
+		out.writeShort(0x0021); // ACC_PUBLIC | ACC_SUPER
+		out.writeShort(thisClassIndex);
+		out.writeShort(0); // no superclass
+		out.writeShort(0); // no interfaces
+		out.flush();
+		return bos.toByteArray();
+	}
+
+	private static List<String> getClassNames (List<ImplementationCatalog.Entry> entries)
+	{
+		return entries.stream().map(e -> e.getClassName()).collect(Collectors.toList());
+	}
+
+	private static String getClassFilePath (Class<?> _class)
+	{
+		return _class.getName().replace('.', '/') + ".class";
+	}
+
+	private static byte [] getClassFileBytes (Class<?> _class) throws IOException
+	{
+		try (InputStream is = _class.getClassLoader().getResourceAsStream(getClassFilePath(_class)))
+		{
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			final byte [] buffer = new byte [4096];
+			for (int numRead = is.read(buffer) ; numRead >= 0 ; numRead = is.read(buffer)) bos.write(buffer, 0, numRead);
+			return bos.toByteArray();
+		}
+	}
+
+	private static void copyClassFile (Class<?> _class , File folder) throws IOException
+	{
+		final File file = new File (folder , getClassFilePath(_class));
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), getClassFileBytes(_class));
+	}
+}
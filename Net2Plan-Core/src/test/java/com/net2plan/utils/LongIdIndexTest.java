@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class LongIdIndexTest
+{
+    @Test
+    public void testBasicOperations()
+    {
+        final LongIdIndex<String> index = new LongIdIndex<>();
+        Assert.assertTrue(index.isEmpty());
+        Assert.assertNull(index.put(5L, "a"));
+        Assert.assertNull(index.put(1L << 40, "b"));
+        Assert.assertEquals("a", index.put(5L, "c"));
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals("c", index.get(5L));
+        Assert.assertNull(index.get(6L));
+        Assert.assertEquals("b", index.remove(1L << 40));
+        Assert.assertNull(index.remove(1L << 40));
+        Assert.assertFalse(index.containsKey(1L << 40));
+        Assert.assertEquals("{5=c}", index.toString());
+        index.clear();
+        Assert.assertTrue(index.isEmpty());
+        Assert.assertNull(index.get(5L));
+    }
+
+    @Test
+    public void testSameContentAsTreeMap()
+    {
+        final Random rng = new Random(1L);
+        final SortedMap<Long, Integer> map = new TreeMap<>();
+        final LongIdIndex<Integer> index = new LongIdIndex<>();
+        for (int op = 0; op < 100000; op++)
+        {
+            final long id = rng.nextInt(3000);
+            final int value = rng.nextInt();
+            if (rng.nextBoolean())
+                Assert.assertEquals(map.put(id, value), index.put(id, value));
+            else
+                Assert.assertEquals(map.remove(id), index.remove(id));
+            Assert.assertEquals(map.size(), index.size());
+        }
+        for (long id = 0; id < 3000; id++)
+            Assert.assertEquals(map.get(id), index.get(id));
+        Assert.assertEquals(map, index.toSortedMap());
+    }
+}
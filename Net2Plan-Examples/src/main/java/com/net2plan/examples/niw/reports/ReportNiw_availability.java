@@ -23,9 +23,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 import com.net2plan.interfaces.networkDesign.Configuration;
@@ -39,6 +43,9 @@ import com.net2plan.interfaces.networkDesign.NetPlan;
 import com.net2plan.interfaces.networkDesign.NetworkElement;
 import com.net2plan.interfaces.networkDesign.NetworkLayer;
 import com.net2plan.interfaces.networkDesign.SharedRiskGroup;
+import com.net2plan.libraries.FailureStateSweepEngine;
+import com.net2plan.libraries.FailureStateSweepEngine.IFailureStateEvaluator;
+import com.net2plan.libraries.FailureStateSweepEngine.ResetMode;
 import com.net2plan.libraries.SRGUtils;
 import com.net2plan.niw.WNet;
 import com.net2plan.niw.WNode;
@@ -68,6 +75,7 @@ public class ReportNiw_availability implements IReport
 	private InputParameter analyzeDoubleFailures = new InputParameter ("analyzeDoubleFailures" , true , "Indicates whether double SRG failures are studied");
 	private InputParameter linkCapacityPlanning_updateLinkCapacitiesInDesign = new InputParameter ("linkCapacityPlanning_updateLinkCapacitiesInDesign" , false , "If true, the link capacities are updated with the fault-tolerant link capacities estimated, removing any previous capacity values");
 	private InputParameter linkCapacityPlanning_maximumLinkUtilization = new InputParameter ("linkCapacityPlanning_maximumLinkUtilization" , 0.9 , "For dimensioning the link capacities: the required capacity of each link is computed as the minimum multiple of the capacity module, that makes that the link utilization is not above this limit an ANY FAILURE OR NON-FAILURE SITUATION, in the two link directions (is bidirectional). This means that in bidirectional links, the link capacity is the same in both directions" , 0 , false , Double.MAX_VALUE , true);
+	private InputParameter numberOfThreads = new InputParameter ("numberOfThreads" , (int) Runtime.getRuntime().availableProcessors() , "Number of failure states evaluated in parallel. Each thread runs its own instance of the algorithm, in its own copy of the design" , 1 , Integer.MAX_VALUE);
 	private InputParameter linkCapacityPlanning_capacityModuleAndCostGbps = new InputParameter ("linkCapacityPlanning_bidirectionalCapacityModuleGbps" , 10.0 , "For dimensioning the link capacities: the required capacity of each link is computed as the minimum multiple of the capacity module, that makes that the link utilization is not above this limit an ANY FAILURE OR NON-FAILURE SITUATION, in the two link directions (is bidirectional). This means that in bidirectional links, the link capacity is the same in both directions" , 0 , false , Double.MAX_VALUE , true);
 	
 	private Map<Long , PerDemandInfo> info_d = new HashMap<> ();
@@ -76,7 +84,6 @@ public class ReportNiw_availability implements IReport
 	private WNet wNet;
 	private double pi_excess;
 
-	private IAlgorithm algorithm_alg;
 	private final static DecimalFormat dfAv = new DecimalFormat("#.#######");
 	private final static DecimalFormat df_6 = new DecimalFormat("#.######");
 	
@@ -109,43 +116,58 @@ public class ReportNiw_availability implements IReport
 		/* Compute state probabilities (pi_s) */
 		final DoubleMatrix1D pi_s = SRGUtils.computeStateProbabilities(F_s , A_f);
 		final double sum_pi_s = pi_s.zSum();
-		final double pi_s0 = pi_s.get(0); 
 		pi_excess = 1 - sum_pi_s;
 
-		/* Initialize statistics variables */
-		for(NetworkLayer layer : netPlan.getNetworkLayers())
-		{
-	    	for (Demand d : netPlan.getDemands(layer)) info_d.put(d.getId() , new PerDemandInfo());
-	    	for (MulticastDemand d : netPlan.getMulticastDemands(layer)) info_md.put(d.getId() , new PerDemandInfo());
-	    	for (Link d : netPlan.getLinks(layer)) info_e.put(d.getId() , new PerLinkInfo());
-		}
-
 		/* the up and oversubscribed links that were set as down, are set to up again */
 		if (!netPlan.getLinksDownAllLayers().isEmpty() || !netPlan.getNodesDown().isEmpty()) throw new RuntimeException ("Bad");
 
-		this.algorithm_alg = ClassLoaderUtils.getInstance(new File(algorithmFile_alg), algorithmName_alg, IAlgorithm.class , null);
-
-		for (int failureState = 0 ; failureState < F_s.rows () ; failureState ++) // first failure state (no failure) was already considered
+		final List<Set<SharedRiskGroup>> failureStates = new ArrayList<> (F_s.rows ());
+		for (int failureState = 0 ; failureState < F_s.rows () ; failureState ++)
 		{
 			final IntArrayList srgs_thisState = new IntArrayList (); 
 			F_s.viewRow (failureState).getNonZeros (srgs_thisState , new DoubleArrayList ());
-			final Set<SharedRiskGroup> srgsThisFs_thisNp = ((ArrayList<Integer>) srgs_thisState.toList()).stream().map(i->netPlan.getSRG(i)).collect(Collectors.toSet ());
-			final double pi_s_thisState = failureState == 0? pi_s0 : pi_s.get (failureState);
+			failureStates.add(((ArrayList<Integer>) srgs_thisState.toList()).stream().map(i->netPlan.getSRG(i)).collect(Collectors.toSet ()));
+		}
 
-			final NetPlan auxNetPlan = testFailureStateAndRunProvisioningAlgorithmAndReturnNpCopy(netPlan , srgsThisFs_thisNp  , algorithmParameters , reportParameters , net2planParameters);
-			
-			for(int indexLayer = 0 ; indexLayer < auxNetPlan.getNumberOfLayers() ; indexLayer ++)
+		/* Each worker thread runs the algorithm in its own copy of the design, with its own algorithm instance */
+		final int numWorkers = Math.min(numberOfThreads.getInt() , failureStates.size());
+		final Queue<IAlgorithm> algorithmInstances = new ConcurrentLinkedQueue<> ();
+		for (int cont = 0 ; cont < numWorkers ; cont ++)
+			algorithmInstances.add(ClassLoaderUtils.getInstance(new File(algorithmFile_alg), algorithmName_alg, IAlgorithm.class , null));
+		final List<IAlgorithm> algorithmInstancesToClose = new ArrayList<> (algorithmInstances);
+		final Supplier<IFailureStateEvaluator<PerFailureStateInfo>> evaluatorPerWorker = () -> 
+		{
+			final IAlgorithm algorithm_alg = algorithmInstances.poll();
+			return (failureState , auxNetPlan) -> 
 			{
-				final NetworkLayer layer = auxNetPlan.getNetworkLayer (indexLayer);
-		    	final SortedMap<Link,SortedMap<String,Pair<Double,Double>>> perLink_qos2occupationAndViolationMap = auxNetPlan.getAllLinksPerQosOccupationAndQosViolationMap(layer);
-		    	for (Demand d : auxNetPlan.getDemands(layer))
-		    		info_d.get(d.getId()).update(d, pi_s_thisState, srgsThisFs_thisNp, perLink_qos2occupationAndViolationMap);
-		    	for (MulticastDemand d : auxNetPlan.getMulticastDemands(layer))
-		    		info_md.get(d.getId()).update(d, pi_s_thisState, srgsThisFs_thisNp, perLink_qos2occupationAndViolationMap);
-		    	for (Link d : auxNetPlan.getLinks(layer))
-		    		info_e.get(d.getId()).update(d, srgsThisFs_thisNp);
-			}
+				algorithm_alg.executeAlgorithm(auxNetPlan , algorithmParameters , net2planParameters);
+				return new PerFailureStateInfo(failureState , auxNetPlan);
+			};
+		};
+
+		/* Per-state results are accumulated as they are produced, each worker in its own maps, merged at the end */
+		final Collector<PerFailureStateInfo , PerNetworkInfo , PerNetworkInfo> aggregator = Collector.of(
+				() -> new PerNetworkInfo(netPlan) , 
+				(info , stateInfo) -> info.update(stateInfo, pi_s.get(stateInfo.failureState), failureStates.get(stateInfo.failureState)) , 
+				(info1 , info2) -> info1.merge(info2) , 
+				Collector.Characteristics.IDENTITY_FINISH);
+		final PerNetworkInfo info;
+		try
+		{
+			info = new FailureStateSweepEngine(netPlan, numberOfThreads.getInt(), ResetMode.FULL).sweepWithEvaluatorPerWorker(failureStates, evaluatorPerWorker, aggregator);
+		}
+		finally
+		{
+			/* Only close the class loader if it is a different one than this class. If problems: just do not close the class loader, and wait for garbage collection*/
+			for (IAlgorithm algorithm_alg : algorithmInstancesToClose)
+				if (!this.getClass().getClassLoader().equals(algorithm_alg.getClass().getClassLoader()))
+				{
+					try { ((Closeable) algorithm_alg.getClass().getClassLoader()).close();	} catch (Throwable e1) { }					
+				}
 		}
+		this.info_d = info.info_d;
+		this.info_md = info.info_md;
+		this.info_e = info.info_e;
 
 		final String report = printReport(netPlan , reportParameters);
 
@@ -402,34 +424,111 @@ public class ReportNiw_availability implements IReport
 		if (highlight) return "<td bgcolor=\"Yellow\">" + st.toString() + "</td>"; else return "<td>" + st.toString() + "</td>";  
 	}
 
-	private class PerDemandInfo
+	private class PerNetworkInfo
 	{
-		private double fractionOkTrafficNoFailure = 0;
-		private double av = 0, surv = 0, wcLatMs = 0.0, wcOversubsGbps = 0.0 , wcBlockingGbps = 0.0;
-		private Set<Set<SharedRiskGroup>> failureStates_wcLat = new HashSet<> () , failureStates_wcOversubs  = new HashSet<> (), failureStates_wcBlocking  = new HashSet<> ();
-		public void update (NetworkElement element ,  double prob , Set<SharedRiskGroup> srgs , SortedMap<Link,SortedMap<String,Pair<Double,Double>>> perLink_qos2occupationAndViolationMap)
+		private final Map<Long , PerDemandInfo> info_d = new HashMap<> ();
+		private final Map<Long , PerDemandInfo> info_md = new HashMap<> ();
+		private final Map<Long , PerLinkInfo> info_e = new HashMap<> ();
+		public PerNetworkInfo (NetPlan np)
+		{
+			for(NetworkLayer layer : np.getNetworkLayers())
+			{
+		    	for (Demand d : np.getDemands(layer)) info_d.put(d.getId() , new PerDemandInfo());
+		    	for (MulticastDemand d : np.getMulticastDemands(layer)) info_md.put(d.getId() , new PerDemandInfo());
+		    	for (Link d : np.getLinks(layer)) info_e.put(d.getId() , new PerLinkInfo());
+			}
+		}
+		public void update (PerFailureStateInfo stateInfo , double prob , Set<SharedRiskGroup> srgs)
+		{
+			stateInfo.info_d.forEach((id , v) -> info_d.get(id).update(v, prob, srgs));
+			stateInfo.info_md.forEach((id , v) -> info_md.get(id).update(v, prob, srgs));
+			stateInfo.occupiedCapacityGbps_e.forEach((id , v) -> info_e.get(id).update(v, srgs));
+		}
+		public PerNetworkInfo merge (PerNetworkInfo other)
+		{
+			other.info_d.forEach((id , v) -> info_d.get(id).merge(v));
+			other.info_md.forEach((id , v) -> info_md.get(id).merge(v));
+			other.info_e.forEach((id , v) -> info_e.get(id).merge(v));
+			return this;
+		}
+	}
+
+	/* The values of one failure state, indexed by element id, so the design copy where they were computed is not referenced */
+	private static class PerFailureStateInfo
+	{
+		private final int failureState;
+		private final Map<Long , PerDemandStateInfo> info_d = new HashMap<> ();
+		private final Map<Long , PerDemandStateInfo> info_md = new HashMap<> ();
+		private final Map<Long , Double> occupiedCapacityGbps_e = new HashMap<> ();
+		public PerFailureStateInfo (int failureState , NetPlan auxNetPlan)
+		{
+			this.failureState = failureState;
+			for(int indexLayer = 0 ; indexLayer < auxNetPlan.getNumberOfLayers() ; indexLayer ++)
+			{
+				final NetworkLayer layer = auxNetPlan.getNetworkLayer (indexLayer);
+		    	final SortedMap<Link,SortedMap<String,Pair<Double,Double>>> perLink_qos2occupationAndViolationMap = auxNetPlan.getAllLinksPerQosOccupationAndQosViolationMap(layer);
+		    	for (Demand d : auxNetPlan.getDemands(layer))
+		    		info_d.put(d.getId(), new PerDemandStateInfo(d, perLink_qos2occupationAndViolationMap));
+		    	for (MulticastDemand d : auxNetPlan.getMulticastDemands(layer))
+		    		info_md.put(d.getId(), new PerDemandStateInfo(d, perLink_qos2occupationAndViolationMap));
+		    	for (Link d : auxNetPlan.getLinks(layer))
+		    		occupiedCapacityGbps_e.put(d.getId(), d.getOccupiedCapacity());
+			}
+		}
+	}
+	private static class PerDemandStateInfo
+	{
+		private final double latMs, oversubsGbps, blockGbps, fractionTrafficOk;
+		private final boolean allTrafficOk;
+		public PerDemandStateInfo (NetworkElement element , SortedMap<Link,SortedMap<String,Pair<Double,Double>>> perLink_qos2occupationAndViolationMap)
 		{
 			if (!((element instanceof Demand) || (element instanceof MulticastDemand))) throw new RuntimeException ();
 			final boolean isDemand = element instanceof Demand;
 			final Demand d = isDemand? (Demand) element : null;
 			final MulticastDemand md = isDemand? null : (MulticastDemand) element;
 			final String qosType = isDemand? d.getQosType() : md.getQosType();
-			final double latMs = isDemand? d.getWorstCasePropagationTimeInMs() : md.getWorseCasePropagationTimeInMs();
-			final double oversubsGbps = (isDemand? d.getTraversedLinksAndCarriedTraffic(false).keySet() : md.getTraversedLinksAndCarriedTraffic(false).keySet()).stream().mapToDouble (e -> perLink_qos2occupationAndViolationMap.get(e).get(qosType).getSecond()).max().orElse(0.0);
-			final double blockGbps = isDemand? d.getBlockedTraffic() : md.getBlockedTraffic();
+			this.latMs = isDemand? d.getWorstCasePropagationTimeInMs() : md.getWorseCasePropagationTimeInMs();
+			this.oversubsGbps = (isDemand? d.getTraversedLinksAndCarriedTraffic(false).keySet() : md.getTraversedLinksAndCarriedTraffic(false).keySet()).stream().mapToDouble (e -> perLink_qos2occupationAndViolationMap.get(e).get(qosType).getSecond()).max().orElse(0.0);
+			this.blockGbps = isDemand? d.getBlockedTraffic() : md.getBlockedTraffic();
 			final boolean okLatency = isDemand? d.getMaximumAcceptableE2EWorstCaseLatencyInMs() + Configuration.precisionFactor > latMs : md.getMaximumAcceptableE2EWorstCaseLatencyInMs() + Configuration.precisionFactor > latMs; 
 			final double trafFullyOkGbps = Math.max(0.0 ,  !okLatency? 0.0 : (isDemand? d.getCarriedTraffic() : md.getCarriedTraffic()) - oversubsGbps);
-			final double fractionTrafficOk = (isDemand? d.getOfferedTraffic() : md.getOfferedTraffic()) < Configuration.precisionFactor? 0.0 : Math.min (1.0 , trafFullyOkGbps /  (isDemand? d.getOfferedTraffic() : md.getOfferedTraffic()));
-			final boolean allTrafficOk = trafFullyOkGbps + Configuration.precisionFactor >= (isDemand? d.getOfferedTraffic(): md.getOfferedTraffic());
-			if (allTrafficOk) av += prob;
-			surv += prob * fractionTrafficOk; 
+			this.fractionTrafficOk = (isDemand? d.getOfferedTraffic() : md.getOfferedTraffic()) < Configuration.precisionFactor? 0.0 : Math.min (1.0 , trafFullyOkGbps /  (isDemand? d.getOfferedTraffic() : md.getOfferedTraffic()));
+			this.allTrafficOk = trafFullyOkGbps + Configuration.precisionFactor >= (isDemand? d.getOfferedTraffic(): md.getOfferedTraffic());
+		}
+	}
+
+	private class PerDemandInfo
+	{
+		private double fractionOkTrafficNoFailure = 0;
+		private boolean noFailureStateEvaluated = false;
+		private double av = 0, surv = 0, wcLatMs = 0.0, wcOversubsGbps = 0.0 , wcBlockingGbps = 0.0;
+		private Set<Set<SharedRiskGroup>> failureStates_wcLat = new HashSet<> () , failureStates_wcOversubs  = new HashSet<> (), failureStates_wcBlocking  = new HashSet<> ();
+		public void update (PerDemandStateInfo stateInfo ,  double prob , Set<SharedRiskGroup> srgs)
+		{
+			final double latMs = stateInfo.latMs;
+			final double oversubsGbps = stateInfo.oversubsGbps;
+			final double blockGbps = stateInfo.blockGbps;
+			if (stateInfo.allTrafficOk) av += prob;
+			surv += prob * stateInfo.fractionTrafficOk; 
 			if (latMs > wcLatMs) { wcLatMs = latMs; failureStates_wcLat = new HashSet<> (Arrays.asList(srgs)); }
 			else if (latMs == wcLatMs) { failureStates_wcLat.add(srgs); }
 			if (oversubsGbps > wcOversubsGbps) { wcOversubsGbps = oversubsGbps; failureStates_wcOversubs = new HashSet<> (Arrays.asList(srgs)); }
 			else if (oversubsGbps == wcOversubsGbps) { failureStates_wcOversubs.add(srgs); }
 			if (blockGbps > wcBlockingGbps) { wcBlockingGbps = blockGbps; failureStates_wcBlocking = new HashSet<> (Arrays.asList(srgs)); }
 			else if (blockGbps == wcBlockingGbps) { failureStates_wcBlocking.add(srgs); }
-			if (srgs.isEmpty()) { fractionOkTrafficNoFailure = fractionTrafficOk; } 
+			if (srgs.isEmpty()) { fractionOkTrafficNoFailure = stateInfo.fractionTrafficOk; noFailureStateEvaluated = true; } 
+		}
+		public void merge (PerDemandInfo other)
+		{
+			av += other.av;
+			surv += other.surv;
+			if (other.wcLatMs > wcLatMs) { wcLatMs = other.wcLatMs; failureStates_wcLat = other.failureStates_wcLat; }
+			else if (other.wcLatMs == wcLatMs) { failureStates_wcLat.addAll(other.failureStates_wcLat); }
+			if (other.wcOversubsGbps > wcOversubsGbps) { wcOversubsGbps = other.wcOversubsGbps; failureStates_wcOversubs = other.failureStates_wcOversubs; }
+			else if (other.wcOversubsGbps == wcOversubsGbps) { failureStates_wcOversubs.addAll(other.failureStates_wcOversubs); }
+			if (other.wcBlockingGbps > wcBlockingGbps) { wcBlockingGbps = other.wcBlockingGbps; failureStates_wcBlocking = other.failureStates_wcBlocking; }
+			else if (other.wcBlockingGbps == wcBlockingGbps) { failureStates_wcBlocking.addAll(other.failureStates_wcBlocking); }
+			if (other.noFailureStateEvaluated) { fractionOkTrafficNoFailure = other.fractionOkTrafficNoFailure; noFailureStateEvaluated = true; } 
 		}
 		public double getAvailability () { return av; }
 		public double getSurvivability () { return surv; }
@@ -445,43 +544,18 @@ public class ReportNiw_availability implements IReport
 	{
 		private double wcOccupiedCapacityGbps = 0;
 		private Set<Set<SharedRiskGroup>> failureStates_wcOccupiedCapacity = new HashSet<> ();
-		public void update (Link e ,  Set<SharedRiskGroup> srgs)
+		public void update (double occupiedCapacityGbps ,  Set<SharedRiskGroup> srgs)
 		{
-			final double occupiedCapacityGbps = e.getOccupiedCapacity();
 			if (occupiedCapacityGbps > wcOccupiedCapacityGbps) { wcOccupiedCapacityGbps = occupiedCapacityGbps; failureStates_wcOccupiedCapacity = new HashSet<> (Arrays.asList(srgs)); }
 			else if (occupiedCapacityGbps == wcOccupiedCapacityGbps) { failureStates_wcOccupiedCapacity.add(srgs); }
 		}
+		public void merge (PerLinkInfo other)
+		{
+			if (other.wcOccupiedCapacityGbps > wcOccupiedCapacityGbps) { wcOccupiedCapacityGbps = other.wcOccupiedCapacityGbps; failureStates_wcOccupiedCapacity = other.failureStates_wcOccupiedCapacity; }
+			else if (other.wcOccupiedCapacityGbps == wcOccupiedCapacityGbps) { failureStates_wcOccupiedCapacity.addAll(other.failureStates_wcOccupiedCapacity); }
+		}
 		public double getWcOccupiedCapacityGbps  () { return wcOccupiedCapacityGbps; }
 		public Set<Set<SharedRiskGroup>> getFailureStates_wcOccupiedCapacity () { return failureStates_wcOccupiedCapacity; }
 	}
 
-	private NetPlan testFailureStateAndRunProvisioningAlgorithmAndReturnNpCopy (NetPlan thisNetPlan , Set<SharedRiskGroup> srgsThisFs_thisNp , Map<String,String> algorithmParameters , Map<String,String> reportParameters , Map<String,String> net2planParameters)
-	{
-		final NetPlan auxNetPlan = thisNetPlan.getNetPlan().copy();
-		for (SharedRiskGroup srgThisNp : srgsThisFs_thisNp)
-		{
-			final SharedRiskGroup srgCopy = auxNetPlan.getSRGFromId(srgThisNp.getId());
-			srgCopy.setAsDown();
-		}
-
-		try
-		{
-			this.algorithm_alg.executeAlgorithm(auxNetPlan , algorithmParameters , net2planParameters);
-		}
-		catch (Throwable e)
-		{
-			try { ((Closeable) algorithm_alg.getClass().getClassLoader()).close();  }
-			catch (Throwable e1) { e.printStackTrace();}					
-			throw (e);
-		}
-		
-		/* Only close the class loader if it is a different one than this class. If problems: just do not close the class loader, and wait for garbage collection*/
-		if (!this.getClass().getClassLoader().equals(algorithm_alg.getClass().getClassLoader()))
-		{
-			try { ((Closeable) algorithm_alg.getClass().getClassLoader()).close();	} catch (Throwable e1) { }					
-		}
-		
-		return auxNetPlan;
-	}
-	
 }
@@ -18,6 +18,7 @@ import com.net2plan.internal.ErrorHandling;
 import com.net2plan.internal.IExternal;
 import com.net2plan.internal.SystemUtils;
 import com.net2plan.utils.ClassLoaderUtils;
+import com.net2plan.utils.ImplementationCatalog;
 import com.net2plan.utils.Pair;
 import com.net2plan.utils.Triple;
 import net.miginfocom.swing.MigLayout;
@@ -260,16 +261,27 @@ public class RunnableSelector extends JPanel {
             if (!f.isAbsolute()) f = new File(SystemUtils.getCurrentDir(), f.getPath());
 
             Map<String, Class> aux_implementations = new TreeMap<String, Class>();
-            List<Class<IExternal>> aux = ClassLoaderUtils.getClassesFromFile(f, IExternal.class , null);
-            for (Class<IExternal> implementation : aux) {
-                Iterator<Class<? extends IExternal>> it = _classes.iterator();
-
-                while (it.hasNext()) {
-                    Class<? extends IExternal> _class = it.next();
-
-                    if (_class.isAssignableFrom(implementation)) {
-                        aux_implementations.put(implementation.getName(), _class);
-                        break;
+            if (f.getName().toLowerCase(Locale.getDefault()).endsWith(".jar")) {
+                /* Jar files: the classes are listed from the jar catalog, and not loaded until one is selected */
+                ImplementationCatalog catalog = ImplementationCatalog.read(f);
+                for (Class<? extends IExternal> _class : _classes) {
+                    for (ImplementationCatalog.Entry entry : catalog.getEntries(_class)) {
+                        if (aux_implementations.containsKey(entry.getClassName())) continue;
+                        aux_implementations.put(entry.getClassName(), _class);
+                    }
+                }
+            } else {
+                List<Class<IExternal>> aux = ClassLoaderUtils.getClassesFromFile(f, IExternal.class , null);
+                for (Class<IExternal> implementation : aux) {
+                    Iterator<Class<? extends IExternal>> it = _classes.iterator();
+
+                    while (it.hasNext()) {
+                        Class<? extends IExternal> _class = it.next();
+
+                        if (_class.isAssignableFrom(implementation)) {
+                            aux_implementations.put(implementation.getName(), _class);
+                            break;
+                        }
                     }
                 }
             }
@@ -737,14 +737,14 @@ public class GUINetworkDesign extends IGUIModule
             pickManager.reset();
             topologyPanel.getCanvas().refresh(); // needed with or w.o. pick, since maybe you unpick with an undo
             topologyPanel.updateTopToolbar();
-            viewEditTopTables.updateView();
+            viewEditTopTables.updateViewAfterPick();
         }
         else
         {
         	pick.applyVisualizationInCurrentDesign();
             topologyPanel.getCanvas().refresh(); // needed with or w.o. pick, since maybe you unpick with an undo
             topologyPanel.updateTopToolbar();
-            viewEditTopTables.updateView();
+            viewEditTopTables.updateViewAfterPick();
 
             final Pair<NetworkElementType,NetworkLayer> typeAndLayerInfo = pick.getElementTypeOfMainElement().orElse(null);
             if (typeAndLayerInfo != null)
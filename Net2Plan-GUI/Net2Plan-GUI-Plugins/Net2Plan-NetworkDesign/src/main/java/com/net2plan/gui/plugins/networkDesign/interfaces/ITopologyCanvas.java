@@ -128,6 +128,7 @@ public interface ITopologyCanvas extends Plugin
 	 * Moves a GUI node to the desired point.
 	 * Th#is method does not change the node's xy coordinates.
 	 * Have in mind that by using this method, the xy coordinates from the table do not equal the coordinates from the topology.
+	 * The region of the canvas affected by the movement is repainted.
 	 *
 	 * @param npNode Node to move.
 	 * @param point  Point to which the node will be moved.
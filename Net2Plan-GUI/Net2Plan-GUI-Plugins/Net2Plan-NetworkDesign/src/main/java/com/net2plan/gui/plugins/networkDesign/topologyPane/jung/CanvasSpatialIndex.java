@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+
+
+package com.net2plan.gui.plugins.networkDesign.topologyPane.jung;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections15.Transformer;
+
+import com.net2plan.utils.Pair;
+
+/**
+ * Uniform grid index of the canvas vertices and edges, in layout coordinates, to find the elements in a region of the canvas without visiting all of them.
+ * Each vertex is stored in the cell of its position, and each edge in the cells covered by the rectangle of its end vertices (or in a list of long edges,
+ * checked in all the queries, if it covers too many cells). The elements are returned in the order of the collections used to build the index,
+ * so the painting order is kept. Moving a vertex updates the index: the moved vertex and its edges leave their cells, and are checked in all the queries,
+ * until there are so many that it is better to build the index again. The index must be built again if the vertices or edges are added or removed.
+ */
+public final class CanvasSpatialIndex
+{
+    private static final int MAXCELLSPERDIMENSION = 512;
+    private static final int MAXCELLSPEREDGE = 64;
+    private static final int AVERAGEVERTICESPERCELL = 4;
+    private static final int MINMOVEDELEMENTSBEFOREREBUILD = 64;
+
+    private final GUINode [] vertices;
+    private final double [] xVertex, yVertex;
+    private final GUILink [] edges;
+    private final double [] minXEdge, minYEdge, maxXEdge, maxYEdge;
+    private final double minX, minY, cellSize;
+    private final int numCellsX, numCellsY;
+    private final int [] cellStartVertices, cellVertices;
+    private final int [] cellStartEdges, cellEdges;
+    private final int [] longEdges;
+    private final boolean [] isLongEdge;
+    private final Map<GUINode,Integer> vertexIndex;
+    private final int [] vertexStartEdges, vertexEdges;
+    private final boolean [] isVertexMoved, isEdgeMoved;
+    private int [] movedVertices, movedEdges;
+    private int numMovedVertices, numMovedEdges;
+    private final int [] edgeQueryStamp;
+    private int queryStamp;
+    private final int maxNumParallelEdges;
+
+    /**
+     * Builds the index
+     * @param vertices the vertices, in painting order
+     * @param edges the edges, in painting order. Their end vertices must be in the vertices collection
+     * @param vertexPosition the position of each vertex in layout coordinates
+     */
+    public CanvasSpatialIndex (Collection<GUINode> vertices , Collection<GUILink> edges , Transformer<GUINode , Point2D> vertexPosition)
+    {
+        this.vertices = vertices.toArray(new GUINode [vertices.size()]);
+        this.edges = edges.toArray(new GUILink [edges.size()]);
+        final int V = this.vertices.length;
+        final int E = this.edges.length;
+        this.xVertex = new double [V];
+        this.yVertex = new double [V];
+        this.vertexIndex = new IdentityHashMap<> ();
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int v = 0; v < V; v++)
+        {
+            final Point2D p = vertexPosition.transform(this.vertices [v]);
+            xVertex [v] = p.getX();
+            yVertex [v] = p.getY();
+            vertexIndex.put(this.vertices [v], v);
+            minX = Math.min(minX, xVertex [v]); maxX = Math.max(maxX, xVertex [v]);
+            minY = Math.min(minY, yVertex [v]); maxY = Math.max(maxY, yVertex [v]);
+        }
+        if (V == 0) { minX = 0; minY = 0; maxX = 0; maxY = 0; }
+        this.minX = minX;
+        this.minY = minY;
+
+        /* Cells sized to have a few vertices each in average, with a bounded number of cells */
+        final double width = maxX - minX, height = maxY - minY;
+        final double areaPerCell = (width * height > 0 ? width * height : Math.max(width, height)) * AVERAGEVERTICESPERCELL / Math.max(1, V);
+        double cellSize = width * height > 0 ? Math.sqrt(areaPerCell) : areaPerCell;
+        cellSize = Math.max(cellSize, Math.max(width, height) / (MAXCELLSPERDIMENSION - 1));
+        if (!(cellSize > 0)) cellSize = 1;
+        this.cellSize = cellSize;
+        this.numCellsX = Math.min(MAXCELLSPERDIMENSION, (int) (width / cellSize) + 1);
+        this.numCellsY = Math.min(MAXCELLSPERDIMENSION, (int) (height / cellSize) + 1);
+
+        /* Vertices per cell, in compressed form */
+        final int [] cellOfVertex = new int [V];
+        this.cellStartVertices = new int [numCellsX * numCellsY + 1];
+        for (int v = 0; v < V; v++)
+        {
+            cellOfVertex [v] = getCellX(xVertex [v]) * numCellsY + getCellY(yVertex [v]);
+            cellStartVertices [cellOfVertex [v] + 1]++;
+        }
+        for (int c = 0; c < numCellsX * numCellsY; c++) cellStartVertices [c + 1] += cellStartVertices [c];
+        this.cellVertices = new int [V];
+        final int [] fillPosition = Arrays.copyOf(cellStartVertices, cellStartVertices.length);
+        for (int v = 0; v < V; v++) cellVertices [fillPosition [cellOfVertex [v]]++] = v;
+
+        /* Edges per cell, using the rectangle of its end vertices */
+        this.minXEdge = new double [E];
+        this.minYEdge = new double [E];
+        this.maxXEdge = new double [E];
+        this.maxYEdge = new double [E];
+        final Map<Pair<GUINode,GUINode>,Integer> numEdgesPerVertexPair = new HashMap<> ();
+        final List<Integer> longEdges = new ArrayList<> ();
+        this.isLongEdge = new boolean [E];
+        this.vertexStartEdges = new int [V + 1];
+        this.cellStartEdges = new int [numCellsX * numCellsY + 1];
+        int maxNumParallelEdges = 0;
+        for (int e = 0; e < E; e++)
+        {
+            final int a = vertexIndex.get(this.edges [e].getOriginNode());
+            final int b = vertexIndex.get(this.edges [e].getDestinationNode());
+            vertexStartEdges [a + 1]++;
+            if (b != a) vertexStartEdges [b + 1]++;
+            minXEdge [e] = Math.min(xVertex [a], xVertex [b]); maxXEdge [e] = Math.max(xVertex [a], xVertex [b]);
+            minYEdge [e] = Math.min(yVertex [a], yVertex [b]); maxYEdge [e] = Math.max(yVertex [a], yVertex [b]);
+            final int numCells = (getCellX(maxXEdge [e]) - getCellX(minXEdge [e]) + 1) * (getCellY(maxYEdge [e]) - getCellY(minYEdge [e]) + 1);
+            if (numCells > MAXCELLSPEREDGE) { isLongEdge [e] = true; longEdges.add(e); }
+            else
+                for (int cx = getCellX(minXEdge [e]); cx <= getCellX(maxXEdge [e]); cx++)
+                    for (int cy = getCellY(minYEdge [e]); cy <= getCellY(maxYEdge [e]); cy++)
+                        cellStartEdges [cx * numCellsY + cy + 1]++;
+            maxNumParallelEdges = Math.max(maxNumParallelEdges, numEdgesPerVertexPair.merge(Pair.of(this.edges [e].getOriginNode(), this.edges [e].getDestinationNode()), 1, Integer::sum));
+        }
+        this.maxNumParallelEdges = maxNumParallelEdges;
+        for (int c = 0; c < numCellsX * numCellsY; c++) cellStartEdges [c + 1] += cellStartEdges [c];
+        this.cellEdges = new int [cellStartEdges [numCellsX * numCellsY]];
+        final int [] fillPositionEdges = Arrays.copyOf(cellStartEdges, cellStartEdges.length);
+        for (int e = 0; e < E; e++)
+        {
+            if (isLongEdge [e]) continue;
+            for (int cx = getCellX(minXEdge [e]); cx <= getCellX(maxXEdge [e]); cx++)
+                for (int cy = getCellY(minYEdge [e]); cy <= getCellY(maxYEdge [e]); cy++)
+                    cellEdges [fillPositionEdges [cx * numCellsY + cy]++] = e;
+        }
+        this.longEdges = longEdges.stream().mapToInt(e -> e).toArray();
+        this.edgeQueryStamp = new int [E];
+        this.queryStamp = 0;
+
+        /* Edges of each vertex, to update them when the vertex moves */
+        for (int v = 0; v < V; v++) vertexStartEdges [v + 1] += vertexStartEdges [v];
+        this.vertexEdges = new int [vertexStartEdges [V]];
+        final int [] fillPositionVertexEdges = Arrays.copyOf(vertexStartEdges, vertexStartEdges.length);
+        for (int e = 0; e < E; e++)
+        {
+            final int a = vertexIndex.get(this.edges [e].getOriginNode());
+            final int b = vertexIndex.get(this.edges [e].getDestinationNode());
+            vertexEdges [fillPositionVertexEdges [a]++] = e;
+            if (b != a) vertexEdges [fillPositionVertexEdges [b]++] = e;
+        }
+        this.isVertexMoved = new boolean [V];
+        this.isEdgeMoved = new boolean [E];
+        this.movedVertices = new int [0];
+        this.movedEdges = new int [0];
+    }
+
+    /**
+     * Updates the index after a vertex is moved. The moved vertex and its edges are checked in all the queries from now on, so the index
+     * becomes slower as more vertices are moved
+     * @param vertex the vertex
+     * @param position the new position in layout coordinates
+     * @return {@code false} if the vertex is not in the index, or if so many elements were moved that it is faster to build the index again
+     */
+    public boolean moveVertex (GUINode vertex , Point2D position)
+    {
+        final Integer vIndex = vertexIndex.get(vertex);
+        if (vIndex == null) return false;
+        final int v = vIndex;
+        xVertex [v] = position.getX();
+        yVertex [v] = position.getY();
+        if (!isVertexMoved [v])
+        {
+            isVertexMoved [v] = true;
+            if (numMovedVertices == movedVertices.length) movedVertices = Arrays.copyOf(movedVertices, 2 * numMovedVertices + 1);
+            movedVertices [numMovedVertices++] = v;
+        }
+        for (int k = vertexStartEdges [v]; k < vertexStartEdges [v + 1]; k++)
+        {
+            final int e = vertexEdges [k];
+            final int a = vertexIndex.get(edges [e].getOriginNode());
+            final int b = vertexIndex.get(edges [e].getDestinationNode());
+            minXEdge [e] = Math.min(xVertex [a], xVertex [b]); maxXEdge [e] = Math.max(xVertex [a], xVertex [b]);
+            minYEdge [e] = Math.min(yVertex [a], yVertex [b]); maxYEdge [e] = Math.max(yVertex [a], yVertex [b]);
+            /* The long edges are already checked in all the queries */
+            if (isLongEdge [e] || isEdgeMoved [e]) continue;
+            isEdgeMoved [e] = true;
+            if (numMovedEdges == movedEdges.length) movedEdges = Arrays.copyOf(movedEdges, 2 * numMovedEdges + 1);
+            movedEdges [numMovedEdges++] = e;
+        }
+        return numMovedVertices + numMovedEdges <= Math.max(MINMOVEDELEMENTSBEFOREREBUILD, (vertices.length + edges.length) / 8);
+    }
+
+    /**
+     * Returns the vertices whose position is inside the given region, in painting order
+     * @param regionInLayoutCoord the region in layout coordinates
+     * @return see above
+     */
+    public List<GUINode> getVertices (Rectangle2D regionInLayoutCoord)
+    {
+        final int [] res = new int [vertices.length];
+        int num = 0;
+        final int cx1 = getCellX(regionInLayoutCoord.getMinX()), cx2 = getCellX(regionInLayoutCoord.getMaxX());
+        final int cy1 = getCellY(regionInLayoutCoord.getMinY()), cy2 = getCellY(regionInLayoutCoord.getMaxY());
+        for (int cx = cx1; cx <= cx2; cx++)
+            for (int cy = cy1; cy <= cy2; cy++)
+            {
+                final int cell = cx * numCellsY + cy;
+                for (int k = cellStartVertices [cell]; k < cellStartVertices [cell + 1]; k++)
+                {
+                    final int v = cellVertices [k];
+                    if (isVertexMoved [v]) continue;
+                    if (regionInLayoutCoord.contains(xVertex [v], yVertex [v])) res [num++] = v;
+                }
+            }
+        for (int k = 0; k < numMovedVertices; k++)
+        {
+            final int v = movedVertices [k];
+            if (regionInLayoutCoord.contains(xVertex [v], yVertex [v])) res [num++] = v;
+        }
+        Arrays.sort(res, 0, num);
+        final List<GUINode> list = new ArrayList<> (num);
+        for (int k = 0; k < num; k++) list.add(vertices [res [k]]);
+        return list;
+    }
+
+    /**
+     * Returns the edges whose rectangle of end vertices intersects the given region, in painting order. Curved edges
+     * can go out of this rectangle, so the caller should enlarge the region to account for it
+     * @param regionInLayoutCoord the region in layout coordinates
+     * @return see above
+     */
+    public List<GUILink> getEdges (Rectangle2D regionInLayoutCoord)
+    {
+        if (++queryStamp == Integer.MAX_VALUE) { Arrays.fill(edgeQueryStamp, 0); queryStamp = 1; }
+        final int [] res = new int [edges.length];
+        int num = 0;
+        final int cx1 = getCellX(regionInLayoutCoord.getMinX()), cx2 = getCellX(regionInLayoutCoord.getMaxX());
+        final int cy1 = getCellY(regionInLayoutCoord.getMinY()), cy2 = getCellY(regionInLayoutCoord.getMaxY());
+        for (int cx = cx1; cx <= cx2; cx++)
+            for (int cy = cy1; cy <= cy2; cy++)
+            {
+                final int cell = cx * numCellsY + cy;
+                for (int k = cellStartEdges [cell]; k < cellStartEdges [cell + 1]; k++)
+                {
+                    final int e = cellEdges [k];
+                    if (isEdgeMoved [e] || edgeQueryStamp [e] == queryStamp) continue;
+                    edgeQueryStamp [e] = queryStamp;
+                    if (isEdgeRectangleIntersecting(e, regionInLayoutCoord)) res [num++] = e;
+                }
+            }
+        for (int e : longEdges)
+            if (isEdgeRectangleIntersecting(e, regionInLayoutCoord)) res [num++] = e;
+        for (int k = 0; k < numMovedEdges; k++)
+            if (isEdgeRectangleIntersecting(movedEdges [k], regionInLayoutCoord)) res [num++] = movedEdges [k];
+        Arrays.sort(res, 0, num);
+        final List<GUILink> list = new ArrayList<> (num);
+        for (int k = 0; k < num; k++) list.add(edges [res [k]]);
+        return list;
+    }
+
+    /**
+     * Returns the maximum number of edges between the same pair of vertices, in the same direction
+     * @return see above
+     */
+    public int getMaxNumberOfParallelEdges ()
+    {
+        return maxNumParallelEdges;
+    }
+
+    private boolean isEdgeRectangleIntersecting (int e, Rectangle2D r)
+    {
+        return maxXEdge [e] >= r.getMinX() && minXEdge [e] <= r.getMaxX() && maxYEdge [e] >= r.getMinY() && minYEdge [e] <= r.getMaxY();
+    }
+
+    private int getCellX (double x)
+    {
+        return (int) Math.max(0, Math.min(numCellsX - 1, Math.floor((x - minX) / cellSize)));
+    }
+
+    private int getCellY (double y)
+    {
+        return (int) Math.max(0, Math.min(numCellsY - 1, Math.floor((y - minY) / cellSize)));
+    }
+}
@@ -43,6 +43,7 @@ public class GUILink
     private BasicStroke edgeStrokeIfNotActiveLayer;
     private Paint edgeDrawPaint;
     private boolean shownSeparated;
+    private Paint cache_edgeDrawPaint;
 //    private boolean overrideLinkColoringByUtilizationOrRunOut;
     
     
@@ -107,7 +108,21 @@ public class GUILink
         return npLink.getNetPlan().getNetworkLayerDefault() == npLink.getLayer()? edgeStrokeIfActiveLayer : edgeStrokeIfNotActiveLayer;
     }
 
+    /**
+     * Forgets the draw paint computed for the link, so it is computed again (from the link state and the visualization options) the next time it is painted
+     */
+    public void invalidateStyle()
+    {
+        this.cache_edgeDrawPaint = null;
+    }
+
     public Paint getEdgeDrawPaint()
+    {
+        if (cache_edgeDrawPaint == null) cache_edgeDrawPaint = computeEdgeDrawPaint();
+        return cache_edgeDrawPaint;
+    }
+
+    private Paint computeEdgeDrawPaint()
     {
     	if (npLink == null) return edgeDrawPaint;
     	if (!npLink.isUp()) return Color.RED;
@@ -134,11 +149,12 @@ public class GUILink
 
     public void setEdgeDrawPaint(Paint drawPaint) {
         this.edgeDrawPaint = drawPaint;
+        invalidateStyle();
     }
 
     public boolean isShownSeparated () { return shownSeparated; }
 
-    public void setShownSeparated (boolean shownSeparated) { this.shownSeparated = shownSeparated; }
+    public void setShownSeparated (boolean shownSeparated) { this.shownSeparated = shownSeparated; invalidateStyle(); }
 
     public BasicStroke getEdgeStroke()
     {
@@ -38,6 +38,7 @@ public class GUINode
     private Font font;
     private Paint borderPaint, fillPaint;
     private double iconHeightIfNotActive;
+    private Icon cache_icon;
 
 
     /**
@@ -76,6 +77,7 @@ public class GUINode
     public void setIconHeightInNonActiveLayer(double sizeNonActiveLayer)
     {
         this.iconHeightIfNotActive = sizeNonActiveLayer;
+        invalidateStyle();
     }
 
     public Paint getBorderPaint()
@@ -86,6 +88,7 @@ public class GUINode
     public void setBorderPaint(Paint p)
     {
         this.borderPaint = p;
+        invalidateStyle();
     }
 
     public Paint getFillPaint()
@@ -96,6 +99,7 @@ public class GUINode
     public void setFillPaint(Paint p)
     {
         this.fillPaint = p;
+        invalidateStyle();
     }
 
     public void setFont(Font f)
@@ -121,7 +125,21 @@ public class GUINode
         font = new Font("Helvetica", Font.BOLD, font.getSize() + 1);
     }
 
+    /**
+     * Forgets the icon computed for the node, so it is computed again (from the node state and the visualization options) the next time it is painted
+     */
+    public void invalidateStyle()
+    {
+        this.cache_icon = null;
+    }
+
     public Icon getIcon()
+    {
+        if (cache_icon == null) cache_icon = computeIcon();
+        return cache_icon;
+    }
+
+    private Icon computeIcon()
     {
         URL url = npNode.getUrlNodeIcon(layer);
 //        System.out.println("Node: " + this.getAssociatedNode() + " url1 " + url);
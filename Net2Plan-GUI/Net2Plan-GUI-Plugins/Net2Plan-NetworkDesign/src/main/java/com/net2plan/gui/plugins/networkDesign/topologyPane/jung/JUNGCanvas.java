@@ -38,7 +38,9 @@ import edu.uci.ics.jung.visualization.VisualizationViewer;
 import edu.uci.ics.jung.visualization.control.*;
 import edu.uci.ics.jung.visualization.decorators.ConstantDirectionalEdgeValueTransformer;
 import edu.uci.ics.jung.visualization.decorators.EdgeShape;
+import edu.uci.ics.jung.visualization.picking.ShapePickSupport;
 import edu.uci.ics.jung.visualization.renderers.BasicEdgeLabelRenderer;
+import edu.uci.ics.jung.visualization.renderers.BasicRenderer;
 import edu.uci.ics.jung.visualization.renderers.BasicVertexLabelRenderer;
 import edu.uci.ics.jung.visualization.renderers.DefaultEdgeLabelRenderer;
 import edu.uci.ics.jung.visualization.renderers.Renderer;
@@ -80,6 +82,17 @@ public final class JUNGCanvas implements ITopologyCanvas
 
     private final CanvasStateController stateController;
 
+    /* Grid index of the vertex and edge positions, built again when the vertices move, and the visibility and edge index caches,
+     * cleared when the canvas is refreshed (e.g. the design or the visualization options changed) */
+    private CanvasSpatialIndex spatialIndex;
+    private final Map<GUINode, Boolean> cache_vertexVisibleInCanvas = new HashMap<>();
+    private final Map<GUILink, Boolean> cache_edgeVisibleInCanvas = new HashMap<>();
+    private final Map<GUILink, Integer> cache_separatedEdgeIndex = new HashMap<>();
+
+    private static final int VERTEXMARGININPIXELS = 200;
+    private static final int EDGEMARGININPIXELS = 30;
+    private static final int CURVEDEDGECONTROLOFFSETINCREMENT = 10;
+
     /**
      * Default constructor.
      *
@@ -108,13 +121,30 @@ public final class JUNGCanvas implements ITopologyCanvas
         };
 
         g = new DirectedOrderedSparseMultigraph<>();
-        l = new StaticLayout<>(g, transformNetPlanCoordinatesToJungCoordinates); 
+        l = new StaticLayout<GUINode, GUILink>(g, transformNetPlanCoordinatesToJungCoordinates)
+        {
+            @Override
+            public void setLocation(GUINode vertex, Point2D location)
+            {
+                super.setLocation(vertex, location);
+                updateSpatialIndexAfterVertexMove(vertex);
+            }
+
+            @Override
+            public void setLocation(GUINode vertex, double x, double y)
+            {
+                super.setLocation(vertex, x, y);
+                updateSpatialIndexAfterVertexMove(vertex);
+            }
+        };
         vv = new VisualizationViewer<>(l);
+        vv.setRenderer(new ViewportRenderer());
+        vv.setPickSupport(new IndexedPickSupport(vv));
 
         stateController = new CanvasStateController(callback, topologyPanel, this);
 
         originalEdgeShapeTransformer = new EdgeShape.QuadCurve<>();
-        ((EdgeShape.QuadCurve<GUINode, GUILink>) originalEdgeShapeTransformer).setControlOffsetIncrement(10); // how much they separate from the direct line (default is 20)
+        ((EdgeShape.QuadCurve<GUINode, GUILink>) originalEdgeShapeTransformer).setControlOffsetIncrement(CURVEDEDGECONTROLOFFSETINCREMENT); // how much they separate from the direct line (default is 20)
         //((EdgeShape.QuadCurve<GUINode, GUILink>) originalEdgeShapeTransformer).setEdgeIndexFunction(DefaultParallelEdgeIndexFunction.<GUINode, GUILink>getInstance()); // how much they separate from the direct line (default is 20)
         /* This functions gives an index to the links to show separate (curved): the order among the parallel links (BUT NOW only among the separated ones among them) */
         ((EdgeShape.QuadCurve<GUINode, GUILink>) originalEdgeShapeTransformer).setEdgeIndexFunction(new EdgeIndexFunction<GUINode,GUILink>()
@@ -123,6 +153,8 @@ public final class JUNGCanvas implements ITopologyCanvas
         	public void reset() {}
         	public int getIndex(Graph<GUINode,GUILink> graph, GUILink e) 
         	{
+        		final Integer cachedIndex = cache_separatedEdgeIndex.get(e);
+        		if (cachedIndex != null) return cachedIndex;
         		final GUINode u = e.getOriginNode();
         		final GUINode v = e.getDestinationNode();
             	final HashSet<GUILink> commonEdgeSet = new HashSet<>(graph.getInEdges(v));
@@ -130,11 +162,10 @@ public final class JUNGCanvas implements ITopologyCanvas
             	commonEdgeSet.removeIf(ee->!ee.isShownSeparated());
             	int count=0;
             	for(GUILink other : commonEdgeSet) 
-            		if (other == e)
-            			return count;
-            		else
-            			count ++;
-            	throw new RuntimeException();
+            		cache_separatedEdgeIndex.put(other, count ++);
+            	final Integer index = cache_separatedEdgeIndex.get(e);
+            	if (index == null) throw new RuntimeException();
+            	return index;
         	}
 		});
 		/* Customize the graph */
@@ -144,13 +175,13 @@ public final class JUNGCanvas implements ITopologyCanvas
 
         vv.getRenderContext().setVertexIconTransformer(gn -> gn.getIcon()); 
 
-        vv.getRenderContext().setVertexIncludePredicate(guiNodeContext -> callback.getVisualizationState().isVisibleInCanvas(guiNodeContext.element));
+        vv.getRenderContext().setVertexIncludePredicate(guiNodeContext -> isVisibleInCanvas(guiNodeContext.element));
         vv.getRenderer().setVertexLabelRenderer(new NodeLabelRenderer());
         vv.setVertexToolTipTransformer(node -> node.getToolTip());
 
 
-        vv.getRenderContext().setEdgeIncludePredicate(context -> callback.getVisualizationState().isVisibleInCanvas(context.element));
-        vv.getRenderContext().setEdgeArrowPredicate(context -> callback.getVisualizationState().isVisibleInCanvas(context.element) && context.element.getHasArrow());
+        vv.getRenderContext().setEdgeIncludePredicate(context -> isVisibleInCanvas(context.element));
+        vv.getRenderContext().setEdgeArrowPredicate(context -> isVisibleInCanvas(context.element) && context.element.getHasArrow());
         vv.getRenderContext().setEdgeArrowStrokeTransformer(i -> i.getStroke());
         vv.getRenderContext().setEdgeArrowTransformer(new ConstantTransformer(ArrowFactory.getNotchedArrow(7, 10, 5)));
         vv.getRenderContext().setEdgeLabelClosenessTransformer(new ConstantDirectionalEdgeValueTransformer(.6, .6));
@@ -307,9 +338,63 @@ public final class JUNGCanvas implements ITopologyCanvas
     @Override
     public void refresh()
     {
+        invalidateStyles();
         vv.repaint();
     }
 
+    /* The design or the visualization options may have changed: the styles of all the elements are computed again when painted */
+    private void invalidateStyles()
+    {
+        cache_vertexVisibleInCanvas.clear();
+        cache_edgeVisibleInCanvas.clear();
+        cache_separatedEdgeIndex.clear();
+        for (GUINode gn : g.getVertices()) gn.invalidateStyle();
+        for (GUILink gl : g.getEdges()) gl.invalidateStyle();
+    }
+
+    private boolean isVisibleInCanvas(GUINode gn)
+    {
+        return cache_vertexVisibleInCanvas.computeIfAbsent(gn, n -> callback.getVisualizationState().isVisibleInCanvas(n));
+    }
+
+    private boolean isVisibleInCanvas(GUILink gl)
+    {
+        return cache_edgeVisibleInCanvas.computeIfAbsent(gl, e -> callback.getVisualizationState().isVisibleInCanvas(e));
+    }
+
+    private CanvasSpatialIndex getSpatialIndex()
+    {
+        if (spatialIndex == null) spatialIndex = new CanvasSpatialIndex(g.getVertices(), g.getEdges(), l);
+        return spatialIndex;
+    }
+
+    /* The index is updated with the new position, or built again in the next query if too many vertices were moved */
+    private void updateSpatialIndexAfterVertexMove(GUINode vertex)
+    {
+        if (spatialIndex != null && !spatialIndex.moveVertex(vertex, l.transform(vertex))) spatialIndex = null;
+    }
+
+    /* Converts a region in screen coordinates to layout coordinates, after enlarging it in the given number of pixels in each direction */
+    private Rectangle2D getLayoutRegionFromScreenRegion(Rectangle2D screenRegion, double marginInPixels)
+    {
+        final Shape regionAfterLayoutTransform = vv.getRenderContext().getMultiLayerTransformer().inverseTransform(Layer.VIEW, screenRegion);
+        return getLayoutRegion(regionAfterLayoutTransform.getBounds2D(), marginInPixels);
+    }
+
+    /* Converts a region in the coordinates the layout transform produces (the ones of the canvas graphics when painting), to layout coordinates,
+     * after enlarging it in the given number of pixels in each direction */
+    private Rectangle2D getLayoutRegion(Rectangle2D regionAfterLayoutTransform, double marginInPixels)
+    {
+        final Rectangle2D enlargedRegion = new Rectangle2D.Double(regionAfterLayoutTransform.getX() - marginInPixels, regionAfterLayoutTransform.getY() - marginInPixels,
+                regionAfterLayoutTransform.getWidth() + 2 * marginInPixels, regionAfterLayoutTransform.getHeight() + 2 * marginInPixels);
+        return vv.getRenderContext().getMultiLayerTransformer().inverseTransform(Layer.LAYOUT, enlargedRegion).getBounds2D();
+    }
+
+    private double getEdgeMarginInPixels()
+    {
+        return EDGEMARGININPIXELS + CURVEDEDGECONTROLOFFSETINCREMENT * getSpatialIndex().getMaxNumberOfParallelEdges();
+    }
+
     @Override
     public void cleanSelection()
     {
@@ -328,6 +413,7 @@ public final class JUNGCanvas implements ITopologyCanvas
         for (GUINode gn : callback.getVisualizationState().getCanvasAllGUINodes()) g.addVertex(gn);
         for (GUILink gl : callback.getVisualizationState().getCanvasAllGUILinks(true, true))
             g.addEdge(gl, gl.getOriginNode(), gl.getDestinationNode());
+        spatialIndex = null;
 
         updateAllVerticesXYPosition();
         refresh();
@@ -348,7 +434,23 @@ public final class JUNGCanvas implements ITopologyCanvas
     @Override
     public void moveVertexToXYPosition(GUINode npNode, Point2D point)
     {
+        /* Only the region covered by the vertex and its edges, before and after the movement, is painted again */
+        final Rectangle2D dirtyRegion = getScreenRegionOfVertexAndIncidentEdges(npNode);
         l.setLocation(npNode, point);
+        if (dirtyRegion == null) return;
+        dirtyRegion.add(getScreenRegionOfVertexAndIncidentEdges(npNode));
+        final double margin = Math.max(VERTEXMARGININPIXELS, getEdgeMarginInPixels());
+        vv.repaint(new Rectangle2D.Double(dirtyRegion.getX() - margin, dirtyRegion.getY() - margin, dirtyRegion.getWidth() + 2 * margin, dirtyRegion.getHeight() + 2 * margin).getBounds());
+    }
+
+    private Rectangle2D getScreenRegionOfVertexAndIncidentEdges(GUINode gn)
+    {
+        if (!g.containsVertex(gn)) return null;
+        final Point2D position = vv.getRenderContext().getMultiLayerTransformer().transform(l.transform(gn));
+        final Rectangle2D res = new Rectangle2D.Double(position.getX(), position.getY(), 0, 0);
+        for (GUINode neighbor : g.getNeighbors(gn))
+            res.add(vv.getRenderContext().getMultiLayerTransformer().transform(l.transform(neighbor)));
+        return res;
     }
 
     @Override
@@ -445,7 +547,7 @@ public final class JUNGCanvas implements ITopologyCanvas
         @Override
         public void labelVertex(RenderContext<GUINode, GUILink> rc, Layout<GUINode, GUILink> layout, GUINode v, String label)
         {
-            if (!callback.getVisualizationState().isVisibleInCanvas(v)) return;
+            if (!isVisibleInCanvas(v)) return;
             VisualizationState vs = callback.getVisualizationState();
 
             if(v.getLayer().isDefaultLayer())
@@ -519,6 +621,109 @@ public final class JUNGCanvas implements ITopologyCanvas
         }
     }
 
+    /**
+     * Paints only the vertices and edges in the region being painted (the canvas or the region Swing asks to repaint), found with the spatial index.
+     * When the visible nodes are too dense in the canvas, labels are not painted, and with even more density, nodes are painted as small squares instead of icons
+     */
+    private class ViewportRenderer extends BasicRenderer<GUINode, GUILink>
+    {
+        @Override
+        public void render(RenderContext<GUINode, GUILink> rc, Layout<GUINode, GUILink> layout)
+        {
+            final CanvasSpatialIndex index = getSpatialIndex();
+            final Rectangle clip = rc.getGraphicsContext().getClipBounds();
+            final Rectangle2D paintedRegion = clip != null ? clip : vv.getRenderContext().getMultiLayerTransformer().inverseTransform(Layer.VIEW, new Rectangle(0, 0, vv.getWidth(), vv.getHeight())).getBounds2D();
+
+            /* The level of detail depends on the density of nodes in all the canvas, not only in the painted region, so all the canvas looks the same */
+            final Rectangle2D canvasRegionInLayoutCoord = getLayoutRegionFromScreenRegion(new Rectangle(0, 0, vv.getWidth(), vv.getHeight()), 0);
+            int numVisibleVerticesInCanvas = 0;
+            for (GUINode v : index.getVertices(canvasRegionInLayoutCoord))
+                if (isVisibleInCanvas(v)) numVisibleVerticesInCanvas++;
+            final double pixels2PerVisibleVertex = vv.getWidth() * (double) vv.getHeight() / Math.max(1, numVisibleVerticesInCanvas);
+            final boolean showLabels = pixels2PerVisibleVertex >= VisualizationConstants.CANVAS_MINPIXELS2PERVISIBLENODE_SHOWLABELS;
+            final boolean showIcons = pixels2PerVisibleVertex >= VisualizationConstants.CANVAS_MINPIXELS2PERVISIBLENODE_SHOWICONS;
+
+            for (GUILink e : index.getEdges(getLayoutRegion(paintedRegion, getEdgeMarginInPixels())))
+            {
+                renderEdge(rc, layout, e);
+                if (showLabels) renderEdgeLabel(rc, layout, e);
+            }
+            for (GUINode v : index.getVertices(getLayoutRegion(paintedRegion, VERTEXMARGININPIXELS)))
+            {
+                if (showIcons) renderVertex(rc, layout, v);
+                else paintVertexAsSquare(rc, layout, v);
+                if (showLabels) renderVertexLabel(rc, layout, v);
+            }
+        }
+
+        private void paintVertexAsSquare(RenderContext<GUINode, GUILink> rc, Layout<GUINode, GUILink> layout, GUINode v)
+        {
+            if (!isVisibleInCanvas(v)) return;
+            final Point2D position = rc.getMultiLayerTransformer().transform(Layer.LAYOUT, layout.transform(v));
+            final double size = VisualizationConstants.CANVAS_LOWDETAIL_NODESIZEINPIXELS * (v.getLayer().isDefaultLayer() ? VisualizationConstants.INCREASENODESIZEFACTORACTIVE : 1);
+            final GraphicsDecorator g = rc.getGraphicsContext();
+            final Paint oldPaint = g.getPaint();
+            g.setPaint(v.getFillPaint());
+            g.fill(new Rectangle2D.Double(position.getX() - size / 2, position.getY() - size / 2, size, size));
+            g.setPaint(oldPaint);
+        }
+    }
+
+    /**
+     * Picks vertices and edges checking only the ones close to the picked point or region, found with the spatial index
+     */
+    private class IndexedPickSupport extends ShapePickSupport<GUINode, GUILink>
+    {
+        private Collection<GUINode> candidateVertices = null;
+        private Collection<GUILink> candidateEdges = null;
+
+        IndexedPickSupport(VisualizationViewer<GUINode, GUILink> vv)
+        {
+            super(vv);
+        }
+
+        @Override
+        public GUINode getVertex(Layout<GUINode, GUILink> layout, double x, double y)
+        {
+            candidateVertices = getSpatialIndex().getVertices(getLayoutRegionFromScreenRegion(new Rectangle2D.Double(x, y, 0, 0), VERTEXMARGININPIXELS));
+            try { return super.getVertex(layout, x, y); } finally { candidateVertices = null; }
+        }
+
+        @Override
+        public Collection<GUINode> getVertices(Layout<GUINode, GUILink> layout, Shape rectangle)
+        {
+            candidateVertices = getSpatialIndex().getVertices(getLayoutRegionFromScreenRegion(rectangle.getBounds2D(), VERTEXMARGININPIXELS));
+            try { return super.getVertices(layout, rectangle); } finally { candidateVertices = null; }
+        }
+
+        @Override
+        public GUILink getEdge(Layout<GUINode, GUILink> layout, double x, double y)
+        {
+            candidateEdges = getSpatialIndex().getEdges(getLayoutRegionFromScreenRegion(new Rectangle2D.Double(x, y, 0, 0), getEdgeMarginInPixels() + pickSize));
+            try { return super.getEdge(layout, x, y); } finally { candidateEdges = null; }
+        }
+
+        @Override
+        protected Collection<GUINode> getFilteredVertices(Layout<GUINode, GUILink> layout)
+        {
+            if (candidateVertices == null) return super.getFilteredVertices(layout);
+            final List<GUINode> res = new ArrayList<>();
+            for (GUINode v : candidateVertices)
+                if (isVertexRendered(Context.getInstance(layout.getGraph(), v))) res.add(v);
+            return res;
+        }
+
+        @Override
+        protected Collection<GUILink> getFilteredEdges(Layout<GUINode, GUILink> layout)
+        {
+            if (candidateEdges == null) return super.getFilteredEdges(layout);
+            final List<GUILink> res = new ArrayList<>();
+            for (GUILink e : candidateEdges)
+                if (isEdgeRendered(Context.getInstance(layout.getGraph(), e))) res.add(e);
+            return res;
+        }
+    }
+
     private class ScalingCanvasPlugin extends ScalingGraphMousePlugin implements ITopologyCanvasPlugin
     {
         public ScalingCanvasPlugin(ScalingControl scaler, int modifiers)
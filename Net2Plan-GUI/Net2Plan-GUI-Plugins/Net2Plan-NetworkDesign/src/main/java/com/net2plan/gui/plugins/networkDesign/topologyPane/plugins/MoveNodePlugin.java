@@ -162,6 +162,6 @@ public class MoveNodePlugin extends MouseAdapter implements ITopologyCanvasPlugi
             }
         }
 
-        canvas.refresh();
+        /* The canvas repaints the region of the moved nodes, and the layout updates the spatial index with the new positions: the style of the elements does not change */
     }
 }
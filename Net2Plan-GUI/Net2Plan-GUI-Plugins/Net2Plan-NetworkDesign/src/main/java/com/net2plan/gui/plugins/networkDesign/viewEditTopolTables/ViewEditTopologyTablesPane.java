@@ -36,6 +36,7 @@ import com.net2plan.gui.plugins.GUINetworkDesignConstants.AJTableType;
 import com.net2plan.gui.plugins.networkDesign.utils.FilteredTablePanel;
 import com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables.AdvancedJTable_abstractElement;
 import com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables.AdvancedJTable_networkElement;
+import com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables.AjtLazyTableModel;
 import com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables.specificTables.AdvancedJTable_demand;
 import com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables.specificTables.AdvancedJTable_forwardingRule;
 import com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables.specificTables.AdvancedJTable_layer;
@@ -166,17 +167,41 @@ public class ViewEditTopologyTablesPane extends JPanel
     }
 
     public void updateView()
+    {
+        updateView(false);
+    }
+
+    /**
+     * Updates the view after a pick: the design was not modified, so the new tables keep the values already computed in the tables they replace
+     */
+    public void updateViewAfterPick()
+    {
+        updateView(true);
+    }
+
+    private void updateView(boolean designNotModified)
     {
         /* Load current network state */
         final NetPlan currentState = callback.getDesign();
         if (ErrorHandling.isDebugEnabled()) currentState.checkCachesConsistency();
         
+        /* The models of the tables to be replaced, with the cell and aggregated values already computed */
+        final Map<NetworkLayer, Map<AJTableType, AjtLazyTableModel>> previousModels = new HashMap<>();
+        if (designNotModified)
+            for (Map.Entry<NetworkLayer, Map<AJTableType, Pair<AdvancedJTable_abstractElement, FilteredTablePanel>>> entry : netPlanViewTable.entrySet())
+                previousModels.put(entry.getKey(), entry.getValue().entrySet().stream().collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue().getFirst().getModel())));
+
         this.recomputeNetPlanView();
 
         highLevelTabComponent_network.updateNetPlanView(currentState);
         for (NetworkLayer layer : currentState.getNetworkLayers())
         {
-            netPlanViewTable.get(layer).values().stream().map(t -> t.getFirst()).forEach(t -> t.updateView());
+            for (Map.Entry<AJTableType, Pair<AdvancedJTable_abstractElement, FilteredTablePanel>> entry : netPlanViewTable.get(layer).entrySet())
+            {
+                final AjtLazyTableModel previousModel = previousModels.getOrDefault(layer, new HashMap<>()).get(entry.getKey());
+                if (previousModel == null) entry.getValue().getFirst().updateView();
+                else entry.getValue().getFirst().updateViewKeepingCachedValues(previousModel);
+            }
             trafficMatrixComponent.get(layer).updateNetPlanView();
             highLevelTabComponent_layer.get(layer).updateNetPlanView(currentState);
 
@@ -35,21 +35,17 @@ import javax.swing.JTable;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
 
-import org.apache.commons.collections15.BidiMap;
-import org.apache.commons.collections15.bidimap.DualHashBidiMap;
 
 import com.net2plan.gui.plugins.GUINetworkDesign;
 import com.net2plan.gui.plugins.GUINetworkDesignConstants.AJTableType;
 import com.net2plan.gui.plugins.networkDesign.io.excel.ExcelWriter;
 import com.net2plan.gui.plugins.networkDesign.utils.CellRenderers;
 import com.net2plan.gui.utils.AdvancedJTable;
-import com.net2plan.gui.utils.ClassAwareTableModel;
 import com.net2plan.gui.utils.ColumnHeaderToolTips;
 import com.net2plan.gui.utils.FixedColumnDecorator;
 import com.net2plan.gui.utils.LastRowAggregatedValue;
@@ -82,6 +78,18 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
         private AGTYPE (BiFunction<Object,Object,Number> aggregationFunction) { this.aggregationFunction = aggregationFunction; }
         public final boolean isToAggregate () { return this != NOAGGREGATION; }
         public final Number agg (Object value , Number previousAggregate) { if (value instanceof Number) return aggregationFunction.apply(value, previousAggregate); else return previousAggregate; }
+        /* The aggregate after one of the aggregated values changes, or null if it must be computed again from all the values (when the maximum decreases) */
+        public final Number aggAfterChange (Object oldValue , Object newValue , Number previousAggregate)
+        {
+            if (this == MAXDOUBLE || this == MAXINT || this == MAXPAIRFIRSTELEMENT)
+            {
+                final double previous = previousAggregate.doubleValue();
+                if (agg(oldValue, -Double.MAX_VALUE).doubleValue() < previous) return agg(newValue, previous);
+                final double newMaximum = agg(newValue, -Double.MAX_VALUE).doubleValue();
+                return newMaximum >= previous? newMaximum : null;
+            }
+            return agg(newValue, previousAggregate).doubleValue() - agg(oldValue, 0.0).doubleValue();
+        }
     }
     
 //    protected final NetworkElementType networkElementType;
@@ -96,7 +104,6 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
     private final boolean hasAggregationRow;
     private final String tableTitle;
     private final int fixedColumns;
-    private BidiMap<T,Integer> mapElementId2ModelIndexWithThatValue = new DualHashBidiMap<> ();
     private TableViewController tableController;
 
     
@@ -130,7 +137,7 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
      **/
     public T getElementAtModelRowIndex(int rowModelIndex)
     {
-    	return this.mapElementId2ModelIndexWithThatValue.inverseBidiMap().get(rowModelIndex);
+    	return this.getModel().getElementAtRow(rowModelIndex);
     }
 
     /**
@@ -138,8 +145,8 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
      **/
     public Optional<Integer> getRowModelIndexOfElement(Object element)
     {
-    	final Integer res = this.mapElementId2ModelIndexWithThatValue.get(element);
-    	return res == null? Optional.empty() : Optional.of(res);
+    	final int res = this.getModel().getRowOfElement(element);
+    	return res == -1? Optional.empty() : Optional.of(res);
     }
 
     abstract void reactToMouseSingleClickInTable (int rowModelIndexOfClickOrMinus1IfOut , int columnModelIndexOfClickOrMinus1IfOut);
@@ -192,6 +199,21 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
     }
     
     public final void updateView()
+    {
+    	updateView(null);
+    }
+
+    /**
+     * Updates the table when the design was not modified since the given model was shown (e.g. after a pick): the cell and aggregated values
+     * already computed in that model are kept
+     * @param previousModel the model of this table, or of the table this one replaces, in a previous update
+     */
+    public final void updateViewKeepingCachedValues(AjtLazyTableModel<T> previousModel)
+    {
+    	updateView(previousModel);
+    }
+
+    private void updateView(AjtLazyTableModel<T> previousModelOrNull)
     {
     	this.setEnabled(false);
     	    	
@@ -220,13 +242,10 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
                     return Integer.compare(c1.getColumnIndexOriginallyUserDefined(), c2.getColumnIndexOriginallyUserDefined());
         		}).  
         		collect(Collectors.toCollection(ArrayList::new));
-        final Object[][] dataVector = computeDataVector (visibleTableColumnsInTableModelOrder, false);
-        this.setModel(createTableModel(visibleTableColumnsInTableModelOrder));//this.getModel();
-        final String[] tableHeaders = this.getTableHeaders(visibleTableColumnsInTableModelOrder);
-        if (dataVector.length == 0)
-            this.getModel().setDataVector(new Object[1][tableHeaders.length], tableHeaders);
-        else
-            this.getModel().setDataVector(dataVector, tableHeaders);
+        /* The cell values are not computed here, but when the table requests them (see AjtLazyTableModel) */
+        final AjtLazyTableModel<T> newModel = createTableModel(visibleTableColumnsInTableModelOrder , getAllAbstractElementsInTable());
+        if (previousModelOrNull != null) newModel.copyCachedValues(previousModelOrNull);
+        this.setModel(newModel);
 
         /* Create initial column model: all in one table. 
          * The fixed/scroll decorator will change this column model */
@@ -300,7 +319,7 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
             for (int rowViewIndex : validRows)
             {
                 final int viewRowIndex = this.convertRowIndexToModel(rowViewIndex);
-                final T element = this.mapElementId2ModelIndexWithThatValue.inverseBidiMap().get(viewRowIndex);
+                final T element = this.getModel().getElementAtRow(viewRowIndex);
                 if (element != null) elements.add(element);
             }
         }
@@ -319,9 +338,26 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
 //    public final AJTableType getAjType () { return ajtType; }
 //    
     @Override
-    public DefaultTableModel getModel()
+    public AjtLazyTableModel<T> getModel()
+    {
+        return ((AjtLazyTableModel<T>) super.getModel());
+    }
+
+    /* The JTable constructor sets a default model before the table is filled in the first update */
+    @Override
+    protected TableModel createDefaultDataModel()
+    {
+        return new AjtLazyTableModel<T> (new ArrayList<> (), new String [0], new ArrayList<> (), false);
+    }
+
+    /**
+     * Discards the values shown of the given elements, so they are computed again when the table shows them, and updates the aggregated values.
+     * All the values are anyway computed again in each {@link #updateView()}, so this is only needed when some elements are modified without a view update
+     * @param elements the elements
+     */
+    public void invalidateCachedValues (Collection<? extends T> elements)
     {
-        return ((DefaultTableModel) super.getModel());
+        this.getModel().invalidateElements(elements);
     }
 
     private void setCellRenders(List<AjtColumnInfo<T>> tableColumns)
@@ -519,16 +555,16 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
         }
     }
 
-    private final DefaultTableModel createTableModel(List<AjtColumnInfo<T>> tableColumns)
+    private final AjtLazyTableModel<T> createTableModel(List<AjtColumnInfo<T>> tableColumns , List<T> tableElements)
     {
         final int C = tableColumns.size();
-        final DefaultTableModel tableModel = new ClassAwareTableModel(new Object[1][C], getTableHeaders(tableColumns))
+        final AjtLazyTableModel<T> tableModel = new AjtLazyTableModel<T>(tableColumns, getTableHeaders(tableColumns), tableElements, hasAggregationRow)
         {
             @Override
             public boolean isCellEditable(int rowIndex, int columnIndex)
             {
                 if (columnIndex >= C) return false;
-                if (hasAggregationRow && rowIndex == getRowCount() - 1) return false; // the last row is for the aggregated info
+                if (isAggregationRow(rowIndex)) return false; // the last row is for the aggregated info
                 if (tableColumns.get(columnIndex).getHeader().equalsIgnoreCase("Site")) return true;
                 if (getValueAt(rowIndex, columnIndex) == null) return false;
                 return tableColumns.get(columnIndex).isEditable();
@@ -586,7 +622,6 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
                          pickSelection(Arrays.asList(ne));
                      	AdvancedJTable_abstractElement.this.getTableScrollPane().getViewport().setViewPosition(currentScrollPosition);
                     }
-                    super.setValueAt(newValueCastedOrParsed, row, column);
                 }
                 catch (Net2PlanException e)
                 {
@@ -684,8 +719,6 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
     
     private Object[][] computeDataVector (List<AjtColumnInfo<T>> visibleTableColumns, boolean allCollumns)
     {
-    	this.mapElementId2ModelIndexWithThatValue.clear();
-    	
         final int numColVisible = visibleTableColumns.size();
         final List<T> tableElements = getAllAbstractElementsInTable();
         
@@ -720,9 +753,6 @@ public abstract class AdvancedJTable_abstractElement<T> extends AdvancedJTable
 	                    accumIfLastRow [col.getColumnIndexInTableModelWhenVissible()] = col.getLastRowAggregationRowType().agg(val , accumIfLastRow [col.getColumnIndexInTableModelWhenVissible()]).doubleValue();
                 }
             }
-            assert !this.mapElementId2ModelIndexWithThatValue.containsKey(visibleElement);
-            assert !this.mapElementId2ModelIndexWithThatValue.containsValue(rowCount);
-            this.mapElementId2ModelIndexWithThatValue.put(visibleElement, rowCount);
             rowCount ++;
         }
         if (hasAggregationRow)
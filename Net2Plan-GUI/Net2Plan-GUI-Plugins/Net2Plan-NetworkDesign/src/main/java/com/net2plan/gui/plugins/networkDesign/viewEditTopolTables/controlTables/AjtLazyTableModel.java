@@ -0,0 +1,237 @@
+package com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.table.AbstractTableModel;
+
+import com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables.AdvancedJTable_abstractElement.AGTYPE;
+import com.net2plan.gui.utils.LastRowAggregatedValue;
+
+/**
+ * <p>Table model of the {@link AdvancedJTable_abstractElement} tables. One row per element (plus the aggregation row, if any), where the cell values
+ * are computed only when requested, and then cached per element and column. In practice, the JTable requests the cells of the rows it paints,
+ * and the row sorter the cells of the sorted column.</p>
+ * <p>The aggregation row is computed when requested, folding the cached values of each column. After some elements are invalidated, only their
+ * cells are computed again, and the aggregated values are updated from the old and new values of the cells (a maximum that decreases is folded again).</p>
+ * <p>The rows are fixed when the model is created. NetPlan does not notify the changes in its elements, so the cached values are valid while the design
+ * is not modified: the tables create a new model in each update, taking the values of the previous model if the design was not modified
+ * (see {@link #copyCachedValues(AjtLazyTableModel)}), and {@link #invalidateElements(Collection)} discards the values of particular elements.</p>
+ */
+public class AjtLazyTableModel<T> extends AbstractTableModel
+{
+    private static final Object NOTCOMPUTED = new Object ();
+    private static final LastRowAggregatedValue NOAGGREGATION = new LastRowAggregatedValue();
+
+    private final List<AjtColumnInfo<T>> columns;
+    private final String [] headers;
+    private final List<T> elements;
+    private final Map<T,Integer> rowIndexOfElement;
+    private final boolean hasAggregationRow;
+    private final Object [][] cache_cellValues;
+    private final Number [] cache_aggregates;
+    private final LastRowAggregatedValue [] cache_aggregatedValues;
+
+    /**
+     * Creates the model. No cell value is computed here
+     * @param columns the columns, in table model order
+     * @param headers the headers of the columns
+     * @param elements the element of each row
+     * @param hasAggregationRow if the last row shows the aggregated values of the columns
+     */
+    public AjtLazyTableModel (List<AjtColumnInfo<T>> columns , String [] headers , List<T> elements , boolean hasAggregationRow)
+    {
+        this.columns = columns;
+        this.headers = headers;
+        this.elements = elements;
+        this.hasAggregationRow = hasAggregationRow;
+        this.rowIndexOfElement = new HashMap<> ();
+        for (int row = 0; row < elements.size(); row ++)
+            rowIndexOfElement.put(elements.get(row), row);
+        this.cache_cellValues = new Object [elements.size()][];
+        this.cache_aggregates = new Number [columns.size()];
+        this.cache_aggregatedValues = new LastRowAggregatedValue [columns.size()];
+    }
+
+    /**
+     * Takes the values computed by the model of a previous update of the table, when the design was not modified since then (e.g. after a pick):
+     * the cells of the elements and columns in both models (the columns are identified by their header), and the aggregated values if the
+     * elements are the same
+     * @param previousModel the model of the previous update
+     */
+    public void copyCachedValues (AjtLazyTableModel<T> previousModel)
+    {
+        final Map<String,Integer> previousColumnOfHeader = new HashMap<> ();
+        for (int column = 0; column < previousModel.headers.length; column ++)
+            previousColumnOfHeader.put(previousModel.headers [column], column);
+        final int [] previousColumn = new int [columns.size()];
+        for (int column = 0; column < columns.size(); column ++)
+            previousColumn [column] = previousColumnOfHeader.getOrDefault(headers [column], -1);
+        for (int row = 0; row < elements.size(); row ++)
+        {
+            final Integer previousRow = previousModel.rowIndexOfElement.get(elements.get(row));
+            if (previousRow == null || previousModel.cache_cellValues [previousRow] == null) continue;
+            final Object [] rowValues = new Object [columns.size()];
+            for (int column = 0; column < columns.size(); column ++)
+                rowValues [column] = previousColumn [column] == -1? NOTCOMPUTED : previousModel.cache_cellValues [previousRow][previousColumn [column]];
+            cache_cellValues [row] = rowValues;
+        }
+        if (!hasAggregationRow || !previousModel.hasAggregationRow || !elements.equals(previousModel.elements)) return;
+        for (int column = 0; column < columns.size(); column ++)
+        {
+            if (previousColumn [column] == -1) continue;
+            if (columns.get(column).getLastRowAggregationRowType() != previousModel.columns.get(previousColumn [column]).getLastRowAggregationRowType()) continue;
+            cache_aggregates [column] = previousModel.cache_aggregates [previousColumn [column]];
+            cache_aggregatedValues [column] = previousModel.cache_aggregatedValues [previousColumn [column]];
+        }
+    }
+
+    /**
+     * Returns the element in the given row, or null if the row does not correspond to an element (e.g. the aggregation row)
+     * @param row the row index in the model
+     * @return see above
+     */
+    public T getElementAtRow (int row)
+    {
+        return row >= 0 && row < elements.size()? elements.get(row) : null;
+    }
+
+    /**
+     * Returns the row of the given element, or -1 if it is not in the table
+     * @param element the element
+     * @return see above
+     */
+    public int getRowOfElement (Object element)
+    {
+        final Integer row = rowIndexOfElement.get(element);
+        return row == null? -1 : row;
+    }
+
+    /**
+     * Returns the number of rows with elements, excluding the aggregation row
+     * @return see above
+     */
+    public int getNumberOfElementRows ()
+    {
+        return elements.size();
+    }
+
+    /**
+     * Indicates if the given row is the aggregation row
+     * @param row the row index in the model
+     * @return see above
+     */
+    public boolean isAggregationRow (int row)
+    {
+        return hasAggregationRow && row == elements.size();
+    }
+
+    /**
+     * Discards the cached values of the given elements, so they are computed again when requested, and notifies the listeners. The aggregated values
+     * already computed are updated with the new values of these elements. The elements not in the table are ignored
+     * @param elementsToInvalidate the elements
+     */
+    public void invalidateElements (Collection<? extends T> elementsToInvalidate)
+    {
+        int firstRow = Integer.MAX_VALUE, lastRow = -1;
+        for (T element : elementsToInvalidate)
+        {
+            final Integer row = rowIndexOfElement.get(element);
+            if (row == null) continue;
+            final Object [] oldRowValues = cache_cellValues [row];
+            cache_cellValues [row] = null;
+            if (hasAggregationRow) updateAggregatesAfterChange(row, oldRowValues);
+            firstRow = Math.min(firstRow, row);
+            lastRow = Math.max(lastRow, row);
+        }
+        if (lastRow == -1) return;
+        if (hasAggregationRow) lastRow = elements.size();
+        fireTableRowsUpdated(firstRow, lastRow);
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        /* A table without elements and without aggregation row shows one empty row */
+        if (elements.isEmpty() && !hasAggregationRow) return 1;
+        return elements.size() + (hasAggregationRow? 1 : 0);
+    }
+
+    @Override
+    public int getColumnCount()
+    {
+        return columns.size();
+    }
+
+    @Override
+    public String getColumnName(int column)
+    {
+        return headers [column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column)
+    {
+        if (getRowCount() == 0) return Object.class;
+        final Object aux = getValueAt(0, column);
+        return aux == null ? Object.class : aux.getClass();
+    }
+
+    @Override
+    public Object getValueAt(int row, int column)
+    {
+        if (isAggregationRow(row)) return getAggregatedValue(column);
+        if (row >= elements.size()) return null;
+        return getCellValue(row, column);
+    }
+
+    private Object getCellValue (int row , int column)
+    {
+        Object [] rowValues = cache_cellValues [row];
+        if (rowValues == null)
+        {
+            rowValues = new Object [columns.size()];
+            Arrays.fill(rowValues, NOTCOMPUTED);
+            cache_cellValues [row] = rowValues;
+        }
+        if (rowValues [column] == NOTCOMPUTED)
+            rowValues [column] = columns.get(column).getComputeNewValueAtFunction().apply(elements.get(row));
+        return rowValues [column];
+    }
+
+    private LastRowAggregatedValue getAggregatedValue (int column)
+    {
+        final AGTYPE aggregationType = columns.get(column).getLastRowAggregationRowType();
+        if (!aggregationType.isToAggregate()) return NOAGGREGATION;
+        if (cache_aggregatedValues [column] == null)
+        {
+            if (cache_aggregates [column] == null)
+            {
+                Number accum = 0.0;
+                for (int row = 0; row < elements.size(); row ++)
+                    accum = aggregationType.agg(getCellValue(row, column), accum).doubleValue();
+                cache_aggregates [column] = accum;
+            }
+            cache_aggregatedValues [column] = new LastRowAggregatedValue(cache_aggregates [column]);
+        }
+        return cache_aggregatedValues [column];
+    }
+
+    /* An aggregate is computed folding all the cells of the column, and then the cells are kept computed (or computed again here, when
+     * invalidated), so the old value of the changed cell is known */
+    private void updateAggregatesAfterChange (int row , Object [] oldRowValues)
+    {
+        for (int column = 0; column < columns.size(); column ++)
+        {
+            if (cache_aggregates [column] == null) continue;
+            final Object oldValue = oldRowValues == null? NOTCOMPUTED : oldRowValues [column];
+            final Number newAggregate = oldValue == NOTCOMPUTED? null :
+                columns.get(column).getLastRowAggregationRowType().aggAfterChange(oldValue, getCellValue(row, column), cache_aggregates [column]);
+            cache_aggregates [column] = newAggregate;
+            cache_aggregatedValues [column] = null;
+        }
+    }
+}
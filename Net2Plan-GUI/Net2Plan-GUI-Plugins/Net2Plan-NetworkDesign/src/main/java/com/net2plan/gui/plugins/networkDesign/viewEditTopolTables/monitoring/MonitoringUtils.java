@@ -897,39 +897,13 @@ public class MonitoringUtils
                         if (indexSelectionInputDemandMonit == 1)
                             datesToApplyEstimation.retainAll(TrafficMatrixForecastUtils.getDatesWhereGravityModelCanBeApplied(layer));
                         if (datesToApplyEstimation.isEmpty()) throw new Net2PlanException ("No dates are eligible for traffic matrix estimations are performed");
-                        for (Date date : datesToApplyEstimation)
-                        {
-                            final SortedMap<Link,Double> inputMonitInfo_someLinks = new TreeMap<> (np.getLinks(layer).stream().filter(ee->ee.getMonitoredOrForecastedCarriedTraffic().hasValue(date)).collect(Collectors.toMap(ee->ee, ee->ee.getMonitoredOrForecastedCarriedTraffic().getValueOrNull(date))));
-                            final TrafficMatrixForecastUtils.TmEstimationResults esimRes;
-                            if (indexSelectionInputDemandMonit == 0)
-                            {
-                                /* No demand information is used */
-                                esimRes = TrafficMatrixForecastUtils.getTmEstimation_minErrorSquares(layer, inputMonitInfo_someLinks, null, null, coeff_preferFitRouting0PreferFitDemand1);
-                            } else if (indexSelectionInputDemandMonit == 1)
-                            {
-                                /* Use gravity model */
-                                final SortedMap<Demand,Double> gravityModelEstim = TrafficMatrixForecastUtils.getGravityModelEstimationFromMonitorTraffic(layer, date);
-                                esimRes = TrafficMatrixForecastUtils.getTmEstimation_minErrorSquares(layer, inputMonitInfo_someLinks, gravityModelEstim, null, coeff_preferFitRouting0PreferFitDemand1);
-                            } else if (indexSelectionInputDemandMonit == 2)
-                            {
-                                /* Same date demand monitoring info */
-                                final Map<Demand,Double> demandEstim = np.getDemands(layer).stream().filter(ee->ee.getMonitoredOrForecastedOfferedTraffic().hasValue(date)).collect(Collectors.toMap(ee->ee, ee->ee.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(date)));
-                                final Map<MulticastDemand,Double> mdemandEstim = np.getMulticastDemands(layer).stream().filter(ee->ee.getMonitoredOrForecastedOfferedTraffic().hasValue(date)).collect(Collectors.toMap(ee->ee, ee->ee.getMonitoredOrForecastedOfferedTraffic().getValueOrNull(date)));
-                                esimRes = TrafficMatrixForecastUtils.getTmEstimation_minErrorSquares(layer, inputMonitInfo_someLinks, demandEstim, mdemandEstim, coeff_preferFitRouting0PreferFitDemand1);
-                            } else if (indexSelectionInputDemandMonit == 3)
-                            {
-                                /* Demand is zero traffic */
-                                final Map<Demand,Double> demandEstim = np.getDemands(layer).stream().collect(Collectors.toMap(ee->ee, ee->0.0));
-                                final Map<MulticastDemand,Double> mdemandEstim = np.getMulticastDemands(layer).stream().collect(Collectors.toMap(ee->ee, ee->0.0));
-                                esimRes = TrafficMatrixForecastUtils.getTmEstimation_minErrorSquares(layer, inputMonitInfo_someLinks, demandEstim, mdemandEstim, coeff_preferFitRouting0PreferFitDemand1);
-                            } else throw new RuntimeException ();
-
-                            /* Store the information */
-                            for (Demand d : np.getDemands(layer))
-                                d.getMonitoredOrForecastedOfferedTraffic().addValue(date , esimRes.getEstimationDemand(d));
-                            for (MulticastDemand d : np.getMulticastDemands(layer))
-                                d.getMonitoredOrForecastedOfferedTraffic().addValue(date , esimRes.getEstimationMDemand(d));
-                        }
+                        final TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE demandInfoType;
+                        if (indexSelectionInputDemandMonit == 0) demandInfoType = TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE.NONE;
+                        else if (indexSelectionInputDemandMonit == 1) demandInfoType = TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE.GRAVITYMODEL;
+                        else if (indexSelectionInputDemandMonit == 2) demandInfoType = TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE.MONITORED;
+                        else if (indexSelectionInputDemandMonit == 3) demandInfoType = TrafficMatrixForecastUtils.TMESTIMATIONDEMANDINFOTYPE.ZERO;
+                        else throw new RuntimeException ();
+                        TrafficMatrixForecastUtils.estimateTmAndStoreAsDemandMonitoring_minErrorSquares(layer, datesToApplyEstimation, demandInfoType, coeff_preferFitRouting0PreferFitDemand1, Runtime.getRuntime().availableProcessors());
                         JOptionPane.showMessageDialog(null, "Estimation applied to " + datesToApplyEstimation.size() + " dates", "Output info", JOptionPane.INFORMATION_MESSAGE);
                     }
             );
@@ -12,24 +12,28 @@ package com.net2plan.gui.plugins.networkDesign.visualizationControl;
 
 import com.net2plan.gui.plugins.GUINetworkDesign;
 import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetPlanSnapshot;
 import com.net2plan.interfaces.networkDesign.NetworkLayer;
 import com.net2plan.utils.Triple;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Manages the undo/redo information, tracking the current netPlan and the visualization state
+ * Manages the undo/redo information, tracking the current netPlan and the visualization state.
+ * The designs in the timeline are stored as snapshots, each one sharing with the previous one the elements that did not change, and a new
+ * design is restored from the snapshot each time we navigate to it, so the snapshots in the timeline are never modified.
  */
 public class UndoRedoManager
 {
     private final GUINetworkDesign callback;
-    private LinkedList<VisualizationSnapshot> timeline;
+    private LinkedList<TimelineEntry> timeline;
     private int timelineCursor;
     private int listMaxSize;
 
-    private VisualizationSnapshot backupState;
-
     public UndoRedoManager(GUINetworkDesign callback, int listMaxSize)
     {
         this.timeline = new LinkedList<>();
@@ -43,17 +47,13 @@ public class UndoRedoManager
         if (this.listMaxSize <= 1) return; // nothing is stored since nothing will be retrieved
         if (callback.inOnlineSimulationMode()) return;
 
-        final VisualizationSnapshot snapshot = callback.getVisualizationState().getSnapshot().copy();
+        final NetPlanSnapshot previousDesign = timeline.isEmpty() ? null : timeline.get(timelineCursor).design;
+        final TimelineEntry entry = new TimelineEntry(callback.getVisualizationState().getSnapshot(), previousDesign);
 
         // Removing all changes made after the one at the cursor
         if (timelineCursor != timeline.size() - 1)
-        {
-            timeline.subList(timelineCursor, timeline.size()).clear();
-
-            // Adding a copy of the current state before it was modified
-            timeline.add(backupState);
-        }
-        timeline.add(snapshot);
+            timeline.subList(timelineCursor + 1, timeline.size()).clear();
+        timeline.add(entry);
 
         // Remove the older changes so that the list does not bloat.
         while (timeline.size() > listMaxSize)
@@ -78,10 +78,7 @@ public class UndoRedoManager
 
         this.timelineCursor--;
 
-        final VisualizationSnapshot currentState = timeline.get(this.timelineCursor);
-        this.backupState = currentState.copy();
-
-        return currentState.getSnapshotDefinition();
+        return timeline.get(this.timelineCursor).getSnapshotDefinition();
     }
 
     /**
@@ -97,14 +94,45 @@ public class UndoRedoManager
 
         this.timelineCursor++;
 
-        final VisualizationSnapshot currentState = timeline.get(this.timelineCursor);
-        this.backupState = currentState.copy();
-
-        return currentState.getSnapshotDefinition();
+        return timeline.get(this.timelineCursor).getSnapshotDefinition();
     }
 
     private boolean checkMovementValidity()
     {
         return !(timeline.isEmpty() || this.listMaxSize <= 1 || callback.inOnlineSimulationMode());
     }
+
+    /* The design snapshot, and the layer order and visibility, indexed by layer index */
+    private static class TimelineEntry
+    {
+        private final NetPlanSnapshot design;
+        private final List<Integer> layerOrder;
+        private final List<Boolean> layerVisibility;
+
+        private TimelineEntry(VisualizationSnapshot visualizationSnapshot, NetPlanSnapshot previousDesign)
+        {
+            final NetPlan netPlan = visualizationSnapshot.getNetPlan();
+            this.design = NetPlanSnapshot.of(netPlan, previousDesign);
+            this.layerOrder = new ArrayList<>();
+            this.layerVisibility = new ArrayList<>();
+            for (NetworkLayer layer : netPlan.getNetworkLayers())
+            {
+                layerOrder.add(visualizationSnapshot.getCanvasLayerVisualizationOrder(layer));
+                layerVisibility.add(visualizationSnapshot.getCanvasLayerVisibility(layer));
+            }
+        }
+
+        private Triple<NetPlan, Map<NetworkLayer, Integer>, Map<NetworkLayer, Boolean>> getSnapshotDefinition()
+        {
+            final NetPlan netPlan = design.restore();
+            final Map<NetworkLayer, Integer> order = new HashMap<>();
+            final Map<NetworkLayer, Boolean> visibility = new HashMap<>();
+            for (NetworkLayer layer : netPlan.getNetworkLayers())
+            {
+                order.put(layer, layerOrder.get(layer.getIndex()));
+                visibility.put(layer, layerVisibility.get(layer.getIndex()));
+            }
+            return Triple.unmodifiableOf(netPlan, order, visibility);
+        }
+    }
 }
@@ -65,6 +65,11 @@ public final class VisualizationConstants
     public final static float INCREASENODESIZEFACTORPICKED = 1.1f;
     public final static float INCREASELINKSTROKEFACTORACTIVE = 3f;
 
+    /* Level of detail in the canvas: with less screen area per visible node, labels are not drawn, and nodes are drawn as small squares instead of icons */
+    public final static double CANVAS_MINPIXELS2PERVISIBLENODE_SHOWLABELS = 50 * 50;
+    public final static double CANVAS_MINPIXELS2PERVISIBLENODE_SHOWICONS = 8 * 8;
+    public final static int CANVAS_LOWDETAIL_NODESIZEINPIXELS = 4;
+
     public final static Paint DEFAULT_GUINODE_COLOR_RESOURCE = Color.DARK_GRAY;
     public final static Paint DEFAULT_GUINODE_COLOR_ORIGINFLOW = Color.GREEN;
     public final static Paint DEFAULT_GUINODE_COLOR_FAILED = Color.RED;
@@ -33,6 +33,7 @@ import com.net2plan.gui.utils.RunnableSelector;
 import com.net2plan.interfaces.networkDesign.Configuration;
 import com.net2plan.interfaces.networkDesign.IAlgorithm;
 import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetPlanSnapshot;
 import com.net2plan.internal.SystemUtils;
 import com.net2plan.internal.plugins.IGUIModule;
 import com.net2plan.internal.sim.SimKernel;
@@ -58,6 +59,7 @@ public class WhatIfAnalysisPane extends JPanel implements ActionListener
     private RunnableSelector statelessSimulatorPanel;
     private final JCheckBox checkBox_whatIfActivated , checkBox_useDefaultNiwSimulator;
     private SimKernel simKernel;
+    private NetPlanSnapshot designBeforeWhatIf;
 
     public WhatIfAnalysisPane(GUINetworkDesign callback)
     {
@@ -130,7 +132,8 @@ public class WhatIfAnalysisPane extends JPanel implements ActionListener
 
     public void whatIfSomethingModified() 
     {
-    	final NetPlan originalNpCopy = callback.getDesign().copy();
+    	/* A snapshot instead of a deep copy: it is only restored if the simulator fails, and shares with the previous one the unchanged elements */
+    	designBeforeWhatIf = NetPlanSnapshot.of(callback.getDesign() , designBeforeWhatIf);
     	try
     	{
 	    	final NetPlan np = callback.getDesign();
@@ -150,7 +153,7 @@ public class WhatIfAnalysisPane extends JPanel implements ActionListener
         } catch (Throwable ex)
         {
         	ex.printStackTrace();
-        	callback.getDesign().assignFrom(originalNpCopy);
+        	callback.getDesign().assignFrom(designBeforeWhatIf.restore());
         }
     }
 
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.gui.plugins.networkDesign.topologyPane.jung;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+
+public class CanvasSpatialIndexTest
+{
+    private NetPlan np;
+    private List<GUINode> vertices;
+    private List<GUILink> edges;
+    private Map<GUINode, Point2D> position;
+
+    @Before
+    public void setUp()
+    {
+        this.np = new NetPlan();
+        this.vertices = new ArrayList<>();
+        this.edges = new ArrayList<>();
+        this.position = new HashMap<>();
+    }
+
+    @Test
+    public void testRectangleQueriesAgainstBruteForce()
+    {
+        final Random rng = new Random(1L);
+        for (int v = 0; v < 300; v++) addVertex(1000 * rng.nextDouble(), 1000 * rng.nextDouble());
+        for (int e = 0; e < 600; e++) addEdge(vertices.get(rng.nextInt(300)), vertices.get(rng.nextInt(300)));
+        final CanvasSpatialIndex index = createIndex();
+        for (int test = 0; test < 500; test++)
+        {
+            final Rectangle2D region = getRandomRegion(rng, 1100);
+            Assert.assertEquals(getVerticesBruteForce(region), index.getVertices(region));
+            Assert.assertEquals(getEdgesBruteForce(region), index.getEdges(region));
+        }
+        /* A region covering all the elements returns all of them, in painting order */
+        final Rectangle2D all = new Rectangle2D.Double(-1, -1, 1002, 1002);
+        Assert.assertEquals(vertices, index.getVertices(all));
+        Assert.assertEquals(edges, index.getEdges(all));
+    }
+
+    @Test
+    public void testNearestPickCandidates()
+    {
+        /* The pick support looks for the closest vertex among the ones in a region around the picked point */
+        final Random rng = new Random(2L);
+        for (int v = 0; v < 500; v++) addVertex(1000 * rng.nextDouble(), 500 * rng.nextDouble());
+        final CanvasSpatialIndex index = createIndex();
+        final double margin = 15;
+        for (int test = 0; test < 1000; test++)
+        {
+            final Point2D pick = new Point2D.Double(1100 * rng.nextDouble() - 50, 600 * rng.nextDouble() - 50);
+            final List<GUINode> candidates = index.getVertices(new Rectangle2D.Double(pick.getX() - margin, pick.getY() - margin, 2 * margin, 2 * margin));
+            final GUINode nearest = getNearestVertex(vertices, pick, margin);
+            Assert.assertEquals(nearest, getNearestVertex(candidates, pick, margin));
+            for (GUINode gn : vertices)
+                if (position.get(gn).distance(pick) < margin) Assert.assertTrue(candidates.contains(gn));
+        }
+    }
+
+    @Test
+    public void testEdgesSpanningSeveralCells()
+    {
+        /* A grid of 21 x 21 vertices, so the cells are small compared to the edges: the diagonal covers too many cells, and is checked in all the queries */
+        for (int x = 0; x <= 20; x++)
+            for (int y = 0; y <= 20; y++)
+                addVertex(50 * x, 50 * y);
+        final GUINode corner = getVertexAt(0, 0);
+        final GUILink diagonal = addEdge(corner, getVertexAt(1000, 1000));
+        final GUILink horizontal = addEdge(corner, getVertexAt(300, 0));
+        final GUILink vertical = addEdge(getVertexAt(1000, 1000), getVertexAt(1000, 600));
+        final List<GUILink> parallel = Arrays.asList(addEdge(getVertexAt(500, 500), getVertexAt(600, 500)), addEdge(getVertexAt(500, 500), getVertexAt(600, 500)), addEdge(getVertexAt(500, 500), getVertexAt(600, 500)));
+        addEdge(getVertexAt(600, 500), getVertexAt(500, 500));
+        final CanvasSpatialIndex index = createIndex();
+
+        /* The edges are found in regions far from their end vertices, and only once if the region covers several of their cells */
+        Assert.assertEquals(Arrays.asList(diagonal), index.getEdges(new Rectangle2D.Double(760, 260, 10, 10)));
+        Assert.assertEquals(Arrays.asList(diagonal, horizontal), index.getEdges(new Rectangle2D.Double(140, -5, 60, 10)));
+        Assert.assertEquals(Arrays.asList(diagonal, vertical), index.getEdges(new Rectangle2D.Double(990, 700, 20, 200)));
+        Assert.assertEquals(Arrays.asList(diagonal), index.getEdges(new Rectangle2D.Double(200, 50, 700, 40)));
+        Assert.assertEquals(Arrays.asList(), index.getVertices(new Rectangle2D.Double(760, 260, 10, 10)));
+        Assert.assertEquals(Arrays.asList(getVertexAt(750, 250)), index.getVertices(new Rectangle2D.Double(740, 240, 20, 20)));
+        Assert.assertEquals(Arrays.asList(diagonal), index.getEdges(new Rectangle2D.Double(550, 550, 0, 0)));
+        final List<GUILink> inTheMiddle = index.getEdges(new Rectangle2D.Double(550, 500, 0, 0));
+        Assert.assertTrue(inTheMiddle.containsAll(parallel));
+        Assert.assertEquals(5, inTheMiddle.size());
+        Assert.assertEquals(3, index.getMaxNumberOfParallelEdges());
+    }
+
+    @Test
+    public void testMoveVertex()
+    {
+        final Random rng = new Random(3L);
+        for (int v = 0; v < 300; v++) addVertex(1000 * rng.nextDouble(), 1000 * rng.nextDouble());
+        for (int e = 0; e < 600; e++) addEdge(vertices.get(rng.nextInt(300)), vertices.get(rng.nextInt(300)));
+        final CanvasSpatialIndex index = createIndex();
+
+        /* A vertex moved out of the area of the index is found in its new position, with its edges */
+        final GUINode moved = vertices.get(0);
+        final Point2D oldPosition = position.get(moved);
+        final Point2D newPosition = new Point2D.Double(5000, -3000);
+        moveVertex(index, moved, newPosition);
+        final Rectangle2D aroundNewPosition = new Rectangle2D.Double(4990, -3010, 20, 20);
+        Assert.assertEquals(Arrays.asList(moved), index.getVertices(aroundNewPosition));
+        Assert.assertEquals(getEdgesBruteForce(aroundNewPosition), index.getEdges(aroundNewPosition));
+        Assert.assertFalse(index.getVertices(new Rectangle2D.Double(oldPosition.getX() - 1, oldPosition.getY() - 1, 2, 2)).contains(moved));
+        final Rectangle2D betweenPositions = new Rectangle2D.Double(2000, -1000, 0, 0);
+        Assert.assertFalse(getEdgesBruteForce(betweenPositions).isEmpty());
+        Assert.assertEquals(getEdgesBruteForce(betweenPositions), index.getEdges(betweenPositions));
+
+        /* Moving the vertices one by one, as when they are dragged, keeps the index up to date */
+        boolean worthKeeping = true;
+        for (int move = 0; move < 300; move++)
+        {
+            final GUINode gn = vertices.get(rng.nextInt(10));
+            final boolean res = moveVertex(index, gn, new Point2D.Double(1000 * rng.nextDouble(), 1000 * rng.nextDouble()));
+            Assert.assertTrue(worthKeeping || !res);
+            worthKeeping &= res;
+            final Rectangle2D region = getRandomRegion(rng, 1100);
+            Assert.assertEquals(getVerticesBruteForce(region), index.getVertices(region));
+            Assert.assertEquals(getEdgesBruteForce(region), index.getEdges(region));
+        }
+        /* Only 10 vertices were moved, with their edges, and that is not enough to build the index again */
+        Assert.assertTrue(worthKeeping);
+
+        /* Moving most of the vertices makes it better to build it again, but the index is still correct */
+        for (GUINode gn : vertices) worthKeeping &= moveVertex(index, gn, new Point2D.Double(1000 * rng.nextDouble(), 1000 * rng.nextDouble()));
+        Assert.assertFalse(worthKeeping);
+        for (int test = 0; test < 100; test++)
+        {
+            final Rectangle2D region = getRandomRegion(rng, 1100);
+            Assert.assertEquals(getVerticesBruteForce(region), index.getVertices(region));
+            Assert.assertEquals(getEdgesBruteForce(region), index.getEdges(region));
+        }
+
+        /* A vertex not in the index */
+        final Node npNode = np.addNode(0, 0, "other", null);
+        Assert.assertFalse(index.moveVertex(new GUINode(npNode, np.getNetworkLayerDefault(), 1), new Point2D.Double(0, 0)));
+    }
+
+    private GUINode addVertex(double x, double y)
+    {
+        final GUINode gn = new GUINode(np.addNode(x, y, "n" + vertices.size(), null), np.getNetworkLayerDefault(), 1);
+        vertices.add(gn);
+        position.put(gn, new Point2D.Double(x, y));
+        return gn;
+    }
+
+    private GUILink addEdge(GUINode a, GUINode b)
+    {
+        /* A self-loop is not a valid link, but the index must accept the intra-node links */
+        final Link npLink = a == b ? null : np.addLink(a.getAssociatedNode(), b.getAssociatedNode(), 100, 1, 200000, null);
+        final GUILink gl = new GUILink(null, npLink, a, b, null, null);
+        edges.add(gl);
+        return gl;
+    }
+
+    private GUINode getVertexAt(double x, double y)
+    {
+        return vertices.stream().filter(gn -> position.get(gn).getX() == x && position.get(gn).getY() == y).findFirst().get();
+    }
+
+    private boolean moveVertex(CanvasSpatialIndex index, GUINode gn, Point2D newPosition)
+    {
+        position.put(gn, newPosition);
+        return index.moveVertex(gn, new Point2D.Double(newPosition.getX(), newPosition.getY()));
+    }
+
+    private CanvasSpatialIndex createIndex()
+    {
+        return new CanvasSpatialIndex(vertices, edges, gn -> position.get(gn));
+    }
+
+    private List<GUINode> getVerticesBruteForce(Rectangle2D region)
+    {
+        return vertices.stream().filter(gn -> region.contains(position.get(gn))).collect(Collectors.toList());
+    }
+
+    private List<GUILink> getEdgesBruteForce(Rectangle2D region)
+    {
+        return edges.stream().filter(gl ->
+        {
+            final Point2D a = position.get(gl.getOriginNode());
+            final Point2D b = position.get(gl.getDestinationNode());
+            return Math.max(a.getX(), b.getX()) >= region.getMinX() && Math.min(a.getX(), b.getX()) <= region.getMaxX() &&
+                    Math.max(a.getY(), b.getY()) >= region.getMinY() && Math.min(a.getY(), b.getY()) <= region.getMaxY();
+        }).collect(Collectors.toList());
+    }
+
+    private GUINode getNearestVertex(List<GUINode> candidates, Point2D p, double maxDistance)
+    {
+        GUINode nearest = null;
+        double nearestDistance = maxDistance;
+        for (GUINode gn : candidates)
+        {
+            final double distance = position.get(gn).distance(p);
+            if (distance < nearestDistance) { nearest = gn; nearestDistance = distance; }
+        }
+        return nearest;
+    }
+
+    private static Rectangle2D getRandomRegion(Random rng, double maxCoordinate)
+    {
+        final double x = maxCoordinate * rng.nextDouble() - 50, y = maxCoordinate * rng.nextDouble() - 50;
+        final double size = rng.nextDouble() < 0.5 ? 30 * rng.nextDouble() : 400 * rng.nextDouble();
+        return new Rectangle2D.Double(x, y, size, size * (0.5 + rng.nextDouble()));
+    }
+}
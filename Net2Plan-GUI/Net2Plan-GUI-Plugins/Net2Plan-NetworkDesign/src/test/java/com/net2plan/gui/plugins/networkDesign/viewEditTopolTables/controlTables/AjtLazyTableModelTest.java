@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Pablo Pavon Marino and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 2-clause BSD License 
+ * which accompanies this distribution, and is available at
+ * https://opensource.org/licenses/BSD-2-Clause
+ *
+ * Contributors:
+ *     Pablo Pavon Marino and others - initial API and implementation
+ *******************************************************************************/
+package com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import javax.swing.event.TableModelEvent;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.net2plan.gui.plugins.networkDesign.viewEditTopolTables.controlTables.AdvancedJTable_abstractElement.AGTYPE;
+import com.net2plan.gui.utils.LastRowAggregatedValue;
+
+public class AjtLazyTableModelTest
+{
+    /* The element shown in each row: the columns show its fields */
+    private static class Element
+    {
+        private double value;
+        private int count;
+        private Element(double value, int count) { this.value = value; this.count = count; }
+    }
+
+    private List<Element> elements;
+    private int [] numComputations;
+
+    @Before
+    public void setUp()
+    {
+        final Random rng = new Random(1L);
+        this.elements = new ArrayList<>();
+        for (int cont = 0; cont < 1000; cont++)
+            elements.add(new Element(rng.nextInt(4000) / 4.0, rng.nextInt(100)));
+    }
+
+    @Test
+    public void testCellsComputedOnlyWhenRequested()
+    {
+        final AjtLazyTableModel<Element> model = createModel(false, AGTYPE.SUMDOUBLE, AGTYPE.MAXINT);
+        Assert.assertEquals(1000, model.getRowCount());
+        Assert.assertEquals(2, model.getColumnCount());
+        Assert.assertEquals("value0", model.getColumnName(0));
+        Assert.assertArrayEquals(new int [] { 0, 0 }, numComputations);
+
+        Assert.assertEquals(elements.get(5).value, model.getValueAt(5, 0));
+        Assert.assertEquals(elements.get(5).value, model.getValueAt(5, 0));
+        Assert.assertArrayEquals(new int [] { 1, 0 }, numComputations);
+        Assert.assertEquals(elements.get(5).count, model.getValueAt(5, 1));
+        Assert.assertEquals(elements.get(7).count, model.getValueAt(7, 1));
+        Assert.assertArrayEquals(new int [] { 1, 2 }, numComputations);
+
+        Assert.assertSame(elements.get(7), model.getElementAtRow(7));
+        Assert.assertEquals(7, model.getRowOfElement(elements.get(7)));
+        Assert.assertEquals(-1, model.getRowOfElement(new Element(0, 0)));
+        Assert.assertNull(model.getElementAtRow(1000));
+        Assert.assertFalse(model.isAggregationRow(999));
+        Assert.assertArrayEquals(new int [] { 1, 2 }, numComputations);
+
+        /* A table without elements shows one empty row, unless it has the aggregation row */
+        elements.clear();
+        Assert.assertEquals(1, createModel(false, AGTYPE.SUMDOUBLE).getRowCount());
+        Assert.assertNull(createModel(false, AGTYPE.SUMDOUBLE).getValueAt(0, 0));
+        Assert.assertEquals(1, createModel(true, AGTYPE.SUMDOUBLE).getRowCount());
+        Assert.assertEquals(new LastRowAggregatedValue(0).toString(), createModel(true, AGTYPE.SUMDOUBLE).getValueAt(0, 0).toString());
+    }
+
+    @Test
+    public void testInvalidateElements()
+    {
+        final AjtLazyTableModel<Element> model = createModel(false, AGTYPE.SUMDOUBLE, AGTYPE.SUMINT);
+        final List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(e -> events.add(e));
+        Assert.assertEquals(elements.get(10).value, model.getValueAt(10, 0));
+        Assert.assertEquals(elements.get(20).value, model.getValueAt(20, 0));
+
+        /* The cached value is shown until the element is invalidated */
+        elements.get(10).value = -1;
+        elements.get(20).value = -2;
+        elements.get(30).value = -3;
+        Assert.assertNotEquals(-1.0, model.getValueAt(10, 0));
+        model.invalidateElements(Arrays.asList(elements.get(20), elements.get(10), elements.get(30)));
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(10, events.get(0).getFirstRow());
+        Assert.assertEquals(30, events.get(0).getLastRow());
+        Assert.assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        Assert.assertArrayEquals(new int [] { 2, 0 }, numComputations);
+        Assert.assertEquals(-1.0, model.getValueAt(10, 0));
+        Assert.assertEquals(-2.0, model.getValueAt(20, 0));
+        Assert.assertEquals(elements.get(11).value, model.getValueAt(11, 0));
+        Assert.assertArrayEquals(new int [] { 5, 0 }, numComputations);
+
+        /* The elements not in the table are ignored */
+        model.invalidateElements(Arrays.asList(new Element(0, 0)));
+        model.invalidateElements(new ArrayList<>());
+        Assert.assertEquals(1, events.size());
+    }
+
+    @Test
+    public void testAggregationRow()
+    {
+        final AjtLazyTableModel<Element> model = createModel(true, AGTYPE.SUMDOUBLE, AGTYPE.MAXDOUBLE, AGTYPE.SUMINT, AGTYPE.MAXINT, AGTYPE.NOAGGREGATION);
+        Assert.assertEquals(1001, model.getRowCount());
+        Assert.assertTrue(model.isAggregationRow(1000));
+        Assert.assertNull(model.getElementAtRow(1000));
+        assertAggregatedValues(model, AGTYPE.SUMDOUBLE, AGTYPE.MAXDOUBLE, AGTYPE.SUMINT, AGTYPE.MAXINT, AGTYPE.NOAGGREGATION);
+        Assert.assertEquals(LastRowAggregatedValue.EMPTY_VALUE, model.getValueAt(1000, 4).toString());
+
+        /* Each cell is computed once, the column without aggregation is not computed */
+        Assert.assertArrayEquals(new int [] { 1000, 1000, 1000, 1000, 0 }, numComputations);
+        assertAggregatedValues(model, AGTYPE.SUMDOUBLE, AGTYPE.MAXDOUBLE, AGTYPE.SUMINT, AGTYPE.MAXINT, AGTYPE.NOAGGREGATION);
+        Assert.assertArrayEquals(new int [] { 1000, 1000, 1000, 1000, 0 }, numComputations);
+    }
+
+    @Test
+    public void testAggregationIgnoresValuesNotNumbers()
+    {
+        /* The elements with negative values show a text in the column */
+        for (int cont = 0; cont < elements.size(); cont += 3) elements.get(cont).value = -elements.get(cont).value - 1;
+        final List<AjtColumnInfo<Element>> columns = Arrays.asList(
+                createColumn("sum", AGTYPE.SUMDOUBLE, 0, e -> e.value < 0 ? "n/a" : (Object) e.value),
+                createColumn("max", AGTYPE.MAXDOUBLE, 1, e -> e.value < 0 ? "n/a" : (Object) e.value));
+        numComputations = new int [2];
+        final AjtLazyTableModel<Element> model = new AjtLazyTableModel<>(columns, new String [] { "sum", "max" }, elements, true);
+        final double sum = elements.stream().filter(e -> e.value >= 0).mapToDouble(e -> e.value).sum();
+        final double max = elements.stream().filter(e -> e.value >= 0).mapToDouble(e -> e.value).max().getAsDouble();
+        Assert.assertEquals(new LastRowAggregatedValue(sum).toString(), model.getValueAt(1000, 0).toString());
+        Assert.assertEquals(new LastRowAggregatedValue(max).toString(), model.getValueAt(1000, 1).toString());
+
+        /* An element changing from a text to a number, and back */
+        final Element e0 = elements.get(0);
+        e0.value = 5000;
+        model.invalidateElements(Arrays.asList(e0));
+        Assert.assertEquals(new LastRowAggregatedValue(sum + 5000).toString(), model.getValueAt(1000, 0).toString());
+        Assert.assertEquals(new LastRowAggregatedValue(5000).toString(), model.getValueAt(1000, 1).toString());
+        e0.value = -1;
+        model.invalidateElements(Arrays.asList(e0));
+        Assert.assertEquals(new LastRowAggregatedValue(sum).toString(), model.getValueAt(1000, 0).toString());
+        Assert.assertEquals(new LastRowAggregatedValue(max).toString(), model.getValueAt(1000, 1).toString());
+    }
+
+    @Test
+    public void testIncrementalAggregation()
+    {
+        final AjtLazyTableModel<Element> model = createModel(true, AGTYPE.SUMDOUBLE, AGTYPE.MAXDOUBLE, AGTYPE.SUMINT, AGTYPE.MAXINT);
+        final List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(e -> events.add(e));
+        assertAggregatedValues(model, AGTYPE.SUMDOUBLE, AGTYPE.MAXDOUBLE, AGTYPE.SUMINT, AGTYPE.MAXINT);
+
+        /* Changing some elements computes only their cells, while the maximum does not decrease */
+        final Element maxElement = elements.stream().max((e1, e2) -> Double.compare(e1.value, e2.value)).get();
+        final Random rng = new Random(2L);
+        int numInvalidations = 0;
+        for (int cont = 0; cont < 50; cont++)
+        {
+            final Element e = elements.get(rng.nextInt(elements.size()));
+            if (e == maxElement) continue;
+            e.value = Math.min(e.value + rng.nextInt(100) / 4.0 - 12, maxElement.value);
+            e.count = Math.max(0, e.count + rng.nextInt(50) - 25);
+            model.invalidateElements(Arrays.asList(e));
+            numInvalidations++;
+            assertAggregatedValues(model, AGTYPE.SUMDOUBLE, AGTYPE.MAXDOUBLE, AGTYPE.SUMINT, AGTYPE.MAXINT);
+        }
+        Assert.assertArrayEquals(new int [] { 1000 + numInvalidations, 1000 + numInvalidations, 1000 + numInvalidations, 1000 + numInvalidations }, numComputations);
+        Assert.assertEquals(numInvalidations, events.size());
+        Assert.assertTrue(events.stream().allMatch(ev -> ev.getLastRow() == 1000));
+
+        /* The maximum increases, and then decreases: the column is folded again, with the cached values of the other elements */
+        maxElement.value += 10;
+        model.invalidateElements(Arrays.asList(maxElement));
+        assertAggregatedValues(model, AGTYPE.SUMDOUBLE, AGTYPE.MAXDOUBLE, AGTYPE.SUMINT, AGTYPE.MAXINT);
+        final int numComputationsSum = numComputations [0];
+        final int numComputationsMax = numComputations [1];
+        maxElement.value -= 1000;
+        model.invalidateElements(Arrays.asList(maxElement));
+        assertAggregatedValues(model, AGTYPE.SUMDOUBLE, AGTYPE.MAXDOUBLE, AGTYPE.SUMINT, AGTYPE.MAXINT);
+        Assert.assertEquals(numComputationsSum + 1, numComputations [0]);
+        Assert.assertEquals(numComputationsMax + 1, numComputations [1]);
+
+        /* Random changes of several elements at a time */
+        for (int cont = 0; cont < 200; cont++)
+        {
+            final List<Element> changed = new ArrayList<>();
+            for (int k = 0; k < 1 + rng.nextInt(5); k++)
+            {
+                final Element e = elements.get(rng.nextInt(elements.size()));
+                e.value = rng.nextInt(4000) / 4.0;
+                e.count = rng.nextInt(100);
+                changed.add(e);
+            }
+            model.invalidateElements(changed);
+            assertAggregatedValues(model, AGTYPE.SUMDOUBLE, AGTYPE.MAXDOUBLE, AGTYPE.SUMINT, AGTYPE.MAXINT);
+        }
+    }
+
+    @Test
+    public void testCopyCachedValues()
+    {
+        final AjtLazyTableModel<Element> previousModel = createModel(true, AGTYPE.SUMDOUBLE, AGTYPE.MAXINT);
+        assertAggregatedValues(previousModel, AGTYPE.SUMDOUBLE, AGTYPE.MAXINT);
+        Assert.assertArrayEquals(new int [] { 1000, 1000 }, numComputations);
+
+        /* The same elements and columns: nothing is computed again */
+        final AjtLazyTableModel<Element> model = createModel(true, AGTYPE.SUMDOUBLE, AGTYPE.MAXINT);
+        model.copyCachedValues(previousModel);
+        assertAggregatedValues(model, AGTYPE.SUMDOUBLE, AGTYPE.MAXINT);
+        for (int row = 0; row < 1000; row++)
+            Assert.assertEquals(elements.get(row).value, model.getValueAt(row, 0));
+        Assert.assertArrayEquals(new int [] { 0, 0 }, numComputations);
+
+        /* And the aggregated values copied are updated when the elements change */
+        elements.get(3).value += 1000;
+        model.invalidateElements(Arrays.asList(elements.get(3)));
+        assertAggregatedValues(model, AGTYPE.SUMDOUBLE, AGTYPE.MAXINT);
+        Assert.assertArrayEquals(new int [] { 1, 1 }, numComputations);
+
+        /* Some of the elements, in other order: their cells are copied, but the aggregation is folded again for the new rows */
+        final List<Element> allElements = new ArrayList<>(elements);
+        elements = new ArrayList<>(allElements.subList(500, 1000));
+        elements.add(new Element(7, 7));
+        final AjtLazyTableModel<Element> modelSomeElements = createModel(true, AGTYPE.SUMDOUBLE, AGTYPE.MAXINT);
+        modelSomeElements.copyCachedValues(model);
+        assertAggregatedValues(modelSomeElements, AGTYPE.SUMDOUBLE, AGTYPE.MAXINT);
+        Assert.assertArrayEquals(new int [] { 1, 1 }, numComputations);
+
+        /* A column with a different header is computed */
+        elements = allElements;
+        final List<AjtColumnInfo<Element>> columns = Arrays.asList(createColumn("value0", AGTYPE.SUMDOUBLE, 0, e -> e.value), createColumn("other", AGTYPE.SUMDOUBLE, 1, e -> e.value));
+        numComputations = new int [2];
+        final AjtLazyTableModel<Element> modelOtherColumn = new AjtLazyTableModel<>(columns, new String [] { "value0", "other" }, elements, true);
+        modelOtherColumn.copyCachedValues(model);
+        Assert.assertEquals(model.getValueAt(1000, 0).toString(), modelOtherColumn.getValueAt(1000, 0).toString());
+        Assert.assertEquals(model.getValueAt(1000, 0).toString(), modelOtherColumn.getValueAt(1000, 1).toString());
+        Assert.assertArrayEquals(new int [] { 0, 1000 }, numComputations);
+    }
+
+    /* Column i shows the value of the element (for the double aggregations), or its count (for the integer aggregations) */
+    private AjtLazyTableModel<Element> createModel(boolean hasAggregationRow, AGTYPE... aggregationTypes)
+    {
+        final List<AjtColumnInfo<Element>> columns = new ArrayList<>();
+        final String [] headers = new String [aggregationTypes.length];
+        for (int column = 0; column < aggregationTypes.length; column++)
+        {
+            headers [column] = "value" + column;
+            columns.add(createColumn(headers [column], aggregationTypes [column], column, isIntegerAggregation(aggregationTypes [column]) ? e -> e.count : e -> e.value));
+        }
+        numComputations = new int [aggregationTypes.length];
+        return new AjtLazyTableModel<>(columns, headers, elements, hasAggregationRow);
+    }
+
+    private AjtColumnInfo<Element> createColumn(String header, AGTYPE aggregationType, int column, Function<Element, Object> value)
+    {
+        return new AjtColumnInfo<Element>(null, Double.class, null, header, null, null, e -> { numComputations [column]++; return value.apply(e); }, aggregationType, null);
+    }
+
+    private void assertAggregatedValues(AjtLazyTableModel<Element> model, AGTYPE... aggregationTypes)
+    {
+        for (int column = 0; column < aggregationTypes.length; column++)
+        {
+            if (!aggregationTypes [column].isToAggregate()) continue;
+            final boolean isInteger = isIntegerAggregation(aggregationTypes [column]);
+            final boolean isMax = aggregationTypes [column] == AGTYPE.MAXDOUBLE || aggregationTypes [column] == AGTYPE.MAXINT;
+            double expected = 0;
+            for (Element e : elements)
+            {
+                final double value = isInteger ? e.count : e.value;
+                expected = isMax ? Math.max(expected, value) : expected + value;
+            }
+            Assert.assertEquals(new LastRowAggregatedValue(expected).toString(), model.getValueAt(elements.size(), column).toString());
+        }
+    }
+
+    private static boolean isIntegerAggregation(AGTYPE aggregationType)
+    {
+        return aggregationType == AGTYPE.SUMINT || aggregationType == AGTYPE.MAXINT;
+    }
+}